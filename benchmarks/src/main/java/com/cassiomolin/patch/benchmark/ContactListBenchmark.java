@@ -0,0 +1,125 @@
+package com.cassiomolin.patch.benchmark;
+
+import com.cassiomolin.patch.config.ContactFragmentProperties;
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.util.ContactFragmentCache;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing the response listing {@link #contacts} contacts, of which {@link #changed} have changed since the
+ * previous listing: mapping and serializing every contact with Jackson, or copying the serialized contacts kept by
+ * {@link ContactFragmentCache}, which only serializes the changed ones again.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ContactListBenchmark {
+
+    /**
+     * Number of listed contacts.
+     */
+    @Param("10000")
+    public int contacts;
+
+    /**
+     * Number of contacts changed between listings.
+     */
+    @Param({"0", "100"})
+    public int changed;
+
+    private ContactMapper mapper;
+
+    private ObjectWriter writer;
+
+    private ContactFragmentCache fragmentCache;
+
+    private List<Contact> listedContacts;
+
+    private Random random;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() {
+
+        ObjectMapper objectMapper = JacksonConfig.defaultObjectMapper();
+        mapper = Mappers.getMapper(ContactMapper.class);
+        writer = objectMapper.writerFor(new TypeReference<List<ContactResourceOutput>>() {
+        });
+        fragmentCache = new ContactFragmentCache(mapper, new JacksonConfig().jsonCodecs(objectMapper),
+                new ContactFragmentProperties(), new SimpleMeterRegistry());
+
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        listedContacts = new ArrayList<>(contacts);
+        for (long id = 1; id <= contacts; id++) {
+            listedContacts.add(Contact.builder()
+                    .id(id)
+                    .name("John Appleseed " + id)
+                    .work(Work.builder().title("Engineer").company("Acme Inc").build())
+                    .phones(List.of(Phone.builder().phone("+1 555 0100" + id).type("mobile").build()))
+                    .emails(List.of(Email.builder().email("john" + id + "@example.com").type("work").build()))
+                    .groups(List.of("Friends", "Work"))
+                    .favorite(id % 2 == 0)
+                    .createdDateTime(now)
+                    .lastModifiedDateTime(now)
+                    .build());
+        }
+        random = new Random(42);
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        change();
+        out.reset();
+        writer.writeValue(out, mapper.asOutput(listedContacts));
+        return out.size();
+    }
+
+    @Benchmark
+    public int fragments() throws IOException {
+        change();
+        out.reset();
+        fragmentCache.fragments(listedContacts).writeTo(out);
+        return out.size();
+    }
+
+    private void change() {
+        for (int i = 0; i < changed; i++) {
+            Contact contact = listedContacts.get(random.nextInt(contacts));
+            contact.setLastModifiedDateTime(contact.getLastModifiedDateTime().plusNanos(1));
+        }
+    }
+}
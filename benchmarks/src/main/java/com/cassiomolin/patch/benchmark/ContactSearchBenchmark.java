@@ -0,0 +1,82 @@
+package com.cassiomolin.patch.benchmark;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.service.impl.ContactSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ContactSearchIndex} searches, sampled so that percentiles are reported, over {@link #contacts}
+ * contacts made of a vocabulary of a few thousand words. Queries range from a selective full name to a single letter
+ * matching most contacts.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ContactSearchBenchmark {
+
+    private static final String[] SYLLABLES = {"an", "ber", "cal", "do", "el", "fin", "gar", "ha", "is", "jo", "ka",
+            "lu", "mar", "ne", "ol", "pe", "qui", "ro", "sa", "ta", "ur", "vi", "wen", "xa", "yo", "zel"};
+
+    private static final String[] TITLES = {"Engineer", "Manager", "Director", "Designer", "Analyst", "Consultant",
+            "Architect", "Accountant", "Recruiter", "Nurse", "Teacher", "Lawyer"};
+
+    /**
+     * Number of indexed contacts.
+     */
+    @Param("1000000")
+    public int contacts;
+
+    /**
+     * Query searched for.
+     */
+    @Param({"anber doel", "anber", "an", "a"})
+    public String query;
+
+    private ContactSearchIndex index;
+
+    @Setup
+    public void setup() {
+
+        index = new ContactSearchIndex(new SimpleMeterRegistry());
+
+        Random random = new Random(42);
+        for (long id = 1; id <= contacts; id++) {
+            index.index(Contact.builder()
+                    .id(id)
+                    .name(word(random) + " " + word(random))
+                    .work(Work.builder()
+                            .company(word(random) + " Inc")
+                            .title(TITLES[random.nextInt(TITLES.length)])
+                            .build())
+                    .notes(random.nextInt(4) == 0 ? "Met at " + word(random) + " " + word(random) : null)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public ContactSearchIndex.Result search() {
+        return index.search(query, 0, 20);
+    }
+
+    private static String word(Random random) {
+        return SYLLABLES[random.nextInt(SYLLABLES.length)] + SYLLABLES[random.nextInt(SYLLABLES.length)];
+    }
+}
@@ -0,0 +1,128 @@
+package com.cassiomolin.patch.benchmark;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.JsonPatchProperties.Engine;
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.util.PatchHelper;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import com.cassiomolin.patch.web.util.PersistentJsonPatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonPatch;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.validation.Validation;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * Measures JSON Patch documents changing a contact with {@link #arraySize} groups, with each {@link Engine}: applying
+ * the document to the JSON-P representation of the contact on its own, and through
+ * {@link PatchHelper} end to end, converting the contact resource to JSON-P and back.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class LargeArrayPatchBenchmark {
+
+    /**
+     * Number of groups of the contact.
+     */
+    @Param("10000")
+    public int arraySize;
+
+    /**
+     * Number of operations of the JSON Patch document.
+     */
+    @Param({"1", "10", "100"})
+    public int patchSize;
+
+    /**
+     * Operations of the JSON Patch document: {@code append} to the groups, {@code remove} or {@code replace} a group in
+     * the middle of them.
+     */
+    @Param({"append", "remove", "replace"})
+    public String op;
+
+    @Param({"JOHNZON", "PERSISTENT"})
+    public Engine engine;
+
+    private PatchHelper patchHelper;
+
+    private ContactResourceInput input;
+
+    private JsonStructure target;
+
+    private JsonPatch patch;
+
+    @Setup
+    public void setup() {
+
+        ObjectMapper objectMapper = JacksonConfig.defaultObjectMapper();
+        JsonPatchProperties properties = new JsonPatchProperties();
+        properties.setEngine(engine);
+        patchHelper = new PatchHelper(new JacksonConfig().jsonCodecs(objectMapper),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new PatchMetrics(new SimpleMeterRegistry(), new PatchMetricsProperties()), properties);
+
+        input = ContactResourceInput.builder()
+                .name("John Appleseed")
+                .groups(IntStream.range(0, arraySize)
+                        .mapToObj(i -> "Group " + i)
+                        .collect(toCollection(ArrayList::new)))
+                .build();
+        target = objectMapper.convertValue(input, JsonStructure.class);
+
+        JsonArrayBuilder operations = Json.createArrayBuilder();
+        for (int i = 0; i < patchSize; i++) {
+            String path = "append".equals(op) ? "/groups/-" : "/groups/" + (arraySize / 2 + i);
+            switch (op) {
+                case "append":
+                case "replace":
+                    operations.add(Json.createObjectBuilder()
+                            .add("op", "append".equals(op) ? "add" : op)
+                            .add("path", path)
+                            .add("value", "New group " + i));
+                    break;
+                case "remove":
+                    operations.add(Json.createObjectBuilder().add("op", "remove").add("path", path));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown op: " + op);
+            }
+        }
+        patch = Json.createPatch(operations.build());
+    }
+
+    @Benchmark
+    public JsonValue apply() {
+        return engine == Engine.PERSISTENT ? PersistentJsonPatch.apply(patch, target) : patch.apply(target);
+    }
+
+    @Benchmark
+    public ContactResourceInput patch() {
+        return patchHelper.patch(patch, input, ContactResourceInput.class);
+    }
+}
@@ -0,0 +1,34 @@
+package com.cassiomolin.patch.benchmark;
+
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link com.cassiomolin.patch.web.util.PatchHelper} end to end, from the contact resource to the patched and
+ * validated contact resource.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatchHelperBenchmark {
+
+    @Benchmark
+    public ContactResourceInput patch(PatchState state) {
+        return state.patchHelper.patch(state.jsonPatch, state.input, ContactResourceInput.class);
+    }
+
+    @Benchmark
+    public ContactResourceInput mergePatch(PatchState state) {
+        return state.patchHelper.mergePatch(state.jsonMergePatch, state.input, ContactResourceInput.class);
+    }
+}
@@ -0,0 +1,92 @@
+package com.cassiomolin.patch.benchmark;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+
+import javax.json.JsonMergePatch;
+import javax.json.JsonPatch;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.validation.ConstraintViolation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of the {@code PATCH} pipeline on its own, in the order they happen for a request.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatchStagesBenchmark {
+
+    @Benchmark
+    public JsonPatch parseJsonPatch(PatchState state) throws IOException {
+        return state.jsonPatchConverter.read(JsonPatch.class, body(state.jsonPatchBody));
+    }
+
+    @Benchmark
+    public JsonMergePatch parseJsonMergePatch(PatchState state) throws IOException {
+        return state.jsonMergePatchConverter.read(JsonMergePatch.class, body(state.jsonMergePatchBody));
+    }
+
+    @Benchmark
+    public JsonStructure convertToJson(PatchState state) {
+        return state.codecs.convert(state.input, JsonStructure.class);
+    }
+
+    @Benchmark
+    public JsonStructure applyJsonPatch(PatchState state) {
+        return state.jsonPatch.apply(state.target);
+    }
+
+    @Benchmark
+    public JsonValue applyJsonMergePatch(PatchState state) {
+        return state.jsonMergePatch.apply(state.target);
+    }
+
+    @Benchmark
+    public ContactResourceInput convertFromJson(PatchState state) {
+        return state.codecs.convert(state.patched, ContactResourceInput.class);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<ContactResourceInput>> validate(PatchState state) {
+        return state.validator.validate(state.patchedInput);
+    }
+
+    @Benchmark
+    public Contact updateContact(PatchState state) {
+        // Updating the same contact over and over leaves it in the same state
+        state.contactMapper.update(state.contact, state.patchedInput);
+        return state.contact;
+    }
+
+    private static HttpInputMessage body(byte[] bytes) {
+        return new HttpInputMessage() {
+
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(bytes);
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return new HttpHeaders();
+            }
+        };
+    }
+}
@@ -0,0 +1,191 @@
+package com.cassiomolin.patch.benchmark;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.web.converter.JsonMergePatchHttpMessageConverter;
+import com.cassiomolin.patch.web.converter.JsonPatchHttpMessageConverter;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.util.JsonCodecs;
+import com.cassiomolin.patch.web.util.PatchHelper;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import com.cassiomolin.patch.web.util.ResourceSchema;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonMergePatch;
+import javax.json.JsonPatch;
+import javax.json.JsonStructure;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * A contact with {@link #contactSize} phones, emails and groups, and a JSON Patch document with {@link #patchSize}
+ * operations of the given {@link #opMix}, along with the equivalent JSON Merge Patch document and the intermediate
+ * results of each stage of the patch pipeline.
+ */
+@State(Scope.Benchmark)
+public class PatchState {
+
+    /**
+     * Number of JSON Patch operations.
+     */
+    @Param({"1", "10", "100", "500"})
+    public int patchSize;
+
+    /**
+     * Number of phones, emails and groups of the contact.
+     */
+    @Param({"0", "10", "100", "1000"})
+    public int contactSize;
+
+    /**
+     * Operations of the JSON Patch document: {@code replace}, {@code add}, {@code remove}, or {@code mixed} for all of
+     * them and {@code test}.
+     */
+    @Param({"replace", "add", "remove", "mixed"})
+    public String opMix;
+
+    ObjectMapper objectMapper;
+
+    JsonCodecs codecs;
+
+    Validator validator;
+
+    ContactMapper contactMapper;
+
+    PatchHelper patchHelper;
+
+    JsonPatchHttpMessageConverter jsonPatchConverter;
+
+    JsonMergePatchHttpMessageConverter jsonMergePatchConverter;
+
+    Contact contact;
+
+    ContactResourceInput input;
+
+    byte[] jsonPatchBody;
+
+    byte[] jsonMergePatchBody;
+
+    JsonPatch jsonPatch;
+
+    JsonMergePatch jsonMergePatch;
+
+    JsonStructure target;
+
+    JsonStructure patched;
+
+    ContactResourceInput patchedInput;
+
+    @Setup(Level.Trial)
+    public void setup() {
+
+        objectMapper = JacksonConfig.defaultObjectMapper();
+        codecs = new JacksonConfig().jsonCodecs(objectMapper);
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        contactMapper = Mappers.getMapper(ContactMapper.class);
+        PatchMetrics metrics = new PatchMetrics(new SimpleMeterRegistry(), new PatchMetricsProperties());
+        patchHelper = new PatchHelper(codecs, validator, metrics, new JsonPatchProperties());
+        ResourceSchema schema = ResourceSchema.of(objectMapper, ContactResourceInput.class);
+        jsonPatchConverter = new JsonPatchHttpMessageConverter(metrics, schema);
+        jsonMergePatchConverter = new JsonMergePatchHttpMessageConverter(metrics, schema);
+
+        contact = contact(contactSize);
+        input = contactMapper.asInput(contact);
+
+        JsonArray operations = operations(opMix, patchSize, contactSize);
+        jsonPatch = Json.createPatch(operations);
+        jsonPatchBody = operations.toString().getBytes(StandardCharsets.UTF_8);
+
+        target = objectMapper.convertValue(input, JsonStructure.class);
+        patched = jsonPatch.apply(target);
+        patchedInput = objectMapper.convertValue(patched, ContactResourceInput.class);
+
+        // Same changes as the JSON Patch document, so that both can be compared
+        jsonMergePatch = Json.createMergeDiff(target, patched);
+        jsonMergePatchBody = jsonMergePatch.toJsonValue().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Contact contact(int size) {
+
+        return Contact.builder()
+                .id(1L)
+                .name("John Appleseed")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .work(new Work("Engineer", "Acme"))
+                .favorite(false)
+                .notes("Notes")
+                .phones(IntStream.range(0, size)
+                        .mapToObj(i -> new Phone(String.format("%010d", i), "mobile"))
+                        .collect(toCollection(ArrayList::new)))
+                .emails(IntStream.range(0, size)
+                        .mapToObj(i -> new Email(i + "@example.com", "work"))
+                        .collect(toCollection(ArrayList::new)))
+                .groups(IntStream.range(0, size)
+                        .mapToObj(i -> "Group " + i)
+                        .collect(toCollection(ArrayList::new)))
+                .build();
+    }
+
+    /**
+     * Builds operations that can all be applied to the contact. Removals take the first group while there's any left,
+     * shifting the remaining ones, and add a group otherwise.
+     */
+    private static JsonArray operations(String opMix, int patchSize, int contactSize) {
+
+        JsonArrayBuilder operations = Json.createArrayBuilder();
+        int groups = contactSize;
+        String name = "John Appleseed";
+
+        for (int i = 0; i < patchSize; i++) {
+
+            String op = "mixed".equals(opMix) ? new String[]{"replace", "add", "remove", "test"}[i % 4] : opMix;
+            if ("remove".equals(op) && groups == 0) {
+                op = "add";
+            }
+
+            switch (op) {
+                case "replace":
+                    name = "Name " + i;
+                    operations.add(Json.createObjectBuilder().add("op", "replace").add("path", "/name").add("value", name));
+                    break;
+                case "add":
+                    operations.add(Json.createObjectBuilder().add("op", "add").add("path", "/groups/-").add("value", "New group " + i));
+                    groups++;
+                    break;
+                case "remove":
+                    operations.add(Json.createObjectBuilder().add("op", "remove").add("path", "/groups/0"));
+                    groups--;
+                    break;
+                case "test":
+                    operations.add(Json.createObjectBuilder().add("op", "test").add("path", "/name").add("value", name));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown op mix: " + opMix);
+            }
+        }
+
+        return operations.build();
+    }
+}
@@ -0,0 +1,132 @@
+package com.cassiomolin.patch.benchmark;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.SerializationProperties;
+import com.cassiomolin.patch.config.SerializationProperties.Accessors;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.input.EmailResourceInput;
+import com.cassiomolin.patch.web.resource.input.PhoneResourceInput;
+import com.cassiomolin.patch.web.resource.input.WorkResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.resource.output.EmailResourceOutput;
+import com.cassiomolin.patch.web.resource.output.PhoneResourceOutput;
+import com.cassiomolin.patch.web.resource.output.WorkResourceOutput;
+import com.cassiomolin.patch.web.util.JsonCodecs;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.json.JsonValue;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversions of a contact done for every patch and every response: through the {@link ObjectMapper},
+ * which looks up its reader or writer on each call, or through the ones {@link JsonCodecs} built upfront, with getters
+ * called through reflection or through generated lambdas.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"REFLECTION", "LAMBDA"})
+    public Accessors accessors;
+
+    private ObjectMapper mapper;
+
+    private JsonCodecs codecs;
+
+    private ObjectWriter writer;
+
+    private ContactResourceInput input;
+
+    private JsonValue json;
+
+    private ContactResourceOutput output;
+
+    @Setup
+    public void setup() {
+
+        SerializationProperties properties = new SerializationProperties();
+        properties.setAccessors(accessors);
+        JacksonConfig config = new JacksonConfig();
+        mapper = config.objectMapper(properties);
+        codecs = config.jsonCodecs(mapper);
+        writer = codecs.writer(ContactResourceOutput.class);
+
+        input = ContactResourceInput.builder()
+                .name("John Appleseed")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .work(WorkResourceInput.builder().title("Engineer").company("Acme").build())
+                .phones(List.of(PhoneResourceInput.builder().phone("+1 555 0100").type("mobile").build(),
+                        PhoneResourceInput.builder().phone("+1 555 0101").type("work").build()))
+                .emails(List.of(EmailResourceInput.builder().email("john@example.com").type("home").build()))
+                .groups(List.of("Friends", "Colleagues"))
+                .favorite(true)
+                .notes("Met at the conference")
+                .build();
+        json = mapper.convertValue(input, JsonValue.class);
+
+        output = ContactResourceOutput.builder()
+                .id(1L)
+                .name(input.getName())
+                .birthday(input.getBirthday())
+                .work(WorkResourceOutput.builder().title("Engineer").company("Acme").build())
+                .phones(List.of(PhoneResourceOutput.builder().phone("+1 555 0100").type("mobile").build(),
+                        PhoneResourceOutput.builder().phone("+1 555 0101").type("work").build()))
+                .emails(List.of(EmailResourceOutput.builder().email("john@example.com").type("home").build()))
+                .groups(input.getGroups())
+                .favorite(true)
+                .notes(input.getNotes())
+                .createdDateTime(OffsetDateTime.parse("2019-01-01T09:00:00Z"))
+                .lastModifiedDateTime(OffsetDateTime.parse("2019-06-01T17:30:00Z"))
+                .build();
+    }
+
+    @Benchmark
+    public JsonValue toJson_objectMapper() {
+        return mapper.convertValue(input, JsonValue.class);
+    }
+
+    @Benchmark
+    public JsonValue toJson_codecs() {
+        return codecs.convert(input, JsonValue.class);
+    }
+
+    @Benchmark
+    public ContactResourceInput fromJson_objectMapper() {
+        return mapper.convertValue(json, ContactResourceInput.class);
+    }
+
+    @Benchmark
+    public ContactResourceInput fromJson_codecs() {
+        return codecs.convert(json, ContactResourceInput.class);
+    }
+
+    @Benchmark
+    public byte[] write_objectMapper() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(output);
+    }
+
+    @Benchmark
+    public byte[] write_codecs() throws JsonProcessingException {
+        return writer.writeValueAsBytes(output);
+    }
+}
@@ -0,0 +1,36 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the contact cache.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.cache")
+public class ContactCacheProperties {
+
+    /**
+     * Whether contacts are cached in front of the contact store.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of cached lookups, including negative ones.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * How long a contact stays cached after it's been loaded or written.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * How long a lookup of a contact that doesn't exist stays cached.
+     */
+    private Duration negativeTtl = Duration.ofSeconds(5);
+}
@@ -0,0 +1,20 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the serialized contact resources kept to list contacts.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.fragments")
+public class ContactFragmentProperties {
+
+    /**
+     * Maximum size of the serialized contact resources kept, least frequently listed contacts being evicted first.
+     */
+    private DataSize maximumSize = DataSize.ofMegabytes(64);
+}
@@ -0,0 +1,36 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the contact version history.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.history")
+public class ContactHistoryProperties {
+
+    /**
+     * Number of versions between full checkpoints, bounding how many reverse patches a point-in-time read applies.
+     */
+    private int checkpointInterval = 16;
+
+    /**
+     * Maximum number of versions kept for each contact.
+     */
+    private int maxVersions = 256;
+
+    /**
+     * How long a superseded version, or the history of a deleted contact, is kept.
+     */
+    private Duration retention = Duration.ofDays(30);
+
+    /**
+     * Delay between background compactions.
+     */
+    private Duration compactionInterval = Duration.ofMinutes(1);
+}
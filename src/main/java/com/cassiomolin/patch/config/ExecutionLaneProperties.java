@@ -0,0 +1,49 @@
+package com.cassiomolin.patch.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the execution lanes that requests to the contacts API are run on.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.lanes")
+public class ExecutionLaneProperties {
+
+    /**
+     * Lane of requests that read or write a single contact.
+     */
+    private Lane interactive = new Lane(32, 512, Duration.ofSeconds(5));
+
+    /**
+     * Lane of requests that read or write many contacts at once, such as listing all contacts.
+     */
+    private Lane bulk = new Lane(2, 8, Duration.ofSeconds(30));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Lane {
+
+        /**
+         * Number of threads requests are run on.
+         */
+        private int threads;
+
+        /**
+         * Maximum number of requests waiting for a thread, beyond which requests are rejected.
+         */
+        private int queueCapacity;
+
+        /**
+         * How long a request may wait for a thread before it's rejected. Requests that have started are left to complete.
+         */
+        private Duration timeout;
+    }
+}
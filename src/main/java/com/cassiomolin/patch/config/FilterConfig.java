@@ -0,0 +1,23 @@
+package com.cassiomolin.patch.config;
+
+import com.cassiomolin.patch.web.filter.IdempotencyKeyFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.servlet.DispatcherType;
+
+@Configuration
+public class FilterConfig {
+
+    /**
+     * Registers the {@link IdempotencyKeyFilter} for async dispatches too, as requests are run on execution lanes and
+     * their responses are only written by their async dispatch.
+     */
+    @Bean
+    public FilterRegistrationBean<IdempotencyKeyFilter> idempotencyKeyFilterRegistration(IdempotencyKeyFilter filter) {
+        FilterRegistrationBean<IdempotencyKeyFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        return registration;
+    }
+}
@@ -0,0 +1,37 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the heap footprint accounting of the contact store.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.footprint")
+public class FootprintProperties {
+
+    /**
+     * Whether the footprint of the contact store is estimated periodically and exposed by the {@code footprint}
+     * actuator endpoint.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Delay between periodic estimates, which update the {@code contacts.footprint.*} metrics.
+     */
+    private Duration interval = Duration.ofMinutes(5);
+
+    /**
+     * Number of contacts measured by an estimate that isn't exact, extrapolated to the whole store.
+     */
+    private int sampleSize = 1000;
+
+    /**
+     * Number of largest contacts reported.
+     */
+    private int top = 10;
+}
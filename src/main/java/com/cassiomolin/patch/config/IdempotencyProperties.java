@@ -0,0 +1,43 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings of the handling of the {@code Idempotency-Key} header.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Whether writes sent with an {@code Idempotency-Key} header are only processed once.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of idempotency keys remembered.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * How long the response to a request is replayed for retries with the same key.
+     */
+    private Duration ttl = Duration.ofHours(1);
+
+    /**
+     * How long a retry waits for the original request, while it's still being processed, before giving up.
+     */
+    private Duration waitTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Largest body of a write sent with an {@code Idempotency-Key} header, which is buffered to fingerprint the
+     * request. Larger writes are rejected.
+     */
+    private DataSize maxBodySize = DataSize.ofMegabytes(1);
+}
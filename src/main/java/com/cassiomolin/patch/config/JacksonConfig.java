@@ -1,21 +1,55 @@
 package com.cassiomolin.patch.config;
 
+import com.cassiomolin.patch.config.SerializationProperties.Accessors;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.util.JsonCodecs;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+
 @Configuration
+@EnableConfigurationProperties(SerializationProperties.class)
 public class JacksonConfig {
 
     @Bean
-    public ObjectMapper objectMapper() {
+    public ObjectMapper objectMapper(SerializationProperties properties) {
+        ObjectMapper mapper = defaultObjectMapper();
+        if (properties.getAccessors() == Accessors.LAMBDA) {
+            mapper.registerModule(new LambdaAccessorModule());
+        }
+        return mapper;
+    }
+
+    /**
+     * Creates an object mapper with the default settings, for use outside of the application context, where the
+     * {@link #objectMapper(SerializationProperties) bean} isn't available.
+     *
+     * @return object mapper
+     */
+    public static ObjectMapper defaultObjectMapper() {
         return new ObjectMapper()
                 .setDefaultPropertyInclusion(Include.NON_NULL)
                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
                 .findAndRegisterModules();
     }
+
+    /**
+     * Readers and writers of the resources and of their JSON-P representation, built once for the {@code PATCH}
+     * pipeline and for the responses.
+     */
+    @Bean
+    public JsonCodecs jsonCodecs(ObjectMapper objectMapper) {
+        return JsonCodecs.of(objectMapper, Contact.class, ContactResourceInput.class, ContactResourceOutput.class,
+                JsonValue.class, JsonStructure.class);
+    }
 }
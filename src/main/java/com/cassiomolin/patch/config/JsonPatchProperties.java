@@ -0,0 +1,37 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of how JSON Patch documents are applied.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.json-patch")
+public class JsonPatchProperties {
+
+    /**
+     * Engines applying JSON Patch documents.
+     */
+    public enum Engine {
+
+        /**
+         * The JSON-P implementation, which rebuilds the whole target for each operation.
+         */
+        JOHNZON,
+
+        /**
+         * Shares the structure of the target, with arrays as persistent vectors. Failures are reported by the engine
+         * itself, and operations only touch the value they refer to, as specified by RFC 6902, where the JSON-P
+         * implementation also changes other values.
+         */
+        PERSISTENT
+    }
+
+    /**
+     * Engine applying JSON Patch documents.
+     */
+    private Engine engine = Engine.PERSISTENT;
+}
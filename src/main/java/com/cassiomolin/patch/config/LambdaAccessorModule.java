@@ -0,0 +1,133 @@
+package com.cassiomolin.patch.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.impl.PropertySerializerMap;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Jackson module that serializes bean properties through getters called by lambdas generated with
+ * {@link LambdaMetafactory}, instead of through {@link Method#invoke(Object, Object...)}.
+ * <p>
+ * Generated lambdas are plain calls to the getters, which the JIT compiler can inline into the serialization of the
+ * bean, while reflective calls go through an accessor it can't see through. Properties without a public getter, and
+ * properties whose getter can't be turned into a lambda, are still read through reflection.
+ */
+public class LambdaAccessorModule extends SimpleModule {
+
+    public LambdaAccessorModule() {
+        super(LambdaAccessorModule.class.getSimpleName());
+        setSerializerModifier(new BeanSerializerModifier() {
+
+            @Override
+            public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc,
+                                                             List<BeanPropertyWriter> beanProperties) {
+                beanProperties.replaceAll(LambdaAccessorModule::withLambdaGetter);
+                return beanProperties;
+            }
+        });
+    }
+
+    private static BeanPropertyWriter withLambdaGetter(BeanPropertyWriter writer) {
+
+        // Subclasses, such as virtual properties, read their values their own way
+        if (writer.getClass() != BeanPropertyWriter.class || !(writer.getMember() instanceof AnnotatedMethod)) {
+            return writer;
+        }
+
+        Method getter = ((AnnotatedMethod) writer.getMember()).getAnnotated();
+        if (!Modifier.isPublic(getter.getModifiers()) || Modifier.isStatic(getter.getModifiers())) {
+            return writer;
+        }
+
+        try {
+            return new LambdaPropertyWriter(writer, lambda(getter));
+        } catch (Throwable e) {
+            return writer;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> lambda(Method getter) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(getter.getDeclaringClass(), MethodHandles.lookup());
+        MethodHandle handle = lookup.unreflect(getter);
+        return (Function<Object, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+                handle, handle.type().wrap())
+                .getTarget()
+                .invokeExact();
+    }
+
+    /**
+     * Property writer that reads the value of the property through a lambda, and otherwise serializes it as
+     * {@link BeanPropertyWriter#serializeAsField(Object, JsonGenerator, SerializerProvider)} does.
+     */
+    private static final class LambdaPropertyWriter extends BeanPropertyWriter {
+
+        private final Function<Object, Object> getter;
+
+        private LambdaPropertyWriter(BeanPropertyWriter writer, Function<Object, Object> getter) {
+            super(writer);
+            this.getter = getter;
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+
+            Object value = getter.apply(bean);
+            if (value == null) {
+                if (_nullSerializer != null) {
+                    gen.writeFieldName(_name);
+                    _nullSerializer.serialize(null, gen, prov);
+                }
+                return;
+            }
+
+            JsonSerializer<Object> serializer = _serializer;
+            if (serializer == null) {
+                Class<?> type = value.getClass();
+                PropertySerializerMap serializers = _dynamicSerializers;
+                serializer = serializers.serializerFor(type);
+                if (serializer == null) {
+                    serializer = _findAndAddDynamic(serializers, type, prov);
+                }
+            }
+
+            if (_suppressableValue != null) {
+                if (MARKER_FOR_EMPTY == _suppressableValue) {
+                    if (serializer.isEmpty(prov, value)) {
+                        return;
+                    }
+                } else if (_suppressableValue.equals(value)) {
+                    return;
+                }
+            }
+
+            if (value == bean && _handleSelfReference(bean, gen, prov, serializer)) {
+                return;
+            }
+
+            gen.writeFieldName(_name);
+            if (_typeSerializer == null) {
+                serializer.serialize(value, gen, prov);
+            } else {
+                serializer.serializeWithType(value, gen, prov, _typeSerializer);
+            }
+        }
+    }
+}
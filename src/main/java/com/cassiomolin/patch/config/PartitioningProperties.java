@@ -0,0 +1,61 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the partitioning of contacts across several nodes.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.partitioning")
+public class PartitioningProperties {
+
+    /**
+     * Whether contacts are partitioned across several nodes. Requires the {@code memory} store and no cache.
+     */
+    private boolean enabled = false;
+
+    /**
+     * URL other nodes reach this node at.
+     */
+    private URI self = URI.create("http://localhost:8080");
+
+    /**
+     * URLs of nodes of the cluster to join on startup. Empty for the first node.
+     */
+    private List<URI> seeds = new ArrayList<>();
+
+    /**
+     * How long to keep trying the seeds on startup until one of them answers, after which the node fails to start.
+     */
+    private Duration joinTimeout = Duration.ofMinutes(1);
+
+    /**
+     * Delay between two rounds of attempts to join the cluster through the seeds.
+     */
+    private Duration joinRetryInterval = Duration.ofSeconds(1);
+
+    /**
+     * Number of partitions contacts are hashed to. All nodes must use the same number, which can't be changed once
+     * contacts have been created, as it's part of their ids.
+     */
+    private int partitions = 256;
+
+    /**
+     * Number of points each node has on the hash ring partitions are assigned with. More points spread partitions
+     * more evenly across nodes.
+     */
+    private int virtualNodes = 64;
+
+    /**
+     * Timeout of requests to other nodes.
+     */
+    private Duration timeout = Duration.ofSeconds(5);
+}
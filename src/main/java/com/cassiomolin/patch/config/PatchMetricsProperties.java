@@ -0,0 +1,19 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the metrics of the {@code PATCH} pipeline.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.patch-metrics")
+public class PatchMetricsProperties {
+
+    /**
+     * Whether the bytes allocated by each {@code PATCH} request are recorded, when supported by the JVM.
+     */
+    private boolean allocationTracking = false;
+}
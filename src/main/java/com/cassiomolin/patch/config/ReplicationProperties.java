@@ -0,0 +1,58 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Settings of the replication of contacts from a primary to read replicas.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.replication")
+public class ReplicationProperties {
+
+    public enum Role {
+        NONE, PRIMARY, REPLICA
+    }
+
+    /**
+     * Role of this instance. A primary ships the changes made to its contacts to replicas, which only serve reads.
+     * Requires the {@code memory} store.
+     */
+    private Role role = Role.NONE;
+
+    /**
+     * URL of the primary, for replicas.
+     */
+    private URI primary = URI.create("http://localhost:8080");
+
+    /**
+     * Number of changes the primary retains for replicas catching up. Replicas further behind start over from a
+     * snapshot.
+     */
+    private int logSize = 100_000;
+
+    /**
+     * How often the primary tells idle replicas that they are up to date.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(1);
+
+    /**
+     * How far behind the primary a replica may be before it stops serving reads.
+     */
+    private Duration maxStaleness = Duration.ofSeconds(5);
+
+    /**
+     * How long a read on a replica waits for the changes a client has made on the primary to be applied.
+     */
+    private Duration readYourWritesTimeout = Duration.ofSeconds(1);
+
+    /**
+     * How long a replica waits before reconnecting to the primary.
+     */
+    private Duration reconnectDelay = Duration.ofSeconds(1);
+}
@@ -0,0 +1,16 @@
+package com.cassiomolin.patch.config;
+
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.util.ResourceSchema;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ResourceSchemaConfig {
+
+    @Bean
+    public ResourceSchema contactResourceSchema(ObjectMapper objectMapper) {
+        return ResourceSchema.of(objectMapper, ContactResourceInput.class);
+    }
+}
@@ -0,0 +1,24 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the contact search index.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.search")
+public class SearchProperties {
+
+    /**
+     * Whether contacts are indexed for search. Requires the {@code memory} store.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of results in a page.
+     */
+    private int maxPageSize = 100;
+}
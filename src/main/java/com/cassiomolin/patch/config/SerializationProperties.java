@@ -0,0 +1,30 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the Jackson object mapper, registered by {@link JacksonConfig}.
+ */
+@Data
+@ConfigurationProperties(prefix = "contacts.serialization")
+public class SerializationProperties {
+
+    /**
+     * How the properties of beans are read when they are serialized.
+     */
+    private Accessors accessors = Accessors.REFLECTION;
+
+    public enum Accessors {
+
+        /**
+         * Getters are called through reflection, as Jackson does by default.
+         */
+        REFLECTION,
+
+        /**
+         * Getters are called through lambdas generated on the fly, which the JIT compiler can inline.
+         */
+        LAMBDA
+    }
+}
@@ -0,0 +1,63 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the warmup of the application on startup.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.warmup")
+public class WarmupProperties {
+
+    /**
+     * Whether the metadata of JSON-P, Jackson, Bean Validation and MapStruct is built during startup rather than on
+     * the first request.
+     */
+    private boolean metadata = false;
+
+    /**
+     * Whether the application exits once it's started, for training runs such as the one that builds the AppCDS
+     * archive. Requires {@link #isMetadata()}.
+     */
+    private boolean exitAfterStartup = false;
+
+    /**
+     * JIT warmup of the {@code PATCH} pipeline.
+     */
+    private Jit jit = new Jit();
+
+    @Data
+    public static class Jit {
+
+        /**
+         * Whether a corpus of patch documents is run through the {@code PATCH} pipeline once the application has
+         * started, reporting the application out of service until it's done.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Location pattern of the JSON Patch documents of the corpus.
+         */
+        private String jsonPatchCorpus = "classpath:warmup/json-patch/*.json";
+
+        /**
+         * Location pattern of the JSON Merge Patch documents of the corpus.
+         */
+        private String mergePatchCorpus = "classpath:warmup/merge-patch/*.json";
+
+        /**
+         * Number of times the corpus is run.
+         */
+        private long iterations = 10_000;
+
+        /**
+         * Maximum duration of the warmup, after which it ends even if not all iterations have run.
+         */
+        private Duration maxDuration = Duration.ofSeconds(60);
+    }
+}
@@ -0,0 +1,43 @@
+package com.cassiomolin.patch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Settings of the write-behind persistence of the in-memory contact store.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.write-behind")
+public class WriteBehindProperties {
+
+    /**
+     * Whether changes to the in-memory contact store are persisted to a journal.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Journal file.
+     */
+    private Path journal = Paths.get("contacts.journal");
+
+    /**
+     * Maximum number of contacts written in a single group commit.
+     */
+    private int maxBatchSize = 512;
+
+    /**
+     * Maximum time a change waits before its group is committed.
+     */
+    private Duration maxDelay = Duration.ofMillis(5);
+
+    /**
+     * Time to wait before writing a group of changes again once it has failed to be written.
+     */
+    private Duration retryDelay = Duration.ofSeconds(1);
+}
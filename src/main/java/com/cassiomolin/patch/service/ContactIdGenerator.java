@@ -0,0 +1,22 @@
+package com.cassiomolin.patch.service;
+
+/**
+ * Generates the ids of new contacts.
+ */
+public interface ContactIdGenerator {
+
+    /**
+     * Generates the id of a new contact.
+     *
+     * @return id that hasn't been generated before
+     */
+    long nextId();
+
+    /**
+     * Makes sure that an id assigned elsewhere, for instance restored from a journal or received from another node,
+     * is never generated.
+     *
+     * @param id id in use
+     */
+    void advancePast(long id);
+}
@@ -0,0 +1,30 @@
+package com.cassiomolin.patch.service;
+
+import com.cassiomolin.patch.domain.Contact;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Durable storage the in-memory contact store is persisted to.
+ */
+public interface ContactJournal {
+
+    /**
+     * Reads the latest persisted state of every contact that hasn't been deleted. It's read once, on startup, before
+     * any change is written.
+     *
+     * @return persisted contacts
+     * @throws IOException if the journal cannot be read
+     */
+    Collection<Contact> read() throws IOException;
+
+    /**
+     * Writes a group of changes, returning only once they have reached stable storage.
+     *
+     * @param changes latest state of each changed contact, keyed by id, where {@code null} stands for a deletion
+     * @throws IOException if the changes cannot be written
+     */
+    void write(Map<Long, Contact> changes) throws IOException;
+}
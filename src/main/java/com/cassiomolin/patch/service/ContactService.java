@@ -2,8 +2,14 @@ package com.cassiomolin.patch.service;
 
 import com.cassiomolin.patch.domain.Contact;
 
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
 
 public interface ContactService {
 
@@ -11,9 +17,41 @@ public interface ContactService {
 
     List<Contact> findContacts();
 
+    /**
+     * Counts the contacts. Implementations that don't keep their contacts in memory count them without loading them.
+     */
+    default int countContacts() {
+        return findContacts().size();
+    }
+
+    /**
+     * Picks contacts at random. Implementations that don't keep their contacts in memory only load the picked ones.
+     *
+     * @param size maximum number of contacts picked
+     * @return picked contacts, or every contact if there are no more than {@code size} of them
+     */
+    default List<Contact> sampleContacts(int size) {
+        Contact[] contacts = findContacts().toArray(new Contact[0]);
+        IntStream indices = contacts.length <= size
+                ? IntStream.range(0, contacts.length)
+                : ThreadLocalRandom.current().ints(0, contacts.length).distinct().limit(size);
+        return indices.mapToObj(index -> contacts[index]).filter(Objects::nonNull).collect(toList());
+    }
+
     Optional<Contact> findContact(Long id);
 
+    Optional<Contact> findContact(Long id, OffsetDateTime asOf);
+
     void updateContact(Contact contact);
 
     void deleteContact(Contact contact);
+
+    /**
+     * Waits until every change made so far has reached durable storage. Implementations that don't defer persistence
+     * return right away.
+     *
+     * @throws java.util.concurrent.CompletionException if the changes failed to be written
+     */
+    default void awaitDurability() {
+    }
 }
@@ -0,0 +1,180 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ContactCacheProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactStore;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link ContactService} that caches contacts in front of the {@link ContactStore}.
+ * <p>
+ * Lookups by id are read through a bounded cache, evicting the least frequently used contacts first. Concurrent
+ * lookups of a contact that isn't cached share a single load from the store, and lookups of contacts that don't exist
+ * are also cached, for a shorter time. Writes go to the store first and then update the cache, one at a time for each
+ * contact, so that the cache never ends up with an older state than the store.
+ * <p>
+ * Cached contacts are handed out as they are, so that a hit costs no more than a lookup in the cache. Callers must not
+ * change them in place: an update passes a new contact with the new state, such as one mapped by
+ * {@link com.cassiomolin.patch.web.mapper.ContactMapper#replacement(Contact, ContactResourceInput)}.
+ */
+@Primary
+@Service
+// Rejected by PartitionedCacheGuard when partitioning is enabled, which also has a primary ContactService
+@ConditionalOnExpression("'${contacts.cache.enabled:false}' == 'true' and '${contacts.partitioning.enabled:false}' != 'true'")
+public class CachingContactService implements ContactService {
+
+    private final ContactService store;
+
+    private final LoadingCache<Long, Optional<Contact>> cache;
+
+    private final Striped<Lock> writeLocks = Striped.lock(64);
+
+    private final Counter hits;
+
+    private final Counter negativeHits;
+
+    private final Counter misses;
+
+    private final Counter bypasses;
+
+    public CachingContactService(@ContactStore ContactService store, ContactCacheProperties properties,
+                                 MeterRegistry registry) {
+
+        this.store = store;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new ContactExpiry(properties))
+                .recordStats()
+                .build(store::findContact);
+
+        CaffeineCacheMetrics.monitor(registry, cache, "contacts");
+        this.hits = lookups(registry, "findContact", "hit");
+        this.negativeHits = lookups(registry, "findContact", "negative-hit");
+        this.misses = lookups(registry, "findContact", "miss");
+        this.bypasses = lookups(registry, "findContacts", "bypass");
+    }
+
+    @Override
+    public Contact createContact(Contact contact) {
+        store.createContact(contact);
+        cache.put(contact.getId(), Optional.of(contact));
+        return contact;
+    }
+
+    @Override
+    public List<Contact> findContacts() {
+        bypasses.increment();
+        return store.findContacts();
+    }
+
+    @Override
+    public Optional<Contact> findContact(Long id) {
+
+        Optional<Contact> cached = cache.getIfPresent(id);
+        if (cached != null) {
+            (cached.isPresent() ? hits : negativeHits).increment();
+            return cached;
+        }
+
+        misses.increment();
+        return cache.get(id);
+    }
+
+    @Override
+    public Optional<Contact> findContact(Long id, OffsetDateTime asOf) {
+        return store.findContact(id, asOf);
+    }
+
+    @Override
+    public void updateContact(Contact contact) {
+
+        Lock lock = writeLocks.get(contact.getId());
+        lock.lock();
+        try {
+            store.updateContact(contact);
+            cache.put(contact.getId(), Optional.of(contact));
+        } catch (RuntimeException e) {
+            // The store may have been partially updated
+            cache.invalidate(contact.getId());
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteContact(Contact contact) {
+
+        Lock lock = writeLocks.get(contact.getId());
+        lock.lock();
+        try {
+            store.deleteContact(contact);
+            cache.put(contact.getId(), Optional.empty());
+        } catch (RuntimeException e) {
+            cache.invalidate(contact.getId());
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void awaitDurability() {
+        store.awaitDurability();
+    }
+
+    private static Counter lookups(MeterRegistry registry, String operation, String result) {
+        return Counter.builder("contacts.cache.lookups")
+                .description("Contact lookups, by operation and whether they were served from the cache")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Expires contacts after {@link ContactCacheProperties#getTtl()} and lookups of contacts that don't exist after
+     * {@link ContactCacheProperties#getNegativeTtl()}.
+     */
+    private static class ContactExpiry implements Expiry<Long, Optional<Contact>> {
+
+        private final long ttl;
+
+        private final long negativeTtl;
+
+        private ContactExpiry(ContactCacheProperties properties) {
+            this.ttl = properties.getTtl().toNanos();
+            this.negativeTtl = properties.getNegativeTtl().toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Long id, Optional<Contact> contact, long currentTime) {
+            return contact.isPresent() ? ttl : negativeTtl;
+        }
+
+        @Override
+        public long expireAfterUpdate(Long id, Optional<Contact> contact, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, contact, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long id, Optional<Contact> contact, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
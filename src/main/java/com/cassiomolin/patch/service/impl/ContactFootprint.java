@@ -0,0 +1,166 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimated heap size of a contact, by {@link Part}.
+ * <p>
+ * Every object reachable from the contact is counted once, except for the values shared by the JVM: cached
+ * {@link Long}s, {@link Boolean} constants and zone offsets. Lists are counted as array lists whose capacity matches
+ * their size, which may fall short of the capacity they grew to.
+ */
+final class ContactFootprint {
+
+    /**
+     * Parts of a contact: the contact object itself, and the values it refers to.
+     */
+    enum Part {
+
+        SHALLOW("shallow"),
+        FIELDS("fields"),
+        WORK("work"),
+        PHONES("phones"),
+        EMAILS("emails"),
+        GROUPS("groups"),
+        TIMESTAMPS("timestamps");
+
+        final String tag;
+
+        Part(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Long id;
+
+    private final long[] bytes;
+
+    private ContactFootprint(Long id, long[] bytes) {
+        this.id = id;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Estimates the heap size of a contact.
+     *
+     * @param contact contact
+     * @param layout  object layout of the JVM
+     * @return footprint of the contact
+     */
+    static ContactFootprint of(Contact contact, ObjectLayout layout) {
+
+        Sizer sizer = new Sizer(layout);
+        long[] bytes = new long[Part.values().length];
+        bytes[Part.SHALLOW.ordinal()] = layout.object(11, 0);
+        bytes[Part.FIELDS.ordinal()] = sizer.boxedLong(contact.getId())
+                + sizer.string(contact.getName())
+                + sizer.date(contact.getBirthday())
+                + sizer.boxedBoolean(contact.getFavorite())
+                + sizer.string(contact.getNotes());
+        bytes[Part.WORK.ordinal()] = sizer.work(contact.getWork());
+        bytes[Part.PHONES.ordinal()] = sizer.list(contact.getPhones(), sizer::phone);
+        bytes[Part.EMAILS.ordinal()] = sizer.list(contact.getEmails(), sizer::email);
+        bytes[Part.GROUPS.ordinal()] = sizer.list(contact.getGroups(), sizer::string);
+        bytes[Part.TIMESTAMPS.ordinal()] = sizer.dateTime(contact.getCreatedDateTime())
+                + sizer.dateTime(contact.getLastModifiedDateTime());
+        return new ContactFootprint(contact.getId(), bytes);
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    long bytes(Part part) {
+        return bytes[part.ordinal()];
+    }
+
+    long total() {
+        long total = 0;
+        for (long partBytes : bytes) {
+            total += partBytes;
+        }
+        return total;
+    }
+
+    /**
+     * Sizes the objects reachable from a contact, counting each of them once.
+     */
+    private static final class Sizer {
+
+        private final ObjectLayout layout;
+
+        private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private Sizer(ObjectLayout layout) {
+            this.layout = layout;
+        }
+
+        private boolean first(Object value) {
+            return value != null && seen.add(value);
+        }
+
+        private long string(String string) {
+            return first(string) ? layout.string(string) : 0;
+        }
+
+        private long boxedLong(Long value) {
+            boolean cached = value != null && value >= -128 && value <= 127;
+            return !cached && first(value) ? layout.object(0, 8) : 0;
+        }
+
+        private long boxedBoolean(Boolean value) {
+            boolean constant = value == Boolean.TRUE || value == Boolean.FALSE;
+            return !constant && first(value) ? layout.object(0, 1) : 0;
+        }
+
+        private long date(LocalDate date) {
+            // year, month and day
+            return first(date) ? layout.object(0, 8) : 0;
+        }
+
+        private long dateTime(OffsetDateTime dateTime) {
+            if (!first(dateTime)) {
+                return 0;
+            }
+            // Offsets are cached by the JVM
+            return layout.object(2, 0)
+                    + (first(dateTime.toLocalDateTime()) ? layout.object(2, 0) : 0)
+                    + date(dateTime.toLocalDate())
+                    + (first(dateTime.toLocalTime()) ? layout.object(0, 7) : 0);
+        }
+
+        private <T> long list(List<T> list, ToLongFunction<T> element) {
+            if (!first(list)) {
+                return 0;
+            }
+            long bytes = layout.object(1, 8) + layout.referenceArray(list.size());
+            for (T value : list) {
+                bytes += element.applyAsLong(value);
+            }
+            return bytes;
+        }
+
+        private long work(Work work) {
+            return first(work) ? layout.object(2, 0) + string(work.getTitle()) + string(work.getCompany()) : 0;
+        }
+
+        private long phone(Phone phone) {
+            return first(phone) ? layout.object(2, 0) + string(phone.getPhone()) + string(phone.getType()) : 0;
+        }
+
+        private long email(Email email) {
+            return first(email) ? layout.object(2, 0) + string(email.getEmail()) + string(email.getType()) : 0;
+        }
+    }
+}
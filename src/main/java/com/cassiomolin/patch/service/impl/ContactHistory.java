@@ -0,0 +1,198 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ContactHistoryProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.util.JsonPatchDiff;
+import com.cassiomolin.patch.web.util.PersistentJsonPatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.json.JsonPatch;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Version history of contacts.
+ * <p>
+ * Only the current state of each contact is kept in full. Every update is stored as a reverse JSON Patch, which turns
+ * the new version back into the previous one, and every few versions a full checkpoint is kept, so that rebuilding a
+ * past version never applies more than {@link ContactHistoryProperties#getCheckpointInterval()} patches.
+ * <p>
+ * Reverse patches are built by {@link JsonPatchDiff} and applied by {@link PersistentJsonPatch}, as the diffs of the
+ * JSON-P implementation, and the way it applies them, don't turn a contact back into its previous version.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContactHistory {
+
+    private final ObjectMapper mapper;
+
+    private final ContactHistoryProperties properties;
+
+    private final ConcurrentMap<Long, History> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Records the current state of a contact as its latest version.
+     *
+     * @param contact contact that has been created or updated
+     * @return JSON of the version it supersedes, or {@code null} if the contact had no version or was deleted
+     */
+    public JsonValue recordVersion(Contact contact) {
+
+        JsonValue state = mapper.convertValue(contact, JsonValue.class);
+        OffsetDateTime timestamp = contact.getLastModifiedDateTime();
+
+        History history = histories.computeIfAbsent(contact.getId(), id -> new History());
+        synchronized (history) {
+            JsonValue previous = history.deletedDateTime == null ? history.head : null;
+            if (history.head == null) {
+                history.versions.add(new Version(timestamp, null, null));
+            } else {
+                JsonPatch reverse = JsonPatchDiff.diff((JsonStructure) state, (JsonStructure) history.head);
+                JsonValue checkpoint = ++history.sequence % properties.getCheckpointInterval() == 0 ? state : null;
+                history.versions.add(new Version(timestamp, reverse, checkpoint));
+            }
+            history.head = state;
+            history.deletedDateTime = null;
+            while (history.versions.size() > properties.getMaxVersions()) {
+                dropOldestVersion(history);
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * Records the deletion of a contact. Its versions remain available for point-in-time reads before the deletion.
+     *
+     * @param id        id of the deleted contact
+     * @param timestamp when the contact was deleted
+     */
+    public void recordDeletion(Long id, OffsetDateTime timestamp) {
+        History history = histories.get(id);
+        if (history != null) {
+            synchronized (history) {
+                history.deletedDateTime = timestamp;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the state of a contact at a given point in time.
+     *
+     * @param id   contact id
+     * @param asOf point in time
+     * @return contact as it was at the given point in time, or empty if it didn't exist or is no longer retained
+     */
+    public Optional<Contact> findVersion(Long id, OffsetDateTime asOf) {
+
+        History history = histories.get(id);
+        if (history == null) {
+            return Optional.empty();
+        }
+
+        JsonValue state;
+        synchronized (history) {
+            state = rebuild(history, asOf);
+        }
+        return Optional.ofNullable(state).map(value -> mapper.convertValue(value, Contact.class));
+    }
+
+    /**
+     * Drops versions superseded longer than the retention period ago, as well as histories of contacts deleted longer
+     * than the retention period ago.
+     */
+    @Scheduled(fixedDelayString = "#{@contactHistoryProperties.compactionInterval.toMillis()}")
+    public void compact() {
+
+        OffsetDateTime threshold = OffsetDateTime.now(ZoneOffset.UTC).minus(properties.getRetention());
+
+        histories.forEach((id, history) -> {
+            synchronized (history) {
+                if (history.deletedDateTime != null && history.deletedDateTime.isBefore(threshold)) {
+                    histories.remove(id, history);
+                    return;
+                }
+                while (history.versions.size() > 1 && supersededBefore(history, threshold)) {
+                    dropOldestVersion(history);
+                }
+            }
+        });
+    }
+
+    private JsonValue rebuild(History history, OffsetDateTime asOf) {
+
+        if (history.deletedDateTime != null && !asOf.isBefore(history.deletedDateTime)) {
+            return null;
+        }
+
+        List<Version> versions = history.versions;
+
+        int target = versions.size() - 1;
+        while (target >= 0 && versions.get(target).timestamp.isAfter(asOf)) {
+            target--;
+        }
+        if (target < 0) {
+            return null;
+        }
+
+        // Starts from the nearest checkpoint after the requested version, falling back to the current state
+        int start = target;
+        while (start < versions.size() - 1 && versions.get(start).checkpoint == null) {
+            start++;
+        }
+
+        JsonValue state = versions.get(start).checkpoint != null ? versions.get(start).checkpoint : history.head;
+        for (int i = start; i > target; i--) {
+            state = PersistentJsonPatch.apply(versions.get(i).reverse, (JsonStructure) state);
+        }
+        return state;
+    }
+
+    private boolean supersededBefore(History history, OffsetDateTime threshold) {
+        return history.versions.get(1).timestamp.isBefore(threshold);
+    }
+
+    private void dropOldestVersion(History history) {
+        history.versions.remove(0);
+        if (!history.versions.isEmpty()) {
+            history.versions.get(0).reverse = null;
+        }
+    }
+
+    private static class History {
+
+        private final List<Version> versions = new ArrayList<>();
+
+        private JsonValue head;
+
+        private long sequence;
+
+        private OffsetDateTime deletedDateTime;
+    }
+
+    @AllArgsConstructor
+    private static class Version {
+
+        private final OffsetDateTime timestamp;
+
+        /**
+         * Turns this version into the previous one, or {@code null} when the previous one is not retained.
+         */
+        private JsonPatch reverse;
+
+        /**
+         * Full state of this version, only kept for checkpoints.
+         */
+        private final JsonValue checkpoint;
+    }
+}
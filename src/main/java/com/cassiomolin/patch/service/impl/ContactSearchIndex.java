@@ -0,0 +1,677 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index of the name, work and notes of contacts, for full-text and type-ahead search.
+ * <p>
+ * Text is split into words, lowercased and stripped of accents. Each contact is given a dense document number, and
+ * each term keeps the documents it appears in, by field, in a {@link PostingList}. Terms are held in a
+ * {@link PrefixTrie}, so that the last word of a query, which may still be being typed, matches every term it's a
+ * prefix of.
+ * <p>
+ * The index keeps the indexed values of each contact, so that an update only reindexes the fields that have changed,
+ * going from their previous values to their new ones, even when the contact has been modified in place.
+ * <p>
+ * A contact matches a query when every word of the query matches one of its fields, the words before the last one as
+ * whole terms. Matches count for the weight of the field, twice when the word is a whole term, and contacts are ranked
+ * by their total, then by id.
+ */
+@Component
+@ConditionalOnProperty(name = "contacts.search.enabled", havingValue = "true")
+public class ContactSearchIndex {
+
+    public enum Field {
+
+        NAME(4), COMPANY(2), TITLE(2), NOTES(1);
+
+        private final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::getScore).reversed()
+            .thenComparingLong(Hit::getContactId);
+
+    private final Timer searchTimer;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final PrefixTrie<Term> terms = new PrefixTrie<>();
+
+    private final Map<Long, Integer> documents = new HashMap<>();
+
+    private long[] contactIds = new long[1024];
+
+    private String[][] values = new String[1024][];
+
+    private int maxDocument;
+
+    private int[] freeDocuments = new int[16];
+
+    private int freeDocumentCount;
+
+    public ContactSearchIndex(MeterRegistry registry) {
+
+        this.searchTimer = Timer.builder("contacts.search")
+                .description("Time taken to search the index")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("contacts.search.documents", this, ContactSearchIndex::documentCount)
+                .description("Contacts in the search index")
+                .register(registry);
+        Gauge.builder("contacts.search.terms", this, ContactSearchIndex::termCount)
+                .description("Distinct terms in the search index")
+                .register(registry);
+    }
+
+    /**
+     * Adds a contact to the index, or reindexes the fields of an indexed contact that have changed.
+     *
+     * @param contact contact that has been created or updated
+     */
+    public void index(Contact contact) {
+
+        String[] after = values(contact);
+
+        lock.writeLock().lock();
+        try {
+            Integer document = documents.get(contact.getId());
+            String[] before;
+            if (document == null) {
+                document = allocate(contact.getId());
+                before = new String[FIELDS.length];
+            } else {
+                before = values[document];
+            }
+
+            for (Field field : FIELDS) {
+                int f = field.ordinal();
+                if (!Objects.equals(before[f], after[f])) {
+                    unindex(document, field, before[f]);
+                    index(document, field, after[f]);
+                }
+            }
+            values[document] = after;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a contact from the index.
+     *
+     * @param id id of the contact that has been deleted
+     */
+    public void remove(Long id) {
+
+        lock.writeLock().lock();
+        try {
+            Integer document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            for (Field field : FIELDS) {
+                unindex(document, field, values[document][field.ordinal()]);
+            }
+            values[document] = null;
+            release(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the contacts matching every word of a query, best matches first.
+     *
+     * @param query words, the last one matching the terms it's a prefix of, and the others whole terms
+     * @param page  page number, starting from {@code 0}
+     * @param size  page size
+     * @return contacts of the page and total number of matching contacts
+     */
+    public Result search(String query, int page, int size) {
+
+        List<String> words = new ArrayList<>(tokenize(query));
+        if (words.isEmpty() || size <= 0) {
+            return new Result(0, List.of());
+        }
+
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            Matches[][] matches = new Matches[words.size()][];
+            Matches[][] exactMatches = new Matches[words.size()][];
+            Matches[] any = new Matches[words.size()];
+
+            // Goes through the contacts matching the most selective word, checking the others for each one
+            int driver = 0;
+            for (int w = 0; w < words.size(); w++) {
+                Term exact = terms.get(words.get(w));
+                List<Term> completions = w == words.size() - 1
+                        ? terms.complete(words.get(w))
+                        : exact == null ? List.of() : List.of(exact);
+                matches[w] = new Matches[FIELDS.length];
+                exactMatches[w] = new Matches[FIELDS.length];
+                for (Field field : FIELDS) {
+                    matches[w][field.ordinal()] = Matches.of(completions, field, maxDocument);
+                    if (exact != null) {
+                        exactMatches[w][field.ordinal()] = completions.size() == 1
+                                ? matches[w][field.ordinal()]
+                                : Matches.of(List.of(exact), field, maxDocument);
+                    }
+                }
+                any[w] = Matches.union(matches[w], maxDocument);
+                if (any[w] == null) {
+                    return new Result(0, List.of());
+                }
+                if (any[w].size() < any[driver].size()) {
+                    driver = w;
+                }
+            }
+
+            // Documents come in ascending order, so the other matches are walked through with forward-only cursors
+            Cursor[] anyCursors = Matches.cursors(any);
+            Cursor[][] fieldCursors = new Cursor[words.size()][];
+            Cursor[][] exactCursors = new Cursor[words.size()][];
+            for (int w = 0; w < words.size(); w++) {
+                fieldCursors[w] = Matches.cursors(matches[w]);
+                exactCursors[w] = Matches.cursors(exactMatches[w]);
+            }
+
+            TopHits top = new TopHits((int) Math.min((long) (page + 1) * size, maxDocument));
+            any[driver].forEach(document -> {
+                for (Cursor cursor : anyCursors) {
+                    if (!cursor.advanceTo(document)) {
+                        return;
+                    }
+                }
+                top.offer(contactIds[document], score(document, fieldCursors, exactCursors));
+            });
+
+            return new Result(top.total, top.page(page, size));
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Splits text into words, lowercased and stripped of accents.
+     *
+     * @param text text, which may be {@code null}
+     * @return distinct words, in order of appearance
+     */
+    static Set<String> tokenize(String text) {
+
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int score(int document, Cursor[][] fieldCursors, Cursor[][] exactCursors) {
+
+        int score = 0;
+        for (int w = 0; w < fieldCursors.length; w++) {
+            for (Field field : FIELDS) {
+                Cursor fieldCursor = fieldCursors[w][field.ordinal()];
+                if (fieldCursor != null && fieldCursor.advanceTo(document)) {
+                    score += field.weight;
+                    Cursor exactCursor = exactCursors[w][field.ordinal()];
+                    if (exactCursor != null && exactCursor.advanceTo(document)) {
+                        score += field.weight;
+                    }
+                }
+            }
+        }
+        return score;
+    }
+
+    private void index(int document, Field field, String value) {
+        for (String token : tokenize(value)) {
+            Term term = terms.computeIfAbsent(token, key -> new Term());
+            if (term.postings[field.ordinal()] == null) {
+                term.postings[field.ordinal()] = new PostingList();
+            }
+            term.postings[field.ordinal()].add(document);
+        }
+    }
+
+    private void unindex(int document, Field field, String value) {
+        for (String token : tokenize(value)) {
+            Term term = terms.get(token);
+            PostingList postings = term == null ? null : term.postings[field.ordinal()];
+            if (postings != null) {
+                postings.remove(document);
+                if (postings.isEmpty()) {
+                    term.postings[field.ordinal()] = null;
+                    if (Arrays.stream(term.postings).allMatch(Objects::isNull)) {
+                        terms.remove(token);
+                    }
+                }
+            }
+        }
+    }
+
+    private int allocate(Long id) {
+
+        int document;
+        if (freeDocumentCount > 0) {
+            document = freeDocuments[--freeDocumentCount];
+        } else {
+            document = maxDocument++;
+            if (document == contactIds.length) {
+                contactIds = Arrays.copyOf(contactIds, document * 2);
+                values = Arrays.copyOf(values, document * 2);
+            }
+        }
+
+        contactIds[document] = id;
+        documents.put(id, document);
+        return document;
+    }
+
+    private void release(int document) {
+        if (freeDocumentCount == freeDocuments.length) {
+            freeDocuments = Arrays.copyOf(freeDocuments, freeDocumentCount * 2);
+        }
+        freeDocuments[freeDocumentCount++] = document;
+    }
+
+    private static String[] values(Contact contact) {
+        String[] values = new String[FIELDS.length];
+        values[Field.NAME.ordinal()] = contact.getName();
+        if (contact.getWork() != null) {
+            values[Field.COMPANY.ordinal()] = contact.getWork().getCompany();
+            values[Field.TITLE.ordinal()] = contact.getWork().getTitle();
+        }
+        values[Field.NOTES.ordinal()] = contact.getNotes();
+        return values;
+    }
+
+    /**
+     * Documents matching a word of a query, as a sorted array while they're few, so that selective queries don't
+     * allocate and scan a bitmap of every document, or as a bitmap otherwise.
+     */
+    private abstract static class Matches {
+
+        abstract Cursor cursor();
+
+        abstract int size();
+
+        abstract void forEach(IntConsumer action);
+
+        static Cursor[] cursors(Matches[] matches) {
+            Cursor[] cursors = new Cursor[matches.length];
+            for (int i = 0; i < matches.length; i++) {
+                cursors[i] = matches[i] == null ? null : matches[i].cursor();
+            }
+            return cursors;
+        }
+
+        /**
+         * Returns the documents in which a field has one of the given terms, or {@code null} if there are none.
+         */
+        static Matches of(List<Term> terms, Field field, int maxDocument) {
+
+            int estimate = 0;
+            for (Term term : terms) {
+                PostingList postings = term.postings[field.ordinal()];
+                estimate += postings == null ? 0 : postings.cardinality();
+            }
+            if (estimate == 0) {
+                return null;
+            }
+
+            if (isDense(estimate, maxDocument)) {
+                long[] words = new long[(maxDocument + 63) >>> 6];
+                for (Term term : terms) {
+                    PostingList postings = term.postings[field.ordinal()];
+                    if (postings != null) {
+                        postings.orInto(words);
+                    }
+                }
+                return new DenseMatches(words);
+            }
+
+            int[] documents = new int[estimate];
+            int size = 0;
+            for (Term term : terms) {
+                PostingList postings = term.postings[field.ordinal()];
+                if (postings != null) {
+                    size = postings.copyInto(documents, size);
+                }
+            }
+            return SparseMatches.of(documents, size, terms.size() > 1);
+        }
+
+        /**
+         * Returns the documents matching in any field, or {@code null} if there are none.
+         */
+        static Matches union(Matches[] fieldMatches, int maxDocument) {
+
+            int estimate = 0;
+            int matchingFields = 0;
+            boolean dense = false;
+            for (Matches matches : fieldMatches) {
+                if (matches != null) {
+                    estimate += matches.size();
+                    matchingFields++;
+                    dense |= matches instanceof DenseMatches;
+                }
+            }
+            if (matchingFields == 0) {
+                return null;
+            }
+            if (matchingFields == 1) {
+                for (Matches matches : fieldMatches) {
+                    if (matches != null) {
+                        return matches;
+                    }
+                }
+            }
+
+            if (dense || isDense(estimate, maxDocument)) {
+                long[] words = new long[(maxDocument + 63) >>> 6];
+                for (Matches matches : fieldMatches) {
+                    if (matches instanceof DenseMatches) {
+                        long[] fieldWords = ((DenseMatches) matches).words;
+                        for (int i = 0; i < words.length; i++) {
+                            words[i] |= fieldWords[i];
+                        }
+                    } else if (matches != null) {
+                        matches.forEach(document -> words[document >>> 6] |= 1L << document);
+                    }
+                }
+                return new DenseMatches(words);
+            }
+
+            int[] documents = null;
+            for (Matches matches : fieldMatches) {
+                if (matches != null) {
+                    int[] fieldDocuments = ((SparseMatches) matches).documents;
+                    documents = documents == null ? fieldDocuments : merge(documents, fieldDocuments);
+                }
+            }
+            return new SparseMatches(documents);
+        }
+
+        /**
+         * Merges two sorted arrays of distinct documents.
+         */
+        private static int[] merge(int[] a, int[] b) {
+
+            int[] merged = new int[a.length + b.length];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    merged[size++] = a[i++];
+                } else if (a[i] > b[j]) {
+                    merged[size++] = b[j++];
+                } else {
+                    merged[size++] = a[i++];
+                    j++;
+                }
+            }
+            while (i < a.length) {
+                merged[size++] = a[i++];
+            }
+            while (j < b.length) {
+                merged[size++] = b[j++];
+            }
+            return size == merged.length ? merged : Arrays.copyOf(merged, size);
+        }
+
+        /**
+         * Tells whether a bitmap of every document is smaller than an array of the given number of documents.
+         */
+        private static boolean isDense(int documents, int maxDocument) {
+            return (long) documents * Integer.SIZE > maxDocument;
+        }
+    }
+
+    private static final class SparseMatches extends Matches {
+
+        private final int[] documents;
+
+        private SparseMatches(int[] documents) {
+            this.documents = documents;
+        }
+
+        static SparseMatches of(int[] documents, int size, boolean merged) {
+
+            if (!merged) {
+                return new SparseMatches(size == documents.length ? documents : Arrays.copyOf(documents, size));
+            }
+
+            // Documents from several postings are sorted and deduplicated
+            Arrays.sort(documents, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || documents[i] != documents[distinct - 1]) {
+                    documents[distinct++] = documents[i];
+                }
+            }
+            return new SparseMatches(Arrays.copyOf(documents, distinct));
+        }
+
+        @Override
+        Cursor cursor() {
+            return new Cursor() {
+
+                private int position;
+
+                @Override
+                public boolean advanceTo(int document) {
+
+                    if (position == documents.length || documents[position] >= document) {
+                        return position < documents.length && documents[position] == document;
+                    }
+
+                    // Gallops ahead, then searches the last step, so that far and near targets are both cheap
+                    int step = 1;
+                    int high = position;
+                    while (high < documents.length && documents[high] < document) {
+                        position = high + 1;
+                        high += step;
+                        step <<= 1;
+                    }
+                    int found = Arrays.binarySearch(documents, position, Math.min(high + 1, documents.length), document);
+                    position = found >= 0 ? found : -found - 1;
+                    return found >= 0;
+                }
+            };
+        }
+
+        @Override
+        int size() {
+            return documents.length;
+        }
+
+        @Override
+        void forEach(IntConsumer action) {
+            for (int document : documents) {
+                action.accept(document);
+            }
+        }
+    }
+
+    private static final class DenseMatches extends Matches {
+
+        private final long[] words;
+
+        private int size = -1;
+
+        private DenseMatches(long[] words) {
+            this.words = words;
+        }
+
+        @Override
+        Cursor cursor() {
+            return document -> (words[document >>> 6] & (1L << document)) != 0;
+        }
+
+        @Override
+        int size() {
+            if (size < 0) {
+                size = 0;
+                for (long word : words) {
+                    size += Long.bitCount(word);
+                }
+            }
+            return size;
+        }
+
+        @Override
+        void forEach(IntConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                for (long bits = words[i]; bits != 0; bits &= bits - 1) {
+                    action.accept(i * 64 + Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+    }
+
+    /**
+     * Position in the documents matching a word.
+     */
+    @FunctionalInterface
+    private interface Cursor {
+
+        /**
+         * Moves to a document, never before a document previously moved to.
+         *
+         * @return {@code true} if the document matches
+         */
+        boolean advanceTo(int document);
+    }
+
+    /**
+     * Best hits seen so far, in a bounded heap whose head is the worst of them.
+     */
+    private static final class TopHits {
+
+        private final int limit;
+
+        private final PriorityQueue<Hit> heap;
+
+        private int total;
+
+        TopHits(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.max(1, limit), RANKING.reversed());
+        }
+
+        void offer(long contactId, int score) {
+            total++;
+            if (heap.size() < limit) {
+                heap.add(new Hit(contactId, score));
+            } else if (!heap.isEmpty() && outranks(score, contactId, heap.peek())) {
+                heap.poll();
+                heap.add(new Hit(contactId, score));
+            }
+        }
+
+        List<Hit> page(int page, int size) {
+            List<Hit> ranked = new ArrayList<>(heap);
+            ranked.sort(RANKING);
+            int from = (int) Math.min((long) page * size, ranked.size());
+            return List.copyOf(ranked.subList(from, ranked.size()));
+        }
+
+        private static boolean outranks(int score, long contactId, Hit hit) {
+            return score > hit.getScore() || score == hit.getScore() && contactId < hit.getContactId();
+        }
+    }
+
+    private static final class Term {
+
+        private final PostingList[] postings = new PostingList[FIELDS.length];
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+
+        /**
+         * Number of contacts matching the query.
+         */
+        private int total;
+
+        /**
+         * Matching contacts of the requested page, best matches first.
+         */
+        private List<Hit> hits;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Hit {
+
+        private long contactId;
+
+        private int score;
+    }
+}
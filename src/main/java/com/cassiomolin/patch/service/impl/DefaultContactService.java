@@ -1,52 +1,192 @@
 package com.cassiomolin.patch.service.impl;
 
 import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactIdGenerator;
 import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactStore;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.json.JsonValue;
+import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
+/**
+ * {@link ContactService} keeping contacts in memory.
+ * <p>
+ * Contacts are looked up without locking. Writes are made one at a time, so that the history, the write-behind queue,
+ * the replication log and the search index see the changes in the order they are made to the store, and listing the
+ * contacts waits for the write in progress, if any, so that it takes a consistent snapshot of them.
+ */
 @Service
+@ContactStore
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "contacts.store", havingValue = "memory", matchIfMissing = true)
 public class DefaultContactService implements ContactService {
 
-    private static final List<Contact> CONTACTS = new ArrayList<>();
+    // Held by each instance, so that several nodes can run in the same JVM, and listed in the order of their ids
+    private final ConcurrentNavigableMap<Long, Contact> contacts = new ConcurrentSkipListMap<>();
 
-    private static final AtomicLong ID_GENERATOR = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ContactIdGenerator idGenerator;
+
+    private final ContactHistory history;
+
+    private final ObjectProvider<WriteBehindQueue> writeBehindQueue;
+
+    private final ObjectProvider<ReplicationLog> replicationLog;
+
+    private final ObjectProvider<ContactSearchIndex> searchIndex;
+
+    @PostConstruct
+    public void restoreContacts() throws IOException {
+        WriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+        if (queue != null) {
+            for (Contact contact : queue.recover()) {
+                contacts.put(contact.getId(), contact);
+                idGenerator.advancePast(contact.getId());
+                history.recordVersion(contact);
+                searchIndex.ifAvailable(index -> index.index(contact));
+            }
+        }
+    }
 
     @Override
     public Contact createContact(Contact contact) {
-        contact.setId(ID_GENERATOR.incrementAndGet());
-        contact.setCreatedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
-        contact.setLastModifiedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
-        CONTACTS.add(contact);
-        return contact;
+        return write(() -> {
+            contact.setId(idGenerator.nextId());
+            contact.setCreatedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
+            contact.setLastModifiedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
+            contacts.put(contact.getId(), contact);
+            history.recordVersion(contact);
+            writeBehindQueue.ifAvailable(queue -> queue.enqueue(contact));
+            replicationLog.ifAvailable(log -> log.recordCreation(contact));
+            searchIndex.ifAvailable(index -> index.index(contact));
+            return contact;
+        });
+    }
+
+    /**
+     * Adds a contact that has been created elsewhere, such as on another node, keeping its id and dates. A contact
+     * with the same id is replaced in place.
+     *
+     * @param contact contact to add
+     */
+    public void importContact(Contact contact) {
+        write(() -> {
+            idGenerator.advancePast(contact.getId());
+            contacts.put(contact.getId(), contact);
+            JsonValue previousState = history.recordVersion(contact);
+            writeBehindQueue.ifAvailable(queue -> queue.enqueue(contact));
+            replicationLog.ifAvailable(log -> log.recordUpdate(previousState, contact));
+            searchIndex.ifAvailable(index -> index.index(contact));
+            return contact;
+        });
+    }
+
+    /**
+     * Removes a contact that is now held elsewhere, such as on another node. Unlike {@link #deleteContact(Contact)},
+     * the contact is not recorded as deleted in its history.
+     *
+     * @param contact contact to remove
+     */
+    public void evictContact(Contact contact) {
+        write(() -> {
+            if (contacts.remove(contact.getId()) != null) {
+                writeBehindQueue.ifAvailable(queue -> queue.enqueueDeletion(contact.getId()));
+                replicationLog.ifAvailable(log -> log.recordDeletion(contact.getId(), OffsetDateTime.now(ZoneOffset.UTC)));
+                searchIndex.ifAvailable(index -> index.remove(contact.getId()));
+            }
+            return contact;
+        });
     }
 
     @Override
     public List<Contact> findContacts() {
-        return CONTACTS;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(contacts.values());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Optional<Contact> findContact(Long id) {
-        return CONTACTS.stream()
-                .filter(contact -> id.equals(contact.getId()))
-                .findFirst();
+        return Optional.ofNullable(contacts.get(id));
     }
 
+    @Override
+    public Optional<Contact> findContact(Long id, OffsetDateTime asOf) {
+        return history.findVersion(id, asOf);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ResourceNotFoundException if the contact has been deleted in the meantime
+     */
     @Override
     public void updateContact(Contact contact) {
-        contact.setLastModifiedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
-        CONTACTS.set(CONTACTS.indexOf(contact), contact);
+        write(() -> {
+            if (!contacts.containsKey(contact.getId())) {
+                throw new ResourceNotFoundException();
+            }
+            contact.setLastModifiedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
+            contacts.put(contact.getId(), contact);
+            JsonValue previousState = history.recordVersion(contact);
+            writeBehindQueue.ifAvailable(queue -> queue.enqueue(contact));
+            replicationLog.ifAvailable(log -> log.recordUpdate(previousState, contact));
+            searchIndex.ifAvailable(index -> index.index(contact));
+            return contact;
+        });
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ResourceNotFoundException if the contact has been deleted in the meantime
+     */
     @Override
     public void deleteContact(Contact contact) {
-        CONTACTS.remove(contact);
+        write(() -> {
+            if (contacts.remove(contact.getId()) == null) {
+                throw new ResourceNotFoundException();
+            }
+            OffsetDateTime deletedDateTime = OffsetDateTime.now(ZoneOffset.UTC);
+            history.recordDeletion(contact.getId(), deletedDateTime);
+            writeBehindQueue.ifAvailable(queue -> queue.enqueueDeletion(contact.getId()));
+            replicationLog.ifAvailable(log -> log.recordDeletion(contact.getId(), deletedDateTime));
+            searchIndex.ifAvailable(index -> index.remove(contact.getId()));
+            return contact;
+        });
+    }
+
+    @Override
+    public void awaitDurability() {
+        writeBehindQueue.ifAvailable(queue -> queue.durable().join());
+    }
+
+    private <T> T write(Supplier<T> write) {
+        lock.writeLock().lock();
+        try {
+            return write.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 }
\ No newline at end of file
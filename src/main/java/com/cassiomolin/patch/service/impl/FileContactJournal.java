@@ -0,0 +1,176 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.WriteBehindProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactJournal;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * {@link ContactJournal} that appends changes to a file, one JSON document per line, and forces each group of changes
+ * to the storage device before acknowledging it.
+ * <p>
+ * A group that fails to be written, or a crash while writing it, can leave part of a line at the end of the file. The
+ * file is truncated back to its last complete line, before a failed group is written again and when the journal is
+ * read, so that later groups are never appended to a torn line. When read, the journal is also rewritten with only the
+ * latest state of each contact if it holds changes that have been superseded since.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "contacts.write-behind.enabled", havingValue = "true")
+public class FileContactJournal implements ContactJournal {
+
+    private final ObjectMapper mapper;
+
+    private final WriteBehindProperties properties;
+
+    private FileChannel channel;
+
+    @PostConstruct
+    public void open() throws IOException {
+        channel = FileChannel.open(properties.getJournal(), CREATE, WRITE, APPEND);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public Collection<Contact> read() throws IOException {
+
+        Map<Long, Contact> contacts = new LinkedHashMap<>();
+        long entries = 0;
+        long complete = 0;
+
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(properties.getJournal()))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = 0;
+            for (int b; (b = input.read()) != -1; ) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                Entry entry;
+                try {
+                    entry = mapper.readValue(line.toByteArray(), Entry.class);
+                } catch (JsonProcessingException e) {
+                    // Only the last group can be torn, as the file is truncated before a group is written again
+                    break;
+                }
+                line.reset();
+                complete = position;
+                entries++;
+                if (entry.getContact() == null) {
+                    contacts.remove(entry.getId());
+                } else {
+                    contacts.put(entry.getId(), entry.getContact());
+                }
+            }
+        }
+
+        if (channel.size() > complete) {
+            log.warn("Discarding {} bytes left by a torn write at the end of the journal", channel.size() - complete);
+            channel.truncate(complete);
+            channel.force(false);
+        }
+        if (entries > contacts.size()) {
+            compact(contacts);
+        }
+
+        return contacts.values();
+    }
+
+    @Override
+    public void write(Map<Long, Contact> changes) throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (Map.Entry<Long, Contact> change : changes.entrySet()) {
+            output.write(mapper.writeValueAsBytes(new Entry(change.getKey(), change.getValue())));
+            output.write('\n');
+        }
+
+        long size = channel.size();
+        try {
+            append(channel, output.toByteArray());
+        } catch (IOException e) {
+            try {
+                channel.truncate(size);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the journal with one holding only the latest state of each contact, written next to it then moved over
+     * it, so that a crash leaves either journal whole.
+     */
+    private void compact(Map<Long, Contact> contacts) throws IOException {
+
+        Path journal = properties.getJournal();
+        Path compacted = journal.resolveSibling(journal.getFileName() + ".compacted");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (Map.Entry<Long, Contact> contact : contacts.entrySet()) {
+            output.write(mapper.writeValueAsBytes(new Entry(contact.getKey(), contact.getValue())));
+            output.write('\n');
+        }
+        try (FileChannel compactedChannel = FileChannel.open(compacted, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            append(compactedChannel, output.toByteArray());
+        }
+
+        channel.close();
+        Files.move(compacted, journal, REPLACE_EXISTING, ATOMIC_MOVE);
+        open();
+        log.info("Compacted the journal to {} contacts", contacts.size());
+    }
+
+    private static void append(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class Entry {
+
+        private Long id;
+
+        private Contact contact;
+    }
+}
@@ -0,0 +1,78 @@
+package com.cassiomolin.patch.service.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimated heap footprint of the contacts of the store, measured on every contact or on a sample of them.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FootprintReport {
+
+    /**
+     * Whether every contact was measured, rather than a sample of them.
+     */
+    private boolean exact;
+
+    private int contacts;
+
+    private int measured;
+
+    /**
+     * Estimated bytes of all the contacts.
+     */
+    private long bytes;
+
+    /**
+     * Estimated bytes of all the contacts by part: {@code shallow} for the contact objects themselves, {@code fields}
+     * for their id, name, birthday, favorite flag and notes, then {@code work}, {@code phones}, {@code emails},
+     * {@code groups} and {@code timestamps}.
+     */
+    private Map<String, Long> parts;
+
+    /**
+     * Distribution of the bytes of the measured contacts.
+     */
+    private Distribution perContact;
+
+    /**
+     * Largest of the measured contacts, largest first.
+     */
+    private List<LargestContact> largest;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Distribution {
+
+        private long mean;
+
+        private long p50;
+
+        private long p90;
+
+        private long p99;
+
+        private long max;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LargestContact {
+
+        private Long id;
+
+        private long bytes;
+    }
+}
@@ -0,0 +1,389 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactStore;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * {@link ContactService} backed by a relational database, with one table for contacts and one table for each of
+ * their phones, emails and groups.
+ * <p>
+ * Updates only write what has changed: the persisted state is compared with the updated contact, and only changed
+ * columns are updated. List items are compared position by position after skipping the items both lists start and
+ * end with: changed items are updated using batched statements, and items inserted or removed before the common end
+ * move the rows after them with a single statement rather than one {@code UPDATE} per row. A
+ * {@code replace /favorite} patch, for instance, results in a single {@code UPDATE} of the {@code favorite} column
+ * (and of the last modified timestamp), and a {@code remove /groups/0} patch in a {@code DELETE} and two
+ * {@code UPDATE}s, whatever the number of groups.
+ * <p>
+ * Whether each list is present is kept in a column of the contact row, so that empty lists read back as empty lists
+ * rather than as absent ones.
+ */
+@Service
+@ContactStore
+@Transactional
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "contacts.store", havingValue = "jdbc")
+public class JdbcContactService implements ContactService {
+
+    private static final ChildTable<Phone> PHONES = new ChildTable<>("contact_phone", "phones_present",
+            Arrays.asList("phone", "type"),
+            Contact::getPhones, Contact::setPhones,
+            phone -> new Object[]{phone.getPhone(), phone.getType()},
+            (rs, rowNum) -> new Phone(rs.getString("phone"), rs.getString("type")));
+
+    private static final ChildTable<Email> EMAILS = new ChildTable<>("contact_email", "emails_present",
+            Arrays.asList("email", "type"),
+            Contact::getEmails, Contact::setEmails,
+            email -> new Object[]{email.getEmail(), email.getType()},
+            (rs, rowNum) -> new Email(rs.getString("email"), rs.getString("type")));
+
+    private static final ChildTable<String> GROUPS = new ChildTable<>("contact_group", "groups_present",
+            Collections.singletonList("name"),
+            Contact::getGroups, Contact::setGroups,
+            group -> new Object[]{group},
+            (rs, rowNum) -> rs.getString("name"));
+
+    private static final List<ChildTable<?>> CHILD_TABLES = Arrays.asList(PHONES, EMAILS, GROUPS);
+
+    private static final List<Column> COLUMNS = Stream.concat(Stream.of(
+            new Column("name", Contact::getName),
+            new Column("birthday", Contact::getBirthday),
+            new Column("work_title", contact -> contact.getWork() == null ? null : contact.getWork().getTitle()),
+            new Column("work_company", contact -> contact.getWork() == null ? null : contact.getWork().getCompany()),
+            new Column("favorite", Contact::getFavorite),
+            new Column("notes", Contact::getNotes),
+            new Column("created_date_time", Contact::getCreatedDateTime),
+            new Column("last_modified_date_time", Contact::getLastModifiedDateTime)),
+            CHILD_TABLES.stream().map(table -> table.presenceColumn)).collect(toList());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ContactHistory history;
+
+    @PostConstruct
+    public void createSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema.sql")).execute(jdbcTemplate.getDataSource());
+    }
+
+    @Override
+    public Contact createContact(Contact contact) {
+
+        contact.setCreatedDateTime(now());
+        contact.setLastModifiedDateTime(contact.getCreatedDateTime());
+
+        String sql = "INSERT INTO contact (" + COLUMNS.stream().map(column -> column.name).collect(joining(", ")) + ") " +
+                "VALUES (" + COLUMNS.stream().map(column -> "?").collect(joining(", ")) + ")";
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, new String[]{"id"});
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                statement.setObject(i + 1, COLUMNS.get(i).getter.apply(contact));
+            }
+            return statement;
+        }, keyHolder);
+        contact.setId(keyHolder.getKey().longValue());
+
+        CHILD_TABLES.forEach(table -> writeChildren(table, contact.getId(), null, contact));
+
+        history.recordVersion(contact);
+        return contact;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Contact> findContacts() {
+        return findContacts("", "");
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int countContacts() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM contact", Integer.class);
+    }
+
+    /**
+     * Picks contacts at random, only loading the picked ones.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Contact> sampleContacts(int size) {
+
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM contact ORDER BY RAND() LIMIT ?", Long.class, size);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String in = "IN (" + ids.stream().map(id -> "?").collect(joining(", ")) + ")";
+        return findContacts(" WHERE id " + in, " WHERE contact_id " + in, ids.toArray());
+    }
+
+    private List<Contact> findContacts(String where, String childWhere, Object... args) {
+
+        List<Contact> contacts = jdbcTemplate.query("SELECT * FROM contact" + where + " ORDER BY id", args,
+                this::mapContact);
+
+        Map<Long, Contact> contactsById = new HashMap<>();
+        contacts.forEach(contact -> contactsById.put(contact.getId(), contact));
+        CHILD_TABLES.forEach(table -> table.readAll(jdbcTemplate, contactsById, childWhere, args));
+
+        return contacts;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Contact> findContact(Long id) {
+
+        List<Contact> contacts = jdbcTemplate.query("SELECT * FROM contact WHERE id = ?", this::mapContact, id);
+        if (contacts.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Contact contact = contacts.get(0);
+        CHILD_TABLES.forEach(table -> table.read(jdbcTemplate, contact));
+
+        return Optional.of(contact);
+    }
+
+    @Override
+    public Optional<Contact> findContact(Long id, OffsetDateTime asOf) {
+        return history.findVersion(id, asOf);
+    }
+
+    @Override
+    public void updateContact(Contact contact) {
+
+        contact.setLastModifiedDateTime(now());
+
+        Contact persisted = findContact(contact.getId()).orElseThrow(ResourceNotFoundException::new);
+        writeChanges(persisted, contact);
+
+        history.recordVersion(contact);
+    }
+
+    @Override
+    public void deleteContact(Contact contact) {
+        jdbcTemplate.update("DELETE FROM contact WHERE id = ?", contact.getId());
+        history.recordDeletion(contact.getId(), now());
+    }
+
+    /**
+     * Current time, with the microsecond precision of the timestamp columns, so that the contacts handed back, recorded
+     * in the history and replicated carry the same timestamps as the stored rows.
+     */
+    private static OffsetDateTime now() {
+        return OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Writes the differences between the persisted state of a contact and its updated state.
+     */
+    void writeChanges(Contact persisted, Contact contact) {
+
+        List<Column> changed = COLUMNS.stream()
+                .filter(column -> !Objects.equals(column.getter.apply(persisted), column.getter.apply(contact)))
+                .collect(toList());
+
+        if (!changed.isEmpty()) {
+            String sql = "UPDATE contact SET " + changed.stream().map(column -> column.name + " = ?").collect(joining(", ")) +
+                    " WHERE id = ?";
+            List<Object> args = changed.stream().map(column -> column.getter.apply(contact)).collect(toList());
+            args.add(contact.getId());
+            jdbcTemplate.update(sql, args.toArray());
+        }
+
+        CHILD_TABLES.forEach(table -> writeChildren(table, contact.getId(), persisted, contact));
+    }
+
+    private <T> void writeChildren(ChildTable<T> table, Long id, Contact persisted, Contact contact) {
+
+        List<T> before = persisted == null ? Collections.emptyList() : table.items(persisted);
+        List<T> after = table.items(contact);
+
+        int prefix = 0;
+        while (prefix < Math.min(before.size(), after.size())
+                && Objects.equals(before.get(prefix), after.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < Math.min(before.size(), after.size()) - prefix
+                && Objects.equals(before.get(before.size() - 1 - suffix), after.get(after.size() - 1 - suffix))) {
+            suffix++;
+        }
+        int beforeEnd = before.size() - suffix;
+        int afterEnd = after.size() - suffix;
+
+        List<Object[]> updates = new ArrayList<>();
+        for (int position = prefix; position < Math.min(beforeEnd, afterEnd); position++) {
+            if (!Objects.equals(before.get(position), after.get(position))) {
+                updates.add(table.args(after.get(position), id, position));
+            }
+        }
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int position = beforeEnd; position < afterEnd; position++) {
+            inserts.add(table.args(after.get(position), id, position));
+        }
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(table.updateSql, updates);
+        }
+        if (afterEnd < beforeEnd) {
+            jdbcTemplate.update("DELETE FROM " + table.name + " WHERE contact_id = ? AND position >= ? " +
+                    "AND position < ?", id, afterEnd, beforeEnd);
+        }
+        if (suffix > 0 && afterEnd != beforeEnd) {
+            // Moved through negative positions, so that no row takes the position of another one still to be moved
+            jdbcTemplate.update("UPDATE " + table.name + " SET position = -1 - (position + ?) " +
+                    "WHERE contact_id = ? AND position >= ?", afterEnd - beforeEnd, id, beforeEnd);
+            jdbcTemplate.update("UPDATE " + table.name + " SET position = -1 - position " +
+                    "WHERE contact_id = ? AND position < 0", id);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(table.insertSql, inserts);
+        }
+    }
+
+    private Contact mapContact(ResultSet rs, int rowNum) throws SQLException {
+
+        String workTitle = rs.getString("work_title");
+        String workCompany = rs.getString("work_company");
+
+        Contact contact = Contact.builder()
+                .id(rs.getLong("id"))
+                .name(rs.getString("name"))
+                .birthday(rs.getObject("birthday", LocalDate.class))
+                .work(workTitle == null && workCompany == null ? null : new Work(workTitle, workCompany))
+                .favorite((Boolean) rs.getObject("favorite"))
+                .notes(rs.getString("notes"))
+                .createdDateTime(rs.getObject("created_date_time", OffsetDateTime.class))
+                .lastModifiedDateTime(rs.getObject("last_modified_date_time", OffsetDateTime.class))
+                .build();
+
+        for (ChildTable<?> table : CHILD_TABLES) {
+            table.readPresence(rs, contact);
+        }
+        return contact;
+    }
+
+    @AllArgsConstructor
+    private static class Column {
+
+        private final String name;
+
+        private final Function<Contact, Object> getter;
+    }
+
+    private static class ChildTable<T> {
+
+        private final String name;
+
+        private final Column presenceColumn;
+
+        private final Function<Contact, List<T>> getter;
+
+        private final BiConsumer<Contact, List<T>> setter;
+
+        private final Function<T, Object[]> values;
+
+        private final RowMapper<T> rowMapper;
+
+        private final String insertSql;
+
+        private final String updateSql;
+
+        private ChildTable(String name, String presenceColumn, List<String> columns,
+                           Function<Contact, List<T>> getter, BiConsumer<Contact, List<T>> setter,
+                           Function<T, Object[]> values, RowMapper<T> rowMapper) {
+            this.name = name;
+            this.presenceColumn = new Column(presenceColumn, contact -> getter.apply(contact) != null);
+            this.getter = getter;
+            this.setter = setter;
+            this.values = values;
+            this.rowMapper = rowMapper;
+            this.insertSql = "INSERT INTO " + name + " (" + String.join(", ", columns) + ", contact_id, position) " +
+                    "VALUES (" + columns.stream().map(column -> "?").collect(joining(", ")) + ", ?, ?)";
+            this.updateSql = "UPDATE " + name + " SET " + columns.stream().map(column -> column + " = ?").collect(joining(", ")) +
+                    " WHERE contact_id = ? AND position = ?";
+        }
+
+        private List<T> items(Contact contact) {
+            List<T> items = getter.apply(contact);
+            return items == null ? Collections.emptyList() : items;
+        }
+
+        private void readPresence(ResultSet rs, Contact contact) throws SQLException {
+            if (rs.getBoolean(presenceColumn.name)) {
+                setter.accept(contact, new ArrayList<>());
+            }
+        }
+
+        private Object[] args(T item, Long id, int position) {
+            Object[] itemValues = values.apply(item);
+            Object[] args = Arrays.copyOf(itemValues, itemValues.length + 2);
+            args[itemValues.length] = id;
+            args[itemValues.length + 1] = position;
+            return args;
+        }
+
+        private void read(JdbcTemplate jdbcTemplate, Contact contact) {
+            List<T> items = jdbcTemplate.query("SELECT * FROM " + name + " WHERE contact_id = ? ORDER BY position",
+                    rowMapper, contact.getId());
+            if (!items.isEmpty() || getter.apply(contact) != null) {
+                setter.accept(contact, items);
+            }
+        }
+
+        private void readAll(JdbcTemplate jdbcTemplate, Map<Long, Contact> contactsById, String where, Object... args) {
+            String sql = "SELECT * FROM " + name + where + " ORDER BY contact_id, position";
+            jdbcTemplate.query(sql, args, (ResultSet rs) -> {
+                Contact contact = contactsById.get(rs.getLong("contact_id"));
+                if (contact != null) {
+                    if (getter.apply(contact) == null) {
+                        setter.accept(contact, new ArrayList<>());
+                    }
+                    getter.apply(contact).add(rowMapper.mapRow(rs, rs.getRow()));
+                }
+            });
+        }
+    }
+}
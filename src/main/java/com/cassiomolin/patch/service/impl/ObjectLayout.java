@@ -0,0 +1,97 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Model of how HotSpot lays out objects on the heap, used to estimate the size of objects without instrumenting the
+ * JVM: object headers, reference sizes and alignment depend on whether compressed pointers are used, and strings hold
+ * one byte per character when they are compact.
+ */
+final class ObjectLayout {
+
+    /**
+     * Layout of the running JVM, falling back to the defaults of a 64-bit JVM with a heap under 32 GB.
+     */
+    static final ObjectLayout CURRENT = detect();
+
+    private final int headerSize;
+
+    private final int referenceSize;
+
+    private final int alignment;
+
+    private final boolean compactStrings;
+
+    ObjectLayout(boolean compressedOops, boolean compressedClassPointers, int alignment, boolean compactStrings) {
+        this.headerSize = compressedClassPointers ? 12 : 16;
+        this.referenceSize = compressedOops ? 4 : 8;
+        this.alignment = alignment;
+        this.compactStrings = compactStrings;
+    }
+
+    private static ObjectLayout detect() {
+        try {
+            HotSpotDiagnosticMXBean vm = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return new ObjectLayout(
+                    Boolean.parseBoolean(vm.getVMOption("UseCompressedOops").getValue()),
+                    Boolean.parseBoolean(vm.getVMOption("UseCompressedClassPointers").getValue()),
+                    Integer.parseInt(vm.getVMOption("ObjectAlignmentInBytes").getValue()),
+                    Boolean.parseBoolean(vm.getVMOption("CompactStrings").getValue()));
+        } catch (RuntimeException e) {
+            // Not a HotSpot JVM
+            return new ObjectLayout(true, true, 8, true);
+        }
+    }
+
+    /**
+     * Returns the size of an object.
+     *
+     * @param references     number of reference fields
+     * @param primitiveBytes bytes taken by the primitive fields
+     * @return size in bytes
+     */
+    long object(int references, int primitiveBytes) {
+        return align(headerSize + (long) references * referenceSize + primitiveBytes);
+    }
+
+    /**
+     * Returns the size of an array of references.
+     *
+     * @param length number of elements
+     * @return size in bytes
+     */
+    long referenceArray(int length) {
+        return array(length, referenceSize);
+    }
+
+    /**
+     * Returns the size of a string, including its backing array.
+     *
+     * @param string string
+     * @return size in bytes
+     */
+    long string(String string) {
+        // value, hash and coder
+        return object(1, 5) + array(string.length(), compactStrings && isLatin1(string) ? 1 : 2);
+    }
+
+    private long array(int length, int elementSize) {
+        long base = (headerSize + 4 + elementSize - 1) / elementSize * elementSize;
+        return align(base + (long) length * elementSize);
+    }
+
+    private long align(long size) {
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+    private static boolean isLatin1(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,165 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.PartitioningProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.exception.PartitionUnavailableException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Client of the partitioning endpoints of the other nodes of the cluster.
+ */
+@Component
+@ConditionalOnProperty(name = "contacts.partitioning.enabled", havingValue = "true")
+public class PartitionClient {
+
+    /**
+     * Header marking requests forwarded by a node, with the URL of that node.
+     */
+    public static final String FORWARDED_BY = "Contacts-Forwarded-By";
+
+    private static final TypeReference<List<Contact>> CONTACTS = new TypeReference<List<Contact>>() {
+    };
+
+    private static final TypeReference<List<URI>> MEMBERS = new TypeReference<List<URI>>() {
+    };
+
+    private final ObjectMapper mapper;
+
+    private final Duration timeout;
+
+    private final HttpClient client;
+
+    public PartitionClient(PartitioningProperties properties, ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.timeout = properties.getTimeout();
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Finds the contacts held by a node, without those of the other nodes.
+     *
+     * @param node URL of the node
+     * @return contacts held by the node, once received
+     */
+    public CompletableFuture<List<Contact>> findLocalContacts(URI node) {
+        HttpRequest request = request(node, "/partitions/contacts").GET().build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> read(node, response, CONTACTS))
+                .exceptionally(e -> {
+                    throw unavailable(node, e);
+                });
+    }
+
+    /**
+     * Tells a node about the members of the cluster this node knows of.
+     *
+     * @param node    URL of the node
+     * @param members URLs of the known members
+     * @return URLs of the members known by the node
+     */
+    public List<URI> join(URI node, Collection<URI> members) {
+        return send(node, request(node, "/partitions/members")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(write(members)))
+                .build(), MEMBERS);
+    }
+
+    /**
+     * Hands partitions over to the node that now owns them.
+     *
+     * @param node     URL of the node
+     * @param handover partitions to hand over
+     */
+    public void transfer(URI node, PartitionHandover handover) {
+        send(node, request(node, "/partitions/contacts")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(write(handover)))
+                .build(), null);
+    }
+
+    /**
+     * Sends a request forwarded to the node owning the contact it's about.
+     *
+     * @param node    URL of the node
+     * @param request request to send
+     * @return response of the node
+     */
+    public HttpResponse<byte[]> forward(URI node, HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw unavailable(node, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unavailable(node, e);
+        }
+    }
+
+    /**
+     * @return timeout of requests to other nodes
+     */
+    public Duration timeout() {
+        return timeout;
+    }
+
+    private HttpRequest.Builder request(URI node, String path) {
+        return HttpRequest.newBuilder(URI.create(node + path))
+                .timeout(timeout)
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+    }
+
+    private <T> T send(URI node, HttpRequest request, TypeReference<T> type) {
+        HttpResponse<byte[]> response = forward(node, request);
+        return read(node, response, type);
+    }
+
+    private <T> T read(URI node, HttpResponse<byte[]> response, TypeReference<T> type) {
+        if (response.statusCode() >= 300) {
+            throw unavailable(node, new IllegalStateException(response.request().method() + " "
+                    + response.uri() + " failed with " + response.statusCode()));
+        }
+        if (type == null) {
+            return null;
+        }
+        try {
+            return mapper.readValue(response.body(), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] write(Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static PartitionUnavailableException unavailable(URI node, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof PartitionUnavailableException
+                ? (PartitionUnavailableException) cause
+                : new PartitionUnavailableException(node, cause);
+    }
+}
@@ -0,0 +1,24 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Partitions a node hands over to their new owner: the contacts they hold, and the last id generated in each of them,
+ * so that the new owner doesn't generate again the ids of contacts that have since been deleted.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartitionHandover {
+
+    private List<Long> lastIds;
+
+    private List<Contact> contacts;
+}
@@ -0,0 +1,204 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.PartitioningProperties;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Assignment of partitions to the nodes of the cluster.
+ * <p>
+ * The partition of a contact is part of its id, which is a multiple of the number of partitions plus the partition.
+ * Partitions are assigned to nodes by consistent hashing: each node has a number of points on a hash ring, and a
+ * partition belongs to the node owning the first point at or after the hash of the partition. When a node joins, it
+ * only takes over the partitions falling just before its own points, roughly its fair share, and every other
+ * partition stays where it was.
+ * <p>
+ * The assignment only depends on the set of members, so nodes that know the same members agree on it without
+ * coordinating.
+ */
+@Component
+@ConditionalOnProperty(name = "contacts.partitioning.enabled", havingValue = "true")
+public class PartitionMap {
+
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    private final URI self;
+
+    private final int partitions;
+
+    private final int virtualNodes;
+
+    private volatile Assignment assignment;
+
+    private volatile boolean joined;
+
+    public PartitionMap(PartitioningProperties properties) {
+        this.self = normalize(properties.getSelf());
+        this.partitions = properties.getPartitions();
+        this.virtualNodes = properties.getVirtualNodes();
+        this.assignment = assign(new TreeSet<>(Collections.singleton(self)));
+    }
+
+    /**
+     * @return URL of this node
+     */
+    public URI self() {
+        return self;
+    }
+
+    /**
+     * @return number of partitions
+     */
+    public int partitions() {
+        return partitions;
+    }
+
+    /**
+     * @param id contact id
+     * @return partition of the contact
+     */
+    public int partitionOf(long id) {
+        return (int) Math.floorMod(id, (long) partitions);
+    }
+
+    /**
+     * @param id contact id
+     * @return URL of the node owning the contact
+     */
+    public URI ownerOf(long id) {
+        return assignment.owners[partitionOf(id)];
+    }
+
+    /**
+     * @param partition partition
+     * @return URL of the node owning the partition
+     */
+    public URI ownerOfPartition(int partition) {
+        return assignment.owners[partition];
+    }
+
+    /**
+     * @param id contact id
+     * @return whether the contact is owned by this node
+     */
+    public boolean isLocal(long id) {
+        return self.equals(ownerOf(id));
+    }
+
+    /**
+     * @return partitions owned by this node
+     */
+    public int[] localPartitions() {
+        return assignment.localPartitions;
+    }
+
+    /**
+     * @return URLs of the nodes of the cluster, this one included
+     */
+    public NavigableSet<URI> members() {
+        return assignment.members;
+    }
+
+    /**
+     * @return whether this node has joined the cluster through its seeds, without which it would own every partition
+     */
+    public boolean joined() {
+        return joined;
+    }
+
+    /**
+     * Records that this node has joined the cluster through its seeds.
+     */
+    public void markJoined() {
+        joined = true;
+    }
+
+    /**
+     * @return number of partitions owned by each node of the cluster
+     */
+    public Map<URI, Integer> partitionCounts() {
+        Map<URI, Integer> counts = new LinkedHashMap<>();
+        assignment.members.forEach(member -> counts.put(member, 0));
+        for (URI owner : assignment.owners) {
+            counts.merge(owner, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Adds nodes to the cluster, reassigning the partitions they take over.
+     *
+     * @param nodes URLs of nodes, which may already be members
+     * @return whether any of the nodes wasn't a member yet
+     */
+    public synchronized boolean join(Collection<URI> nodes) {
+
+        NavigableSet<URI> members = new TreeSet<>(assignment.members);
+        nodes.forEach(node -> members.add(normalize(node)));
+        if (members.size() == assignment.members.size()) {
+            return false;
+        }
+
+        assignment = assign(members);
+        return true;
+    }
+
+    private Assignment assign(NavigableSet<URI> members) {
+
+        NavigableMap<Integer, URI> ring = new TreeMap<>();
+        for (URI member : members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(HASH.hashString(member + "#" + i, StandardCharsets.UTF_8).asInt(), member);
+            }
+        }
+
+        URI[] owners = new URI[partitions];
+        for (int partition = 0; partition < partitions; partition++) {
+            Map.Entry<Integer, URI> point = ring.ceilingEntry(HASH.hashInt(partition).asInt());
+            owners[partition] = (point == null ? ring.firstEntry() : point).getValue();
+        }
+
+        int[] localPartitions = IntStream.range(0, partitions)
+                .filter(partition -> self.equals(owners[partition]))
+                .toArray();
+
+        return new Assignment(Collections.unmodifiableNavigableSet(members), owners, localPartitions);
+    }
+
+    private static URI normalize(URI node) {
+        String url = node.toString();
+        return url.endsWith("/") ? URI.create(url.substring(0, url.length() - 1)) : node;
+    }
+
+    /**
+     * Members of the cluster and the owner of each partition, replaced as a whole when a node joins.
+     */
+    private static class Assignment {
+
+        private final NavigableSet<URI> members;
+
+        private final URI[] owners;
+
+        private final int[] localPartitions;
+
+        private Assignment(NavigableSet<URI> members, URI[] owners, int[] localPartitions) {
+            this.members = members;
+            this.owners = owners;
+            this.localPartitions = localPartitions;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.PartitioningProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.exception.PartitionUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Keeps this node's view of the cluster up to date and moves contacts to the nodes owning them.
+ * <p>
+ * Once started, a node joins the cluster through its seeds: it sends them the members it knows of and gets back the
+ * members they know of, then announces itself to every other member. Seeds are tried again until one of them answers,
+ * and the node fails to start if none has within {@code contacts.partitioning.join-timeout}. Whenever a node learns
+ * of new members, it reassigns the partitions and hands the partitions it no longer owns over to their new owners,
+ * with their contacts and the last id generated in each of them. Until it has gone through its seeds, the node only
+ * knows of itself, and doesn't serve contacts nor create them, as the ids it would generate may belong to partitions
+ * other nodes own.
+ * <p>
+ * Nodes never leave the cluster, and there is no replication: requests for contacts that are being handed over may
+ * not find them until the handover is complete, and contacts held by a node that is down are unavailable.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "contacts.partitioning.enabled", havingValue = "true")
+public class PartitionRebalancer {
+
+    private final PartitioningProperties properties;
+
+    private final PartitionMap partitionMap;
+
+    private final PartitionClient client;
+
+    private final DefaultContactService store;
+
+    private final PartitionedContactIdGenerator idGenerator;
+
+    private final Counter handedOver;
+
+    private final Counter received;
+
+    public PartitionRebalancer(PartitioningProperties properties, PartitionMap partitionMap, PartitionClient client,
+                               DefaultContactService store, PartitionedContactIdGenerator idGenerator,
+                               MeterRegistry registry) {
+        this.properties = properties;
+        this.partitionMap = partitionMap;
+        this.client = client;
+        this.store = store;
+        this.idGenerator = idGenerator;
+        this.handedOver = handovers(registry, "out");
+        this.received = handovers(registry, "in");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void joinSeeds() {
+
+        if (!properties.getSeeds().isEmpty()) {
+            joinAnySeed();
+        }
+
+        for (URI member : partitionMap.members()) {
+            if (!member.equals(partitionMap.self()) && !properties.getSeeds().contains(member)) {
+                try {
+                    join(client.join(member, partitionMap.members()));
+                } catch (PartitionUnavailableException e) {
+                    // The member learns of this node when it hears from a node that knows of it
+                    log.warn("Could not announce this node to {}", member, e);
+                }
+            }
+        }
+
+        partitionMap.markJoined();
+        log.info("Owning {} of {} partitions in a cluster of {} nodes", partitionMap.localPartitions().length,
+                partitionMap.partitions(), partitionMap.members().size());
+    }
+
+    /**
+     * Goes through the seeds until at least one of them answers, as a node that only knows of itself would create
+     * contacts in partitions other nodes own.
+     */
+    private void joinAnySeed() {
+
+        long deadline = System.nanoTime() + properties.getJoinTimeout().toNanos();
+        while (true) {
+            boolean answered = false;
+            for (URI seed : properties.getSeeds()) {
+                try {
+                    join(client.join(seed, partitionMap.members()));
+                    answered = true;
+                } catch (PartitionUnavailableException e) {
+                    log.warn("Could not join the cluster through seed {}", seed, e);
+                }
+            }
+            if (answered) {
+                return;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                throw new IllegalStateException("None of the seeds " + properties.getSeeds() + " answered within "
+                        + properties.getJoinTimeout());
+            }
+            try {
+                Thread.sleep(properties.getJoinRetryInterval().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while joining the cluster", e);
+            }
+        }
+    }
+
+    /**
+     * Adds nodes to the cluster and, if any of them is new, hands the partitions they take over to them.
+     *
+     * @param nodes URLs of nodes, which may already be members
+     * @return URLs of the members of the cluster
+     */
+    public synchronized Set<URI> join(Collection<URI> nodes) {
+        int[] localPartitions = partitionMap.localPartitions();
+        if (partitionMap.join(nodes)) {
+            handOver(localPartitions);
+        }
+        return partitionMap.members();
+    }
+
+    /**
+     * Takes over partitions handed over by another node.
+     *
+     * @param handover partitions now owned by this node
+     */
+    public void receive(PartitionHandover handover) {
+        handover.getLastIds().forEach(idGenerator::advancePast);
+        handover.getContacts().forEach(store::importContact);
+        received.increment(handover.getContacts().size());
+    }
+
+    /**
+     * Hands the partitions this node owned before the members changed, and no longer owns, over to their new owners.
+     *
+     * @param previousPartitions partitions owned before the members changed
+     */
+    private void handOver(int[] previousPartitions) {
+
+        Map<URI, List<Long>> lastIdsByOwner = Arrays.stream(previousPartitions)
+                .filter(partition -> !partitionMap.self().equals(partitionMap.ownerOfPartition(partition)))
+                .boxed()
+                .collect(groupingBy(partitionMap::ownerOfPartition,
+                        mapping(idGenerator::lastId, toList())));
+
+        Map<URI, List<Contact>> contactsByOwner = List.copyOf(store.findContacts()).stream()
+                .filter(contact -> !partitionMap.isLocal(contact.getId()))
+                .collect(groupingBy(contact -> partitionMap.ownerOf(contact.getId())));
+
+        Set<URI> owners = new TreeSet<>(lastIdsByOwner.keySet());
+        owners.addAll(contactsByOwner.keySet());
+        for (URI owner : owners) {
+            List<Contact> contacts = contactsByOwner.getOrDefault(owner, List.of());
+            client.transfer(owner, PartitionHandover.builder()
+                    .lastIds(lastIdsByOwner.getOrDefault(owner, List.of()))
+                    .contacts(contacts)
+                    .build());
+            contacts.forEach(store::evictContact);
+            handedOver.increment(contacts.size());
+            log.info("Handed {} contacts over to {}", contacts.size(), owner);
+        }
+    }
+
+    private static Counter handovers(MeterRegistry registry, String direction) {
+        return Counter.builder("contacts.partitioning.handovers")
+                .description("Contacts handed over between nodes as partitions are reassigned, by direction")
+                .tag("direction", direction)
+                .register(registry);
+    }
+}
@@ -0,0 +1,21 @@
+package com.cassiomolin.patch.service.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fails startup when both the contact cache and partitioning are enabled.
+ * <p>
+ * The {@link PartitionRebalancer} hands partitions over by importing and evicting contacts in the store directly, so a
+ * {@link CachingContactService} in front of it would go on serving contacts the node no longer owns, and lookups of the
+ * contacts it has just been handed would hit cached misses. Until handovers go through the cache, the combination is
+ * rejected rather than left to serve stale contacts.
+ */
+@Component
+@ConditionalOnProperty(name = {"contacts.cache.enabled", "contacts.partitioning.enabled"}, havingValue = "true")
+public class PartitionedCacheGuard {
+
+    public PartitionedCacheGuard() {
+        throw new IllegalStateException("contacts.cache.enabled can't be combined with contacts.partitioning.enabled");
+    }
+}
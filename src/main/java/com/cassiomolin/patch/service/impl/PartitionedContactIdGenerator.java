@@ -0,0 +1,57 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.service.ContactIdGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link ContactIdGenerator} that generates ids in the partitions owned by this node, going through them in turn, so
+ * that new contacts are always created locally and spread evenly over the partitions of the node.
+ */
+@Component
+@ConditionalOnProperty(name = "contacts.partitioning.enabled", havingValue = "true")
+public class PartitionedContactIdGenerator implements ContactIdGenerator {
+
+    private final PartitionMap partitionMap;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicInteger nextPartition = new AtomicInteger();
+
+    public PartitionedContactIdGenerator(PartitionMap partitionMap) {
+        this.partitionMap = partitionMap;
+        this.sequences = new AtomicLongArray(partitionMap.partitions());
+    }
+
+    @Override
+    public long nextId() {
+
+        if (!partitionMap.joined()) {
+            throw new IllegalStateException("This node hasn't joined the cluster yet");
+        }
+
+        int[] localPartitions = partitionMap.localPartitions();
+        if (localPartitions.length == 0) {
+            throw new IllegalStateException("This node doesn't own any partition");
+        }
+
+        int partition = localPartitions[Math.floorMod(nextPartition.getAndIncrement(), localPartitions.length)];
+        return sequences.incrementAndGet(partition) * partitionMap.partitions() + partition;
+    }
+
+    /**
+     * @param partition partition
+     * @return last id generated in the partition, or advanced past, which is the partition itself when there is none
+     */
+    public long lastId(int partition) {
+        return sequences.get(partition) * partitionMap.partitions() + partition;
+    }
+
+    @Override
+    public void advancePast(long id) {
+        sequences.accumulateAndGet(partitionMap.partitionOf(id), id / partitionMap.partitions(), Math::max);
+    }
+}
@@ -0,0 +1,109 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactStore;
+import com.cassiomolin.patch.web.exception.PartitionUnavailableException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * {@link ContactService} of a node holding some of the partitions of the contacts.
+ * <p>
+ * Requests about a single contact are forwarded to the node owning it before they get here, and new contacts are
+ * created in the partitions of this node, so those are served by the local {@link ContactStore}. Listing contacts
+ * fans out to every node and merges their contacts, in the order they were created.
+ */
+@Primary
+@Service
+@ConditionalOnProperty(name = "contacts.partitioning.enabled", havingValue = "true")
+public class PartitionedContactService implements ContactService {
+
+    private static final Comparator<Contact> CREATION_ORDER = Comparator
+            .comparing(Contact::getCreatedDateTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Contact::getId);
+
+    private final ContactService store;
+
+    private final PartitionMap partitionMap;
+
+    private final PartitionClient client;
+
+    public PartitionedContactService(@ContactStore ContactService store, PartitionMap partitionMap,
+                                     PartitionClient client) {
+        this.store = store;
+        this.partitionMap = partitionMap;
+        this.client = client;
+    }
+
+    @Override
+    public Contact createContact(Contact contact) {
+        return store.createContact(contact);
+    }
+
+    @Override
+    public List<Contact> findContacts() {
+
+        List<CompletableFuture<List<Contact>>> remoteContacts = partitionMap.members().stream()
+                .filter(member -> !member.equals(partitionMap.self()))
+                .map(client::findLocalContacts)
+                .collect(toList());
+
+        List<Contact> contacts = new ArrayList<>(findLocalContacts());
+        for (CompletableFuture<List<Contact>> future : remoteContacts) {
+            try {
+                contacts.addAll(future.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof PartitionUnavailableException
+                        ? (PartitionUnavailableException) e.getCause()
+                        : e;
+            }
+        }
+
+        contacts.sort(CREATION_ORDER);
+        return contacts;
+    }
+
+    /**
+     * @return contacts held by this node
+     */
+    public List<Contact> findLocalContacts() {
+        return new ArrayList<>(store.findContacts());
+    }
+
+    @Override
+    public Optional<Contact> findContact(Long id) {
+        return store.findContact(id);
+    }
+
+    @Override
+    public Optional<Contact> findContact(Long id, OffsetDateTime asOf) {
+        return store.findContact(id, asOf);
+    }
+
+    @Override
+    public void updateContact(Contact contact) {
+        store.updateContact(contact);
+    }
+
+    @Override
+    public void deleteContact(Contact contact) {
+        store.deleteContact(contact);
+    }
+
+    @Override
+    public void awaitDurability() {
+        store.awaitDurability();
+    }
+}
@@ -0,0 +1,274 @@
+package com.cassiomolin.patch.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of document numbers, for the postings of a term.
+ * <p>
+ * Documents are grouped in chunks of 65536 by their upper 16 bits, and each chunk keeps the lower 16 bits of its
+ * documents either as a sorted array, while it holds up to 4096 of them, or as a bitmap of 8 KiB beyond that, so that a
+ * chunk never takes more than 8 KiB and sparse chunks take 2 bytes per document.
+ */
+final class PostingList {
+
+    static final int MAX_ARRAY_SIZE = 4096;
+
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys = new char[0];
+
+    private Chunk[] chunks = new Chunk[0];
+
+    private int cardinality;
+
+    boolean add(int document) {
+
+        char key = (char) (document >>> 16);
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            index = -index - 1;
+            keys = insert(keys, index, key);
+            Chunk[] grown = new Chunk[chunks.length + 1];
+            System.arraycopy(chunks, 0, grown, 0, index);
+            System.arraycopy(chunks, index, grown, index + 1, chunks.length - index);
+            grown[index] = new ArrayChunk();
+            chunks = grown;
+        }
+
+        Chunk chunk = chunks[index];
+        int before = chunk.cardinality();
+        chunks[index] = chunk.add((char) document);
+        if (chunks[index].cardinality() == before) {
+            return false;
+        }
+        cardinality++;
+        return true;
+    }
+
+    boolean remove(int document) {
+
+        int index = Arrays.binarySearch(keys, (char) (document >>> 16));
+        if (index < 0) {
+            return false;
+        }
+
+        Chunk chunk = chunks[index];
+        int before = chunk.cardinality();
+        chunks[index] = chunk.remove((char) document);
+        if (chunks[index].cardinality() == before) {
+            return false;
+        }
+        cardinality--;
+
+        if (chunks[index].cardinality() == 0) {
+            char[] shrunkKeys = new char[keys.length - 1];
+            System.arraycopy(keys, 0, shrunkKeys, 0, index);
+            System.arraycopy(keys, index + 1, shrunkKeys, index, keys.length - index - 1);
+            keys = shrunkKeys;
+            Chunk[] shrunk = new Chunk[chunks.length - 1];
+            System.arraycopy(chunks, 0, shrunk, 0, index);
+            System.arraycopy(chunks, index + 1, shrunk, index, chunks.length - index - 1);
+            chunks = shrunk;
+        }
+        return true;
+    }
+
+    boolean contains(int document) {
+        int index = Arrays.binarySearch(keys, (char) (document >>> 16));
+        return index >= 0 && chunks[index].contains((char) document);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Sets the bits of the documents of this list in an uncompressed bitmap.
+     *
+     * @param words bitmap, large enough for every document of this list
+     */
+    void orInto(long[] words) {
+        for (int i = 0; i < keys.length; i++) {
+            chunks[i].orInto(words, keys[i] * BITMAP_WORDS);
+        }
+    }
+
+    /**
+     * Copies the documents of this list, in ascending order.
+     *
+     * @param target array to copy the documents to
+     * @param offset position of the first document in the array
+     * @return position following the last document in the array
+     */
+    int copyInto(int[] target, int offset) {
+        for (int i = 0; i < keys.length; i++) {
+            offset = chunks[i].copyInto(target, offset, keys[i] << 16);
+        }
+        return offset;
+    }
+
+    private static char[] insert(char[] values, int index, char value) {
+        char[] grown = new char[values.length + 1];
+        System.arraycopy(values, 0, grown, 0, index);
+        System.arraycopy(values, index, grown, index + 1, values.length - index);
+        grown[index] = value;
+        return grown;
+    }
+
+    private interface Chunk {
+
+        Chunk add(char value);
+
+        Chunk remove(char value);
+
+        boolean contains(char value);
+
+        int cardinality();
+
+        void orInto(long[] words, int offset);
+
+        int copyInto(int[] target, int offset, int high);
+    }
+
+    private static final class ArrayChunk implements Chunk {
+
+        private char[] values = new char[4];
+
+        private int size;
+
+        @Override
+        public Chunk add(char value) {
+
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == MAX_ARRAY_SIZE) {
+                BitmapChunk bitmap = new BitmapChunk();
+                for (int i = 0; i < size; i++) {
+                    bitmap.add(values[i]);
+                }
+                return bitmap.add(value);
+            }
+
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, size * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return size;
+        }
+
+        @Override
+        public void orInto(long[] words, int offset) {
+            for (int i = 0; i < size; i++) {
+                words[offset + (values[i] >>> 6)] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        public int copyInto(int[] target, int offset, int high) {
+            for (int i = 0; i < size; i++) {
+                target[offset++] = high | values[i];
+            }
+            return offset;
+        }
+    }
+
+    private static final class BitmapChunk implements Chunk {
+
+        private final long[] words = new long[BITMAP_WORDS];
+
+        private int cardinality;
+
+        @Override
+        public Chunk add(char value) {
+            long word = words[value >>> 6];
+            long updated = word | (1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char value) {
+
+            long word = words[value >>> 6];
+            long updated = word & ~(1L << value);
+            if (updated == word) {
+                return this;
+            }
+            words[value >>> 6] = updated;
+            cardinality--;
+
+            // Goes back to an array with some slack, so that a chunk at the threshold doesn't keep switching
+            if (cardinality > MAX_ARRAY_SIZE / 2) {
+                return this;
+            }
+            ArrayChunk array = new ArrayChunk();
+            array.values = new char[MAX_ARRAY_SIZE];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                for (long bits = words[i]; bits != 0; bits &= bits - 1) {
+                    array.values[array.size++] = (char) (i * 64 + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            return array;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public void orInto(long[] target, int offset) {
+            int length = Math.min(BITMAP_WORDS, target.length - offset);
+            for (int i = 0; i < length; i++) {
+                target[offset + i] |= words[i];
+            }
+        }
+
+        @Override
+        public int copyInto(int[] target, int offset, int high) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                for (long bits = words[i]; bits != 0; bits &= bits - 1) {
+                    target[offset++] = high | (i * 64 + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.cassiomolin.patch.service.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Character trie mapping terms to values, for completing prefixes. Children are kept in sorted arrays, which are small
+ * for most nodes, and nodes left without a value or children are pruned.
+ *
+ * @param <V> type of the values
+ */
+final class PrefixTrie<V> {
+
+    private final Node<V> root = new Node<>();
+
+    private int size;
+
+    V get(String term) {
+        Node<V> node = find(term);
+        return node == null ? null : node.value;
+    }
+
+    V computeIfAbsent(String term, Function<String, V> mappingFunction) {
+
+        Node<V> node = root;
+        for (int i = 0; i < term.length(); i++) {
+            node = node.childOrCreate(term.charAt(i));
+        }
+        if (node.value == null) {
+            node.value = mappingFunction.apply(term);
+            size++;
+        }
+        return node.value;
+    }
+
+    void remove(String term) {
+        if (remove(root, term, 0)) {
+            size--;
+        }
+    }
+
+    /**
+     * Returns the values of the terms starting with a prefix, shortest terms first.
+     *
+     * @param prefix prefix
+     * @return values of the completions of the prefix, including the prefix itself
+     */
+    List<V> complete(String prefix) {
+
+        List<V> values = new ArrayList<>();
+        Node<V> start = find(prefix);
+        if (start == null) {
+            return values;
+        }
+
+        Deque<Node<V>> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Node<V> node = queue.poll();
+            if (node.value != null) {
+                values.add(node.value);
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                queue.add(node.children[i]);
+            }
+        }
+        return values;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private Node<V> find(String term) {
+        Node<V> node = root;
+        for (int i = 0; i < term.length() && node != null; i++) {
+            node = node.child(term.charAt(i));
+        }
+        return node;
+    }
+
+    private boolean remove(Node<V> node, String term, int depth) {
+
+        if (depth == term.length()) {
+            boolean removed = node.value != null;
+            node.value = null;
+            return removed;
+        }
+
+        Node<V> child = node.child(term.charAt(depth));
+        if (child == null) {
+            return false;
+        }
+        boolean removed = remove(child, term, depth + 1);
+        if (child.value == null && child.childCount == 0) {
+            node.removeChild(term.charAt(depth));
+        }
+        return removed;
+    }
+
+    private static final class Node<V> {
+
+        private static final char[] NO_LABELS = new char[0];
+
+        private char[] labels = NO_LABELS;
+
+        private Node<V>[] children;
+
+        private int childCount;
+
+        private V value;
+
+        Node<V> child(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<V> childOrCreate(char label) {
+
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+            if (childCount == labels.length) {
+                int capacity = Math.max(2, childCount * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                children = children == null ? new Node[capacity] : Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, index, labels, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            labels[index] = label;
+            children[index] = new Node<>();
+            childCount++;
+            return children[index];
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            if (index >= 0) {
+                System.arraycopy(labels, index + 1, labels, index, childCount - index - 1);
+                System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+                children[--childCount] = null;
+            }
+        }
+    }
+}
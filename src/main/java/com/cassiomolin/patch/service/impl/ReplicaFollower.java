@@ -0,0 +1,308 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ReplicationProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.util.PersistentJsonPatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Keeps the contacts of a replica in step with the primary.
+ * <p>
+ * The replica starts from a snapshot of the primary, then applies the changes streamed from the sequence of the
+ * snapshot on, in order. Changes the snapshot already reflects are recognized by the last modified date of the contact
+ * and skipped. A gap in the sequence, or a patch that doesn't apply, makes the replica start over from a new snapshot.
+ * <p>
+ * The primary sends a heartbeat with its latest sequence after each group of changes, and whenever it has been idle
+ * for {@link ReplicationProperties#getHeartbeatInterval()}. The replica is as stale as the time since it last received
+ * a heartbeat while up to date, or since it requested its snapshot.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "contacts.replication.role", havingValue = "replica")
+public class ReplicaFollower {
+
+    private final ReplicationProperties properties;
+
+    private final DefaultContactService store;
+
+    private final ObjectMapper mapper;
+
+    private final Object lock = new Object();
+
+    private volatile long appliedSequence;
+
+    private volatile long primarySequence;
+
+    private volatile long caughtUpNanos;
+
+    private volatile boolean caughtUp;
+
+    private String epoch;
+
+    private volatile boolean running;
+
+    private volatile HttpURLConnection connection;
+
+    private Thread follower;
+
+    public ReplicaFollower(ReplicationProperties properties, DefaultContactService store, ObjectMapper mapper,
+                           MeterRegistry registry) {
+
+        this.properties = properties;
+        this.store = store;
+        this.mapper = mapper;
+
+        Gauge.builder("contacts.replication.applied", this, ReplicaFollower::appliedSequence)
+                .description("Sequence of the latest change applied from the primary")
+                .register(registry);
+        Gauge.builder("contacts.replication.lag", this, follower -> Math.max(0, follower.primarySequence - follower.appliedSequence))
+                .description("Changes known to be made on the primary and not applied yet")
+                .register(registry);
+        Gauge.builder("contacts.replication.staleness", this,
+                follower -> follower.staleness().map(staleness -> staleness.toNanos() / 1e9).orElse(Double.NaN))
+                .description("Time since the replica was last known to be up to date with the primary")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        follower = new Thread(this::follow, "replica-follower");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (follower != null) {
+            follower.interrupt();
+            HttpURLConnection current = connection;
+            if (current != null) {
+                current.disconnect();
+            }
+            follower.join(properties.getReconnectDelay().toMillis());
+        }
+    }
+
+    /**
+     * Returns the sequence of the latest change applied from the primary.
+     *
+     * @return applied sequence
+     */
+    public long appliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Returns the time since the replica was last known to be up to date with the primary.
+     *
+     * @return staleness, or empty if the replica has never caught up with the primary
+     */
+    public Optional<Duration> staleness() {
+        return caughtUp ? Optional.of(Duration.ofNanos(System.nanoTime() - caughtUpNanos)) : Optional.empty();
+    }
+
+    /**
+     * Waits for the changes up to a sequence to be applied.
+     *
+     * @param sequence sequence of a change made on the primary
+     * @param timeout  how long to wait
+     * @return {@code true} if the change has been applied
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitSequence(long sequence, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (lock) {
+            while (appliedSequence < sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(Math.max(1, remaining / 1_000_000));
+            }
+            return true;
+        }
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                if (epoch == null) {
+                    loadSnapshot();
+                }
+                streamChanges();
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    log.warn("Lost the stream of changes from {}, reconnecting", properties.getPrimary(), e);
+                }
+            }
+            try {
+                Thread.sleep(properties.getReconnectDelay().toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+
+        // The snapshot is at least as recent as the primary was when it was requested
+        long requestedNanos = System.nanoTime();
+        HttpURLConnection snapshotConnection = open("/replication/snapshot");
+        ReplicationSnapshot snapshot;
+        try (InputStream body = snapshotConnection.getInputStream()) {
+            snapshot = mapper.readValue(body, ReplicationSnapshot.class);
+        } finally {
+            snapshotConnection.disconnect();
+        }
+
+        Set<Long> ids = snapshot.getContacts().stream().map(Contact::getId).collect(toSet());
+        List.copyOf(store.findContacts()).stream()
+                .filter(contact -> !ids.contains(contact.getId()))
+                .forEach(store::evictContact);
+        snapshot.getContacts().forEach(store::importContact);
+
+        epoch = snapshot.getEpoch();
+        applied(snapshot.getSequence());
+        caughtUpNanos = requestedNanos;
+        caughtUp = true;
+        log.info("Loaded {} contacts from the primary as of sequence {}", ids.size(), snapshot.getSequence());
+    }
+
+    private void streamChanges() throws IOException {
+
+        HttpURLConnection streamConnection = open("/replication/stream?epoch=" + epoch + "&after=" + appliedSequence);
+        try {
+            if (streamConnection.getResponseCode() == HttpURLConnection.HTTP_GONE) {
+                log.info("The primary no longer retains the changes following sequence {}", appliedSequence);
+                epoch = null;
+                return;
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(streamConnection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (running && (line = reader.readLine()) != null) {
+                    if (!apply(mapper.readValue(line, ReplicationEntry.class))) {
+                        epoch = null;
+                        return;
+                    }
+                }
+            }
+        } finally {
+            streamConnection.disconnect();
+        }
+    }
+
+    /**
+     * Applies a change streamed from the primary.
+     *
+     * @return {@code false} if the replica has diverged from the primary and must start over from a snapshot
+     */
+    private boolean apply(ReplicationEntry entry) {
+
+        if (entry.getType() == ReplicationEntry.Type.HEARTBEAT) {
+            primarySequence = entry.getSequence();
+            if (appliedSequence >= entry.getSequence()) {
+                caughtUpNanos = System.nanoTime();
+                caughtUp = true;
+            }
+            return true;
+        }
+
+        if (entry.getSequence() <= appliedSequence) {
+            return true;
+        }
+        if (entry.getSequence() != appliedSequence + 1) {
+            log.warn("Missed the changes between sequences {} and {}", appliedSequence, entry.getSequence());
+            return false;
+        }
+
+        Optional<Contact> current = store.findContact(entry.getId());
+        switch (entry.getType()) {
+            case CREATE:
+                if (!current.filter(contact -> reflects(contact, entry)).isPresent()) {
+                    store.importContact(entry.getContact());
+                }
+                break;
+            case PATCH:
+                if (!current.isPresent()) {
+                    log.warn("Missing contact {} to apply change {}", entry.getId(), entry.getSequence());
+                    return false;
+                }
+                try {
+                    JsonValue state = mapper.convertValue(current.get(), JsonValue.class);
+                    // The JSON-P implementation also patches siblings with the same names and indexes
+                    JsonValue patched = PersistentJsonPatch.apply(Json.createPatch(entry.getPatch().asJsonArray()),
+                            (JsonStructure) state);
+                    store.importContact(mapper.convertValue(patched, Contact.class));
+                } catch (JsonException | PatchFailureException e) {
+                    if (!reflects(current.get(), entry)) {
+                        log.warn("Could not apply change {} to contact {}", entry.getSequence(), entry.getId(), e);
+                        return false;
+                    }
+                }
+                break;
+            case DELETE:
+                current.ifPresent(store::deleteContact);
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected change " + entry.getType());
+        }
+
+        applied(entry.getSequence());
+        return true;
+    }
+
+    /**
+     * Tells whether a contact already reflects a change, as it was in a snapshot taken after the change was made.
+     */
+    private static boolean reflects(Contact contact, ReplicationEntry entry) {
+        return !contact.getLastModifiedDateTime().isBefore(entry.getTimestamp());
+    }
+
+    private void applied(long sequence) {
+        synchronized (lock) {
+            appliedSequence = sequence;
+            lock.notifyAll();
+        }
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+
+        // The stream is read line by line as it arrives, and given up on when the heartbeats stop
+        HttpURLConnection opened = (HttpURLConnection) URI.create(properties.getPrimary() + path).toURL().openConnection();
+        opened.setConnectTimeout((int) properties.getMaxStaleness().toMillis());
+        opened.setReadTimeout((int) properties.getMaxStaleness().toMillis());
+        connection = opened;
+        return opened;
+    }
+}
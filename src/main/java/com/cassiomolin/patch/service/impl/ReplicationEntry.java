@@ -0,0 +1,61 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.json.JsonValue;
+import java.time.OffsetDateTime;
+
+/**
+ * Change shipped from the primary to replicas, one per line of the replication stream.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReplicationEntry {
+
+    public enum Type {
+
+        /**
+         * A contact has been created, shipped in full.
+         */
+        CREATE,
+
+        /**
+         * A contact has been updated, shipped as a JSON Patch from its previous state, starting with a {@code test} of
+         * its previous last modified date.
+         */
+        PATCH,
+
+        /**
+         * A contact has been deleted.
+         */
+        DELETE,
+
+        /**
+         * Nothing has changed. The sequence is the latest of the primary.
+         */
+        HEARTBEAT
+    }
+
+    private long sequence;
+
+    private Type type;
+
+    private Long id;
+
+    private Contact contact;
+
+    private JsonValue patch;
+
+    /**
+     * When the change was made, or when the heartbeat was sent.
+     */
+    private OffsetDateTime timestamp;
+}
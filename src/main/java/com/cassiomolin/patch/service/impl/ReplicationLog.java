@@ -0,0 +1,225 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ReplicationProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.impl.ReplicationEntry.Type;
+import com.cassiomolin.patch.web.util.JsonPatchDiff;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ordered log of the changes made to the contacts of the primary, shipped to replicas.
+ * <p>
+ * Updates are logged as a JSON Patch from the previous state of the contact to the new one, whether the contact was
+ * replaced, merge patched or patched, so that replicas only receive what has changed. The patch starts with a
+ * {@code test} of the previous last modified date, which makes replicas notice that they have missed a change.
+ * <p>
+ * Entries are kept serialized, as one line each, in a ring of {@link ReplicationProperties#getLogSize()} entries.
+ * Replicas further behind than that, or following a previous run of the primary, start over from a snapshot.
+ */
+@Component
+@ConditionalOnProperty(name = "contacts.replication.role", havingValue = "primary")
+public class ReplicationLog {
+
+    private final ObjectMapper mapper;
+
+    private final String epoch = UUID.randomUUID().toString();
+
+    private final byte[][] entries;
+
+    private final Map<Type, DistributionSummary> entrySizes = new EnumMap<>(Type.class);
+
+    private long lastSequence;
+
+    public ReplicationLog(ObjectMapper mapper, ReplicationProperties properties, MeterRegistry registry) {
+
+        this.mapper = mapper;
+        this.entries = new byte[properties.getLogSize()][];
+
+        Gauge.builder("contacts.replication.sequence", this, ReplicationLog::lastSequence)
+                .description("Sequence of the latest change logged for replicas")
+                .register(registry);
+        for (Type type : Type.values()) {
+            entrySizes.put(type, DistributionSummary.builder("contacts.replication.entry.size")
+                    .description("Size of the changes shipped to replicas, by type")
+                    .baseUnit("bytes")
+                    .tag("type", type.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Identifies this run of the log. Sequences of different runs are unrelated.
+     *
+     * @return epoch of the log
+     */
+    public String epoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the sequence of the latest change.
+     *
+     * @return latest sequence, {@code 0} if nothing has changed yet
+     */
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Logs the creation of a contact, or the import of a contact that has been created elsewhere.
+     *
+     * @param contact created contact
+     * @return sequence of the change
+     */
+    public long recordCreation(Contact contact) {
+        return append(ReplicationEntry.builder()
+                .type(Type.CREATE)
+                .id(contact.getId())
+                .contact(contact)
+                .timestamp(contact.getLastModifiedDateTime()));
+    }
+
+    /**
+     * Logs the update of a contact.
+     *
+     * @param previousState JSON of the contact before the update, {@code null} if it wasn't known
+     * @param contact       updated contact
+     * @return sequence of the change
+     */
+    public long recordUpdate(JsonValue previousState, Contact contact) {
+
+        if (previousState == null) {
+            return recordCreation(contact);
+        }
+
+        JsonValue state = mapper.convertValue(contact, JsonValue.class);
+        JsonArrayBuilder patch = Json.createArrayBuilder(
+                JsonPatchDiff.diff((JsonStructure) previousState, (JsonStructure) state).toJsonArray());
+        patch.add(0, Json.createObjectBuilder()
+                .add("op", "test")
+                .add("path", "/lastModifiedDateTime")
+                .add("value", previousState.asJsonObject().getOrDefault("lastModifiedDateTime", JsonValue.NULL)));
+
+        return append(ReplicationEntry.builder()
+                .type(Type.PATCH)
+                .id(contact.getId())
+                .patch(patch.build())
+                .timestamp(contact.getLastModifiedDateTime()));
+    }
+
+    /**
+     * Logs the deletion of a contact.
+     *
+     * @param id        id of the deleted contact
+     * @param timestamp when the contact was deleted
+     * @return sequence of the change
+     */
+    public long recordDeletion(Long id, OffsetDateTime timestamp) {
+        return append(ReplicationEntry.builder()
+                .type(Type.DELETE)
+                .id(id)
+                .timestamp(timestamp));
+    }
+
+    /**
+     * Tells whether the changes following a sequence are still retained.
+     *
+     * @param epoch    epoch the sequence belongs to
+     * @param sequence sequence of the latest change a replica has applied
+     * @return {@code true} if the replica can catch up from the log
+     */
+    public synchronized boolean retains(String epoch, long sequence) {
+        return this.epoch.equals(epoch) && sequence >= lastSequence - entries.length && sequence <= lastSequence;
+    }
+
+    /**
+     * Returns the changes following a sequence, waiting for one if there isn't any yet.
+     *
+     * @param sequence sequence of the latest change a replica has applied
+     * @param max      maximum number of changes to return
+     * @param timeout  how long to wait for a change
+     * @return serialized changes, one line each, or nothing if none was made within the timeout
+     * @throws IllegalStateException if the changes following the sequence are no longer retained
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public synchronized List<byte[]> read(long sequence, int max, Duration timeout) throws InterruptedException {
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (lastSequence == sequence) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return List.of();
+            }
+            wait(Math.max(1, remaining / 1_000_000));
+        }
+        if (!retains(epoch, sequence)) {
+            throw new IllegalStateException("Changes following " + sequence + " are no longer retained");
+        }
+
+        List<byte[]> lines = new ArrayList<>();
+        for (long next = sequence + 1; next <= lastSequence && lines.size() < max; next++) {
+            lines.add(entries[(int) (next % entries.length)]);
+        }
+        return lines;
+    }
+
+    /**
+     * Serializes a heartbeat telling replicas the latest sequence.
+     *
+     * @return heartbeat line
+     */
+    public byte[] heartbeat() {
+        return serialize(ReplicationEntry.builder()
+                .type(Type.HEARTBEAT)
+                .sequence(lastSequence())
+                .timestamp(OffsetDateTime.now(ZoneOffset.UTC))
+                .build());
+    }
+
+    private long append(ReplicationEntry.ReplicationEntryBuilder builder) {
+
+        byte[] line;
+        ReplicationEntry entry;
+        synchronized (this) {
+            entry = builder.sequence(lastSequence + 1).build();
+            line = serialize(entry);
+            entries[(int) (entry.getSequence() % entries.length)] = line;
+            lastSequence = entry.getSequence();
+            notifyAll();
+        }
+        entrySizes.get(entry.getType()).record(line.length);
+        return entry.getSequence();
+    }
+
+    private byte[] serialize(ReplicationEntry entry) {
+        try {
+            byte[] json = mapper.writeValueAsBytes(entry);
+            byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            return line;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Contacts of the primary replicas start from, reflecting at least the changes up to a sequence.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicationSnapshot {
+
+    private String epoch;
+
+    private long sequence;
+
+    private List<Contact> contacts;
+}
@@ -0,0 +1,27 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.service.ContactIdGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ContactIdGenerator} that generates ids in sequence, for a single node.
+ */
+@Component
+@ConditionalOnProperty(name = "contacts.partitioning.enabled", havingValue = "false", matchIfMissing = true)
+public class SequentialContactIdGenerator implements ContactIdGenerator {
+
+    private final AtomicLong lastId = new AtomicLong();
+
+    @Override
+    public long nextId() {
+        return lastId.incrementAndGet();
+    }
+
+    @Override
+    public void advancePast(long id) {
+        lastId.accumulateAndGet(id, Math::max);
+    }
+}
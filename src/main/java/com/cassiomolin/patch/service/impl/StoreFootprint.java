@@ -0,0 +1,155 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.FootprintProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactStore;
+import com.cassiomolin.patch.service.impl.ContactFootprint.Part;
+import com.cassiomolin.patch.service.impl.FootprintReport.Distribution;
+import com.cassiomolin.patch.service.impl.FootprintReport.LargestContact;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Estimates the heap footprint of the contacts of the store, whichever store is active, exposing it as the
+ * {@code footprint} actuator endpoint and, refreshed periodically, as the {@code contacts.footprint.*} metrics.
+ * <p>
+ * Unless an exact estimate is asked for, at most {@link FootprintProperties#getSampleSize()} contacts picked at random
+ * are measured, and their footprint is extrapolated to the whole store. They are picked by the store, so that a store
+ * that doesn't keep its contacts in memory only loads the picked ones. The structures the store keeps its contacts
+ * in, such as lists and maps, aren't counted.
+ */
+@Component
+@Endpoint(id = "footprint")
+@ConditionalOnProperty(name = "contacts.footprint.enabled", havingValue = "true")
+public class StoreFootprint {
+
+    private final ContactService store;
+
+    private final FootprintProperties properties;
+
+    private final ObjectLayout layout;
+
+    private volatile FootprintReport latest;
+
+    @Autowired
+    public StoreFootprint(@ContactStore ContactService store, FootprintProperties properties, MeterRegistry registry) {
+        this(store, properties, registry, ObjectLayout.CURRENT);
+    }
+
+    StoreFootprint(ContactService store, FootprintProperties properties, MeterRegistry registry, ObjectLayout layout) {
+        this.store = store;
+        this.properties = properties;
+        this.layout = layout;
+
+        for (Part part : Part.values()) {
+            gauge(registry, "contacts.footprint.bytes", report -> report.getParts().get(part.tag))
+                    .description("Estimated heap bytes of the contacts of the store, by part")
+                    .tag("part", part.tag)
+                    .register(registry);
+        }
+        gauge(registry, "contacts.footprint.contacts", FootprintReport::getContacts)
+                .description("Contacts of the store when their footprint was last estimated")
+                .register(registry);
+        Map<String, ToDoubleFunction<Distribution>> statistics = Map.of(
+                "mean", Distribution::getMean,
+                "p50", Distribution::getP50,
+                "p90", Distribution::getP90,
+                "p99", Distribution::getP99,
+                "max", Distribution::getMax);
+        statistics.forEach((statistic, value) -> gauge(registry, "contacts.footprint.contact.bytes",
+                report -> value.applyAsDouble(report.getPerContact()))
+                .description("Estimated heap bytes of a contact")
+                .tag("statistic", statistic)
+                .register(registry));
+    }
+
+    private Gauge.Builder<StoreFootprint> gauge(MeterRegistry registry, String name,
+                                                ToDoubleFunction<FootprintReport> value) {
+        return Gauge.builder(name, this, footprint -> {
+            FootprintReport report = footprint.latest;
+            return report == null ? Double.NaN : value.applyAsDouble(report);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "#{@footprintProperties.interval.toMillis()}",
+            initialDelayString = "#{@footprintProperties.interval.toMillis()}")
+    public void refresh() {
+        estimate(false);
+    }
+
+    /**
+     * Estimates the footprint of the contacts of the store.
+     *
+     * @param exact whether every contact is measured, rather than a sample of them
+     * @return footprint of the contacts
+     */
+    @ReadOperation
+    public FootprintReport footprint(@Nullable Boolean exact) {
+        return estimate(Boolean.TRUE.equals(exact));
+    }
+
+    FootprintReport estimate(boolean exact) {
+
+        List<Contact> contacts = exact ? store.findContacts() : store.sampleContacts(properties.getSampleSize());
+        int count = exact ? contacts.size() : Math.max(store.countContacts(), contacts.size());
+        boolean measuredAll = exact || contacts.size() >= count;
+        List<ContactFootprint> footprints = contacts.stream()
+                .filter(Objects::nonNull)
+                .map(contact -> ContactFootprint.of(contact, layout))
+                .collect(toList());
+
+        double scale = footprints.isEmpty() ? 0 : (double) count / footprints.size();
+        Map<String, Long> parts = new LinkedHashMap<>();
+        long bytes = 0;
+        for (Part part : Part.values()) {
+            long partBytes = Math.round(scale * footprints.stream().mapToLong(footprint -> footprint.bytes(part)).sum());
+            parts.put(part.tag, partBytes);
+            bytes += partBytes;
+        }
+
+        long[] sizes = footprints.stream().mapToLong(ContactFootprint::total).sorted().toArray();
+        FootprintReport report = FootprintReport.builder()
+                .exact(measuredAll)
+                .contacts(count)
+                .measured(footprints.size())
+                .bytes(bytes)
+                .parts(parts)
+                .perContact(Distribution.builder()
+                        .mean(Math.round(Arrays.stream(sizes).average().orElse(0)))
+                        .p50(percentile(sizes, 0.5))
+                        .p90(percentile(sizes, 0.9))
+                        .p99(percentile(sizes, 0.99))
+                        .max(percentile(sizes, 1))
+                        .build())
+                .largest(footprints.stream()
+                        .sorted(Comparator.comparingLong(ContactFootprint::total).reversed())
+                        .limit(properties.getTop())
+                        .map(footprint -> new LargestContact(footprint.getId(), footprint.total()))
+                        .collect(toList()))
+                .build();
+        latest = report;
+        return report;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+}
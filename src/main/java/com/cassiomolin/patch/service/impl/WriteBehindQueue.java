@@ -0,0 +1,263 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.WriteBehindProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactJournal;
+import com.cassiomolin.patch.web.util.JsonCodecs;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists changes to the in-memory contact store in the background.
+ * <p>
+ * Changes are queued and acknowledged right away. A single writer thread commits them to the {@link ContactJournal}
+ * in groups, bounded by {@link WriteBehindProperties#getMaxBatchSize()} and {@link WriteBehindProperties#getMaxDelay()}.
+ * Several changes to the same contact waiting in the queue are coalesced into its latest state.
+ * <p>
+ * A group that fails to be written is queued again, behind any later change to the same contacts, and retried after
+ * {@link WriteBehindProperties#getRetryDelay()}, while those waiting for it to be durable are told of the failure.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "contacts.write-behind.enabled", havingValue = "true")
+public class WriteBehindQueue {
+
+    private final ContactJournal journal;
+
+    private final JsonCodecs codecs;
+
+    private final WriteBehindProperties properties;
+
+    private final Timer flushTimer;
+
+    private final DistributionSummary flushSize;
+
+    private final Object lock = new Object();
+
+    private Map<Long, Contact> pending = new LinkedHashMap<>();
+
+    private long pendingSince;
+
+    private long retryAt = System.nanoTime();
+
+    private CompletableFuture<Void> pendingFlush = new CompletableFuture<>();
+
+    private CompletableFuture<Void> inFlightFlush = CompletableFuture.completedFuture(null);
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public WriteBehindQueue(ContactJournal journal, JsonCodecs codecs, WriteBehindProperties properties,
+                            MeterRegistry registry) {
+
+        this.journal = journal;
+        this.codecs = codecs;
+        this.properties = properties;
+
+        Gauge.builder("contacts.write-behind.queue.depth", this, WriteBehindQueue::depth)
+                .description("Contacts waiting to be persisted")
+                .register(registry);
+        this.flushTimer = Timer.builder("contacts.write-behind.flush")
+                .description("Time taken to durably write a group of changes")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.flushSize = DistributionSummary.builder("contacts.write-behind.flush.size")
+                .description("Contacts written in a group of changes")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "contact-write-behind");
+        writer.start();
+    }
+
+    /**
+     * Stops the writer once every queued change has been written.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        writer.join();
+    }
+
+    /**
+     * Reads the persisted contacts, so that the in-memory store can be restored.
+     *
+     * @return persisted contacts
+     * @throws IOException if the journal cannot be read
+     */
+    public Collection<Contact> recover() throws IOException {
+        return journal.read();
+    }
+
+    /**
+     * Queues the current state of a contact.
+     *
+     * @param contact created or updated contact
+     */
+    public void enqueue(Contact contact) {
+        // The contact is copied, as it may change before it's written
+        put(contact.getId(), codecs.copy(contact, Contact.class));
+    }
+
+    /**
+     * Queues the deletion of a contact.
+     *
+     * @param id id of the deleted contact
+     */
+    public void enqueueDeletion(Long id) {
+        put(id, null);
+    }
+
+    /**
+     * Returns a future that completes once every change queued so far has been written, or completes exceptionally
+     * if they failed to be written, in which case they are retried.
+     *
+     * @return future completing once the queued changes are durable
+     */
+    public CompletableFuture<Void> durable() {
+        synchronized (lock) {
+            return pending.isEmpty() ? inFlightFlush : pendingFlush;
+        }
+    }
+
+    /**
+     * Returns the number of contacts waiting to be written.
+     *
+     * @return queue depth
+     */
+    public int depth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private void put(Long id, Contact contact) {
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                pendingSince = System.nanoTime();
+            }
+            pending.remove(id);
+            pending.put(id, contact);
+            if (pending.size() == 1 || pending.size() >= properties.getMaxBatchSize()) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+
+            Map<Long, Contact> batch;
+            CompletableFuture<Void> flush;
+
+            synchronized (lock) {
+                try {
+                    awaitBatch();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                if (pending.size() <= properties.getMaxBatchSize()) {
+                    batch = pending;
+                    flush = pendingFlush;
+                    pending = new LinkedHashMap<>();
+                    pendingFlush = new CompletableFuture<>();
+                } else {
+                    batch = takeOldest(properties.getMaxBatchSize());
+                    flush = new CompletableFuture<>();
+                }
+                inFlightFlush = flush;
+            }
+
+            long start = System.nanoTime();
+            try {
+                journal.write(batch);
+                flush.complete(null);
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    log.error("Failed to persist {} contacts, retrying in {}", batch.size(),
+                            properties.getRetryDelay(), e);
+                    requeue(batch);
+                } else {
+                    log.error("Failed to persist {} contacts while stopping", batch.size(), e);
+                }
+                flush.completeExceptionally(e);
+            }
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushSize.record(batch.size());
+        }
+    }
+
+    /**
+     * Queues a group that failed to be written again, ahead of the changes queued since, unless they supersede it.
+     */
+    private void requeue(Map<Long, Contact> batch) {
+        synchronized (lock) {
+            Map<Long, Contact> requeued = new LinkedHashMap<>(batch);
+            pending.forEach((id, contact) -> {
+                requeued.remove(id);
+                requeued.put(id, contact);
+            });
+            if (pending.isEmpty()) {
+                pendingSince = System.nanoTime();
+            }
+            pending = requeued;
+            retryAt = System.nanoTime() + properties.getRetryDelay().toNanos();
+        }
+    }
+
+    private Map<Long, Contact> takeOldest(int count) {
+        Map<Long, Contact> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<Long, Contact>> iterator = pending.entrySet().iterator();
+        while (batch.size() < count) {
+            Map.Entry<Long, Contact> entry = iterator.next();
+            batch.put(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+        return batch;
+    }
+
+    private void awaitBatch() throws InterruptedException {
+        while (running) {
+            if (pending.isEmpty()) {
+                lock.wait();
+                continue;
+            }
+            long untilRetry = retryAt - System.nanoTime();
+            if (untilRetry > 0) {
+                TimeUnit.NANOSECONDS.timedWait(lock, untilRetry);
+                continue;
+            }
+            long remaining = properties.getMaxDelay().toNanos() - (System.nanoTime() - pendingSince);
+            if (remaining <= 0 || pending.size() >= properties.getMaxBatchSize()) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+        }
+    }
+}
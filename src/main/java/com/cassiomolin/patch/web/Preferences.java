@@ -0,0 +1,61 @@
+package com.cassiomolin.patch.web;
+
+import java.util.regex.Pattern;
+
+/**
+ * Preferences clients can express with the {@code Prefer} header (RFC 7240).
+ */
+public final class Preferences {
+
+    public static final String PREFER = "Prefer";
+
+    public static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+    /**
+     * Wait until the change has reached durable storage before responding.
+     */
+    public static final String DURABILITY_FSYNC = "durability=fsync";
+
+    /**
+     * Return the resource state resulting from the request in the response body.
+     */
+    public static final String RETURN_REPRESENTATION = "return=representation";
+
+    /**
+     * Return a minimal response with no body.
+     */
+    public static final String RETURN_MINIMAL = "return=minimal";
+
+    private static final Pattern ELEMENT_SEPARATOR = Pattern.compile(",");
+
+    private static final Pattern EQUALS_WITH_WHITESPACE = Pattern.compile("\\s*=\\s*");
+
+    private Preferences() {
+        throw new AssertionError("No instances of Preferences for you!");
+    }
+
+    /**
+     * Checks whether a {@code Prefer} header value contains a given preference. Preference parameters are ignored.
+     *
+     * @param prefer     {@code Prefer} header value, may be {@code null}
+     * @param preference preference, such as {@code durability=fsync}
+     * @return whether the preference has been expressed
+     */
+    public static boolean contains(String prefer, String preference) {
+
+        if (prefer == null) {
+            return false;
+        }
+
+        for (String element : ELEMENT_SEPARATOR.split(prefer)) {
+            int parameters = element.indexOf(';');
+            String token = parameters < 0 ? element : element.substring(0, parameters);
+            token = EQUALS_WITH_WHITESPACE.matcher(token.trim()).replaceAll("=").replace("\"", "");
+            if (token.equalsIgnoreCase(preference)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package com.cassiomolin.patch.web;
+
+/**
+ * Headers of the read-your-writes tokens of replication.
+ */
+public final class ReplicationHeaders {
+
+    /**
+     * Position in the replication log of the changes a response reflects: on the primary, at least the change a write
+     * has made, and on a replica, the changes applied when a read was served.
+     */
+    public static final String SEQUENCE = "Contacts-Sequence";
+
+    /**
+     * Position in the replication log a read on a replica must reflect, such as the {@value #SEQUENCE} of a previous
+     * write on the primary.
+     */
+    public static final String MIN_SEQUENCE = "Contacts-Min-Sequence";
+
+    private ReplicationHeaders() {
+        throw new AssertionError("No instances of ReplicationHeaders for you!");
+    }
+}
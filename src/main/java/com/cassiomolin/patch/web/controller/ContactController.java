@@ -2,24 +2,48 @@ package com.cassiomolin.patch.web.controller;
 
 import com.cassiomolin.patch.domain.Contact;
 import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.impl.ReplicationLog;
 import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.Preferences;
+import com.cassiomolin.patch.web.ReplicationHeaders;
 import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
 import com.cassiomolin.patch.web.mapper.ContactMapper;
 import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
 import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
-import com.cassiomolin.patch.web.util.PatchHelper;
+import com.cassiomolin.patch.web.util.ContactFragmentCache;
+import com.cassiomolin.patch.web.util.ContactFragments;
+import com.cassiomolin.patch.web.util.ContactPatchCoalescer;
+import com.cassiomolin.patch.web.util.ExecutionLanes;
+import com.cassiomolin.patch.web.util.ExecutionLanes.RequestClass;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import com.cassiomolin.patch.web.util.ResourceSchema;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.json.Json;
 import javax.json.JsonMergePatch;
+import javax.json.JsonObject;
 import javax.json.JsonPatch;
 import javax.validation.Valid;
 import java.net.URI;
+import java.time.OffsetDateTime;
 import java.util.List;
 
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Contacts API. Listing contacts is run on the bulk lane and everything else on the interactive lane, as async
+ * requests, so that large responses don't hold up single contact reads and writes. Listed contacts are written from
+ * their serialized resources, kept by the {@link ContactFragmentCache} until they change.
+ */
 @RestController
 @RequestMapping("/contacts")
 @RequiredArgsConstructor
@@ -29,85 +53,180 @@ public class ContactController {
 
     private final ContactService service;
 
-    private final PatchHelper patchHelper;
+    private final ContactPatchCoalescer patchCoalescer;
+
+    private final PatchMetrics patchMetrics;
+
+    private final ResourceSchema resourceSchema;
+
+    private final ExecutionLanes lanes;
+
+    private final ContactFragmentCache fragmentCache;
+
+    private final ObjectProvider<ReplicationLog> replicationLog;
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Void> updateContact(@Valid @RequestBody ContactResourceInput contactResource) {
+    public DeferredResult<ResponseEntity<Void>> updateContact(@Valid @RequestBody ContactResourceInput contactResource,
+                                                              @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
+
+        // The current request is only bound to the request thread
+        ServletUriComponentsBuilder locationBuilder = ServletUriComponentsBuilder.fromCurrentRequest();
 
-        Contact contact = mapper.asContact(contactResource);
-        Contact contactCreated = service.createContact(contact);
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
 
-        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
-                .path("/{id}")
-                .buildAndExpand(contactCreated.getId())
-                .toUri();
+            Contact contact = mapper.asContact(contactResource);
+            Contact contactCreated = service.createContact(contact);
 
-        return ResponseEntity.created(location).build();
+            URI location = locationBuilder
+                    .path("/{id}")
+                    .buildAndExpand(contactCreated.getId())
+                    .toUri();
+
+            return ResponseEntity.created(location).headers(writeHeaders(prefer)).build();
+        });
     }
 
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<ContactResourceOutput>> findContacts() {
+    public DeferredResult<ResponseEntity<ContactFragments>> findContacts() {
+
+        return lanes.submit(RequestClass.BULK, () -> {
 
-        List<Contact> contacts = service.findContacts();
-        List<ContactResourceOutput> contactResources = mapper.asOutput(contacts);
+            List<Contact> contacts = service.findContacts();
+            ContactFragments contactResources = fragmentCache.fragments(contacts);
 
-        return ResponseEntity.ok(contactResources);
+            return ResponseEntity.ok(contactResources);
+        });
     }
 
     @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ContactResourceOutput> findContact(@PathVariable Long id) {
+    public DeferredResult<ResponseEntity<ContactResourceOutput>> findContact(@PathVariable Long id) {
+
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
+
+            Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
+            ContactResourceOutput contactResource = mapper.asOutput(contact);
+
+            return ResponseEntity.ok(contactResource);
+        });
+    }
+
+    @GetMapping(path = "/{id}", params = "asOf", produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<ContactResourceOutput>> findContact(@PathVariable Long id,
+                                                                             @RequestParam @DateTimeFormat(iso = ISO.DATE_TIME) OffsetDateTime asOf) {
 
-        Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        ContactResourceOutput contactResource = mapper.asOutput(contact);
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
 
-        return ResponseEntity.ok(contactResource);
+            Contact contact = service.findContact(id, asOf).orElseThrow(ResourceNotFoundException::new);
+            ContactResourceOutput contactResource = mapper.asOutput(contact);
+
+            return ResponseEntity.ok(contactResource);
+        });
     }
 
     @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Void> updateContact(@PathVariable Long id,
-                                              @RequestBody @Valid ContactResourceInput contactResource) {
+    public DeferredResult<ResponseEntity<ContactResourceOutput>> updateContact(@PathVariable Long id,
+                                                                               @RequestBody @Valid ContactResourceInput contactResource,
+                                                                               @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
+
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
 
-        Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        mapper.update(contact, contactResource);
-        service.updateContact(contact);
+            Contact contact = patchCoalescer.replace(id, contactResource);
 
-        return ResponseEntity.noContent().build();
+            return updated(contact, prefer);
+        });
     }
 
     @PatchMapping(path = "/{id}", consumes = PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
-    public ResponseEntity<Void> updateContact(@PathVariable Long id,
-                                              @RequestBody JsonPatch patchDocument) {
+    public DeferredResult<ResponseEntity<ContactResourceOutput>> updateContact(@PathVariable Long id,
+                                                                               @RequestBody JsonPatch patchDocument,
+                                                                               @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
 
-        Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        ContactResourceInput contactResource = mapper.asInput(contact);
-        ContactResourceInput contactResourcePatched = patchHelper.patch(patchDocument, contactResource, ContactResourceInput.class);
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
 
-        mapper.update(contact, contactResourcePatched);
-        service.updateContact(contact);
+            Contact contact = patchMetrics.request(() -> patchCoalescer.patch(id, patchDocument));
 
-        return ResponseEntity.noContent().build();
+            return updated(contact, prefer);
+        });
     }
 
     @PatchMapping(path = "/{id}", consumes = PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
-    public ResponseEntity<Void> updateContact(@PathVariable Long id,
-                                              @RequestBody JsonMergePatch mergePatchDocument) {
+    public DeferredResult<ResponseEntity<ContactResourceOutput>> updateContact(@PathVariable Long id,
+                                                                               @RequestBody JsonMergePatch mergePatchDocument,
+                                                                               @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
+
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
+
+            Contact contact = patchMetrics.request(() -> patchCoalescer.mergePatch(id, mergePatchDocument));
+
+            return updated(contact, prefer);
+        });
+    }
+
+    @PostMapping(path = "/{id}/merge-patches", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<ContactResourceOutput>> updateContact(@PathVariable Long id,
+                                                                               @RequestBody List<JsonObject> mergePatchDocuments,
+                                                                               @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
 
-        Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        ContactResourceInput contactResource = mapper.asInput(contact);
-        ContactResourceInput contactResourcePatched = patchHelper.mergePatch(mergePatchDocument, contactResource, ContactResourceInput.class);
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
 
-        mapper.update(contact, contactResourcePatched);
-        service.updateContact(contact);
+            Contact contact = patchMetrics.request(() -> {
+                mergePatchDocuments.forEach(resourceSchema::checkMergePatch);
+                List<JsonMergePatch> mergePatches = mergePatchDocuments.stream()
+                        .map(Json::createMergePatch)
+                        .collect(toList());
+                return patchCoalescer.mergePatch(id, mergePatches);
+            });
 
-        return ResponseEntity.noContent().build();
+            return updated(contact, prefer);
+        });
     }
 
     @DeleteMapping(path = "/{id}")
-    public ResponseEntity<Void> deleteContact(@PathVariable Long id) {
+    public DeferredResult<ResponseEntity<Void>> deleteContact(@PathVariable Long id,
+                                                              @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
+
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
+
+            patchCoalescer.delete(id);
+            fragmentCache.invalidate(id);
+
+            return ResponseEntity.noContent().headers(writeHeaders(prefer)).build();
+        });
+    }
+
+    /**
+     * Responds to an update with the updated contact when {@code return=representation} is preferred, mapped from the
+     * state that has just been written, or with no content otherwise. The serialized resource of the contact is dropped
+     * either way.
+     */
+    private ResponseEntity<ContactResourceOutput> updated(Contact contact, String prefer) {
+
+        fragmentCache.invalidate(contact.getId());
+        HttpHeaders headers = writeHeaders(prefer);
+        if (Preferences.contains(prefer, Preferences.RETURN_REPRESENTATION)) {
+            headers.add(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_REPRESENTATION);
+            return ResponseEntity.ok().headers(headers).body(mapper.asOutput(contact));
+        }
+        if (Preferences.contains(prefer, Preferences.RETURN_MINIMAL)) {
+            headers.add(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_MINIMAL);
+        }
+
+        return ResponseEntity.noContent().headers(headers).build();
+    }
+
+    /**
+     * Headers of the response to a write: the durability applied, and the sequence replicas must reach to reflect the
+     * write when this instance is a replication primary.
+     */
+    private HttpHeaders writeHeaders(String prefer) {
 
-        Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        service.deleteContact(contact);
+        HttpHeaders headers = new HttpHeaders();
+        replicationLog.ifAvailable(log -> headers.add(ReplicationHeaders.SEQUENCE, String.valueOf(log.lastSequence())));
+        if (Preferences.contains(prefer, Preferences.DURABILITY_FSYNC)) {
+            service.awaitDurability();
+            headers.add(Preferences.PREFERENCE_APPLIED, Preferences.DURABILITY_FSYNC);
+        }
 
-        return ResponseEntity.noContent().build();
+        return headers;
     }
 }
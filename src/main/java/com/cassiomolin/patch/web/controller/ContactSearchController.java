@@ -0,0 +1,77 @@
+package com.cassiomolin.patch.web.controller;
+
+import com.cassiomolin.patch.config.SearchProperties;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.impl.ContactSearchIndex;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.output.ContactSearchHitOutput;
+import com.cassiomolin.patch.web.resource.output.ContactSearchOutput;
+import com.cassiomolin.patch.web.util.ExecutionLanes;
+import com.cassiomolin.patch.web.util.ExecutionLanes.RequestClass;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Full-text and type-ahead search of contacts by name, work and notes, with ranked and paginated results.
+ */
+@RestController
+@RequestMapping("/contacts/search")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "contacts.search.enabled", havingValue = "true")
+public class ContactSearchController {
+
+    private final ContactSearchIndex searchIndex;
+
+    private final ContactService service;
+
+    private final ContactMapper mapper;
+
+    private final SearchProperties properties;
+
+    private final ExecutionLanes lanes;
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<ContactSearchOutput>> searchContacts(@RequestParam("q") String query,
+                                                                              @RequestParam(defaultValue = "0") int page,
+                                                                              @RequestParam(defaultValue = "20") int size) {
+
+        int pageNumber = Math.max(0, page);
+        int pageSize = Math.max(1, Math.min(size, properties.getMaxPageSize()));
+
+        return lanes.submit(RequestClass.INTERACTIVE, () -> {
+
+            ContactSearchIndex.Result result = searchIndex.search(query, pageNumber, pageSize);
+
+            // Contacts deleted since the search are left out
+            List<ContactSearchHitOutput> hits = result.getHits().stream()
+                    .map(hit -> service.findContact(hit.getContactId()).map(contact -> ContactSearchHitOutput.builder()
+                            .score(hit.getScore())
+                            .contact(mapper.asOutput(contact))
+                            .build()))
+                    .flatMap(Optional::stream)
+                    .collect(toList());
+
+            ContactSearchOutput output = ContactSearchOutput.builder()
+                    .query(query)
+                    .page(pageNumber)
+                    .size(pageSize)
+                    .total(result.getTotal())
+                    .results(hits)
+                    .build();
+
+            return ResponseEntity.ok(output);
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.cassiomolin.patch.web.controller;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.impl.PartitionHandover;
+import com.cassiomolin.patch.service.impl.PartitionMap;
+import com.cassiomolin.patch.service.impl.PartitionRebalancer;
+import com.cassiomolin.patch.service.impl.PartitionedContactService;
+import com.cassiomolin.patch.web.resource.output.PartitionMapOutput;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Endpoints the nodes of a partitioned cluster use to talk to each other. They work with the domain model, as they
+ * exchange contacts with their ids and dates.
+ */
+@RestController
+@RequestMapping("/partitions")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "contacts.partitioning.enabled", havingValue = "true")
+public class PartitionController {
+
+    private final PartitionMap partitionMap;
+
+    private final PartitionRebalancer rebalancer;
+
+    private final PartitionedContactService service;
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PartitionMapOutput> findPartitionMap() {
+
+        PartitionMapOutput partitionMapOutput = PartitionMapOutput.builder()
+                .self(partitionMap.self())
+                .partitions(partitionMap.partitions())
+                .partitionsByMember(partitionMap.partitionCounts())
+                .build();
+
+        return ResponseEntity.ok(partitionMapOutput);
+    }
+
+    @PostMapping(path = "/members", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Set<URI>> join(@RequestBody List<URI> members) {
+        return ResponseEntity.ok(rebalancer.join(members));
+    }
+
+    @GetMapping(path = "/contacts", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Contact>> findLocalContacts() {
+        return ResponseEntity.ok(service.findLocalContacts());
+    }
+
+    @PostMapping(path = "/contacts", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> receiveContacts(@RequestBody PartitionHandover handover) {
+        rebalancer.receive(handover);
+        return ResponseEntity.noContent().build();
+    }
+}
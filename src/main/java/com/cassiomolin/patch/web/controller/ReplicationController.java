@@ -0,0 +1,121 @@
+package com.cassiomolin.patch.web.controller;
+
+import com.cassiomolin.patch.config.ReplicationProperties;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import com.cassiomolin.patch.service.impl.ReplicationLog;
+import com.cassiomolin.patch.service.impl.ReplicationSnapshot;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Endpoints replicas use to follow the primary: a snapshot of its contacts, then the stream of the changes made since,
+ * as newline-delimited JSON. Each replica is streamed to by a thread of its own, which writes the changes as soon as
+ * they are logged, followed by a heartbeat.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/replication")
+@ConditionalOnProperty(name = "contacts.replication.role", havingValue = "primary")
+public class ReplicationController {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final ReplicationLog replicationLog;
+
+    private final DefaultContactService store;
+
+    private final ReplicationProperties properties;
+
+    private final AtomicInteger replicas = new AtomicInteger();
+
+    private final ExecutorService shippers = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("replication-shipper-%d").setDaemon(true).build());
+
+    public ReplicationController(ReplicationLog replicationLog, DefaultContactService store,
+                                 ReplicationProperties properties, MeterRegistry registry) {
+        this.replicationLog = replicationLog;
+        this.store = store;
+        this.properties = properties;
+        Gauge.builder("contacts.replication.replicas", replicas, AtomicInteger::get)
+                .description("Replicas following the changes of the primary")
+                .register(registry);
+    }
+
+    @GetMapping(path = "/snapshot", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ReplicationSnapshot> findSnapshot() {
+
+        // Read first, so that the contacts reflect at least the changes up to the sequence
+        long sequence = replicationLog.lastSequence();
+        ReplicationSnapshot snapshot = ReplicationSnapshot.builder()
+                .epoch(replicationLog.epoch())
+                .sequence(sequence)
+                .contacts(List.copyOf(store.findContacts()))
+                .build();
+
+        return ResponseEntity.ok(snapshot);
+    }
+
+    @GetMapping(path = "/stream", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamChanges(@RequestParam String epoch, @RequestParam long after) {
+
+        if (!replicationLog.retains(epoch, after)) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+        shippers.execute(() -> ship(emitter, after));
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(emitter);
+    }
+
+    @PreDestroy
+    public void stop() {
+        shippers.shutdownNow();
+    }
+
+    private void ship(ResponseBodyEmitter emitter, long after) {
+
+        replicas.incrementAndGet();
+        try {
+            long sequence = after;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<byte[]> lines = replicationLog.read(sequence, MAX_BATCH_SIZE, properties.getHeartbeatInterval());
+                ByteArrayOutputStream batch = new ByteArrayOutputStream();
+                for (byte[] line : lines) {
+                    batch.write(line);
+                }
+                batch.write(replicationLog.heartbeat());
+                emitter.send(batch.toByteArray());
+                sequence += lines.size();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The replica has gone away or fallen too far behind, and will reconnect
+            log.debug("Stopped streaming changes to a replica", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            replicas.decrementAndGet();
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.cassiomolin.patch.web.converter;
+
+import com.cassiomolin.patch.web.util.ContactFragments;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * HTTP message converter for {@link ContactFragments}, copying the serialized contact resources straight to the
+ * response.
+ * <p>
+ * Only supports {@code application/json} media type, and only for writing.
+ */
+@Component
+public class ContactFragmentsHttpMessageConverter extends AbstractHttpMessageConverter<ContactFragments> {
+
+    public ContactFragmentsHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ContactFragments.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected ContactFragments readInternal(Class<? extends ContactFragments> clazz, HttpInputMessage inputMessage)
+            throws HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("Contact fragments can't be read", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(ContactFragments fragments, MediaType contentType) {
+        return fragments.length();
+    }
+
+    @Override
+    protected void writeInternal(ContactFragments fragments, HttpOutputMessage outputMessage)
+            throws HttpMessageNotWritableException {
+
+        try {
+            fragments.writeTo(outputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotWritableException(e.getMessage(), e);
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.cassiomolin.patch.web.converter;
 
 import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import com.cassiomolin.patch.web.util.PatchMetrics.Failure;
+import com.cassiomolin.patch.web.util.PatchMetrics.Stage;
+import com.cassiomolin.patch.web.util.ResourceSchema;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.converter.AbstractHttpMessageConverter;
@@ -11,6 +16,7 @@ import org.springframework.stereotype.Component;
 import javax.json.Json;
 import javax.json.JsonMergePatch;
 import javax.json.JsonReader;
+import javax.json.JsonValue;
 import javax.json.JsonWriter;
 
 /**
@@ -21,8 +27,14 @@ import javax.json.JsonWriter;
 @Component
 public class JsonMergePatchHttpMessageConverter extends AbstractHttpMessageConverter<JsonMergePatch> {
 
-    public JsonMergePatchHttpMessageConverter() {
+    private final PatchMetrics metrics;
+
+    private final ResourceSchema schema;
+
+    public JsonMergePatchHttpMessageConverter(PatchMetrics metrics, ResourceSchema schema) {
         super(PatchMediaType.APPLICATION_MERGE_PATCH);
+        this.metrics = metrics;
+        this.schema = schema;
     }
 
     @Override
@@ -35,8 +47,16 @@ public class JsonMergePatchHttpMessageConverter extends AbstractHttpMessageConve
             throws HttpMessageNotReadableException {
 
         try (JsonReader reader = Json.createReader(inputMessage.getBody())) {
-            return Json.createMergePatch(reader.readValue());
+            return metrics.time(Stage.PARSE, () -> {
+                JsonValue mergePatch = reader.readValue();
+                schema.checkMergePatch(mergePatch);
+                return Json.createMergePatch(mergePatch);
+            });
+        } catch (PatchFailureException e) {
+            metrics.countFailure(e);
+            throw e;
         } catch (Exception e) {
+            metrics.countFailure(Failure.MALFORMED);
             throw new HttpMessageNotReadableException(e.getMessage(), inputMessage);
         }
     }
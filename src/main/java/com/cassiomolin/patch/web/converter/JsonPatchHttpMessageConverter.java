@@ -1,6 +1,11 @@
 package com.cassiomolin.patch.web.converter;
 
 import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import com.cassiomolin.patch.web.util.PatchMetrics.Failure;
+import com.cassiomolin.patch.web.util.PatchMetrics.Stage;
+import com.cassiomolin.patch.web.util.ResourceSchema;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.converter.AbstractHttpMessageConverter;
@@ -9,6 +14,7 @@ import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.stereotype.Component;
 
 import javax.json.Json;
+import javax.json.JsonArray;
 import javax.json.JsonPatch;
 import javax.json.JsonReader;
 import javax.json.JsonWriter;
@@ -21,8 +27,14 @@ import javax.json.JsonWriter;
 @Component
 public class JsonPatchHttpMessageConverter extends AbstractHttpMessageConverter<JsonPatch> {
 
-    public JsonPatchHttpMessageConverter() {
+    private final PatchMetrics metrics;
+
+    private final ResourceSchema schema;
+
+    public JsonPatchHttpMessageConverter(PatchMetrics metrics, ResourceSchema schema) {
         super(PatchMediaType.APPLICATION_JSON_PATCH);
+        this.metrics = metrics;
+        this.schema = schema;
     }
 
     @Override
@@ -35,8 +47,17 @@ public class JsonPatchHttpMessageConverter extends AbstractHttpMessageConverter<
             throws HttpMessageNotReadableException {
 
         try (JsonReader reader = Json.createReader(inputMessage.getBody())) {
-            return Json.createPatch(reader.readArray());
+            return metrics.time(Stage.PARSE, () -> {
+                JsonArray operations = reader.readArray();
+                metrics.countOperations(operations);
+                schema.checkPatch(operations);
+                return Json.createPatch(operations);
+            });
+        } catch (PatchFailureException e) {
+            metrics.countFailure(e);
+            throw e;
         } catch (Exception e) {
+            metrics.countFailure(Failure.MALFORMED);
             throw new HttpMessageNotReadableException(e.getMessage(), inputMessage);
         }
     }
@@ -0,0 +1,22 @@
+package com.cassiomolin.patch.web.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is rejected because the execution lane it belongs to is saturated.
+ */
+@Getter
+public class LaneSaturatedException extends RuntimeException {
+
+    private final String lane;
+
+    private final Duration retryAfter;
+
+    public LaneSaturatedException(String lane, Duration retryAfter) {
+        super("The " + lane + " lane is saturated", null, false, false);
+        this.lane = lane;
+        this.retryAfter = retryAfter;
+    }
+}
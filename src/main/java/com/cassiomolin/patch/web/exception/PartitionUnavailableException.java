@@ -0,0 +1,19 @@
+package com.cassiomolin.patch.web.exception;
+
+import lombok.Getter;
+
+import java.net.URI;
+
+/**
+ * Thrown when a node holding some of the contacts a request needs can't be reached.
+ */
+@Getter
+public class PartitionUnavailableException extends RuntimeException {
+
+    private final URI node;
+
+    public PartitionUnavailableException(URI node, Throwable cause) {
+        super("Node " + node + " is unavailable", cause);
+        this.node = node;
+    }
+}
@@ -0,0 +1,30 @@
+package com.cassiomolin.patch.web.exception;
+
+/**
+ * Reasons a patch cannot be applied to a resource.
+ */
+public enum PatchFailure {
+
+    BAD_POINTER("bad-pointer", "The patch refers to a location that does not exist in the resource"),
+    TEST_FAILED("test-failed", "A test operation of the patch failed"),
+    TYPE_MISMATCH("type-mismatch", "The patch refers to a location within a value that has no members"),
+    INVALID_PATCH("invalid-patch", "The patch cannot be applied to the resource");
+
+    private final String code;
+
+    private final String message;
+
+    PatchFailure(String code, String message) {
+        this.code = code;
+        this.message = message;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+}
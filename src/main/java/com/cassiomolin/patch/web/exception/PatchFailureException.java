@@ -0,0 +1,33 @@
+package com.cassiomolin.patch.web.exception;
+
+/**
+ * Thrown when a patch cannot be applied to a resource.
+ * <p>
+ * Clients sending invalid patches are expected, so no stack trace is captured: the {@link PatchFailure} tells what
+ * went wrong.
+ */
+public class PatchFailureException extends UnprocessableEntityException {
+
+    private final PatchFailure failure;
+
+    private final String pointer;
+
+    public PatchFailureException(PatchFailure failure, String pointer, String message) {
+        super(message, null, false);
+        this.failure = failure;
+        this.pointer = pointer;
+    }
+
+    public PatchFailure getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the JSON Pointer the failure refers to, when it's known.
+     *
+     * @return JSON Pointer, or {@code null}
+     */
+    public String getPointer() {
+        return pointer;
+    }
+}
@@ -9,4 +9,8 @@ public class UnprocessableEntityException extends RuntimeException {
     public UnprocessableEntityException(Throwable cause) {
         super(cause);
     }
+
+    protected UnprocessableEntityException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, false, writableStackTrace);
+    }
 }
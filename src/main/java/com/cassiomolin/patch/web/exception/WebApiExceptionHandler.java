@@ -3,8 +3,11 @@ package com.cassiomolin.patch.web.exception;
 
 import com.cassiomolin.patch.web.resource.error.ApiError;
 import com.cassiomolin.patch.web.resource.error.ApiResourcePropertyError;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -16,7 +19,10 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
@@ -24,6 +30,22 @@ import static java.util.stream.Collectors.toList;
 @ControllerAdvice
 public class WebApiExceptionHandler extends ResponseEntityExceptionHandler {
 
+    private static final HttpHeaders JSON_HEADERS = jsonHeaders();
+
+    private final Map<PatchFailure, byte[]> patchFailureBodies = new EnumMap<>(PatchFailure.class);
+
+    public WebApiExceptionHandler(ObjectMapper mapper) throws JsonProcessingException {
+
+        // Patch failures only depend on their reason, so their bodies are serialized once
+        for (PatchFailure failure : PatchFailure.values()) {
+            patchFailureBodies.put(failure, mapper.writeValueAsBytes(ApiError.builder()
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .code(failure.getCode())
+                    .message(failure.getMessage())
+                    .build()));
+        }
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex,
                                                                   HttpHeaders headers, HttpStatus status,
@@ -65,6 +87,52 @@ public class WebApiExceptionHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(ex, apiError, new HttpHeaders(), apiError.getStatus(), request);
     }
 
+    @ExceptionHandler(PatchFailureException.class)
+    public ResponseEntity<?> handlePatchFailure(PatchFailureException ex) {
+
+        if (ex.getPointer() == null) {
+            return new ResponseEntity<>(patchFailureBodies.get(ex.getFailure()), JSON_HEADERS, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .code(ex.getFailure().getCode())
+                .message(ex.getFailure().getMessage())
+                .details(Collections.singletonList(ApiResourcePropertyError.builder()
+                        .property(ex.getPointer())
+                        .message(ex.getMessage())
+                        .build()))
+                .build();
+
+        return new ResponseEntity<>(apiError, apiError.getStatus());
+    }
+
+    @ExceptionHandler(LaneSaturatedException.class)
+    public ResponseEntity<ApiError> handleLaneSaturated(LaneSaturatedException ex) {
+
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .code("lane-saturated")
+                .message(ex.getMessage())
+                .build();
+
+        return ResponseEntity.status(apiError.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter().getSeconds()))
+                .body(apiError);
+    }
+
+    @ExceptionHandler(PartitionUnavailableException.class)
+    public ResponseEntity<ApiError> handlePartitionUnavailable(PartitionUnavailableException ex) {
+
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .code("partition-unavailable")
+                .message(ex.getMessage())
+                .build();
+
+        return new ResponseEntity<>(apiError, apiError.getStatus());
+    }
+
     private ApiResourcePropertyError toResourcePropertyError(ConstraintViolation violation) {
 
         return ApiResourcePropertyError.builder()
@@ -82,4 +150,10 @@ public class WebApiExceptionHandler extends ResponseEntityExceptionHandler {
                 .invalidValue(fieldError.getRejectedValue())
                 .build();
     }
-}
\ No newline at end of file
+
+    private static HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+}
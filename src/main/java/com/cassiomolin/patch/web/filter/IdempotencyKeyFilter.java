@@ -0,0 +1,541 @@
+package com.cassiomolin.patch.web.filter;
+
+import com.cassiomolin.patch.config.IdempotencyProperties;
+import com.cassiomolin.patch.web.Preferences;
+import com.cassiomolin.patch.web.resource.error.ApiError;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Processes writes sent with an {@code Idempotency-Key} header only once.
+ * <p>
+ * The response to the first request with a given key is remembered, together with a fingerprint of the request, in a
+ * bounded cache whose entries expire after a while. Retries with the same key and the same request get the remembered
+ * response replayed, without going through the patch pipeline or the contact store again. A retry that arrives while
+ * the original request is still being processed waits for it to complete, in async mode when the request supports it,
+ * so that it doesn't hold a container thread meanwhile. Server errors are not remembered, so that they can be retried.
+ * Async requests are remembered once their async dispatch has completed the response. Bodies are buffered to
+ * fingerprint requests, so requests whose body exceeds {@link IdempotencyProperties#getMaxBodySize()} are rejected.
+ */
+@Component
+public class IdempotencyKeyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final String EXECUTION_ATTRIBUTE = IdempotencyKeyFilter.class.getName() + ".execution";
+
+    private static final String ATTEMPT_ATTRIBUTE = IdempotencyKeyFilter.class.getName() + ".attempt";
+
+    private static final Set<HttpMethod> WRITES = EnumSet.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH,
+            HttpMethod.DELETE);
+
+    private final IdempotencyProperties properties;
+
+    private final ObjectMapper mapper;
+
+    private final ConcurrentMap<String, Execution> executions;
+
+    private final Counter originals;
+
+    private final Counter replays;
+
+    private final Counter mismatches;
+
+    private final Counter conflicts;
+
+    public IdempotencyKeyFilter(IdempotencyProperties properties, ObjectMapper mapper, MeterRegistry registry) {
+
+        this.properties = properties;
+        this.mapper = mapper;
+
+        Cache<String, Execution> cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        this.executions = cache.asMap();
+
+        CaffeineCacheMetrics.monitor(registry, cache, "idempotency");
+        this.originals = requests(registry, "original");
+        this.replays = requests(registry, "replayed");
+        this.mismatches = requests(registry, "mismatch");
+        this.conflicts = requests(registry, "conflict");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        HttpMethod method = HttpMethod.resolve(request.getMethod());
+        return !properties.isEnabled() || method == null || !WRITES.contains(method)
+                || request.getHeader(IDEMPOTENCY_KEY) == null;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        // Dispatched again by a retry that waited for the original request in async mode
+        Attempt attempt = (Attempt) request.getAttribute(ATTEMPT_ATTRIBUTE);
+        if (attempt != null) {
+            request.removeAttribute(ATTEMPT_ATTRIBUTE);
+            if (attempt.timedOut) {
+                writeConflict(response);
+            } else {
+                deduplicate(attempt, request, response, chain);
+            }
+            return;
+        }
+
+        if (isAsyncDispatch(request)) {
+            Execution execution = (Execution) request.getAttribute(EXECUTION_ATTRIBUTE);
+            if (execution == null) {
+                chain.doFilter(request, response);
+            } else {
+                execute(execution, request, response, chain);
+            }
+            return;
+        }
+
+        String key = request.getHeader(IDEMPOTENCY_KEY);
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST, "invalid-idempotency-key",
+                    "The Idempotency-Key header must have between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        // Read up to one byte past the limit, to tell bodies that exceed it without a content length
+        long maxBodySize = properties.getMaxBodySize().toBytes();
+        if (request.getContentLengthLong() > maxBodySize) {
+            writeTooLarge(response, maxBodySize);
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes((int) Math.min(maxBodySize + 1, Integer.MAX_VALUE - 8));
+        if (body.length > maxBodySize) {
+            writeTooLarge(response, maxBodySize);
+            return;
+        }
+
+        deduplicate(new Attempt(key, body, fingerprint(request, body)), request, response, chain);
+    }
+
+    private void deduplicate(Attempt attempt, HttpServletRequest request, HttpServletResponse response,
+                             FilterChain chain) throws ServletException, IOException {
+
+        while (true) {
+
+            Execution execution = new Execution(attempt.key, attempt.fingerprint);
+            Execution original = executions.putIfAbsent(attempt.key, execution);
+
+            if (original == null) {
+                originals.increment();
+                execute(execution, new BufferedBodyRequest(request, attempt.body), response, chain);
+                return;
+            }
+
+            if (!Arrays.equals(original.fingerprint, attempt.fingerprint)) {
+                mismatches.increment();
+                writeError(response, HttpStatus.UNPROCESSABLE_ENTITY, "idempotency-key-reused",
+                        "The Idempotency-Key has already been used for a different request");
+                return;
+            }
+
+            if (!original.response.isDone() && request.isAsyncSupported()) {
+                awaitAsync(original, attempt, request, response);
+                return;
+            }
+
+            RecordedResponse recorded;
+            try {
+                recorded = original.response.get(properties.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            } catch (TimeoutException e) {
+                writeConflict(response);
+                return;
+            } catch (ExecutionException e) {
+                // The original request failed and has been forgotten, so this one can take its place
+                continue;
+            }
+
+            replays.increment();
+            recorded.replay(response);
+            return;
+        }
+    }
+
+    /**
+     * Releases the container thread while the original request is being processed, and dispatches the retry again
+     * once the original request has completed, or once the wait has timed out.
+     */
+    private void awaitAsync(Execution original, Attempt attempt, HttpServletRequest request,
+                            HttpServletResponse response) {
+
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(properties.getWaitTimeout().toMillis());
+        request.setAttribute(ATTEMPT_ATTRIBUTE, attempt);
+
+        AtomicBoolean resumed = new AtomicBoolean();
+        asyncContext.addListener(new WaitTimeoutListener(attempt, resumed));
+        original.response.whenComplete((recorded, failure) -> {
+            if (resumed.compareAndSet(false, true)) {
+                asyncContext.dispatch();
+            }
+        });
+    }
+
+    private void execute(Execution execution, HttpServletRequest request, HttpServletResponse response,
+                         FilterChain chain) throws ServletException, IOException {
+
+        // The async dispatch gets the wrapper of the original dispatch
+        ContentCachingResponseWrapper responseWrapper =
+                WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        if (responseWrapper == null) {
+            responseWrapper = new ContentCachingResponseWrapper(response);
+        }
+
+        try {
+            chain.doFilter(request, responseWrapper);
+        } catch (Throwable e) {
+            forget(execution, e);
+            throw e;
+        }
+
+        if (isAsyncStarted(request)) {
+            request.setAttribute(EXECUTION_ATTRIBUTE, execution);
+            request.getAsyncContext().addListener(new AbandonedExecutionListener(execution));
+            return;
+        }
+
+        if (responseWrapper.getStatus() >= 500) {
+            forget(execution, new IllegalStateException("Request failed with " + responseWrapper.getStatus()));
+        } else {
+            execution.response.complete(RecordedResponse.of(responseWrapper));
+        }
+        responseWrapper.copyBodyToResponse();
+    }
+
+    private void forget(Execution execution, Throwable cause) {
+        executions.remove(execution.key, execution);
+        execution.response.completeExceptionally(cause);
+    }
+
+    private void writeConflict(HttpServletResponse response) throws IOException {
+        conflicts.increment();
+        writeError(response, HttpStatus.CONFLICT, "idempotency-key-in-use",
+                "A request with the same Idempotency-Key is still being processed");
+    }
+
+    private void writeTooLarge(HttpServletResponse response, long maxBodySize) throws IOException {
+        writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, "idempotent-request-too-large",
+                "Requests sent with an Idempotency-Key can't have a body of more than " + maxBodySize + " bytes");
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String code, String message)
+            throws IOException {
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        mapper.writeValue(response.getOutputStream(), ApiError.builder()
+                .status(status)
+                .code(code)
+                .message(message)
+                .build());
+    }
+
+    private static byte[] fingerprint(HttpServletRequest request, byte[] body) {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        for (String part : new String[]{request.getMethod(), request.getRequestURI(), request.getQueryString(),
+                request.getContentType(), request.getHeader(Preferences.PREFER)}) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return digest.digest(body);
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("contacts.idempotency.requests")
+                .description("Writes sent with an Idempotency-Key, by whether they were processed or replayed")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Request with a given idempotency key, and the response to it once it's been processed.
+     */
+    private static class Execution {
+
+        private final String key;
+
+        private final byte[] fingerprint;
+
+        private final CompletableFuture<RecordedResponse> response = new CompletableFuture<>();
+
+        private Execution(String key, byte[] fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Retry of a request with a given idempotency key, with its buffered body, kept while it waits for the original
+     * request in async mode.
+     */
+    private static class Attempt {
+
+        private final String key;
+
+        private final byte[] body;
+
+        private final byte[] fingerprint;
+
+        private volatile boolean timedOut;
+
+        private Attempt(String key, byte[] body, byte[] fingerprint) {
+            this.key = key;
+            this.body = body;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Dispatches a retry waiting for the original request in async mode once the wait has timed out, so that it's
+     * answered with a conflict.
+     */
+    private static class WaitTimeoutListener implements AsyncListener {
+
+        private final Attempt attempt;
+
+        private final AtomicBoolean resumed;
+
+        private WaitTimeoutListener(Attempt attempt, AtomicBoolean resumed) {
+            this.attempt = attempt;
+            this.resumed = resumed;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (resumed.compareAndSet(false, true)) {
+                attempt.timedOut = true;
+                event.getAsyncContext().dispatch();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * Forgets an async request if it ends without its async dispatch having recorded a response, for instance when the
+     * client goes away, so that retries don't wait for it.
+     */
+    private class AbandonedExecutionListener implements AsyncListener {
+
+        private final Execution execution;
+
+        private AbandonedExecutionListener(Execution execution) {
+            this.execution = execution;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (!execution.response.isDone()) {
+                forget(execution, new IllegalStateException("Async request ended without a response"));
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * Status, headers and body of a response, to be replayed.
+     */
+    private static class RecordedResponse {
+
+        private final int status;
+
+        private final Map<String, List<String>> headers;
+
+        private final byte[] body;
+
+        private RecordedResponse(int status, Map<String, List<String>> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        private static RecordedResponse of(ContentCachingResponseWrapper response) {
+
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (String name : response.getHeaderNames()) {
+                headers.putIfAbsent(name, new ArrayList<>(response.getHeaders(name)));
+            }
+            if (response.getContentType() != null) {
+                headers.put(HttpHeaders.CONTENT_TYPE, List.of(response.getContentType()));
+            }
+
+            return new RecordedResponse(response.getStatus(), headers, response.getContentAsByteArray());
+        }
+
+        private void replay(HttpServletResponse response) throws IOException {
+
+            response.setStatus(status);
+            headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+            response.setHeader(IDEMPOTENT_REPLAYED, "true");
+            if (body.length > 0) {
+                response.setContentLength(body.length);
+                response.getOutputStream().write(body);
+            }
+        }
+    }
+
+    /**
+     * Request whose body has already been read, so that it can be read again.
+     */
+    private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // The whole body is already in memory, so that it can be read right away without blocking
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8.name() : encoding));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
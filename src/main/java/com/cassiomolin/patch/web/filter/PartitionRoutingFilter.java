@@ -0,0 +1,186 @@
+package com.cassiomolin.patch.web.filter;
+
+import com.cassiomolin.patch.service.impl.PartitionClient;
+import com.cassiomolin.patch.service.impl.PartitionMap;
+import com.cassiomolin.patch.web.exception.PartitionUnavailableException;
+import com.cassiomolin.patch.web.resource.error.ApiError;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Forwards requests about a single contact to the node owning it, when partitioning is enabled.
+ * <p>
+ * The request is sent as is to the owner, marked as forwarded, and its response is copied back. A forwarded request is
+ * never forwarded again: if it reaches a node that doesn't own the contact, because the nodes don't agree on the
+ * assignment of partitions while a node is joining, it's rejected with a {@code 503} to be retried.
+ * <p>
+ * Until this node has joined the cluster, requests about contacts are rejected with a {@code 503} as well, as it would
+ * otherwise serve and create every contact itself.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+@ConditionalOnProperty(name = "contacts.partitioning.enabled", havingValue = "true")
+public class PartitionRoutingFilter extends OncePerRequestFilter {
+
+    private static final Pattern CONTACTS_PATH = Pattern.compile("^/contacts(/.*)?$");
+
+    private static final Pattern CONTACT_PATH = Pattern.compile("^/contacts/(\\d+)(/.*)?$");
+
+    // Headers that only apply to a single connection, or that the HTTP client and the servlet container set themselves
+    private static final Set<String> UNFORWARDED_HEADERS = caseInsensitive(HttpHeaders.CONNECTION,
+            HttpHeaders.CONTENT_LENGTH, HttpHeaders.DATE, HttpHeaders.EXPECT, HttpHeaders.FROM, HttpHeaders.HOST,
+            HttpHeaders.TRANSFER_ENCODING, HttpHeaders.UPGRADE, HttpHeaders.TE, HttpHeaders.TRAILER, HttpHeaders.VIA,
+            HttpHeaders.WARNING, HttpHeaders.PROXY_AUTHORIZATION, "Keep-Alive");
+
+    private final PartitionMap partitionMap;
+
+    private final PartitionClient client;
+
+    private final ObjectMapper mapper;
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final Counter local;
+
+    private final Counter forwarded;
+
+    private final Counter misdirected;
+
+    public PartitionRoutingFilter(PartitionMap partitionMap, PartitionClient client, ObjectMapper mapper,
+                                  MeterRegistry registry) {
+        this.partitionMap = partitionMap;
+        this.client = client;
+        this.mapper = mapper;
+        this.local = requests(registry, "local");
+        this.forwarded = requests(registry, "forwarded");
+        this.misdirected = requests(registry, "misdirected");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String path = urlPathHelper.getPathWithinApplication(request);
+        if (!partitionMap.joined() && CONTACTS_PATH.matcher(path).matches()) {
+            writeError(response, "partition-joining", "This node is joining the cluster");
+            return;
+        }
+
+        Matcher matcher = CONTACT_PATH.matcher(path);
+        URI owner = matcher.matches() ? ownerOf(matcher.group(1)) : null;
+        if (owner == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (owner.equals(partitionMap.self())) {
+            local.increment();
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (request.getHeader(PartitionClient.FORWARDED_BY) != null) {
+            misdirected.increment();
+            writeError(response, "partition-moved", "The contact is now owned by " + owner);
+            return;
+        }
+
+        forwarded.increment();
+        HttpResponse<byte[]> ownerResponse;
+        try {
+            ownerResponse = client.forward(owner, forwardedRequest(owner, request));
+        } catch (PartitionUnavailableException e) {
+            writeError(response, "partition-unavailable", e.getMessage());
+            return;
+        }
+
+        response.setStatus(ownerResponse.statusCode());
+        ownerResponse.headers().map().forEach((name, values) -> {
+            if (!UNFORWARDED_HEADERS.contains(name)) {
+                values.forEach(value -> response.addHeader(name, value));
+            }
+        });
+        if (ownerResponse.body().length > 0) {
+            response.setContentLength(ownerResponse.body().length);
+            response.getOutputStream().write(ownerResponse.body());
+        }
+    }
+
+    private URI ownerOf(String id) {
+        try {
+            return partitionMap.ownerOf(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            // Not a valid id, left for the controller to reject
+            return null;
+        }
+    }
+
+    private HttpRequest forwardedRequest(URI owner, HttpServletRequest request) throws IOException {
+
+        String query = request.getQueryString();
+        URI uri = URI.create(owner + urlPathHelper.getPathWithinApplication(request) + (query == null ? "" : "?" + query));
+
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(client.timeout())
+                .method(request.getMethod(), body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (!UNFORWARDED_HEADERS.contains(name)) {
+                Collections.list(request.getHeaders(name)).forEach(value -> builder.header(name, value));
+            }
+        }
+        return builder.header(PartitionClient.FORWARDED_BY, partitionMap.self().toString()).build();
+    }
+
+    private void writeError(HttpServletResponse response, String code, String message) throws IOException {
+
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        mapper.writeValue(response.getOutputStream(), ApiError.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .code(code)
+                .message(message)
+                .build());
+    }
+
+    private static Set<String> caseInsensitive(String... names) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        Collections.addAll(set, names);
+        return set;
+    }
+
+    private static Counter requests(MeterRegistry registry, String routing) {
+        return Counter.builder("contacts.partitioning.requests")
+                .description("Requests about a single contact, by whether they were served locally or forwarded")
+                .tag("routing", routing)
+                .register(registry);
+    }
+}
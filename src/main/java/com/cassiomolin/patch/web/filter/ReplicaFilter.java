@@ -0,0 +1,138 @@
+package com.cassiomolin.patch.web.filter;
+
+import com.cassiomolin.patch.config.ReplicationProperties;
+import com.cassiomolin.patch.service.impl.ReplicaFollower;
+import com.cassiomolin.patch.web.ReplicationHeaders;
+import com.cassiomolin.patch.web.resource.error.ApiError;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Serves the contacts API read-only on a replica, with bounded staleness.
+ * <p>
+ * Writes are rejected with a {@code 405}, to be sent to the primary instead. Reads are rejected with a {@code 503}
+ * while the replica is more than {@link ReplicationProperties#getMaxStaleness()} behind the primary. A read sent with
+ * a {@value ReplicationHeaders#MIN_SEQUENCE} header, such as the {@value ReplicationHeaders#SEQUENCE} of a write on the
+ * primary, waits for the replica to reach that sequence, and is rejected with a {@code 503} if it doesn't in time.
+ * Reads served carry the sequence the replica had reached.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+@ConditionalOnProperty(name = "contacts.replication.role", havingValue = "replica")
+public class ReplicaFilter extends OncePerRequestFilter {
+
+    private final ReplicaFollower follower;
+
+    private final ReplicationProperties properties;
+
+    private final ObjectMapper mapper;
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final Counter served;
+
+    private final Counter stale;
+
+    private final Counter behind;
+
+    public ReplicaFilter(ReplicaFollower follower, ReplicationProperties properties, ObjectMapper mapper,
+                         MeterRegistry registry) {
+        this.follower = follower;
+        this.properties = properties;
+        this.mapper = mapper;
+        this.served = reads(registry, "served");
+        this.stale = reads(registry, "stale");
+        this.behind = reads(registry, "behind");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        return !path.equals("/contacts") && !path.startsWith("/contacts/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        HttpMethod method = HttpMethod.resolve(request.getMethod());
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            writeError(response, HttpStatus.METHOD_NOT_ALLOWED, "read-only-replica",
+                    "This is a read replica, writes must be sent to " + properties.getPrimary());
+            return;
+        }
+
+        String minSequence = request.getHeader(ReplicationHeaders.MIN_SEQUENCE);
+        if (minSequence != null && !awaitSequence(minSequence)) {
+            behind.increment();
+            writeError(response, HttpStatus.SERVICE_UNAVAILABLE, "replica-behind",
+                    "The replica has not reached sequence " + minSequence + " yet");
+            return;
+        }
+
+        Duration staleness = follower.staleness().orElse(null);
+        if (staleness == null || staleness.compareTo(properties.getMaxStaleness()) > 0) {
+            stale.increment();
+            writeError(response, HttpStatus.SERVICE_UNAVAILABLE, "replica-stale",
+                    "The replica is more than " + properties.getMaxStaleness() + " behind the primary");
+            return;
+        }
+
+        served.increment();
+        response.setHeader(ReplicationHeaders.SEQUENCE, String.valueOf(follower.appliedSequence()));
+        chain.doFilter(request, response);
+    }
+
+    private boolean awaitSequence(String minSequence) throws ServletException {
+        try {
+            return follower.awaitSequence(Long.parseLong(minSequence), properties.getReadYourWritesTimeout());
+        } catch (NumberFormatException e) {
+            // Not a sequence, so there is nothing to wait for
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException(e);
+        }
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String code, String message)
+            throws IOException {
+
+        response.setStatus(status.value());
+        if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        mapper.writeValue(response.getOutputStream(), ApiError.builder()
+                .status(status)
+                .code(code)
+                .message(message)
+                .build());
+    }
+
+    private static Counter reads(MeterRegistry registry, String outcome) {
+        return Counter.builder("contacts.replication.reads")
+                .description("Reads on a replica, by whether they were served or rejected as stale or behind")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
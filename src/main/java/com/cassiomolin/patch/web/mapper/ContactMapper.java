@@ -17,6 +17,22 @@ public interface ContactMapper {
 
     void update(@MappingTarget Contact contact, ContactResourceInput resourceInput);
 
+    /**
+     * Maps the new state of a contact, keeping its id and dates, without changing the contact itself, which may be
+     * read concurrently until the new state is written.
+     *
+     * @param contact       contact to be replaced
+     * @param resourceInput new state of the contact
+     * @return contact to replace the contact with
+     */
+    default Contact replacement(Contact contact, ContactResourceInput resourceInput) {
+        Contact replacement = asContact(resourceInput);
+        replacement.setId(contact.getId());
+        replacement.setCreatedDateTime(contact.getCreatedDateTime());
+        replacement.setLastModifiedDateTime(contact.getLastModifiedDateTime());
+        return replacement;
+    }
+
     ContactResourceOutput asOutput(Contact contact);
 
     List<ContactResourceOutput> asOutput(List<Contact> contacts);
@@ -16,6 +16,8 @@ public class ApiError {
 
     private HttpStatus status;
 
+    private String code;
+
     private String message;
 
     private List<?> details;
@@ -0,0 +1,17 @@
+package com.cassiomolin.patch.web.resource.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactSearchHitOutput {
+
+    private int score;
+
+    private ContactResourceOutput contact;
+}
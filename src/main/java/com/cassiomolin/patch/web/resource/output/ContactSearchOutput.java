@@ -0,0 +1,25 @@
+package com.cassiomolin.patch.web.resource.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactSearchOutput {
+
+    private String query;
+
+    private int page;
+
+    private int size;
+
+    private int total;
+
+    private List<ContactSearchHitOutput> results;
+}
@@ -0,0 +1,22 @@
+package com.cassiomolin.patch.web.resource.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.net.URI;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartitionMapOutput {
+
+    private URI self;
+
+    private int partitions;
+
+    private Map<URI, Integer> partitionsByMember;
+}
@@ -0,0 +1,104 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.ContactFragmentProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Serialized {@link ContactResourceOutput}s of contacts, so that listing contacts only maps and serializes the
+ * contacts that changed since they were last listed.
+ * <p>
+ * A fragment is only used for the state of the contact it was serialized from, as told by the last modified date of
+ * the contact, which stores set on each write, whichever way the contact was changed. Writes made through the API
+ * also drop the fragment of the contact right away.
+ */
+@Component
+public class ContactFragmentCache {
+
+    private final ContactMapper mapper;
+
+    private final ObjectWriter writer;
+
+    private final Cache<Long, Fragment> fragments;
+
+    public ContactFragmentCache(ContactMapper mapper, JsonCodecs codecs, ContactFragmentProperties properties,
+                                MeterRegistry registry) {
+
+        this.mapper = mapper;
+        this.writer = codecs.writer(ContactResourceOutput.class);
+        this.fragments = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumSize().toBytes())
+                .weigher((Long id, Fragment fragment) -> fragment.json.length)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(registry, fragments, "contact-fragments");
+    }
+
+    /**
+     * Returns the serialized resources of contacts, serializing the contacts that have no fragment for their current
+     * state.
+     *
+     * @param contacts contacts
+     * @return JSON array of the contact resources
+     */
+    public ContactFragments fragments(List<Contact> contacts) {
+
+        List<byte[]> json = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            json.add(fragment(contact));
+        }
+        return new ContactFragments(json);
+    }
+
+    private byte[] fragment(Contact contact) {
+
+        // Read before serializing, so that a contact changed meanwhile never has a stale fragment for its new state
+        OffsetDateTime lastModifiedDateTime = contact.getLastModifiedDateTime();
+
+        Fragment fragment = fragments.getIfPresent(contact.getId());
+        if (fragment != null && Objects.equals(fragment.lastModifiedDateTime, lastModifiedDateTime)) {
+            return fragment.json;
+        }
+
+        try {
+            byte[] json = writer.writeValueAsBytes(mapper.asOutput(contact));
+            fragments.put(contact.getId(), new Fragment(lastModifiedDateTime, json));
+            return json;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Drops the fragment of a contact that has been updated or deleted.
+     *
+     * @param id id of the contact
+     */
+    public void invalidate(Long id) {
+        fragments.invalidate(id);
+    }
+
+    @RequiredArgsConstructor
+    private static class Fragment {
+
+        private final OffsetDateTime lastModifiedDateTime;
+
+        private final byte[] json;
+    }
+}
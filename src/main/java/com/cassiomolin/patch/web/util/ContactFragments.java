@@ -0,0 +1,51 @@
+package com.cassiomolin.patch.web.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * JSON array of contact resources, each one already serialized.
+ */
+public final class ContactFragments {
+
+    private final List<byte[]> fragments;
+
+    ContactFragments(List<byte[]> fragments) {
+        this.fragments = fragments;
+    }
+
+    public int size() {
+        return fragments.size();
+    }
+
+    /**
+     * Returns the number of bytes of the JSON array.
+     *
+     * @return length in bytes
+     */
+    public long length() {
+        long length = 2 + Math.max(fragments.size() - 1, 0);
+        for (byte[] fragment : fragments) {
+            length += fragment.length;
+        }
+        return length;
+    }
+
+    /**
+     * Writes the JSON array, copying the serialized contact resources one after the other.
+     *
+     * @param out stream the array is written to
+     * @throws IOException if the array couldn't be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < fragments.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(fragments.get(i));
+        }
+        out.write(']');
+    }
+}
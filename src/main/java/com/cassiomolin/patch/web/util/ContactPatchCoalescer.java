@@ -0,0 +1,297 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.util.PatchMetrics.Stage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.json.JsonMergePatch;
+import javax.json.JsonPatch;
+import javax.json.JsonValue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Combines concurrent patches targeting the same contact.
+ * <p>
+ * Patches are queued per contact. The request that acquires the contact lane drains the queue and applies every
+ * pending patch, in arrival order, against a single materialized {@link ContactResourceInput}. The outcome is
+ * validated once and committed with a single {@link ContactService#updateContact(Contact)}, while each caller still
+ * gets its own result.
+ * <p>
+ * As intermediate states of a combined batch are not validated, a patch whose result is only transiently invalid is
+ * accepted when the combined result is valid.
+ * <p>
+ * Replacing and deleting a contact take the same lane, so that they are ordered with the patches of the contact
+ * instead of racing with a batch being applied.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContactPatchCoalescer {
+
+    private final ContactMapper mapper;
+
+    private final ContactService service;
+
+    private final PatchHelper patchHelper;
+
+    private final PatchMetrics metrics;
+
+    private final ConcurrentMap<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Applies a JSON Patch to the contact with the given id.
+     *
+     * @param id    contact id
+     * @param patch JSON Patch document
+     * @return updated contact
+     */
+    public Contact patch(Long id, JsonPatch patch) {
+        return submit(id, new PendingPatch(
+                input -> patchHelper.patch(patch, input, ContactResourceInput.class),
+                target -> patchHelper.patchJson(patch, target)));
+    }
+
+    /**
+     * Applies a JSON Merge Patch to the contact with the given id.
+     *
+     * @param id         contact id
+     * @param mergePatch JSON Merge Patch document
+     * @return updated contact
+     */
+    public Contact mergePatch(Long id, JsonMergePatch mergePatch) {
+        return submit(id, new PendingPatch(
+                input -> patchHelper.mergePatch(mergePatch, input, ContactResourceInput.class),
+                target -> patchHelper.mergePatchJson(mergePatch, target)));
+    }
+
+    /**
+     * Applies a sequence of JSON Merge Patches to the contact with the given id, as a single update.
+     *
+     * @param id           contact id
+     * @param mergePatches JSON Merge Patch documents, in the order they must be applied
+     * @return updated contact
+     */
+    public Contact mergePatch(Long id, List<JsonMergePatch> mergePatches) {
+        return submit(id, new PendingPatch(
+                input -> patchHelper.mergePatch(mergePatches, input, ContactResourceInput.class),
+                target -> patchHelper.mergePatchJson(mergePatches, target)));
+    }
+
+    /**
+     * Replaces the contact with the given id.
+     *
+     * @param id            contact id
+     * @param resourceInput new state of the contact
+     * @return updated contact
+     */
+    public Contact replace(Long id, ContactResourceInput resourceInput) {
+        return exclusively(id, () -> {
+            Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
+            Contact replacement = mapper.replacement(contact, resourceInput);
+            service.updateContact(replacement);
+            return replacement;
+        });
+    }
+
+    /**
+     * Deletes the contact with the given id.
+     *
+     * @param id contact id
+     */
+    public void delete(Long id) {
+        exclusively(id, () -> {
+            Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
+            service.deleteContact(contact);
+            return contact;
+        });
+    }
+
+    private Contact submit(Long id, PendingPatch pending) {
+
+        withLane(id, lane -> {
+            lane.queue.add(pending);
+            lane.lock.lock();
+            try {
+                if (!pending.result.isDone()) {
+                    drain(id, lane);
+                }
+            } finally {
+                lane.lock.unlock();
+            }
+            return null;
+        });
+
+        return pending.join();
+    }
+
+    private <T> T exclusively(Long id, Supplier<T> action) {
+
+        return withLane(id, lane -> {
+            lane.lock.lock();
+            try {
+                return action.get();
+            } finally {
+                lane.lock.unlock();
+            }
+        });
+    }
+
+    private <T> T withLane(Long id, Function<Lane, T> action) {
+
+        Lane lane = lanes.compute(id, (key, current) -> {
+            Lane acquired = current == null ? new Lane() : current;
+            acquired.users++;
+            return acquired;
+        });
+
+        try {
+            return action.apply(lane);
+        } finally {
+            lanes.computeIfPresent(id, (key, current) -> --current.users == 0 ? null : current);
+        }
+    }
+
+    private void drain(Long id, Lane lane) {
+
+        List<PendingPatch> batch = new ArrayList<>();
+        for (PendingPatch pending; (pending = lane.queue.poll()) != null; ) {
+            batch.add(pending);
+        }
+
+        try {
+            Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
+            if (batch.size() == 1) {
+                applySingle(contact, batch.get(0));
+            } else {
+                applyBatch(contact, batch);
+            }
+        } catch (Throwable e) {
+            // Errors must not leave the other callers of the batch waiting forever
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            throw e;
+        }
+    }
+
+    private void applySingle(Contact contact, PendingPatch pending) {
+
+        ContactResourceInput contactResourcePatched = pending.beanPatch.apply(mapper.asInput(contact));
+
+        pending.result.complete(commit(contact, contactResourcePatched));
+    }
+
+    private void applyBatch(Contact contact, List<PendingPatch> batch) {
+
+        JsonValue original = patchHelper.toJsonValue(mapper.asInput(contact));
+        JsonValue patched = original;
+
+        List<PendingPatch> applied = new ArrayList<>();
+        for (PendingPatch pending : batch) {
+            try {
+                patched = pending.jsonPatch.apply(patched);
+                applied.add(pending);
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+
+        if (applied.isEmpty()) {
+            return;
+        }
+
+        ContactResourceInput contactResourcePatched;
+        try {
+            contactResourcePatched = patchHelper.toValidatedBean(patched, ContactResourceInput.class);
+        } catch (RuntimeException e) {
+            contactResourcePatched = reapplyValidatingEachPatch(original, applied);
+        }
+
+        if (contactResourcePatched == null) {
+            return;
+        }
+
+        Contact updated = commit(contact, contactResourcePatched);
+
+        applied.forEach(pending -> pending.result.complete(updated));
+    }
+
+    /**
+     * Writes the patched state of a contact as a new contact, so that the stored one, which may be read concurrently,
+     * is never changed in place.
+     */
+    private Contact commit(Contact contact, ContactResourceInput contactResourcePatched) {
+        Contact updated = metrics.time(Stage.MAPPER_UPDATE, () -> mapper.replacement(contact, contactResourcePatched));
+        metrics.time(Stage.STORE_WRITE, () -> service.updateContact(updated));
+        return updated;
+    }
+
+    /**
+     * Replays the patches one by one when the combined result is invalid, so that only the offending callers fail.
+     * Successful patches are kept in {@code applied}.
+     */
+    private ContactResourceInput reapplyValidatingEachPatch(JsonValue original, List<PendingPatch> applied) {
+
+        JsonValue patched = original;
+        ContactResourceInput contactResourcePatched = null;
+
+        for (PendingPatch pending : new ArrayList<>(applied)) {
+            try {
+                JsonValue candidate = pending.jsonPatch.apply(patched);
+                contactResourcePatched = patchHelper.toValidatedBean(candidate, ContactResourceInput.class);
+                patched = candidate;
+            } catch (RuntimeException e) {
+                applied.remove(pending);
+                pending.result.completeExceptionally(e);
+            }
+        }
+
+        return contactResourcePatched;
+    }
+
+    private static class Lane {
+
+        private final Queue<PendingPatch> queue = new ConcurrentLinkedQueue<>();
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private int users;
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingPatch {
+
+        private final UnaryOperator<ContactResourceInput> beanPatch;
+
+        private final UnaryOperator<JsonValue> jsonPatch;
+
+        private final CompletableFuture<Contact> result = new CompletableFuture<>();
+
+        private Contact join() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
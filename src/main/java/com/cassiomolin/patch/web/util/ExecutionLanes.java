@@ -0,0 +1,176 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.ExecutionLaneProperties;
+import com.cassiomolin.patch.web.exception.LaneSaturatedException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs requests as async servlet requests on bounded executors, one for each class of request, so that a burst of
+ * heavy requests can only exhaust the threads of its own lane and not those that single contact reads and writes are
+ * run on.
+ * <p>
+ * Each lane has a fixed number of threads and a bounded queue. A request that doesn't fit in the queue is rejected
+ * straight away, and one that is still queued once the timeout of its lane has elapsed is dropped. Both are reported
+ * with a {@code 503}, which clients may retry. A request that has started is left to complete, as it may have written
+ * a contact already, which a retry would write again.
+ */
+@Component
+public class ExecutionLanes implements DisposableBean {
+
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+
+    /**
+     * Timeout of the async requests, which don't time out by themselves but complete once they have run, or once their
+     * lane has dropped them.
+     */
+    private static final long NO_TIMEOUT = Long.MAX_VALUE;
+
+    public enum RequestClass {
+
+        INTERACTIVE, BULK;
+
+        private String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Map<RequestClass, Lane> lanes = new EnumMap<>(RequestClass.class);
+
+    private final ScheduledThreadPoolExecutor timeouts;
+
+    public ExecutionLanes(ExecutionLaneProperties properties, MeterRegistry registry) {
+        timeouts = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("lane-timeouts").setDaemon(true).build());
+        timeouts.setRemoveOnCancelPolicy(true);
+        lanes.put(RequestClass.INTERACTIVE,
+                new Lane(RequestClass.INTERACTIVE, properties.getInteractive(), timeouts, registry));
+        lanes.put(RequestClass.BULK, new Lane(RequestClass.BULK, properties.getBulk(), timeouts, registry));
+    }
+
+    /**
+     * Runs a request on the lane of its class.
+     *
+     * @param requestClass class of the request
+     * @param request      work of the request
+     * @param <T>          type of the result
+     * @return result of the request, to be returned by the controller method
+     * @throws LaneSaturatedException if the lane has no room for the request
+     */
+    public <T> DeferredResult<T> submit(RequestClass requestClass, Supplier<T> request) {
+        return lanes.get(requestClass).submit(request);
+    }
+
+    @Override
+    public void destroy() {
+        lanes.values().forEach(lane -> lane.executor.shutdown());
+        timeouts.shutdown();
+    }
+
+    private static class Lane {
+
+        private final String name;
+
+        private final long timeout;
+
+        private final ThreadPoolExecutor executor;
+
+        private final ExecutorService timedExecutor;
+
+        private final ScheduledExecutorService timeouts;
+
+        private final Timer queueWait;
+
+        private final Counter queueFull;
+
+        private final Counter timedOut;
+
+        private Lane(RequestClass requestClass, ExecutionLaneProperties.Lane properties,
+                     ScheduledExecutorService timeouts, MeterRegistry registry) {
+
+            this.name = requestClass.tag();
+            this.timeout = properties.getTimeout().toMillis();
+            this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                    0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(properties.getQueueCapacity()),
+                    new ThreadFactoryBuilder().setNameFormat(name + "-lane-%d").setDaemon(true).build());
+
+            this.timeouts = timeouts;
+
+            Tags tags = Tags.of("lane", name);
+            this.timedExecutor = ExecutorServiceMetrics.monitor(registry, executor, "contacts.lanes." + name, tags);
+            this.queueWait = Timer.builder("contacts.lanes.wait")
+                    .description("Time requests wait for a thread of their lane")
+                    .tags(tags)
+                    .register(registry);
+            this.queueFull = rejections(registry, tags, "queue-full");
+            this.timedOut = rejections(registry, tags, "timeout");
+        }
+
+        private <T> DeferredResult<T> submit(Supplier<T> request) {
+
+            DeferredResult<T> result = new DeferredResult<>(NO_TIMEOUT);
+            long submitted = System.nanoTime();
+            // Claimed once, either by the thread that runs the request or by its expiry
+            AtomicBoolean claimed = new AtomicBoolean();
+
+            Future<?> task;
+            try {
+                task = timedExecutor.submit(() -> {
+                    queueWait.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                    if (!claimed.compareAndSet(false, true)) {
+                        return;
+                    }
+                    try {
+                        result.setResult(request.get());
+                    } catch (RuntimeException | Error e) {
+                        result.setErrorResult(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queueFull.increment();
+                throw new LaneSaturatedException(name, RETRY_AFTER);
+            }
+
+            // A future can still be cancelled while it runs, so that only the claim tells whether the request started
+            ScheduledFuture<?> expiry = timeouts.schedule(() -> {
+                if (claimed.compareAndSet(false, true)) {
+                    task.cancel(false);
+                    timedOut.increment();
+                    result.setErrorResult(new LaneSaturatedException(name, RETRY_AFTER));
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+            result.onCompletion(() -> expiry.cancel(false));
+            return result;
+        }
+
+        private static Counter rejections(MeterRegistry registry, Tags tags, String reason) {
+            return Counter.builder("contacts.lanes.rejections")
+                    .description("Requests rejected with a 503, by lane and whether its queue was full or they waited too long for a thread")
+                    .tags(tags)
+                    .tag("reason", reason)
+                    .register(registry);
+        }
+    }
+}
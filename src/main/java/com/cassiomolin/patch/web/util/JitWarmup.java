@@ -0,0 +1,222 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.config.WarmupProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.converter.JsonMergePatchHttpMessageConverter;
+import com.cassiomolin.patch.web.converter.JsonPatchHttpMessageConverter;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.input.EmailResourceInput;
+import com.cassiomolin.patch.web.resource.input.PhoneResourceInput;
+import com.cassiomolin.patch.web.resource.input.WorkResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.json.JsonMergePatch;
+import javax.json.JsonPatch;
+import javax.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a corpus of representative JSON Patch and JSON Merge Patch documents through the {@code PATCH} pipeline once
+ * the application has started, so that its hot paths are compiled by the JIT before it takes traffic.
+ * <p>
+ * The documents are parsed by the message converters and applied by {@link PatchHelper} to synthetic contacts, which
+ * are then mapped and serialized as a response would be. The store is never touched, and the pipeline has its own
+ * metrics, so the warmup doesn't show in the application's. Until the warmup has run for
+ * {@link WarmupProperties.Jit#getIterations()} iterations or for {@link WarmupProperties.Jit#getMaxDuration()},
+ * whichever comes first, the instance reports itself out of service in its health.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "contacts.warmup.jit.enabled", havingValue = "true")
+public class JitWarmup implements HealthIndicator {
+
+    private final WarmupProperties.Jit properties;
+
+    private final JsonCodecs codecs;
+
+    private final ContactMapper contactMapper;
+
+    private final PatchHelper patchHelper;
+
+    private final JsonPatchHttpMessageConverter jsonPatchConverter;
+
+    private final JsonMergePatchHttpMessageConverter jsonMergePatchConverter;
+
+    private final List<byte[]> jsonPatches;
+
+    private final List<byte[]> mergePatches;
+
+    private volatile long iterations;
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile boolean done;
+
+    public JitWarmup(WarmupProperties properties, JsonCodecs codecs, Validator validator,
+                     ContactMapper contactMapper, ResourceSchema schema, ResourcePatternResolver resolver,
+                     JsonPatchProperties jsonPatchProperties)
+            throws IOException {
+
+        this.properties = properties.getJit();
+        this.codecs = codecs;
+        this.contactMapper = contactMapper;
+
+        PatchMetrics metrics = new PatchMetrics(new SimpleMeterRegistry(), new PatchMetricsProperties());
+        this.patchHelper = new PatchHelper(codecs, validator, metrics, jsonPatchProperties);
+        this.jsonPatchConverter = new JsonPatchHttpMessageConverter(metrics, schema);
+        this.jsonMergePatchConverter = new JsonMergePatchHttpMessageConverter(metrics, schema);
+
+        this.jsonPatches = load(resolver, this.properties.getJsonPatchCorpus());
+        this.mergePatches = load(resolver, this.properties.getMergePatchCorpus());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::run, "jit-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = done ? Health.up() : Health.outOfService();
+        return health
+                .withDetail("iterations", iterations)
+                .withDetail("targetIterations", properties.getIterations())
+                .withDetail("failedPatches", failures.get())
+                .build();
+    }
+
+    private void run() {
+
+        log.info("Warming up the PATCH pipeline with {} JSON Patch and {} JSON Merge Patch documents",
+                jsonPatches.size(), mergePatches.size());
+
+        List<ContactResourceInput> contacts = syntheticContacts();
+        long start = System.nanoTime();
+        long deadline = start + properties.getMaxDuration().toNanos();
+
+        try {
+            for (long i = 0; i < properties.getIterations() && System.nanoTime() < deadline; i++) {
+                ContactResourceInput contact = contacts.get((int) (i % contacts.size()));
+                for (byte[] document : jsonPatches) {
+                    patch(contact, document);
+                }
+                for (byte[] document : mergePatches) {
+                    mergePatch(contact, document);
+                }
+                iterations = i + 1;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Warmup of the PATCH pipeline failed", e);
+        } finally {
+            done = true;
+        }
+
+        log.info("Warmed up the PATCH pipeline with {} iterations in {} ms ({} failed patches)", iterations,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures.get());
+    }
+
+    private void patch(ContactResourceInput contact, byte[] document) {
+        try {
+            JsonPatch patch = jsonPatchConverter.read(JsonPatch.class,
+                    inputMessage(document, PatchMediaType.APPLICATION_JSON_PATCH));
+            respond(patchHelper.patch(patch, contact, ContactResourceInput.class));
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private void mergePatch(ContactResourceInput contact, byte[] document) {
+        try {
+            JsonMergePatch mergePatch = jsonMergePatchConverter.read(JsonMergePatch.class,
+                    inputMessage(document, PatchMediaType.APPLICATION_MERGE_PATCH));
+            respond(patchHelper.mergePatch(mergePatch, contact, ContactResourceInput.class));
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private void respond(ContactResourceInput patched) throws IOException {
+        Contact contact = Contact.builder().id(1L).build();
+        contactMapper.update(contact, patched);
+        codecs.writer(ContactResourceOutput.class).writeValueAsBytes(contactMapper.asOutput(contact));
+    }
+
+    private static List<ContactResourceInput> syntheticContacts() {
+        return IntStream.of(1, 10, 100)
+                .mapToObj(size -> ContactResourceInput.builder()
+                        .name("John Appleseed")
+                        .birthday(LocalDate.of(1990, 1, 1))
+                        .work(WorkResourceInput.builder().title("Engineer").company("Acme").build())
+                        .phones(IntStream.range(0, size)
+                                .mapToObj(i -> PhoneResourceInput.builder().phone("555" + i).type("mobile").build())
+                                .collect(Collectors.toList()))
+                        .emails(IntStream.range(0, size)
+                                .mapToObj(i -> EmailResourceInput.builder().email(i + "@example.com").type("home").build())
+                                .collect(Collectors.toList()))
+                        .groups(IntStream.range(0, size)
+                                .mapToObj(i -> "Group " + i)
+                                .collect(Collectors.toList()))
+                        .favorite(false)
+                        .notes("Met at the conference")
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private static List<byte[]> load(ResourcePatternResolver resolver, String locationPattern) throws IOException {
+        List<byte[]> documents = new ArrayList<>();
+        for (Resource resource : resolver.getResources(locationPattern)) {
+            try (InputStream input = resource.getInputStream()) {
+                documents.add(StreamUtils.copyToByteArray(input));
+            }
+        }
+        return documents;
+    }
+
+    private static HttpInputMessage inputMessage(byte[] document, MediaType contentType) {
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+
+        return new HttpInputMessage() {
+
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(document);
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package com.cassiomolin.patch.web.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link ObjectReader}s and {@link ObjectWriter}s of an object mapper, by class.
+ * <p>
+ * Readers and writers hold the root deserializer and serializer of their class, resolved once, while the object mapper
+ * looks them up in its caches for each value it reads, writes or converts. The ones for the classes given on creation
+ * are built right away, and the ones for other classes on first use.
+ */
+public final class JsonCodecs {
+
+    private final ObjectMapper mapper;
+
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    private JsonCodecs(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Creates the readers and writers of an object mapper, building the ones for some classes right away.
+     *
+     * @param mapper  object mapper
+     * @param classes classes that are read, written or converted from and to
+     * @return readers and writers
+     */
+    public static JsonCodecs of(ObjectMapper mapper, Class<?>... classes) {
+        JsonCodecs codecs = new JsonCodecs(mapper);
+        for (Class<?> type : classes) {
+            codecs.reader(type);
+            codecs.writer(type);
+        }
+        return codecs;
+    }
+
+    public ObjectReader reader(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    public ObjectWriter writer(Class<?> type) {
+        return writers.computeIfAbsent(type, key -> mapper.writerFor(key).without(SerializationFeature.WRAP_ROOT_VALUE));
+    }
+
+    /**
+     * Converts a value to another type, as {@link ObjectMapper#convertValue(Object, Class)} does, writing it with the
+     * writer of its class and reading it back with the reader of the other type.
+     *
+     * @param value value to be converted
+     * @param type  type the value is converted to
+     * @param <T>   type the value is converted to
+     * @return converted value
+     */
+    public <T> T convert(Object value, Class<T> type) {
+
+        if (value == null) {
+            return null;
+        }
+        if (type != Object.class && type.isInstance(value)) {
+            return type.cast(value);
+        }
+        return roundTrip(value, type);
+    }
+
+    /**
+     * Copies a value, writing it with the writer of its class and reading it back, so that the copy shares no mutable
+     * state with the value. Unlike {@link #convert(Object, Class)}, a value of the type isn't returned as is.
+     *
+     * @param value value to be copied
+     * @param type  type of the value
+     * @param <T>   type of the value
+     * @return copy of the value
+     */
+    public <T> T copy(T value, Class<T> type) {
+        return value == null ? null : roundTrip(value, type);
+    }
+
+    private <T> T roundTrip(Object value, Class<T> type) {
+        try {
+            TokenBuffer buffer = new TokenBuffer(mapper, false);
+            if (mapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)) {
+                buffer = buffer.forceUseOfBigDecimal(true);
+            }
+            writer(value.getClass()).writeValue(buffer, value);
+            try (JsonParser parser = buffer.asParser()) {
+                return reader(type).readValue(parser);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
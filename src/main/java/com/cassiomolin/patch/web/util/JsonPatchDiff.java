@@ -0,0 +1,90 @@
+package com.cassiomolin.patch.web.util;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonPatch;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+
+/**
+ * Builds the JSON Patch document that turns a JSON value into another one.
+ * <p>
+ * The JSON-P implementation adds elements to arrays at indexes it has already replaced, so that its diffs of arrays
+ * that grow, such as the groups of a contact, don't turn the source into the target. Here, the members of objects and
+ * the elements of arrays that differ are compared recursively, and arrays that change size have their extra elements
+ * removed, or their missing elements added, after the elements they have in common, keeping every index valid when
+ * the operations are applied one after the other as specified by RFC 6902.
+ */
+public final class JsonPatchDiff {
+
+    private JsonPatchDiff() {
+    }
+
+    /**
+     * Builds the JSON Patch document that turns a JSON value into another one.
+     *
+     * @param source JSON value the patch applies to
+     * @param target JSON value the patch turns the source into
+     * @return JSON Patch document
+     */
+    public static JsonPatch diff(JsonStructure source, JsonStructure target) {
+        JsonArrayBuilder operations = Json.createArrayBuilder();
+        diff("", source, target, operations);
+        return Json.createPatch(operations.build());
+    }
+
+    private static void diff(String path, JsonValue source, JsonValue target, JsonArrayBuilder operations) {
+
+        if (source.equals(target)) {
+            return;
+        }
+
+        if (source instanceof JsonObject && target instanceof JsonObject) {
+            JsonObject sourceObject = (JsonObject) source;
+            JsonObject targetObject = (JsonObject) target;
+            sourceObject.keySet().stream()
+                    .filter(name -> !targetObject.containsKey(name))
+                    .forEach(name -> operations.add(operation("remove", path + "/" + escape(name), null)));
+            targetObject.forEach((name, value) -> {
+                JsonValue sourceValue = sourceObject.get(name);
+                if (sourceValue == null) {
+                    operations.add(operation("add", path + "/" + escape(name), value));
+                } else {
+                    diff(path + "/" + escape(name), sourceValue, value, operations);
+                }
+            });
+            return;
+        }
+
+        if (source instanceof JsonArray && target instanceof JsonArray) {
+            JsonArray sourceArray = (JsonArray) source;
+            JsonArray targetArray = (JsonArray) target;
+            int common = Math.min(sourceArray.size(), targetArray.size());
+            for (int i = 0; i < common; i++) {
+                diff(path + "/" + i, sourceArray.get(i), targetArray.get(i), operations);
+            }
+            // Each removal shifts the following elements down, so that the same index is removed every time
+            for (int i = common; i < sourceArray.size(); i++) {
+                operations.add(operation("remove", path + "/" + common, null));
+            }
+            for (int i = common; i < targetArray.size(); i++) {
+                operations.add(operation("add", path + "/" + i, targetArray.get(i)));
+            }
+            return;
+        }
+
+        operations.add(operation(path.isEmpty() ? "add" : "replace", path, target));
+    }
+
+    private static JsonObject operation(String op, String path, JsonValue value) {
+        return value == null
+                ? Json.createObjectBuilder().add("op", op).add("path", path).build()
+                : Json.createObjectBuilder().add("op", op).add("path", path).add("value", value).build();
+    }
+
+    private static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+}
@@ -0,0 +1,98 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.WarmupProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.error.ApiError;
+import com.cassiomolin.patch.web.resource.error.ApiResourcePropertyError;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.input.EmailResourceInput;
+import com.cassiomolin.patch.web.resource.input.PhoneResourceInput;
+import com.cassiomolin.patch.web.resource.input.WorkResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.resource.output.EmailResourceOutput;
+import com.cassiomolin.patch.web.resource.output.PhoneResourceOutput;
+import com.cassiomolin.patch.web.resource.output.WorkResourceOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.json.Json;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.validation.Validator;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds, while the application context is refreshed and before the server accepts requests, the metadata that
+ * would otherwise be built by the first {@code PATCH}: the JSON-P provider, the Jackson serializers and deserializers
+ * of the resource classes, the Bean Validation constraints of the input resources and the MapStruct mappings.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "contacts.warmup.metadata", havingValue = "true")
+public class MetadataWarmup {
+
+    private static final List<Class<?>> INPUT_CLASSES = List.of(ContactResourceInput.class,
+            WorkResourceInput.class, PhoneResourceInput.class, EmailResourceInput.class);
+
+    private static final List<Class<?>> OUTPUT_CLASSES = List.of(ContactResourceOutput.class,
+            WorkResourceOutput.class, PhoneResourceOutput.class, EmailResourceOutput.class,
+            ApiError.class, ApiResourcePropertyError.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final JsonCodecs codecs;
+
+    private final Validator validator;
+
+    private final ContactMapper contactMapper;
+
+    private final WarmupProperties properties;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void warmup() {
+
+        long start = System.nanoTime();
+
+        // Looks up the JSON-P provider and loads its patch implementations
+        JsonValue document = Json.createReader(new StringReader("{\"name\":\"\"}")).readValue();
+        Json.createPatch(Json.createArrayBuilder().build()).apply(document.asJsonObject());
+        Json.createMergePatch(JsonValue.EMPTY_JSON_OBJECT).apply(document);
+
+        for (Class<?> inputClass : INPUT_CLASSES) {
+            objectMapper.canDeserialize(objectMapper.constructType(inputClass));
+            objectMapper.canSerialize(inputClass);
+            validator.getConstraintsForClass(inputClass);
+        }
+        for (Class<?> outputClass : OUTPUT_CLASSES) {
+            objectMapper.canSerialize(outputClass);
+        }
+
+        // Conversions between the resource and JSON-P, as done by PatchHelper
+        ContactResourceInput input = contactMapper.asInput(Contact.builder().build());
+        JsonStructure json = codecs.convert(input, JsonStructure.class);
+        validator.validate(codecs.convert(json, ContactResourceInput.class));
+        contactMapper.update(Contact.builder().build(), input);
+        contactMapper.asOutput(List.of(Contact.builder().build()));
+
+        log.info("Warmed up metadata in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void exitIfTrainingRun(ApplicationReadyEvent event) {
+        if (properties.isExitAfterStartup()) {
+            log.info("Exiting after startup, as requested for a training run");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
@@ -1,27 +1,43 @@
 package com.cassiomolin.patch.web.util;
 
-import com.cassiomolin.patch.web.exception.UnprocessableEntityException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.JsonPatchProperties.Engine;
+import com.cassiomolin.patch.web.exception.PatchFailure;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.util.PatchMetrics.Stage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import javax.json.JsonMergePatch;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import javax.json.JsonPatch;
 import javax.json.JsonStructure;
 import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import javax.json.spi.JsonProvider;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Validator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
 public class PatchHelper {
 
-    private final ObjectMapper mapper;
+    private static final JsonProvider PROVIDER = JsonProvider.provider();
+
+    private final JsonCodecs codecs;
 
     private final Validator validator;
 
+    private final PatchMetrics metrics;
+
+    private final JsonPatchProperties properties;
+
     /**
      * Performs a JSON Patch operation.
      *
@@ -32,7 +48,7 @@ public class PatchHelper {
      * @return patched object
      */
     public <T> T patch(JsonPatch patch, T targetBean, Class<T> beanClass) {
-        JsonStructure target = mapper.convertValue(targetBean, JsonStructure.class);
+        JsonStructure target = metrics.time(Stage.TO_JSON, () -> codecs.convert(targetBean, JsonStructure.class));
         JsonValue patched = applyPatch(patch, target);
         return convertAndValidate(patched, beanClass);
     }
@@ -47,30 +63,210 @@ public class PatchHelper {
      * @return patched object
      */
     public <T> T mergePatch(JsonMergePatch mergePatch, T targetBean, Class<T> beanClass) {
-        JsonValue target = mapper.convertValue(targetBean, JsonValue.class);
+        JsonValue target = metrics.time(Stage.TO_JSON, () -> codecs.convert(targetBean, JsonValue.class));
         JsonValue patched = applyMergePatch(mergePatch, target);
         return convertAndValidate(patched, beanClass);
     }
 
+    /**
+     * Performs a sequence of JSON Merge Patch operations, validating the patched object only once.
+     * <p>
+     * The documents are composed into a single equivalent JSON Merge Patch document whenever possible. Otherwise they
+     * are applied one after the other.
+     *
+     * @param mergePatches JSON Merge Patch documents, in the order they must be applied
+     * @param targetBean   object that will be patched
+     * @param beanClass    class of the object the will be patched
+     * @param <T>
+     * @return patched object
+     */
+    public <T> T mergePatch(List<JsonMergePatch> mergePatches, T targetBean, Class<T> beanClass) {
+        JsonValue target = metrics.time(Stage.TO_JSON, () -> codecs.convert(targetBean, JsonValue.class));
+        JsonValue patched = applyMergePatches(mergePatches, target);
+        return convertAndValidate(patched, beanClass);
+    }
+
+    /**
+     * Composes a sequence of JSON Merge Patch documents into a single document that, applied to any target, has the
+     * same effect as applying each one of them in order.
+     * <p>
+     * Composition is not possible when a document patches the members of a value that a previous document replaced
+     * with (or removed in favour of) a non-object value, as the outcome would depend on the target. Nor is it when a
+     * document removes members of an object that a previous document patched, as the JSON-P implementation keeps the
+     * {@code null} members of an object merged into a value that isn't an object.
+     *
+     * @param mergePatches JSON Merge Patch documents, in the order they must be applied
+     * @return composed JSON Merge Patch document, or empty if the documents cannot be composed
+     */
+    public Optional<JsonMergePatch> composeMergePatches(List<JsonMergePatch> mergePatches) {
+        return compose(mergePatches);
+    }
+
+    /**
+     * Converts an object to its JSON representation, so that patches can be applied to it without converting it back
+     * after each one of them.
+     *
+     * @param bean object to be converted
+     * @return JSON representation of the object
+     */
+    JsonValue toJsonValue(Object bean) {
+        return metrics.time(Stage.TO_JSON, () -> codecs.convert(bean, JsonValue.class));
+    }
+
+    /**
+     * Performs a JSON Patch operation on a JSON value, without converting nor validating the result.
+     *
+     * @param patch  JSON Patch document
+     * @param target JSON value that will be patched
+     * @return patched JSON value
+     */
+    JsonValue patchJson(JsonPatch patch, JsonValue target) {
+        if (!(target instanceof JsonStructure)) {
+            throw new PatchFailureException(PatchFailure.TYPE_MISMATCH, "",
+                    "JSON Patch target must be an object or an array");
+        }
+        return applyPatch(patch, (JsonStructure) target);
+    }
+
+    /**
+     * Performs a JSON Merge Patch operation on a JSON value, without converting nor validating the result.
+     *
+     * @param mergePatch JSON Merge Patch document
+     * @param target     JSON value that will be patched
+     * @return patched JSON value
+     */
+    JsonValue mergePatchJson(JsonMergePatch mergePatch, JsonValue target) {
+        return applyMergePatch(mergePatch, target);
+    }
+
+    /**
+     * Performs a sequence of JSON Merge Patch operations on a JSON value, without converting nor validating the result.
+     *
+     * @param mergePatches JSON Merge Patch documents, in the order they must be applied
+     * @param target       JSON value that will be patched
+     * @return patched JSON value
+     */
+    JsonValue mergePatchJson(List<JsonMergePatch> mergePatches, JsonValue target) {
+        return applyMergePatches(mergePatches, target);
+    }
+
+    /**
+     * Converts a patched JSON value to an object and validates it.
+     *
+     * @param jsonValue patched JSON value
+     * @param beanClass class of the object the JSON value will be converted to
+     * @param <T>
+     * @return validated object
+     */
+    <T> T toValidatedBean(JsonValue jsonValue, Class<T> beanClass) {
+        return convertAndValidate(jsonValue, beanClass);
+    }
+
     private JsonValue applyPatch(JsonPatch patch, JsonStructure target) {
+        return metrics.time(Stage.APPLY, () -> {
+            try {
+                return properties.getEngine() == Engine.PERSISTENT
+                        ? PersistentJsonPatch.apply(patch, target)
+                        : patch.apply(target);
+            } catch (PatchFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw failure(patch, target);
+            }
+        });
+    }
+
+    /**
+     * Tells why a patch cannot be applied, from the operation and the pointer it fails on. These are found by applying
+     * the patch again with {@link PersistentJsonPatch}, as the JSON-P implementation only tells them apart in the
+     * message of its exceptions.
+     */
+    private static PatchFailureException failure(JsonPatch patch, JsonStructure target) {
         try {
-            return patch.apply(target);
-        } catch (Exception e) {
-            throw new UnprocessableEntityException(e);
+            PersistentJsonPatch.apply(patch, target);
+        } catch (PatchFailureException e) {
+            return e;
+        } catch (RuntimeException e) {
+            // Malformed operations are reported as invalid below
         }
+        // Also when the JSON-P implementation fails through one of its departures from RFC 6902
+        return invalidPatch();
     }
 
     private JsonValue applyMergePatch(JsonMergePatch mergePatch, JsonValue target) {
-        try {
-            return mergePatch.apply(target);
-        } catch (Exception e) {
-            throw new UnprocessableEntityException(e);
+        return metrics.time(Stage.APPLY, () -> {
+            try {
+                return mergePatch.apply(target);
+            } catch (RuntimeException e) {
+                throw invalidPatch();
+            }
+        });
+    }
+
+    private static PatchFailureException invalidPatch() {
+        return new PatchFailureException(PatchFailure.INVALID_PATCH, null, PatchFailure.INVALID_PATCH.getMessage());
+    }
+
+    private JsonValue applyMergePatches(List<JsonMergePatch> mergePatches, JsonValue target) {
+        Optional<JsonMergePatch> composed = compose(mergePatches);
+        if (composed.isPresent()) {
+            return applyMergePatch(composed.get(), target);
+        }
+        JsonValue patched = target;
+        for (JsonMergePatch mergePatch : mergePatches) {
+            patched = applyMergePatch(mergePatch, patched);
+        }
+        return patched;
+    }
+
+    private static Optional<JsonMergePatch> compose(List<JsonMergePatch> mergePatches) {
+        JsonValue composed = JsonValue.EMPTY_JSON_OBJECT;
+        for (JsonMergePatch mergePatch : mergePatches) {
+            composed = compose(composed, mergePatch.toJsonValue());
+            if (composed == null) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(PROVIDER.createMergePatch(composed));
+    }
+
+    private static JsonValue compose(JsonValue first, JsonValue second) {
+
+        if (second.getValueType() != ValueType.OBJECT) {
+            return second;
+        }
+
+        if (first.getValueType() != ValueType.OBJECT) {
+            return null;
         }
+
+        JsonObject firstObject = first.asJsonObject();
+        JsonObjectBuilder builder = PROVIDER.createObjectBuilder(firstObject);
+        for (Map.Entry<String, JsonValue> member : second.asJsonObject().entrySet()) {
+            JsonValue previous = firstObject.get(member.getKey());
+            if (previous == null || member.getValue().getValueType() != ValueType.OBJECT) {
+                builder.add(member.getKey(), member.getValue());
+            } else if (previous.getValueType() == ValueType.OBJECT && containsNull(member.getValue())) {
+                return null;
+            } else {
+                JsonValue composed = compose(previous, member.getValue());
+                if (composed == null) {
+                    return null;
+                }
+                builder.add(member.getKey(), composed);
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean containsNull(JsonValue value) {
+        return value.getValueType() == ValueType.OBJECT && value.asJsonObject().values().stream()
+                .anyMatch(member -> member.getValueType() == ValueType.NULL || containsNull(member));
     }
 
     private <T> T convertAndValidate(JsonValue jsonValue, Class<T> beanClass) {
-        T bean = mapper.convertValue(jsonValue, beanClass);
-        validate(bean);
+        T bean = metrics.time(Stage.FROM_JSON, () -> codecs.convert(jsonValue, beanClass));
+        metrics.time(Stage.VALIDATE, () -> validate(bean));
         return bean;
     }
 
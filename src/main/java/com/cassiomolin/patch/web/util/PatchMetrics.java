@@ -0,0 +1,242 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import com.cassiomolin.patch.web.exception.UnprocessableEntityException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonPatch;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import javax.validation.ConstraintViolationException;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the {@code PATCH} pipeline: the time taken by each {@link Stage}, the JSON Patch operations received by
+ * type, the failed requests by {@link Failure} reason and, optionally, the bytes allocated by each request.
+ */
+@Component
+public class PatchMetrics {
+
+    /**
+     * Stages of the {@code PATCH} pipeline, in the order they happen for a request.
+     */
+    public enum Stage {
+
+        PARSE("parse"),
+        TO_JSON("to-json"),
+        APPLY("apply"),
+        FROM_JSON("from-json"),
+        VALIDATE("validate"),
+        MAPPER_UPDATE("mapper-update"),
+        STORE_WRITE("store-write");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * Reasons a {@code PATCH} request fails.
+     */
+    public enum Failure {
+
+        MALFORMED("malformed"),
+        NOT_FOUND("not-found"),
+        BAD_POINTER("bad-pointer"),
+        TEST_FAILED("test-failed"),
+        TYPE_MISMATCH("type-mismatch"),
+        PATCH_FAILED("patch-failed"),
+        CONSTRAINT_VIOLATION("constraint-violation"),
+        OTHER("other");
+
+        private final String tag;
+
+        Failure(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+
+    private final Map<JsonPatch.Operation, Counter> operations = new EnumMap<>(JsonPatch.Operation.class);
+
+    private final Map<Failure, Counter> failures = new EnumMap<>(Failure.class);
+
+    private final DistributionSummary allocated;
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    public PatchMetrics(MeterRegistry registry, PatchMetricsProperties properties) {
+
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("contacts.patch.stage")
+                    .description("Time taken by each stage of the PATCH pipeline")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (JsonPatch.Operation operation : JsonPatch.Operation.values()) {
+            operations.put(operation, Counter.builder("contacts.patch.operations")
+                    .description("JSON Patch operations received, by type")
+                    .tag("op", operation.operationName())
+                    .register(registry));
+        }
+        for (Failure failure : Failure.values()) {
+            failures.put(failure, Counter.builder("contacts.patch.failures")
+                    .description("Failed PATCH requests, by reason")
+                    .tag("reason", failure.tag)
+                    .register(registry));
+        }
+
+        this.allocated = DistributionSummary.builder("contacts.patch.allocated")
+                .description("Bytes allocated by the thread handling a PATCH request")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.threads = properties.isAllocationTracking() ? allocationTrackingThreads() : null;
+    }
+
+    /**
+     * Records the time taken by a stage of the pipeline.
+     *
+     * @param stage stage of the pipeline
+     * @param work  work done in the stage
+     * @param <T>
+     * @return result of the work
+     */
+    public <T> T time(Stage stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            stages.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the time taken by a stage of the pipeline.
+     *
+     * @param stage stage of the pipeline
+     * @param work  work done in the stage
+     */
+    public void time(Stage stage, Runnable work) {
+        time(stage, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Counts the operations of a JSON Patch document by type.
+     *
+     * @param patch JSON Patch document
+     */
+    public void countOperations(JsonArray patch) {
+        for (JsonValue value : patch) {
+            if (value.getValueType() != ValueType.OBJECT) {
+                continue;
+            }
+            JsonObject operation = value.asJsonObject();
+            try {
+                operations.get(JsonPatch.Operation.fromOperationName(operation.getString("op", ""))).increment();
+            } catch (JsonException e) {
+                // Unknown operations are reported when the document is parsed
+            }
+        }
+    }
+
+    /**
+     * Counts a failed request.
+     *
+     * @param failure reason the request failed
+     */
+    public void countFailure(Failure failure) {
+        failures.get(failure).increment();
+    }
+
+    /**
+     * Counts a failed request by the reason its exception tells.
+     *
+     * @param e exception the request failed with
+     */
+    public void countFailure(RuntimeException e) {
+        countFailure(failureOf(e));
+    }
+
+    /**
+     * Handles a {@code PATCH} request, counting it by failure reason if it fails and recording the bytes it allocates.
+     *
+     * @param handler request handling
+     * @param <T>
+     * @return result of the request handling
+     */
+    public <T> T request(Supplier<T> handler) {
+        long start = allocatedBytes();
+        try {
+            return handler.get();
+        } catch (RuntimeException e) {
+            countFailure(e);
+            throw e;
+        } finally {
+            if (threads != null) {
+                allocated.record(allocatedBytes() - start);
+            }
+        }
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Failure failureOf(RuntimeException e) {
+        if (e instanceof ResourceNotFoundException) {
+            return Failure.NOT_FOUND;
+        }
+        if (e instanceof PatchFailureException) {
+            switch (((PatchFailureException) e).getFailure()) {
+                case BAD_POINTER:
+                    return Failure.BAD_POINTER;
+                case TEST_FAILED:
+                    return Failure.TEST_FAILED;
+                case TYPE_MISMATCH:
+                    return Failure.TYPE_MISMATCH;
+                default:
+                    return Failure.PATCH_FAILED;
+            }
+        }
+        if (e instanceof UnprocessableEntityException) {
+            return Failure.PATCH_FAILED;
+        }
+        if (e instanceof ConstraintViolationException) {
+            return Failure.CONSTRAINT_VIOLATION;
+        }
+        return Failure.OTHER;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationTrackingThreads() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+}
@@ -0,0 +1,161 @@
+package com.cassiomolin.patch.web.util;
+
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * JSON array backed by a {@link PersistentVector}, so that an array with a value added, replaced or removed shares
+ * most of its structure with the original one instead of being a copy of it.
+ */
+final class PersistentJsonArray extends AbstractList<JsonValue> implements JsonArray, RandomAccess {
+
+    private final PersistentVector<JsonValue> values;
+
+    private PersistentJsonArray(PersistentVector<JsonValue> values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns a persistent array with the values of an array, copying them only if it's not persistent already.
+     *
+     * @param array JSON array
+     * @return persistent JSON array
+     */
+    static PersistentJsonArray of(JsonArray array) {
+        return array instanceof PersistentJsonArray
+                ? (PersistentJsonArray) array
+                : new PersistentJsonArray(PersistentVector.of(array));
+    }
+
+    PersistentJsonArray withAdded(int index, JsonValue value) {
+        return new PersistentJsonArray(values.plus(index, value));
+    }
+
+    PersistentJsonArray withReplaced(int index, JsonValue value) {
+        return new PersistentJsonArray(values.with(index, value));
+    }
+
+    PersistentJsonArray withRemoved(int index) {
+        return new PersistentJsonArray(values.minus(index));
+    }
+
+    @Override
+    public JsonValue get(int index) {
+        return values.get(index);
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public Iterator<JsonValue> iterator() {
+        return values.iterator();
+    }
+
+    @Override
+    public JsonObject getJsonObject(int index) {
+        return (JsonObject) get(index);
+    }
+
+    @Override
+    public JsonArray getJsonArray(int index) {
+        return (JsonArray) get(index);
+    }
+
+    @Override
+    public JsonNumber getJsonNumber(int index) {
+        return (JsonNumber) get(index);
+    }
+
+    @Override
+    public JsonString getJsonString(int index) {
+        return (JsonString) get(index);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends JsonValue> List<T> getValuesAs(Class<T> clazz) {
+        return (List<T>) this;
+    }
+
+    @Override
+    public String getString(int index) {
+        return getJsonString(index).getString();
+    }
+
+    @Override
+    public String getString(int index, String defaultValue) {
+        JsonValue value = index >= 0 && index < size() ? get(index) : null;
+        return value instanceof JsonString ? ((JsonString) value).getString() : defaultValue;
+    }
+
+    @Override
+    public int getInt(int index) {
+        return getJsonNumber(index).intValue();
+    }
+
+    @Override
+    public int getInt(int index, int defaultValue) {
+        JsonValue value = index >= 0 && index < size() ? get(index) : null;
+        return value instanceof JsonNumber ? ((JsonNumber) value).intValue() : defaultValue;
+    }
+
+    @Override
+    public boolean getBoolean(int index) {
+        JsonValue value = get(index);
+        if (value == JsonValue.TRUE) {
+            return true;
+        }
+        if (value == JsonValue.FALSE) {
+            return false;
+        }
+        throw new ClassCastException("Value at index " + index + " is not a boolean");
+    }
+
+    @Override
+    public boolean getBoolean(int index, boolean defaultValue) {
+        JsonValue value = index >= 0 && index < size() ? get(index) : null;
+        return value == JsonValue.TRUE || (value != JsonValue.FALSE && defaultValue);
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return get(index).getValueType() == ValueType.NULL;
+    }
+
+    @Override
+    public ValueType getValueType() {
+        return ValueType.ARRAY;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof JsonArray && super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder json = new StringBuilder("[");
+        for (Iterator<JsonValue> iterator = iterator(); iterator.hasNext(); ) {
+            json.append(iterator.next());
+            if (iterator.hasNext()) {
+                json.append(',');
+            }
+        }
+        return json.append(']').toString();
+    }
+}
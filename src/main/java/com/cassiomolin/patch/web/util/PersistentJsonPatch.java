@@ -0,0 +1,269 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.web.exception.PatchFailure;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonPatch;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+
+/**
+ * Applies JSON Patch documents sharing the structure of the target.
+ * <p>
+ * The JSON-P implementation rebuilds the whole target for each operation, so that adding to or removing from a large
+ * array copies every value of the document. Here, only the objects on the path of an operation are copied, and arrays
+ * on the path are turned into {@link PersistentJsonArray}s, so that each operation costs {@code O(log n)} in the size
+ * of the arrays once they have been turned, which happens once for the arrays reached by a document.
+ * <p>
+ * Operations that can't be applied fail with a stackless {@link PatchFailureException}, telling the
+ * {@link PatchFailure} and the JSON Pointer it happened at rather than the value it happened in, which may be large.
+ * <p>
+ * Unlike the JSON-P implementation, which also adds, removes and replaces the values with the same name or index found
+ * at the same depth in other members, and ignores values added to a string, number, boolean or null, operations only
+ * touch the value they refer to, as specified by RFC 6902.
+ */
+public final class PersistentJsonPatch {
+
+    private static final JsonProvider PROVIDER = JsonProvider.provider();
+
+    private PersistentJsonPatch() {
+    }
+
+    /**
+     * Performs a JSON Patch operation.
+     *
+     * @param patch  JSON Patch document
+     * @param target JSON value that will be patched
+     * @return patched JSON value
+     */
+    public static JsonValue apply(JsonPatch patch, JsonStructure target) {
+        JsonValue patched = target;
+        for (JsonValue operation : patch.toJsonArray()) {
+            patched = apply(operation.asJsonObject(), patched);
+        }
+        return patched;
+    }
+
+    private static JsonValue apply(JsonObject operation, JsonValue target) {
+
+        String[] path = tokens(operation.getString("path"));
+        switch (operation.getString("op")) {
+            case "add":
+                return add(target, path, 0, operation.get("value"));
+            case "remove":
+                return remove(target, path, 0);
+            case "replace":
+                return replace(target, path, 0, operation.get("value"));
+            case "move":
+                String[] from = tokens(operation.getString("from"));
+                JsonValue moved = get(target, from);
+                return add(remove(target, from, 0), path, 0, moved);
+            case "copy":
+                return add(target, path, 0, get(target, tokens(operation.getString("from"))));
+            case "test":
+                if (!get(target, path).equals(operation.get("value"))) {
+                    throw new PatchFailureException(PatchFailure.TEST_FAILED, operation.getString("path"),
+                            "The value is not equal to the one of the test operation");
+                }
+                return target;
+            default:
+                throw new PatchFailureException(PatchFailure.INVALID_PATCH, null,
+                        "Unsupported operation: " + operation.getString("op"));
+        }
+    }
+
+    private static JsonValue get(JsonValue target, String[] path) {
+        JsonValue value = target;
+        for (int depth = 0; depth < path.length; depth++) {
+            value = child(value, path, depth);
+        }
+        return value;
+    }
+
+    private static JsonValue add(JsonValue target, String[] path, int depth, JsonValue value) {
+
+        if (path.length == 0) {
+            if (value.getValueType() != target.getValueType()) {
+                throw new PatchFailureException(PatchFailure.TYPE_MISMATCH, "",
+                        "The value must have the same type as the target");
+            }
+            return value;
+        }
+
+        String token = path[depth];
+        boolean last = depth == path.length - 1;
+
+        if (target instanceof JsonObject) {
+            JsonObject object = (JsonObject) target;
+            JsonValue member = last ? value : add(child(object, path, depth), path, depth + 1, value);
+            return PROVIDER.createObjectBuilder(object).add(token, member).build();
+        }
+
+        if (target instanceof JsonArray) {
+            PersistentJsonArray array = PersistentJsonArray.of((JsonArray) target);
+            if (last) {
+                int index = "-".equals(token) ? array.size() : index(path, depth, array.size() + 1);
+                return array.withAdded(index, value);
+            }
+            int index = index(path, depth, array.size());
+            return array.withReplaced(index, add(array.get(index), path, depth + 1, value));
+        }
+
+        throw noElement(path, depth);
+    }
+
+    private static JsonValue remove(JsonValue target, String[] path, int depth) {
+
+        if (path.length == 0) {
+            throw new PatchFailureException(PatchFailure.INVALID_PATCH, "", "The reference must not be the target");
+        }
+
+        String token = path[depth];
+        boolean last = depth == path.length - 1;
+
+        if (target instanceof JsonObject) {
+            JsonObject object = (JsonObject) target;
+            JsonValue member = child(object, path, depth);
+            return last
+                    ? PROVIDER.createObjectBuilder(object).remove(token).build()
+                    : PROVIDER.createObjectBuilder(object).add(token, remove(member, path, depth + 1)).build();
+        }
+
+        if (target instanceof JsonArray) {
+            PersistentJsonArray array = PersistentJsonArray.of((JsonArray) target);
+            int index = index(path, depth, array.size());
+            return last
+                    ? array.withRemoved(index)
+                    : array.withReplaced(index, remove(array.get(index), path, depth + 1));
+        }
+
+        throw noElement(path, depth);
+    }
+
+    /**
+     * Replaces a value, which has the same outcome as removing it then adding the new value at the same location.
+     */
+    private static JsonValue replace(JsonValue target, String[] path, int depth, JsonValue value) {
+
+        if (path.length == 0) {
+            throw new PatchFailureException(PatchFailure.INVALID_PATCH, "", "The reference must not be the target");
+        }
+
+        String token = path[depth];
+        boolean last = depth == path.length - 1;
+
+        if (target instanceof JsonObject) {
+            JsonObject object = (JsonObject) target;
+            JsonValue member = child(object, path, depth);
+            return PROVIDER.createObjectBuilder(object)
+                    .add(token, last ? value : replace(member, path, depth + 1, value))
+                    .build();
+        }
+
+        if (target instanceof JsonArray) {
+            PersistentJsonArray array = PersistentJsonArray.of((JsonArray) target);
+            int index = index(path, depth, array.size());
+            return array.withReplaced(index, last ? value : replace(array.get(index), path, depth + 1, value));
+        }
+
+        throw noElement(path, depth);
+    }
+
+    private static JsonValue child(JsonValue target, String[] path, int depth) {
+
+        if (target instanceof JsonObject) {
+            JsonValue member = ((JsonObject) target).get(path[depth]);
+            if (member == null) {
+                throw new PatchFailureException(PatchFailure.BAD_POINTER, pointer(path, depth + 1),
+                        "'" + pointer(path, depth) + "' contains no value for name '" + path[depth] + "'");
+            }
+            return member;
+        }
+
+        if (target instanceof JsonArray) {
+            JsonArray array = (JsonArray) target;
+            return array.get(index(path, depth, array.size()));
+        }
+
+        throw noElement(path, depth);
+    }
+
+    /**
+     * Parses an array index, as digits without leading zeros.
+     *
+     * @param path  reference tokens
+     * @param depth position of the index in the reference tokens
+     * @param bound index the parsed index must be lower than
+     * @return array index
+     */
+    private static int index(String[] path, int depth, int bound) {
+
+        String token = path[depth];
+
+        if (token.startsWith("+") || token.startsWith("-")) {
+            throw badIndex(path, depth, "An array index must not start with '" + token.charAt(0) + "'");
+        }
+        if (token.startsWith("0") && token.length() > 1) {
+            throw badIndex(path, depth, "An array index must not start with a leading '0'");
+        }
+
+        int index;
+        try {
+            index = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw badIndex(path, depth, "'" + token + "' is no valid array index");
+        }
+
+        if (index >= bound) {
+            throw badIndex(path, depth, "'" + pointer(path, depth) + "' contains no element for index " + index);
+        }
+        return index;
+    }
+
+    /**
+     * Fails on a reference token that goes into a string, number, boolean or null.
+     */
+    private static PatchFailureException noElement(String[] path, int depth) {
+        return new PatchFailureException(PatchFailure.TYPE_MISMATCH, pointer(path, depth + 1),
+                "'" + pointer(path, depth) + "' contains no element for '" + path[depth] + "'");
+    }
+
+    private static PatchFailureException badIndex(String[] path, int depth, String message) {
+        return new PatchFailureException(PatchFailure.BAD_POINTER, pointer(path, depth + 1), message);
+    }
+
+    /**
+     * Returns the JSON Pointer to the value the reference token at a given depth is looked up in, so that failures
+     * tell where they happened without carrying the document.
+     */
+    private static String pointer(String[] path, int depth) {
+
+        StringBuilder pointer = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            pointer.append('/').append(path[i].replace("~", "~0").replace("/", "~1"));
+        }
+        return pointer.toString();
+    }
+
+    private static String[] tokens(String pointer) {
+
+        if (pointer.isEmpty()) {
+            return new String[0];
+        }
+        if (!pointer.startsWith("/")) {
+            throw new PatchFailureException(PatchFailure.BAD_POINTER, pointer,
+                    "A non-empty JSON Pointer must begin with a '/'");
+        }
+
+        String[] tokens = pointer.substring(1).split("/", -1);
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].indexOf('~') >= 0) {
+                tokens[i] = tokens[i].replace("~1", "/").replace("~0", "~");
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,419 @@
+package com.cassiomolin.patch.web.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list whose updates share the structure of the list they are made from.
+ * <p>
+ * Elements are kept in the leaves of a tree of nodes holding up to 32 leaves or nodes, each node with the cumulative
+ * sizes of its children, so that they can be of any size. Getting, setting, inserting or removing an element copies
+ * the nodes on the path to its leaf only, in {@code O(log n)}. Nodes split when they overflow and are merged with a
+ * sibling when small enough, so every leaf stays at the same depth.
+ *
+ * @param <E> type of the elements
+ */
+final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int WIDTH = 32;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Leaf(new Object[0]));
+
+    private final Node root;
+
+    private PersistentVector(Node root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Creates a vector with the elements of a collection, in {@code O(n)}.
+     *
+     * @param elements elements of the vector, in order
+     * @param <E>      type of the elements
+     * @return vector of the elements
+     */
+    static <E> PersistentVector<E> of(Collection<? extends E> elements) {
+
+        if (elements instanceof PersistentVector) {
+            @SuppressWarnings("unchecked")
+            PersistentVector<E> vector = (PersistentVector<E>) elements;
+            return vector;
+        }
+
+        Object[] values = elements.toArray();
+        if (values.length == 0) {
+            return empty();
+        }
+
+        Node[] level = new Node[(values.length + WIDTH - 1) / WIDTH];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = new Leaf(Arrays.copyOfRange(values, i * WIDTH, Math.min(values.length, (i + 1) * WIDTH)));
+        }
+        while (level.length > 1) {
+            Node[] parents = new Node[(level.length + WIDTH - 1) / WIDTH];
+            for (int i = 0; i < parents.length; i++) {
+                parents[i] = Branch.of(Arrays.copyOfRange(level, i * WIDTH, Math.min(level.length, (i + 1) * WIDTH)));
+            }
+            level = parents;
+        }
+        return new PersistentVector<>(level[0]);
+    }
+
+    @Override
+    public int size() {
+        return root.size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, size());
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int child = branch.childAt(index);
+            index -= branch.offset(child);
+            node = branch.children[child];
+        }
+        return (E) ((Leaf) node).values[index];
+    }
+
+    /**
+     * Returns a vector with the element at a position replaced.
+     *
+     * @param index   position of the element
+     * @param element new element
+     * @return updated vector
+     */
+    PersistentVector<E> with(int index, E element) {
+        checkIndex(index, size());
+        return new PersistentVector<>(root.set(index, element));
+    }
+
+    /**
+     * Returns a vector with an element inserted at a position, shifting the elements from that position on.
+     *
+     * @param index   position of the element, up to the size of the vector to append it
+     * @param element element to insert
+     * @return updated vector
+     */
+    PersistentVector<E> plus(int index, E element) {
+        checkIndex(index, size() + 1);
+        Node[] inserted = root.insert(index, element);
+        return new PersistentVector<>(inserted.length == 1 ? inserted[0] : Branch.of(inserted));
+    }
+
+    /**
+     * Returns a vector with an element appended.
+     *
+     * @param element element to append
+     * @return updated vector
+     */
+    PersistentVector<E> plus(E element) {
+        return plus(size(), element);
+    }
+
+    /**
+     * Returns a vector with the element at a position removed, shifting the elements following it.
+     *
+     * @param index position of the element
+     * @return updated vector
+     */
+    PersistentVector<E> minus(int index) {
+        checkIndex(index, size());
+        Node removed = root.remove(index);
+        while (removed instanceof Branch && ((Branch) removed).children.length == 1) {
+            removed = ((Branch) removed).children[0];
+        }
+        return removed.size() == 0 ? empty() : new PersistentVector<>(removed);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private int index;
+
+            private Object[] leaf = new Object[0];
+
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (position == leaf.length) {
+                    leaf = leafAt(index);
+                    position = 0;
+                }
+                index++;
+                return (E) leaf[position++];
+            }
+        };
+    }
+
+    private Object[] leafAt(int index) {
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int child = branch.childAt(index);
+            index -= branch.offset(child);
+            node = branch.children[child];
+        }
+        return ((Leaf) node).values;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+
+    private abstract static class Node {
+
+        abstract int size();
+
+        abstract Node set(int index, Object element);
+
+        /**
+         * Inserts an element, returning the updated node, or the two halves of the node if it overflows.
+         */
+        abstract Node[] insert(int index, Object element);
+
+        /**
+         * Removes an element, returning the updated node, which may be empty or underfull.
+         */
+        abstract Node remove(int index);
+
+        /**
+         * Returns the nodes holding the children of this node and of a sibling of the same depth that follows it.
+         */
+        abstract Node[] merge(Node next);
+
+        abstract int width();
+    }
+
+    private static final class Leaf extends Node {
+
+        private final Object[] values;
+
+        Leaf(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int size() {
+            return values.length;
+        }
+
+        @Override
+        int width() {
+            return values.length;
+        }
+
+        @Override
+        Node set(int index, Object element) {
+            Object[] updated = values.clone();
+            updated[index] = element;
+            return new Leaf(updated);
+        }
+
+        @Override
+        Node[] insert(int index, Object element) {
+            Object[] updated = new Object[values.length + 1];
+            System.arraycopy(values, 0, updated, 0, index);
+            updated[index] = element;
+            System.arraycopy(values, index, updated, index + 1, values.length - index);
+            if (updated.length <= WIDTH) {
+                return new Node[]{new Leaf(updated)};
+            }
+            int half = updated.length / 2;
+            return new Node[]{
+                    new Leaf(Arrays.copyOfRange(updated, 0, half)),
+                    new Leaf(Arrays.copyOfRange(updated, half, updated.length))};
+        }
+
+        @Override
+        Node remove(int index) {
+            Object[] updated = new Object[values.length - 1];
+            System.arraycopy(values, 0, updated, 0, index);
+            System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+            return new Leaf(updated);
+        }
+
+        @Override
+        Node[] merge(Node next) {
+            Object[] following = ((Leaf) next).values;
+            Object[] merged = Arrays.copyOf(values, values.length + following.length);
+            System.arraycopy(following, 0, merged, values.length, following.length);
+            if (merged.length <= WIDTH) {
+                return new Node[]{new Leaf(merged)};
+            }
+            int half = merged.length / 2;
+            return new Node[]{
+                    new Leaf(Arrays.copyOfRange(merged, 0, half)),
+                    new Leaf(Arrays.copyOfRange(merged, half, merged.length))};
+        }
+    }
+
+    private static final class Branch extends Node {
+
+        private final Node[] children;
+
+        /**
+         * Number of elements in the children up to and including each one of them.
+         */
+        private final int[] sizes;
+
+        private Branch(Node[] children, int[] sizes) {
+            this.children = children;
+            this.sizes = sizes;
+        }
+
+        static Branch of(Node[] children) {
+            int[] sizes = new int[children.length];
+            int total = 0;
+            for (int i = 0; i < children.length; i++) {
+                total += children[i].size();
+                sizes[i] = total;
+            }
+            return new Branch(children, sizes);
+        }
+
+        @Override
+        int size() {
+            return sizes.length == 0 ? 0 : sizes[sizes.length - 1];
+        }
+
+        @Override
+        int width() {
+            return children.length;
+        }
+
+        int childAt(int index) {
+            int child = 0;
+            while (sizes[child] <= index) {
+                child++;
+            }
+            return child;
+        }
+
+        /**
+         * Returns the child an element is inserted into, which is the last one when appending.
+         */
+        int childToInsertAt(int index) {
+            int child = 0;
+            while (child < sizes.length - 1 && sizes[child] <= index) {
+                child++;
+            }
+            return child;
+        }
+
+        int offset(int child) {
+            return child == 0 ? 0 : sizes[child - 1];
+        }
+
+        @Override
+        Node set(int index, Object element) {
+            int child = childAt(index);
+            Node[] updated = children.clone();
+            updated[child] = children[child].set(index - offset(child), element);
+            return new Branch(updated, sizes);
+        }
+
+        @Override
+        Node[] insert(int index, Object element) {
+
+            int child = childToInsertAt(index);
+            Node[] inserted = children[child].insert(index - offset(child), element);
+
+            if (inserted.length == 1) {
+                Node[] updated = children.clone();
+                updated[child] = inserted[0];
+                int[] updatedSizes = sizes.clone();
+                for (int i = child; i < updatedSizes.length; i++) {
+                    updatedSizes[i]++;
+                }
+                return new Node[]{new Branch(updated, updatedSizes)};
+            }
+
+            Node[] updated = new Node[children.length + 1];
+            System.arraycopy(children, 0, updated, 0, child);
+            updated[child] = inserted[0];
+            updated[child + 1] = inserted[1];
+            System.arraycopy(children, child + 1, updated, child + 2, children.length - child - 1);
+            if (updated.length <= WIDTH) {
+                return new Node[]{Branch.of(updated)};
+            }
+            int half = updated.length / 2;
+            return new Node[]{
+                    Branch.of(Arrays.copyOfRange(updated, 0, half)),
+                    Branch.of(Arrays.copyOfRange(updated, half, updated.length))};
+        }
+
+        @Override
+        Node remove(int index) {
+
+            int child = childAt(index);
+            Node removed = children[child].remove(index - offset(child));
+
+            if (removed.width() == 0) {
+                Node[] updated = new Node[children.length - 1];
+                System.arraycopy(children, 0, updated, 0, child);
+                System.arraycopy(children, child + 1, updated, child, children.length - child - 1);
+                return Branch.of(updated);
+            }
+
+            // An underfull child is merged with a sibling, or shares its children with it if they don't fit together
+            if (removed.width() < WIDTH / 2 && children.length > 1) {
+                int first = child == children.length - 1 ? child - 1 : child;
+                Node[] merged = first == child
+                        ? removed.merge(children[child + 1])
+                        : children[first].merge(removed);
+                Node[] updated = new Node[children.length - 2 + merged.length];
+                System.arraycopy(children, 0, updated, 0, first);
+                System.arraycopy(merged, 0, updated, first, merged.length);
+                System.arraycopy(children, first + 2, updated, first + merged.length, children.length - first - 2);
+                return Branch.of(updated);
+            }
+
+            Node[] updated = children.clone();
+            updated[child] = removed;
+            int[] updatedSizes = sizes.clone();
+            for (int i = child; i < updatedSizes.length; i++) {
+                updatedSizes[i]--;
+            }
+            return new Branch(updated, updatedSizes);
+        }
+
+        @Override
+        Node[] merge(Node next) {
+            Node[] following = ((Branch) next).children;
+            Node[] merged = Arrays.copyOf(children, children.length + following.length);
+            System.arraycopy(following, 0, merged, children.length, following.length);
+            if (merged.length <= WIDTH) {
+                return new Node[]{Branch.of(merged)};
+            }
+            int half = merged.length / 2;
+            return new Node[]{
+                    Branch.of(Arrays.copyOfRange(merged, 0, half)),
+                    Branch.of(Arrays.copyOfRange(merged, half, merged.length))};
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.web.exception.PatchFailure;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Valid JSON Pointers of a resource and the types of the values they point to, as a trie built by introspecting the
+ * resource class the same way Jackson deserializes it.
+ * <p>
+ * Patches are checked against the schema before they are applied, so that a patch referring to a member the resource
+ * doesn't have, or setting a value of the wrong type, is rejected up front instead of failing when it's applied or,
+ * worse, being silently ignored when the patched document is converted back to the resource.
+ */
+public class ResourceSchema {
+
+    private enum Type {
+        OBJECT, ARRAY, STRING, NUMBER, BOOLEAN, ANY
+    }
+
+    private static class Node {
+
+        private final Type type;
+
+        private final Map<String, Node> members = new HashMap<>();
+
+        private Node items;
+
+        private Node(Type type) {
+            this.type = type;
+        }
+    }
+
+    private static final Node ANY = new Node(Type.ANY);
+
+    private final Node root;
+
+    private ResourceSchema(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Builds the schema of a resource class.
+     *
+     * @param mapper        object mapper the resource is deserialized with
+     * @param resourceClass resource class
+     * @return schema of the resource
+     */
+    public static ResourceSchema of(ObjectMapper mapper, Class<?> resourceClass) {
+        return new ResourceSchema(nodeOf(mapper, mapper.constructType(resourceClass), new HashMap<>()));
+    }
+
+    /**
+     * Checks the operations of a JSON Patch document. Operations that are not well formed are left for the JSON Patch
+     * parser to reject.
+     *
+     * @param operations JSON Patch operations
+     * @throws PatchFailureException if an operation refers to a location the resource doesn't have or sets a value of
+     *                               the wrong type
+     */
+    public void checkPatch(JsonArray operations) {
+        for (JsonValue value : operations) {
+            if (value.getValueType() != ValueType.OBJECT) {
+                continue;
+            }
+            JsonObject operation = value.asJsonObject();
+            String op = stringOf(operation, "op");
+            String path = stringOf(operation, "path");
+            if (op == null || path == null) {
+                continue;
+            }
+            switch (op) {
+                case "add":
+                    checkValue(resolve(path, true), operation.get("value"), path);
+                    break;
+                case "replace":
+                case "test":
+                    checkValue(resolve(path, false), operation.get("value"), path);
+                    break;
+                case "remove":
+                    resolve(path, false);
+                    break;
+                case "move":
+                case "copy":
+                    String from = stringOf(operation, "from");
+                    if (from != null) {
+                        checkCompatible(resolve(from, false), resolve(path, true), path);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Checks a JSON Merge Patch document.
+     *
+     * @param mergePatch JSON Merge Patch document
+     * @throws PatchFailureException if the document sets a member the resource doesn't have or a value of the wrong
+     *                               type
+     */
+    public void checkMergePatch(JsonValue mergePatch) {
+        checkValue(root, mergePatch, "");
+    }
+
+    private Node resolve(String pointer, boolean appending) {
+
+        if (pointer.isEmpty()) {
+            return root;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw failure(PatchFailure.BAD_POINTER, pointer, "A JSON Pointer must start with '/'");
+        }
+
+        Node node = root;
+        int start = 1;
+        while (true) {
+            int end = pointer.indexOf('/', start);
+            boolean last = end < 0;
+            String token = unescape(pointer.substring(start, last ? pointer.length() : end));
+
+            switch (node.type) {
+                case ANY:
+                    return ANY;
+                case OBJECT:
+                    node = node.members.get(token);
+                    if (node == null) {
+                        throw failure(PatchFailure.BAD_POINTER, pointer, "Unknown member '" + token + "'");
+                    }
+                    break;
+                case ARRAY:
+                    if (!isArrayIndex(token) && !("-".equals(token) && last && appending)) {
+                        throw failure(PatchFailure.BAD_POINTER, pointer, "'" + token + "' is not a valid array index");
+                    }
+                    node = node.items;
+                    break;
+                default:
+                    throw failure(PatchFailure.TYPE_MISMATCH, pointer, "A " + typeName(node.type) + " has no members");
+            }
+
+            if (last) {
+                return node;
+            }
+            start = end + 1;
+        }
+    }
+
+    private void checkValue(Node node, JsonValue value, String pointer) {
+
+        if (value == null || value.getValueType() == ValueType.NULL || node.type == Type.ANY) {
+            return;
+        }
+
+        switch (node.type) {
+            case OBJECT:
+                if (value.getValueType() != ValueType.OBJECT) {
+                    break;
+                }
+                for (Map.Entry<String, JsonValue> member : value.asJsonObject().entrySet()) {
+                    String memberPointer = pointer + "/" + escape(member.getKey());
+                    Node memberNode = node.members.get(member.getKey());
+                    if (memberNode == null) {
+                        throw failure(PatchFailure.BAD_POINTER, memberPointer, "Unknown member '" + member.getKey() + "'");
+                    }
+                    checkValue(memberNode, member.getValue(), memberPointer);
+                }
+                return;
+            case ARRAY:
+                if (value.getValueType() != ValueType.ARRAY) {
+                    break;
+                }
+                JsonArray array = value.asJsonArray();
+                for (int i = 0; i < array.size(); i++) {
+                    checkValue(node.items, array.get(i), pointer + "/" + i);
+                }
+                return;
+            case STRING:
+                if (value.getValueType() == ValueType.STRING) {
+                    return;
+                }
+                break;
+            case NUMBER:
+                if (value.getValueType() == ValueType.NUMBER) {
+                    return;
+                }
+                break;
+            case BOOLEAN:
+                if (value.getValueType() == ValueType.TRUE || value.getValueType() == ValueType.FALSE) {
+                    return;
+                }
+                break;
+            default:
+                return;
+        }
+
+        throw failure(PatchFailure.TYPE_MISMATCH, pointer.isEmpty() ? "/" : pointer,
+                "Expected " + typeName(node.type) + " but got " + value.getValueType().name().toLowerCase());
+    }
+
+    private void checkCompatible(Node from, Node to, String pointer) {
+        boolean compatible = from == to || from.type == Type.ANY || to.type == Type.ANY
+                || (from.type == to.type && from.type != Type.OBJECT && from.type != Type.ARRAY);
+        if (!compatible) {
+            throw failure(PatchFailure.TYPE_MISMATCH, pointer,
+                    "Cannot move or copy a value of type " + typeName(from.type) + " to a location of type " + typeName(to.type));
+        }
+    }
+
+    private static Node nodeOf(ObjectMapper mapper, JavaType type, Map<JavaType, Node> objects) {
+
+        Class<?> rawClass = type.getRawClass();
+
+        if (type.isCollectionLikeType() || type.isArrayType()) {
+            Node node = new Node(Type.ARRAY);
+            node.items = nodeOf(mapper, type.getContentType(), objects);
+            return node;
+        }
+        if (rawClass == String.class || rawClass == Character.class || rawClass == char.class || rawClass.isEnum()) {
+            return new Node(Type.STRING);
+        }
+        if (rawClass == Boolean.class || rawClass == boolean.class) {
+            return new Node(Type.BOOLEAN);
+        }
+        if (Number.class.isAssignableFrom(rawClass) || rawClass.isPrimitive()) {
+            return new Node(Type.NUMBER);
+        }
+        if (rawClass == Object.class || type.isMapLikeType() || JsonValue.class.isAssignableFrom(rawClass)) {
+            return ANY;
+        }
+        if (rawClass.getName().startsWith("java.")) {
+            // Scalars such as dates, as dates are not written as timestamps
+            return new Node(Type.STRING);
+        }
+
+        Node node = objects.get(type);
+        if (node != null) {
+            return node;
+        }
+        node = new Node(Type.OBJECT);
+        objects.put(type, node);
+
+        BeanDescription description = mapper.getDeserializationConfig().introspect(type);
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (property.couldDeserialize()) {
+                node.members.put(property.getName(), nodeOf(mapper, property.getPrimaryType(), objects));
+            }
+        }
+        return node;
+    }
+
+    private static String stringOf(JsonObject operation, String name) {
+        JsonValue value = operation.get(name);
+        return value instanceof JsonString ? ((JsonString) value).getString() : null;
+    }
+
+    private static boolean isArrayIndex(String token) {
+        if (token.isEmpty() || (token.length() > 1 && token.charAt(0) == '0')) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) < '0' || token.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String unescape(String token) {
+        return token.indexOf('~') < 0 ? token : token.replace("~1", "/").replace("~0", "~");
+    }
+
+    private static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static String typeName(Type type) {
+        return type.name().toLowerCase();
+    }
+
+    private static PatchFailureException failure(PatchFailure failure, String pointer, String message) {
+        return new PatchFailureException(failure, pointer, message);
+    }
+}
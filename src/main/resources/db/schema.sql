@@ -0,0 +1,40 @@
+CREATE TABLE IF NOT EXISTS contact (
+    id                      BIGINT AUTO_INCREMENT PRIMARY KEY,
+    name                    VARCHAR(255) NOT NULL,
+    birthday                DATE,
+    work_title              VARCHAR(255),
+    work_company            VARCHAR(255),
+    favorite                BOOLEAN,
+    notes                   VARCHAR(4000),
+    created_date_time       TIMESTAMP WITH TIME ZONE NOT NULL,
+    last_modified_date_time TIMESTAMP WITH TIME ZONE NOT NULL,
+    phones_present          BOOLEAN NOT NULL DEFAULT FALSE,
+    emails_present          BOOLEAN NOT NULL DEFAULT FALSE,
+    groups_present          BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE TABLE IF NOT EXISTS contact_phone (
+    contact_id BIGINT  NOT NULL,
+    position   INTEGER NOT NULL,
+    phone      VARCHAR(255),
+    type       VARCHAR(255),
+    PRIMARY KEY (contact_id, position),
+    FOREIGN KEY (contact_id) REFERENCES contact (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS contact_email (
+    contact_id BIGINT  NOT NULL,
+    position   INTEGER NOT NULL,
+    email      VARCHAR(255),
+    type       VARCHAR(255),
+    PRIMARY KEY (contact_id, position),
+    FOREIGN KEY (contact_id) REFERENCES contact (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS contact_group (
+    contact_id BIGINT       NOT NULL,
+    position   INTEGER      NOT NULL,
+    name       VARCHAR(255) NOT NULL,
+    PRIMARY KEY (contact_id, position),
+    FOREIGN KEY (contact_id) REFERENCES contact (id) ON DELETE CASCADE
+);
@@ -0,0 +1,372 @@
+package com.cassiomolin.patch.load;
+
+import com.cassiomolin.patch.PatchApplication;
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.load.LoadReport.EndpointReport;
+import com.cassiomolin.patch.load.LoadReport.Percentiles;
+import com.cassiomolin.patch.web.PatchMediaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of requests against the contacts API at a fixed arrival rate and reports latency percentiles for each
+ * endpoint.
+ * <p>
+ * The application is started on a random port and seeded with contacts. Requests are scheduled at fixed intervals and
+ * their latency is measured from the time they were scheduled rather than the time they were sent, so that requests
+ * delayed by a slow application are accounted for (coordinated omission). The time between sending a request and
+ * receiving its response is also reported, as service time.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=com.cassiomolin.patch.load.LoadHarness -Dexec.classpathScope=test},
+ * adding any of the following system properties:
+ * <ul>
+ * <li>{@code load.contacts}: contacts created before the run (default {@code 1000})</li>
+ * <li>{@code load.rate}: requests per second (default {@code 500})</li>
+ * <li>{@code load.warmup}: time before latencies are recorded (default {@code PT10S})</li>
+ * <li>{@code load.duration}: time latencies are recorded for (default {@code PT30S})</li>
+ * <li>{@code load.connections}: maximum requests in flight (default {@code 64})</li>
+ * <li>{@code load.mix}: weight of each endpoint (default {@code get=50,post=5,put=10,json-patch=15,merge-patch=15,delete=5})</li>
+ * <li>{@code load.report}: report file (default {@code target/load-report.json})</li>
+ * <li>{@code load.baseline}: report of a previous run to compare with, failing on regressions</li>
+ * <li>{@code load.tolerance}: relative increase of a percentile accepted by the comparison (default {@code 0.1})</li>
+ * </ul>
+ */
+public class LoadHarness {
+
+    private enum Endpoint {
+
+        GET("get"),
+        POST("post"),
+        PUT("put"),
+        JSON_PATCH("json-patch"),
+        MERGE_PATCH("merge-patch"),
+        DELETE("delete");
+
+        private final String key;
+
+        Endpoint(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final String CONTACT = "{\"name\":\"John Appleseed\",\"work\":{\"title\":\"Engineer\",\"company\":\"Acme\"}," +
+            "\"phones\":[{\"phone\":\"0000000000\",\"type\":\"mobile\"}],\"groups\":[\"Friends\"],\"favorite\":false}";
+
+    private static final String JSON_PATCH = "[{\"op\":\"replace\",\"path\":\"/work/title\",\"value\":\"Senior Engineer\"}," +
+            "{\"op\":\"add\",\"path\":\"/phones/-\",\"value\":{\"phone\":\"1111111111\",\"type\":\"work\"}}," +
+            "{\"op\":\"remove\",\"path\":\"/phones/0\"}]";
+
+    private static final String MERGE_PATCH = "{\"favorite\":true,\"notes\":\"Met at the conference\"}";
+
+    private final int contacts = Integer.getInteger("load.contacts", 1_000);
+
+    private final int rate = Integer.getInteger("load.rate", 500);
+
+    private final Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT10S"));
+
+    private final Duration duration = Duration.parse(System.getProperty("load.duration", "PT30S"));
+
+    private final int connections = Integer.getInteger("load.connections", 64);
+
+    private final String mix = System.getProperty("load.mix", "get=50,post=5,put=10,json-patch=15,merge-patch=15,delete=5");
+
+    private final Path report = Paths.get(System.getProperty("load.report", "target/load-report.json"));
+
+    private final String baseline = System.getProperty("load.baseline");
+
+    private final double tolerance = Double.parseDouble(System.getProperty("load.tolerance", "0.1"));
+
+    private final ObjectMapper mapper = JacksonConfig.defaultObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newFixedThreadPool(4))
+            .build();
+
+    private final Map<Endpoint, Recorder> latencies = new EnumMap<>(Endpoint.class);
+
+    private final Map<Endpoint, Recorder> serviceTimes = new EnumMap<>(Endpoint.class);
+
+    private final Map<Endpoint, AtomicLong> errors = new EnumMap<>(Endpoint.class);
+
+    private final List<Endpoint> weightedEndpoints = new ArrayList<>();
+
+    private final List<Long> ids = new ArrayList<>();
+
+    private String baseUrl;
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new LoadHarness().run() ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencies.put(endpoint, new Recorder(3));
+            serviceTimes.put(endpoint, new Recorder(3));
+            errors.put(endpoint, new AtomicLong());
+        }
+        parseMix();
+
+        try (ConfigurableApplicationContext context = SpringApplication.run(PatchApplication.class,
+                "--server.port=0", "--logging.level.root=WARN")) {
+
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/contacts";
+            seed();
+
+            System.out.printf("Warming up for %s at %d requests/s%n", warmup, rate);
+            drive(warmup);
+            latencies.values().forEach(Recorder::reset);
+            serviceTimes.values().forEach(Recorder::reset);
+            errors.values().forEach(count -> count.set(0));
+
+            System.out.printf("Recording for %s at %d requests/s%n", duration, rate);
+            long requests = drive(duration);
+
+            LoadReport loadReport = report(requests);
+            mapper.writerWithDefaultPrettyPrinter().writeValue(report.toFile(), loadReport);
+            print(loadReport);
+            System.out.println("Report written to " + report);
+
+            return compareWithBaseline(loadReport);
+        }
+    }
+
+    private void parseMix() {
+        for (String weight : mix.split(",")) {
+            String[] keyValue = weight.trim().split("=");
+            Endpoint endpoint = endpoint(keyValue[0]);
+            for (int i = 0; i < Integer.parseInt(keyValue[1]); i++) {
+                weightedEndpoints.add(endpoint);
+            }
+        }
+    }
+
+    private static Endpoint endpoint(String key) {
+        for (Endpoint endpoint : Endpoint.values()) {
+            if (endpoint.key.equals(key)) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("Unknown endpoint: " + key);
+    }
+
+    private void seed() throws IOException, InterruptedException {
+        for (int i = 0; i < contacts; i++) {
+            HttpResponse<Void> response = client.send(request(URI.create(baseUrl), "POST", "application/json",
+                    BodyPublishers.ofString(CONTACT)), BodyHandlers.discarding());
+            ids.add(idOf(response));
+        }
+    }
+
+    /**
+     * Sends requests at fixed intervals for the given time, from a pool of workers that each wait for the scheduled
+     * time of the next request.
+     *
+     * @return number of requests sent
+     */
+    private long drive(Duration time) throws InterruptedException {
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + time.toNanos();
+        AtomicLong sequence = new AtomicLong();
+
+        ExecutorService workers = Executors.newFixedThreadPool(connections);
+        for (int i = 0; i < connections; i++) {
+            workers.execute(() -> {
+                for (long scheduled; (scheduled = start + sequence.getAndIncrement() * interval) < end; ) {
+                    for (long wait; (wait = scheduled - System.nanoTime()) > 0; ) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    send(scheduled);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(time.toMillis() + TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS);
+
+        return Math.min(sequence.get(), time.toNanos() / interval);
+    }
+
+    private void send(long scheduled) {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Endpoint endpoint = weightedEndpoints.get(random.nextInt(weightedEndpoints.size()));
+
+        long sent = System.nanoTime();
+        boolean success;
+        try {
+            success = send(endpoint, random);
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long received = System.nanoTime();
+
+        latencies.get(endpoint).recordValue(TimeUnit.NANOSECONDS.toMicros(received - scheduled));
+        serviceTimes.get(endpoint).recordValue(TimeUnit.NANOSECONDS.toMicros(received - sent));
+        if (!success) {
+            errors.get(endpoint).incrementAndGet();
+        }
+    }
+
+    private boolean send(Endpoint endpoint, ThreadLocalRandom random) throws IOException, InterruptedException {
+
+        switch (endpoint) {
+            case POST: {
+                HttpResponse<Void> response = client.send(request(URI.create(baseUrl), "POST", "application/json",
+                        BodyPublishers.ofString(CONTACT)), BodyHandlers.discarding());
+                if (response.statusCode() == 201) {
+                    addId(idOf(response));
+                }
+                return response.statusCode() == 201;
+            }
+            case DELETE: {
+                Long id = takeId(random);
+                if (id == null) {
+                    return false;
+                }
+                return client.send(request(uriOf(id), "DELETE", null, BodyPublishers.noBody()),
+                        BodyHandlers.discarding()).statusCode() == 204;
+            }
+            default: {
+                Long id = randomId(random);
+                if (id == null) {
+                    return false;
+                }
+                HttpRequest request;
+                if (endpoint == Endpoint.GET) {
+                    request = request(uriOf(id), "GET", null, BodyPublishers.noBody());
+                } else if (endpoint == Endpoint.PUT) {
+                    request = request(uriOf(id), "PUT", "application/json", BodyPublishers.ofString(CONTACT));
+                } else if (endpoint == Endpoint.JSON_PATCH) {
+                    request = request(uriOf(id), "PATCH", PatchMediaType.APPLICATION_JSON_PATCH_VALUE,
+                            BodyPublishers.ofString(JSON_PATCH));
+                } else {
+                    request = request(uriOf(id), "PATCH", PatchMediaType.APPLICATION_MERGE_PATCH_VALUE,
+                            BodyPublishers.ofString(MERGE_PATCH));
+                }
+                // Contacts may be deleted concurrently
+                int status = client.send(request, BodyHandlers.discarding()).statusCode();
+                return status / 100 == 2 || status == 404;
+            }
+        }
+    }
+
+    private HttpRequest request(URI uri, String method, String contentType, BodyPublisher body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).method(method, body).timeout(Duration.ofSeconds(30));
+        if (contentType != null) {
+            builder.header("Content-Type", contentType);
+        }
+        return builder.build();
+    }
+
+    private URI uriOf(Long id) {
+        return URI.create(baseUrl + "/" + id);
+    }
+
+    private static Long idOf(HttpResponse<?> response) {
+        String location = response.headers().firstValue("Location").orElseThrow(IllegalStateException::new);
+        return Long.valueOf(location.substring(location.lastIndexOf('/') + 1));
+    }
+
+    private synchronized void addId(Long id) {
+        ids.add(id);
+    }
+
+    private synchronized Long randomId(ThreadLocalRandom random) {
+        return ids.isEmpty() ? null : ids.get(random.nextInt(ids.size()));
+    }
+
+    private synchronized Long takeId(ThreadLocalRandom random) {
+        if (ids.isEmpty()) {
+            return null;
+        }
+        // Swaps the taken id with the last one, so that it can be removed in constant time
+        int index = random.nextInt(ids.size());
+        Long id = ids.get(index);
+        ids.set(index, ids.get(ids.size() - 1));
+        ids.remove(ids.size() - 1);
+        return id;
+    }
+
+    private LoadReport report(long requests) {
+
+        LoadReport loadReport = new LoadReport();
+        loadReport.getSettings().put("contacts", contacts);
+        loadReport.getSettings().put("rate", rate);
+        loadReport.getSettings().put("warmup", warmup.toString());
+        loadReport.getSettings().put("duration", duration.toString());
+        loadReport.getSettings().put("connections", connections);
+        loadReport.getSettings().put("mix", mix);
+        loadReport.setAchievedRate(requests / (double) duration.getSeconds());
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram latency = latencies.get(endpoint).getIntervalHistogram();
+            Histogram serviceTime = serviceTimes.get(endpoint).getIntervalHistogram();
+            if (latency.getTotalCount() > 0) {
+                loadReport.getEndpoints().put(endpoint.key, new EndpointReport(latency.getTotalCount(),
+                        errors.get(endpoint).get(), Percentiles.of(latency), Percentiles.of(serviceTime)));
+            }
+        }
+
+        return loadReport;
+    }
+
+    private static void print(LoadReport loadReport) {
+        System.out.printf("%-12s %8s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        loadReport.getEndpoints().forEach((endpoint, report) -> System.out.printf(
+                "%-12s %8d %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                endpoint, report.getCount(), report.getErrors(), report.getLatency().getP50(),
+                report.getLatency().getP90(), report.getLatency().getP99(), report.getLatency().getP999(),
+                report.getLatency().getMax()));
+    }
+
+    private boolean compareWithBaseline(LoadReport loadReport) throws IOException {
+
+        if (baseline == null) {
+            return true;
+        }
+
+        List<String> regressions = loadReport.regressionsFrom(
+                mapper.readValue(Paths.get(baseline).toFile(), LoadReport.class), tolerance);
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions from " + baseline);
+            return true;
+        }
+
+        System.out.println("Regressions from " + baseline + ":");
+        regressions.forEach(regression -> System.out.println("  " + regression));
+        return false;
+    }
+}
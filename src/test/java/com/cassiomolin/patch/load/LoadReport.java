@@ -0,0 +1,103 @@
+package com.cassiomolin.patch.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a load run, written as JSON so that it can be compared with the outcome of a previous run.
+ * <p>
+ * Latencies are in milliseconds and measured from the time each request was meant to be sent, so that they include
+ * the time it waited when the application couldn't keep up with the arrival rate.
+ */
+@Data
+@NoArgsConstructor
+public class LoadReport {
+
+    private Map<String, Object> settings = new TreeMap<>();
+
+    private double achievedRate;
+
+    private Map<String, EndpointReport> endpoints = new TreeMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EndpointReport {
+
+        private long count;
+
+        private long errors;
+
+        private Percentiles latency;
+
+        private Percentiles serviceTime;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Percentiles {
+
+        private double p50;
+
+        private double p90;
+
+        private double p99;
+
+        private double p999;
+
+        private double max;
+
+        public static Percentiles of(Histogram histogram) {
+            return new Percentiles(
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+
+        private static double millis(long micros) {
+            return micros / 1_000.0;
+        }
+    }
+
+    /**
+     * Compares the latency percentiles of each endpoint with a baseline.
+     *
+     * @param baseline  report of a previous run
+     * @param tolerance relative increase of a percentile that is still acceptable, such as {@code 0.1} for 10%
+     * @return percentiles that increased beyond the tolerance, one description per line
+     */
+    public List<String> regressionsFrom(LoadReport baseline, double tolerance) {
+
+        List<String> regressions = new ArrayList<>();
+
+        endpoints.forEach((endpoint, report) -> {
+            EndpointReport previous = baseline.getEndpoints().get(endpoint);
+            if (previous == null) {
+                return;
+            }
+            compare(regressions, endpoint + " p50", previous.getLatency().getP50(), report.getLatency().getP50(), tolerance);
+            compare(regressions, endpoint + " p90", previous.getLatency().getP90(), report.getLatency().getP90(), tolerance);
+            compare(regressions, endpoint + " p99", previous.getLatency().getP99(), report.getLatency().getP99(), tolerance);
+            compare(regressions, endpoint + " p99.9", previous.getLatency().getP999(), report.getLatency().getP999(), tolerance);
+        });
+
+        return regressions;
+    }
+
+    private static void compare(List<String> regressions, String name, double previous, double current, double tolerance) {
+        if (previous > 0 && current > previous * (1 + tolerance)) {
+            regressions.add(String.format("%s: %.3f ms -> %.3f ms (%+.1f%%)",
+                    name, previous, current, (current / previous - 1) * 100));
+        }
+    }
+}
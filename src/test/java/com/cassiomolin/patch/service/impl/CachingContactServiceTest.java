@@ -0,0 +1,131 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ContactCacheProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingContactServiceTest {
+
+    private ContactService store;
+
+    private SimpleMeterRegistry registry;
+
+    private CachingContactService service;
+
+    @Before
+    public void setup() {
+
+        ContactCacheProperties properties = new ContactCacheProperties();
+        properties.setNegativeTtl(Duration.ofMillis(100));
+
+        store = mock(ContactService.class);
+        registry = new SimpleMeterRegistry();
+        service = new CachingContactService(store, properties, registry);
+    }
+
+    @Test
+    public void findContact_shouldLoadOnce_forConcurrentMisses() throws Exception {
+
+        CountDownLatch loading = new CountDownLatch(1);
+        when(store.findContact(1L)).thenAnswer(invocation -> {
+            loading.await(5, TimeUnit.SECONDS);
+            return Optional.of(Contact.builder().id(1L).build());
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Optional<Contact>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> service.findContact(1L)));
+            }
+            Thread.sleep(100);
+            loading.countDown();
+
+            for (Future<Optional<Contact>> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isPresent();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(store, times(1)).findContact(1L);
+    }
+
+    @Test
+    public void findContact_shouldCacheMissingContacts_forNegativeTtl() throws Exception {
+
+        when(store.findContact(1L)).thenReturn(Optional.empty());
+
+        assertThat(service.findContact(1L)).isEmpty();
+        assertThat(service.findContact(1L)).isEmpty();
+        verify(store, times(1)).findContact(1L);
+
+        Thread.sleep(200);
+
+        assertThat(service.findContact(1L)).isEmpty();
+        verify(store, times(2)).findContact(1L);
+
+        assertThat(registry.get("contacts.cache.lookups").tag("result", "negative-hit").counter().count()).isEqualTo(1);
+        assertThat(registry.get("contacts.cache.lookups").tag("result", "miss").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void updateContact_shouldWriteThroughAndCache() {
+
+        Contact contact = Contact.builder().id(1L).name("John Appleseed").build();
+        service.updateContact(contact);
+
+        assertThat(service.findContact(1L)).containsSame(contact);
+        verify(store).updateContact(contact);
+        verify(store, times(0)).findContact(1L);
+        assertThat(registry.get("contacts.cache.lookups").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void updateContact_shouldInvalidate_whenStoreFails() {
+
+        Contact contact = Contact.builder().id(1L).name("John Appleseed").build();
+        service.createContact(contact);
+
+        doThrow(new IllegalStateException()).when(store).updateContact(any());
+        assertThatThrownBy(() -> service.updateContact(contact)).isInstanceOf(IllegalStateException.class);
+
+        when(store.findContact(1L)).thenReturn(Optional.empty());
+        assertThat(service.findContact(1L)).isEmpty();
+    }
+
+    @Test
+    public void deleteContact_shouldCacheDeletion() {
+
+        Contact contact = Contact.builder().id(1L).build();
+        service.createContact(contact);
+        service.deleteContact(contact);
+
+        assertThat(service.findContact(1L)).isEmpty();
+        verify(store, times(0)).findContact(1L);
+        inOrder(store).verify(store).deleteContact(contact);
+    }
+}
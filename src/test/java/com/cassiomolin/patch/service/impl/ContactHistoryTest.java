@@ -0,0 +1,149 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ContactHistoryProperties;
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import org.assertj.core.util.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@RunWith(SpringRunner.class)
+@Import({JacksonConfig.class, ContactHistoryProperties.class, ContactHistory.class})
+public class ContactHistoryTest {
+
+    private static final OffsetDateTime START = OffsetDateTime.parse("2019-01-01T00:00:00Z");
+
+    @Autowired
+    private ContactHistoryProperties properties;
+
+    @Autowired
+    private ContactHistory history;
+
+    @Before
+    public void setup() {
+        properties.setCheckpointInterval(4);
+        properties.setMaxVersions(8);
+    }
+
+    @Test
+    public void findVersion_shouldRebuildEveryRetainedVersion() {
+
+        Contact contact = Contact.builder()
+                .id(1L)
+                .name("Version 0")
+                .phones(Lists.newArrayList())
+                .createdDateTime(START)
+                .build();
+
+        for (int version = 0; version < 8; version++) {
+            contact.setName("Version " + version);
+            contact.getPhones().add(Phone.builder().phone(String.valueOf(version)).build());
+            contact.setLastModifiedDateTime(START.plusMinutes(version));
+            history.recordVersion(contact);
+        }
+
+        for (int version = 0; version < 8; version++) {
+            Optional<Contact> result = history.findVersion(1L, START.plusMinutes(version).plusSeconds(30));
+            assertThat(result).isPresent();
+            assertThat(result.get().getName()).isEqualTo("Version " + version);
+            assertThat(result.get().getPhones()).hasSize(version + 1);
+        }
+
+        assertThat(history.findVersion(1L, START.minusMinutes(1))).isEmpty();
+    }
+
+    @Test
+    public void findVersion_shouldNotRebuildVersionsBeyondMaxVersions() {
+
+        Contact contact = Contact.builder()
+                .id(2L)
+                .createdDateTime(START)
+                .build();
+
+        for (int version = 0; version < 10; version++) {
+            contact.setName("Version " + version);
+            contact.setLastModifiedDateTime(START.plusMinutes(version));
+            history.recordVersion(contact);
+        }
+
+        assertThat(history.findVersion(2L, START.plusMinutes(1))).isEmpty();
+        assertThat(history.findVersion(2L, START.plusMinutes(2))).hasValueSatisfying(
+                result -> assertThat(result.getName()).isEqualTo("Version 2"));
+    }
+
+    @Test
+    public void findVersion_shouldNotRebuildVersions_afterDeletion() {
+
+        Contact contact = Contact.builder()
+                .id(3L)
+                .name("John Appleseed")
+                .createdDateTime(START)
+                .lastModifiedDateTime(START)
+                .build();
+
+        history.recordVersion(contact);
+        history.recordDeletion(3L, START.plusMinutes(1));
+
+        assertThat(history.findVersion(3L, START)).isPresent();
+        assertThat(history.findVersion(3L, START.plusMinutes(1))).isEmpty();
+    }
+
+    @Test
+    public void findVersion_shouldRebuildVersions_whenSiblingsShareNamesAndIndexes() {
+
+        Contact contact = Contact.builder()
+                .id(4L)
+                .name("John Appleseed")
+                .phones(new ArrayList<>(List.of(new Phone("1", "mobile"), new Phone("2", "work"))))
+                .emails(new ArrayList<>(List.of(new Email("john@example.com", "home"))))
+                .groups(new ArrayList<>(List.of("Family", "Friends", "Work")))
+                .createdDateTime(START)
+                .lastModifiedDateTime(START)
+                .build();
+        history.recordVersion(contact);
+        Contact original = copy(contact);
+
+        contact.getPhones().set(0, new Phone("1", null));
+        contact.getGroups().remove(1);
+        contact.setLastModifiedDateTime(START.plusMinutes(1));
+        history.recordVersion(contact);
+        Contact updated = copy(contact);
+
+        contact.getEmails().set(0, new Email("john@example.com", null));
+        contact.getPhones().remove(1);
+        contact.setLastModifiedDateTime(START.plusMinutes(2));
+        history.recordVersion(contact);
+
+        // Contacts are only equal by id, so that their fields are compared one by one
+        assertThat(history.findVersion(4L, START).get()).isEqualToComparingFieldByField(original);
+        assertThat(history.findVersion(4L, START.plusMinutes(1)).get()).isEqualToComparingFieldByField(updated);
+        assertThat(history.findVersion(4L, START.plusMinutes(2)).get()).isEqualToComparingFieldByField(contact);
+    }
+
+    private static Contact copy(Contact contact) {
+        return Contact.builder()
+                .id(contact.getId())
+                .name(contact.getName())
+                .phones(new ArrayList<>(contact.getPhones()))
+                .emails(new ArrayList<>(contact.getEmails()))
+                .groups(new ArrayList<>(contact.getGroups()))
+                .createdDateTime(contact.getCreatedDateTime())
+                .lastModifiedDateTime(contact.getLastModifiedDateTime())
+                .build();
+    }
+}
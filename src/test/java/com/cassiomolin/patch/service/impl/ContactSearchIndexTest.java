@@ -0,0 +1,101 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Work;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContactSearchIndexTest {
+
+    private ContactSearchIndex index;
+
+    @Before
+    public void setup() {
+        index = new ContactSearchIndex(new SimpleMeterRegistry());
+        index.index(contact(1L, "John Appleseed", "Apple", "Engineer", null));
+        index.index(contact(2L, "Jane Doe", "Appleton & Sons", "Manager", "Met John at the conference"));
+        index.index(contact(3L, "Jöhn Smith", "Acme", "Apple picker", null));
+    }
+
+    @Test
+    public void tokenize_shouldLowercaseAndStripAccents() {
+        assertThat(ContactSearchIndex.tokenize("  Jöhn O'Connor-Smith, JOHN ")).containsExactly("john", "o", "connor", "smith");
+    }
+
+    @Test
+    public void search_shouldRankNameAndWholeTermMatchesFirst() {
+
+        assertThat(ids(index.search("john", 0, 10))).containsExactly(1L, 3L, 2L);
+        assertThat(ids(index.search("app", 0, 10))).containsExactly(1L, 2L, 3L);
+        assertThat(ids(index.search("john appl", 0, 10))).containsExactly(1L, 3L, 2L);
+        assertThat(ids(index.search("jo appl", 0, 10))).isEmpty();
+        assertThat(ids(index.search("john acme", 0, 10))).containsExactly(3L);
+        assertThat(ids(index.search("nobody", 0, 10))).isEmpty();
+    }
+
+    @Test
+    public void search_shouldPaginate() {
+
+        ContactSearchIndex.Result firstPage = index.search("j", 0, 2);
+        ContactSearchIndex.Result secondPage = index.search("j", 1, 2);
+
+        assertThat(firstPage.getTotal()).isEqualTo(3);
+        assertThat(ids(firstPage)).hasSize(2);
+        assertThat(ids(secondPage)).hasSize(1).doesNotContainAnyElementsOf(ids(firstPage));
+        assertThat(ids(index.search("j", 5, 2))).isEmpty();
+    }
+
+    @Test
+    public void search_shouldCountEveryCompletionOfLastWord() {
+
+        for (long id = 10; id < 110; id++) {
+            index.index(contact(id, "Zed" + (char) ('a' + id % 26) + (char) ('a' + id / 26), null, null, null));
+        }
+
+        ContactSearchIndex.Result result = index.search("zed", 0, 10);
+
+        assertThat(result.getTotal()).isEqualTo(100);
+        assertThat(ids(result)).hasSize(10);
+    }
+
+    @Test
+    public void index_shouldReplacePreviousValues_whenContactIsUpdatedInPlace() {
+
+        Contact contact = contact(4L, "Mary Major", "Initech", null, null);
+        index.index(contact);
+        contact.setName("Mary Minor");
+        contact.getWork().setCompany(null);
+        index.index(contact);
+
+        assertThat(ids(index.search("major", 0, 10))).isEmpty();
+        assertThat(ids(index.search("initech", 0, 10))).isEmpty();
+        assertThat(ids(index.search("mary min", 0, 10))).containsExactly(4L);
+
+        index.remove(4L);
+        index.remove(1L);
+        assertThat(ids(index.search("mary", 0, 10))).isEmpty();
+        assertThat(ids(index.search("john", 0, 10))).containsExactly(3L, 2L);
+
+        index.index(contact(5L, "Mary Moe", null, null, null));
+        assertThat(ids(index.search("m", 0, 10))).contains(5L).doesNotContain(4L);
+    }
+
+    private static Contact contact(Long id, String name, String company, String title, String notes) {
+        return Contact.builder()
+                .id(id)
+                .name(name)
+                .work(Work.builder().company(company).title(title).build())
+                .notes(notes)
+                .build();
+    }
+
+    private static List<Long> ids(ContactSearchIndex.Result result) {
+        return result.getHits().stream().map(ContactSearchIndex.Hit::getContactId).collect(toList());
+    }
+}
@@ -0,0 +1,96 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ContactHistoryProperties;
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DirtiesContext
+@RunWith(SpringRunner.class)
+@Import({JacksonConfig.class, ContactHistoryProperties.class, ContactHistory.class,
+        SequentialContactIdGenerator.class, DefaultContactService.class})
+public class DefaultContactServiceTest {
+
+    @Autowired
+    private DefaultContactService service;
+
+    @Test
+    public void updateContact_shouldFail_whenContactHasBeenDeleted() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+        service.deleteContact(contact);
+
+        assertThatThrownBy(() -> service.updateContact(Contact.builder().id(contact.getId()).name("John Doe").build()))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> service.deleteContact(contact)).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(service.findContact(contact.getId())).isEmpty();
+    }
+
+    @Test
+    public void store_shouldStayConsistent_whenContactsAreWrittenAndListedConcurrently() throws Exception {
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(service.createContact(Contact.builder().name("Contact " + i).build()).getId());
+        }
+
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<?> lister = executor.submit(() -> {
+                while (writing.get()) {
+                    for (Contact contact : service.findContacts()) {
+                        assertThat(contact.getName()).isNotNull();
+                    }
+                }
+            });
+
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 4; writer++) {
+                writers.add(executor.submit(() -> {
+                    for (Long id : ids) {
+                        try {
+                            service.updateContact(Contact.builder().id(id).name("Updated").build());
+                            service.deleteContact(Contact.builder().id(id).build());
+                        } catch (ResourceNotFoundException e) {
+                            // Deleted by another writer
+                        } catch (RuntimeException e) {
+                            errors.add(e);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            lister.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(errors).isEmpty();
+        assertThat(service.findContacts()).isEmpty();
+        ids.forEach(id -> assertThat(service.findContact(id)).isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.WriteBehindProperties;
+import com.cassiomolin.patch.domain.Contact;
+import lombok.SneakyThrows;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileContactJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private WriteBehindProperties properties;
+
+    private FileContactJournal journal;
+
+    @Before
+    @SneakyThrows
+    public void setup() {
+        properties = new WriteBehindProperties();
+        properties.setJournal(folder.getRoot().toPath().resolve("contacts.journal"));
+        journal = new FileContactJournal(JacksonConfig.defaultObjectMapper(), properties);
+        journal.open();
+    }
+
+    @After
+    @SneakyThrows
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    @SneakyThrows
+    public void read_shouldKeepGroupsWrittenAfterTornWrite() {
+
+        journal.write(Map.of(1L, contact(1L, "John Appleseed")));
+        journal.close();
+        Files.write(properties.getJournal(), "{\"id\":2,\"contact\":{\"na".getBytes(StandardCharsets.UTF_8), APPEND);
+
+        journal.open();
+        assertThat(journal.read()).extracting(Contact::getName).containsExactly("John Appleseed");
+        journal.write(Map.of(3L, contact(3L, "Jane Doe")));
+        journal.close();
+
+        journal.open();
+        assertThat(journal.read()).extracting(Contact::getName).containsExactly("John Appleseed", "Jane Doe");
+    }
+
+    @Test
+    @SneakyThrows
+    public void read_shouldCompactJournal_whenChangesHaveBeenSuperseded() {
+
+        journal.write(Map.of(1L, contact(1L, "John Appleseed")));
+        journal.write(Map.of(1L, contact(1L, "John Doe")));
+        Map<Long, Contact> changes = new LinkedHashMap<>();
+        changes.put(2L, contact(2L, "Jane Doe"));
+        changes.put(3L, contact(3L, "James Doe"));
+        journal.write(changes);
+        journal.write(Collections.singletonMap(2L, null));
+        journal.close();
+
+        journal.open();
+        assertThat(journal.read()).extracting(Contact::getName).containsExactly("John Doe", "James Doe");
+        assertThat(Files.readAllLines(properties.getJournal())).hasSize(2);
+
+        journal.write(Map.of(4L, contact(4L, "Ann")));
+        journal.close();
+        journal.open();
+        assertThat(journal.read()).extracting(Contact::getName).containsExactly("John Doe", "James Doe", "Ann");
+    }
+
+    private static Contact contact(Long id, String name) {
+        return Contact.builder().id(id).name(name).build();
+    }
+}
@@ -0,0 +1,150 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ContactHistoryProperties;
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * Compares the column-level updates of {@link JdbcContactService} with rewriting the whole contact row and its child
+ * tables, for {@code replace /favorite}, {@code add /groups/-}, {@code add /groups/0} and {@code remove /groups/0}
+ * patches on a contact with large lists.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=com.cassiomolin.patch.service.impl.JdbcContactServiceBenchmark -Dexec.classpathScope=test}.
+ */
+public class JdbcContactServiceBenchmark {
+
+    private static final int LIST_SIZE = 500;
+
+    private static final int WARMUP_ITERATIONS = 200;
+
+    private static final int MEASURED_ITERATIONS = 1_000;
+
+    public static void main(String[] args) {
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            JdbcContactService service = new JdbcContactService(jdbcTemplate,
+                    new ContactHistory(JacksonConfig.defaultObjectMapper(), new ContactHistoryProperties()));
+            service.createSchema();
+
+            Long id = service.createContact(contact()).getId();
+
+            run("replace /favorite, pushdown", service, id, contact -> contact.setFavorite(!contact.getFavorite()),
+                    (persisted, contact) -> service.writeChanges(persisted, contact));
+            run("replace /favorite, full rewrite", service, id, contact -> contact.setFavorite(!contact.getFavorite()),
+                    (persisted, contact) -> rewrite(jdbcTemplate, contact));
+
+            run("add /groups/-, pushdown", service, id, contact -> contact.getGroups().add("Group"),
+                    (persisted, contact) -> service.writeChanges(persisted, contact));
+            run("add /groups/-, full rewrite", service, id, contact -> contact.getGroups().add("Group"),
+                    (persisted, contact) -> rewrite(jdbcTemplate, contact));
+
+            run("add /groups/0, pushdown", service, id, contact -> contact.getGroups().add(0, "Group"),
+                    (persisted, contact) -> service.writeChanges(persisted, contact));
+            run("add /groups/0, full rewrite", service, id, contact -> contact.getGroups().add(0, "Group"),
+                    (persisted, contact) -> rewrite(jdbcTemplate, contact));
+
+            run("remove /groups/0, pushdown", service, id, contact -> contact.getGroups().remove(0),
+                    (persisted, contact) -> service.writeChanges(persisted, contact));
+            run("remove /groups/0, full rewrite", service, id, contact -> contact.getGroups().remove(0),
+                    (persisted, contact) -> rewrite(jdbcTemplate, contact));
+
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    private static void run(String name, JdbcContactService service, Long id, Consumer<Contact> change, Writer writer) {
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(service, id, change, writer);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            iteration(service, id, change, writer);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-32s %10.1f us/op%n", name, elapsed / 1_000.0 / MEASURED_ITERATIONS);
+    }
+
+    private static void iteration(JdbcContactService service, Long id, Consumer<Contact> change, Writer writer) {
+        Contact persisted = service.findContact(id).orElseThrow(IllegalStateException::new);
+        Contact contact = service.findContact(id).orElseThrow(IllegalStateException::new);
+        change.accept(contact);
+        writer.write(persisted, contact);
+    }
+
+    private static void rewrite(JdbcTemplate jdbcTemplate, Contact contact) {
+
+        jdbcTemplate.update("UPDATE contact SET name = ?, birthday = ?, work_title = ?, work_company = ?, favorite = ?, " +
+                        "notes = ?, created_date_time = ?, last_modified_date_time = ?, phones_present = ?, emails_present = ?, " +
+                        "groups_present = ? WHERE id = ?",
+                contact.getName(), contact.getBirthday(),
+                contact.getWork() == null ? null : contact.getWork().getTitle(),
+                contact.getWork() == null ? null : contact.getWork().getCompany(),
+                contact.getFavorite(), contact.getNotes(),
+                contact.getCreatedDateTime(), contact.getLastModifiedDateTime(),
+                contact.getPhones() != null, contact.getEmails() != null, contact.getGroups() != null, contact.getId());
+
+        jdbcTemplate.update("DELETE FROM contact_phone WHERE contact_id = ?", contact.getId());
+        jdbcTemplate.update("DELETE FROM contact_email WHERE contact_id = ?", contact.getId());
+        jdbcTemplate.update("DELETE FROM contact_group WHERE contact_id = ?", contact.getId());
+
+        List<Object[]> phones = new ArrayList<>();
+        for (int i = 0; i < contact.getPhones().size(); i++) {
+            phones.add(new Object[]{contact.getPhones().get(i).getPhone(), contact.getPhones().get(i).getType(), contact.getId(), i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO contact_phone (phone, type, contact_id, position) VALUES (?, ?, ?, ?)", phones);
+
+        List<Object[]> emails = new ArrayList<>();
+        for (int i = 0; i < contact.getEmails().size(); i++) {
+            emails.add(new Object[]{contact.getEmails().get(i).getEmail(), contact.getEmails().get(i).getType(), contact.getId(), i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO contact_email (email, type, contact_id, position) VALUES (?, ?, ?, ?)", emails);
+
+        List<Object[]> groups = new ArrayList<>();
+        for (int i = 0; i < contact.getGroups().size(); i++) {
+            groups.add(new Object[]{contact.getGroups().get(i), contact.getId(), i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO contact_group (name, contact_id, position) VALUES (?, ?, ?)", groups);
+    }
+
+    private static Contact contact() {
+
+        return Contact.builder()
+                .name("John Appleseed")
+                .favorite(false)
+                .phones(IntStream.range(0, LIST_SIZE)
+                        .mapToObj(i -> Phone.builder().phone(String.valueOf(i)).build())
+                        .collect(toCollection(ArrayList::new)))
+                .emails(IntStream.range(0, LIST_SIZE)
+                        .mapToObj(i -> Email.builder().email(i + "@example.com").build())
+                        .collect(toCollection(ArrayList::new)))
+                .groups(IntStream.range(0, LIST_SIZE)
+                        .mapToObj(i -> "Group " + i)
+                        .collect(toCollection(ArrayList::new)))
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+
+        void write(Contact persisted, Contact contact);
+    }
+}
@@ -0,0 +1,220 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.ContactHistoryProperties;
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import org.assertj.core.util.Lists;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@JdbcTest
+@RunWith(SpringRunner.class)
+@TestPropertySource(properties = "contacts.store=jdbc")
+@Import({JacksonConfig.class, ContactHistoryProperties.class, ContactHistory.class, JdbcContactService.class})
+public class JdbcContactServiceTest {
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JdbcContactService service;
+
+    @Test
+    public void findContact_shouldReturnCreatedContact() {
+
+        Contact created = service.createContact(contact());
+
+        Contact expected = contact();
+        expected.setId(created.getId());
+        expected.setCreatedDateTime(created.getCreatedDateTime());
+        expected.setLastModifiedDateTime(created.getLastModifiedDateTime());
+
+        assertThat(service.findContact(created.getId()))
+                .hasValueSatisfying(found -> assertThat(found).isEqualToComparingFieldByFieldRecursively(expected));
+
+        assertThat(service.findContacts()).extracting(Contact::getId).contains(created.getId());
+    }
+
+    @Test
+    public void findContact_shouldReturnTimestampsOfUpdatedContact() {
+
+        Contact contact = service.createContact(contact());
+        contact.setNotes("Updated");
+        service.updateContact(contact);
+
+        assertThat(contact.getLastModifiedDateTime().getNano() % 1_000).isZero();
+        assertThat(service.findContact(contact.getId())).hasValueSatisfying(found -> {
+            assertThat(found.getCreatedDateTime()).isEqualTo(contact.getCreatedDateTime());
+            assertThat(found.getLastModifiedDateTime()).isEqualTo(contact.getLastModifiedDateTime());
+        });
+    }
+
+    @Test
+    public void updateContact_shouldOnlyUpdateChangedColumn() {
+
+        Contact contact = service.findContact(service.createContact(contact()).getId()).orElseThrow(AssertionError::new);
+        reset(jdbcTemplate);
+
+        contact.setFavorite(true);
+        service.updateContact(contact);
+
+        verify(jdbcTemplate).update(eq("UPDATE contact SET favorite = ?, last_modified_date_time = ? WHERE id = ?"), (Object[]) any());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+
+        assertThat(service.findContact(contact.getId()))
+                .hasValueSatisfying(found -> assertThat(found.getFavorite()).isTrue());
+    }
+
+    @Test
+    public void updateContact_shouldOnlyWriteChangedListItems() {
+
+        Contact contact = service.findContact(service.createContact(contact()).getId()).orElseThrow(AssertionError::new);
+        reset(jdbcTemplate);
+
+        contact.getPhones().set(1, Phone.builder().phone("2222222222").type("home").build());
+        contact.getGroups().add("Colleagues");
+        contact.getEmails().remove(0);
+        service.updateContact(contact);
+
+        verify(jdbcTemplate).batchUpdate(eq("UPDATE contact_phone SET phone = ?, type = ? WHERE contact_id = ? AND position = ?"), argThat((List<Object[]> args) -> args.size() == 1));
+        verify(jdbcTemplate).batchUpdate(eq("INSERT INTO contact_group (name, contact_id, position) VALUES (?, ?, ?)"), argThat((List<Object[]> args) -> args.size() == 1));
+        verify(jdbcTemplate).update(eq("DELETE FROM contact_email WHERE contact_id = ? AND position >= ? AND position < ?"), (Object[]) any());
+
+        assertThat(service.findContact(contact.getId())).hasValueSatisfying(found -> {
+            assertThat(found.getPhones()).containsExactlyElementsOf(contact.getPhones());
+            assertThat(found.getEmails()).containsExactlyElementsOf(contact.getEmails());
+            assertThat(found.getGroups()).containsExactly("Friends", "Colleagues");
+        });
+    }
+
+    @Test
+    public void updateContact_shouldMoveFollowingItems_whenHeadIsRemoved() {
+
+        Contact contact = contact();
+        contact.setGroups(Lists.newArrayList("Friends", "Family", "Colleagues", "Neighbours"));
+        contact = service.findContact(service.createContact(contact).getId()).orElseThrow(AssertionError::new);
+        reset(jdbcTemplate);
+
+        contact.getGroups().remove(0);
+        service.updateContact(contact);
+
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("UPDATE contact_group"), anyList());
+        verify(jdbcTemplate).update(eq("DELETE FROM contact_group WHERE contact_id = ? AND position >= ? AND position < ?"), (Object[]) any());
+
+        assertThat(service.findContact(contact.getId())).hasValueSatisfying(found ->
+                assertThat(found.getGroups()).containsExactly("Family", "Colleagues", "Neighbours"));
+    }
+
+    @Test
+    public void updateContact_shouldMoveFollowingItems_whenItemIsInserted() {
+
+        Contact contact = service.findContact(service.createContact(contact()).getId()).orElseThrow(AssertionError::new);
+        reset(jdbcTemplate);
+
+        contact.getPhones().add(0, Phone.builder().phone("2222222222").build());
+        service.updateContact(contact);
+
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("UPDATE contact_phone"), anyList());
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO contact_phone"), argThat((List<Object[]> args) -> args.size() == 1));
+
+        assertThat(service.findContact(contact.getId())).hasValueSatisfying(found ->
+                assertThat(found.getPhones()).containsExactlyElementsOf(contact.getPhones()));
+    }
+
+    @Test
+    public void findContact_shouldReturnEmptyLists() {
+
+        Contact contact = contact();
+        contact.setPhones(Lists.newArrayList());
+        contact.setEmails(null);
+        Contact created = service.createContact(contact);
+
+        assertThat(service.findContact(created.getId())).hasValueSatisfying(found -> {
+            assertThat(found.getPhones()).isEmpty();
+            assertThat(found.getEmails()).isNull();
+        });
+        assertThat(service.findContacts()).filteredOn(found -> found.getId().equals(created.getId()))
+                .hasOnlyOneElementSatisfying(found -> {
+                    assertThat(found.getPhones()).isEmpty();
+                    assertThat(found.getEmails()).isNull();
+                });
+
+        created.getGroups().clear();
+        service.updateContact(created);
+
+        assertThat(service.findContact(created.getId()))
+                .hasValueSatisfying(found -> assertThat(found.getGroups()).isEmpty());
+    }
+
+    @Test(expected = ResourceNotFoundException.class)
+    public void updateContact_shouldThrowResourceNotFound_whenContactDoesNotExist() {
+
+        Contact contact = contact();
+        contact.setId(Long.MAX_VALUE);
+        service.updateContact(contact);
+    }
+
+    @Test
+    public void sampleContacts_shouldOnlyLoadPickedContacts() {
+
+        for (int i = 0; i < 5; i++) {
+            service.createContact(contact());
+        }
+        int count = service.countContacts();
+        reset(jdbcTemplate);
+
+        List<Contact> sample = service.sampleContacts(2);
+
+        assertThat(count).isGreaterThanOrEqualTo(5);
+        assertThat(sample).hasSize(2).doesNotHaveDuplicates()
+                .allSatisfy(contact -> assertThat(contact.getGroups()).containsExactly("Friends"));
+        verify(jdbcTemplate).query(eq("SELECT * FROM contact WHERE id IN (?, ?) ORDER BY id"), any(Object[].class), any(RowMapper.class));
+        verify(jdbcTemplate, never()).query(eq("SELECT * FROM contact ORDER BY id"), any(Object[].class), any(RowMapper.class));
+    }
+
+    @Test
+    public void deleteContact_shouldDeleteContact() {
+
+        Contact created = service.createContact(contact());
+        service.deleteContact(created);
+
+        assertThat(service.findContact(created.getId())).isEmpty();
+    }
+
+    private Contact contact() {
+
+        return Contact.builder()
+                .name("John Appleseed")
+                .birthday(LocalDate.parse("1990-01-01"))
+                .work(Work.builder().company("Acme").title("Engineer").build())
+                .phones(Lists.newArrayList(
+                        Phone.builder().phone("0000000000").type("work").build(),
+                        Phone.builder().phone("1111111111").build()))
+                .emails(Lists.newArrayList(
+                        Email.builder().email("john@example.com").build(),
+                        Email.builder().email("john.appleseed@example.com").type("work").build()))
+                .groups(Lists.newArrayList("Friends"))
+                .favorite(false)
+                .notes("Cool guy!")
+                .build();
+    }
+}
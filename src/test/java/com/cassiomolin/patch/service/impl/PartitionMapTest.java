@@ -0,0 +1,115 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.PartitioningProperties;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PartitionMapTest {
+
+    private static final URI NODE_A = URI.create("http://localhost:8080");
+
+    private static final URI NODE_B = URI.create("http://localhost:8081");
+
+    private static final URI NODE_C = URI.create("http://localhost:8082");
+
+    @Test
+    public void ownerOf_shouldBeSelf_whenAlone() {
+
+        PartitionMap partitionMap = partitionMap(NODE_A);
+
+        assertThat(partitionMap.localPartitions()).hasSize(256);
+        assertThat(partitionMap.ownerOf(42L)).isEqualTo(NODE_A);
+        assertThat(partitionMap.partitionOf(256L * 7 + 42)).isEqualTo(42);
+    }
+
+    @Test
+    public void join_shouldAssignPartitionsTheSameWay_onEveryNode() {
+
+        PartitionMap a = partitionMap(NODE_A);
+        PartitionMap b = partitionMap(NODE_B);
+
+        assertThat(a.join(Arrays.asList(NODE_B, URI.create("http://localhost:8082/")))).isTrue();
+        assertThat(b.join(Arrays.asList(NODE_C, NODE_A))).isTrue();
+        assertThat(a.join(List.of(NODE_C))).isFalse();
+
+        assertThat(a.members()).containsExactly(NODE_A, NODE_B, NODE_C);
+        for (long id = 0; id < 256; id++) {
+            assertThat(a.ownerOf(id)).isEqualTo(b.ownerOf(id));
+        }
+        assertThat(a.localPartitions().length + b.localPartitions().length).isLessThan(256);
+    }
+
+    @Test
+    public void join_shouldOnlyMovePartitionsToNewNode() {
+
+        PartitionMap partitionMap = partitionMap(NODE_A);
+        partitionMap.join(List.of(NODE_B));
+        URI[] before = owners(partitionMap);
+
+        partitionMap.join(List.of(NODE_C));
+        URI[] after = owners(partitionMap);
+
+        int moved = 0;
+        for (int partition = 0; partition < before.length; partition++) {
+            if (!before[partition].equals(after[partition])) {
+                assertThat(after[partition]).isEqualTo(NODE_C);
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(256 / 6, 256 / 2);
+        assertThat(partitionMap.partitionCounts().values()).allSatisfy(count -> assertThat(count).isPositive());
+    }
+
+    @Test
+    public void nextId_shouldGenerateIdsInLocalPartitions() {
+
+        PartitionMap partitionMap = partitionMap(NODE_A);
+        partitionMap.join(List.of(NODE_B, NODE_C));
+        partitionMap.markJoined();
+        PartitionedContactIdGenerator idGenerator = new PartitionedContactIdGenerator(partitionMap);
+
+        int partition = partitionMap.localPartitions()[0];
+        idGenerator.advancePast(256L * 1000 + partition);
+
+        for (int i = 0; i < 1000; i++) {
+            long id = idGenerator.nextId();
+            assertThat(partitionMap.isLocal(id)).isTrue();
+            if (partitionMap.partitionOf(id) == partition) {
+                assertThat(id).isGreaterThan(256L * 1000 + partition);
+            }
+        }
+    }
+
+    @Test
+    public void nextId_shouldFail_untilNodeHasJoined() {
+
+        PartitionMap partitionMap = partitionMap(NODE_A);
+        PartitionedContactIdGenerator idGenerator = new PartitionedContactIdGenerator(partitionMap);
+
+        // Alone, the node would generate ids in partitions that other nodes may own once it has joined them
+        assertThatThrownBy(idGenerator::nextId).isInstanceOf(IllegalStateException.class);
+
+        partitionMap.markJoined();
+        assertThat(partitionMap.isLocal(idGenerator.nextId())).isTrue();
+    }
+
+    private static PartitionMap partitionMap(URI self) {
+        PartitioningProperties properties = new PartitioningProperties();
+        properties.setSelf(self);
+        return new PartitionMap(properties);
+    }
+
+    private static URI[] owners(PartitionMap partitionMap) {
+        URI[] owners = new URI[partitionMap.partitions()];
+        for (int partition = 0; partition < owners.length; partition++) {
+            owners[partition] = partitionMap.ownerOf(partition);
+        }
+        return owners;
+    }
+}
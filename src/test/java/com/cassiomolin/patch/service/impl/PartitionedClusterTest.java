@@ -0,0 +1,174 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.PatchApplication;
+import com.cassiomolin.patch.web.PatchMediaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.joining;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs several partitioned nodes on localhost, in the same JVM.
+ */
+public class PartitionedClusterTest {
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    private final RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory());
+
+    @After
+    public void tearDown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    public void cluster_shouldServeEveryContactFromEveryNode_whenNodesJoin() throws IOException {
+
+        URI a = startNode();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(createContact(a, "Contact " + i));
+        }
+
+        URI b = startNode(a);
+        assertThat(localIds(a)).isNotEmpty();
+        assertThat(localIds(b)).isNotEmpty();
+        assertThat(localIds(a)).doesNotContainAnyElementsOf(localIds(b));
+
+        URI c = startNode(b);
+        for (URI node : List.of(a, b, c)) {
+            JsonNode partitionMap = restTemplate.getForObject(node + "/partitions", JsonNode.class);
+            assertThat(partitionMap.get("partitionsByMember").size()).isEqualTo(3);
+        }
+
+        Set<Long> localIds = new HashSet<>();
+        for (URI node : List.of(a, b, c)) {
+            localIds.addAll(localIds(node));
+            assertThat(ids(restTemplate.getForObject(node + "/contacts", JsonNode.class))).containsExactlyElementsOf(ids);
+        }
+        assertThat(localIds).containsExactlyInAnyOrderElementsOf(ids);
+
+        Long id = localIds(c).get(0);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(PatchMediaType.APPLICATION_MERGE_PATCH);
+        ResponseEntity<Void> patchResponse = restTemplate.exchange(a + "/contacts/" + id, HttpMethod.PATCH,
+                new HttpEntity<>("{\"favorite\":true}", headers), Void.class);
+        assertThat(patchResponse.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        for (URI node : List.of(a, b, c)) {
+            JsonNode contact = restTemplate.getForObject(node + "/contacts/" + id, JsonNode.class);
+            assertThat(contact.get("favorite").asBoolean()).isTrue();
+        }
+
+        Long created = createContact(b, "Created on B");
+        assertThat(localIds(b)).contains(created);
+    }
+
+    @Test
+    public void cluster_shouldNotReuseIdsOfDeletedContacts_whenPartitionsAreHandedOver() throws IOException {
+
+        URI a = startNode();
+        Set<Long> deleted = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            Long id = createContact(a, "Contact " + i);
+            restTemplate.delete(a + "/contacts/" + id);
+            deleted.add(id);
+        }
+
+        URI b = startNode(a);
+        for (int i = 0; i < 20; i++) {
+            assertThat(deleted).doesNotContain(createContact(b, "Contact " + i));
+        }
+    }
+
+    @Test
+    public void node_shouldFailToStart_whenNoSeedAnswers() throws IOException {
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        assertThatThrownBy(() -> startNode(List.of(
+                "--contacts.partitioning.seeds=http://localhost:" + port,
+                "--contacts.partitioning.join-timeout=1s",
+                "--contacts.partitioning.join-retry-interval=200ms")))
+                .hasStackTraceContaining("None of the seeds [http://localhost:" + port + "] answered within PT1S");
+    }
+
+    @Test
+    public void node_shouldFailToStart_whenCacheIsEnabled() throws IOException {
+
+        assertThatThrownBy(() -> startNode(List.of("--contacts.cache.enabled=true")))
+                .hasStackTraceContaining("contacts.cache.enabled can't be combined with contacts.partitioning.enabled");
+    }
+
+    private URI startNode(URI... seeds) throws IOException {
+        List<String> args = new ArrayList<>();
+        if (seeds.length > 0) {
+            args.add("--contacts.partitioning.seeds=" + Arrays.stream(seeds).map(URI::toString).collect(joining(",")));
+        }
+        return startNode(args);
+    }
+
+    private URI startNode(List<String> extraArgs) throws IOException {
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        URI self = URI.create("http://localhost:" + port);
+
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=" + port,
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:node-" + port + ";DB_CLOSE_ON_EXIT=FALSE",
+                "--contacts.partitioning.enabled=true",
+                "--contacts.partitioning.self=" + self));
+        args.addAll(extraArgs);
+
+        nodes.add(new SpringApplicationBuilder(PatchApplication.class).run(args.toArray(new String[0])));
+        return self;
+    }
+
+    private Long createContact(URI node, String name) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        URI location = restTemplate.postForLocation(node + "/contacts",
+                new HttpEntity<>("{\"name\":\"" + name + "\"}", headers));
+        String path = location.getPath();
+        return Long.valueOf(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    private List<Long> localIds(URI node) {
+        return ids(restTemplate.getForObject(node + "/partitions/contacts", JsonNode.class));
+    }
+
+    private static List<Long> ids(JsonNode contacts) {
+        List<Long> ids = new ArrayList<>();
+        contacts.forEach(contact -> ids.add(contact.get("id").asLong()));
+        return ids;
+    }
+}
@@ -0,0 +1,39 @@
+package com.cassiomolin.patch.service.impl;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PostingListTest {
+
+    @Test
+    public void postingList_shouldHoldSameDocumentsAsBitSet_acrossArraysAndBitmaps() {
+
+        Random random = new Random(42);
+        PostingList postings = new PostingList();
+        BitSet expected = new BitSet();
+
+        // Dense enough in the first chunk to switch to a bitmap, sparse elsewhere
+        for (int i = 0; i < 50_000; i++) {
+            int document = random.nextBoolean() ? random.nextInt(1 << 16) : random.nextInt(1 << 20);
+            assertThat(postings.add(document)).isEqualTo(!expected.get(document));
+            expected.set(document);
+        }
+        for (int i = 0; i < 40_000; i++) {
+            int document = random.nextInt(1 << 20);
+            assertThat(postings.remove(document)).isEqualTo(expected.get(document));
+            expected.clear(document);
+        }
+
+        assertThat(postings.cardinality()).isEqualTo(expected.cardinality());
+        long[] words = new long[(1 << 20) / 64];
+        postings.orInto(words);
+        assertThat(BitSet.valueOf(words)).isEqualTo(expected);
+        for (int document = 0; document < 1 << 16; document++) {
+            assertThat(postings.contains(document)).isEqualTo(expected.get(document));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.PatchApplication;
+import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.ReplicationHeaders;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a primary and a read replica on localhost, in the same JVM.
+ */
+public class ReplicationClusterTest {
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    private final RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory());
+
+    {
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(HttpStatus statusCode) {
+                return false;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    public void replica_shouldServeChangesMadeOnPrimary() throws Exception {
+
+        URI primary = startNode("primary", null);
+        Long before = createContact(primary, "Created before the replica");
+
+        URI replica = startNode("replica", primary);
+
+        ResponseEntity<String> created = post(primary, "{\"name\":\"Created after the replica\"}");
+        String sequence = created.getHeaders().getFirst(ReplicationHeaders.SEQUENCE);
+        assertThat(sequence).isNotNull();
+        Long after = id(created.getHeaders().getLocation());
+
+        HttpHeaders mergePatchHeaders = new HttpHeaders();
+        mergePatchHeaders.setContentType(PatchMediaType.APPLICATION_MERGE_PATCH);
+        ResponseEntity<Void> patched = restTemplate.exchange(primary + "/contacts/" + before, HttpMethod.PATCH,
+                new HttpEntity<>("{\"favorite\":true}", mergePatchHeaders), Void.class);
+        assertThat(patched.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        restTemplate.delete(primary + "/contacts/" + after);
+
+        ResponseEntity<JsonNode> contact = get(replica + "/contacts/" + before,
+                patched.getHeaders().getFirst(ReplicationHeaders.SEQUENCE));
+        assertThat(contact.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(contact.getBody().get("favorite").asBoolean()).isTrue();
+        assertThat(Long.valueOf(contact.getHeaders().getFirst(ReplicationHeaders.SEQUENCE)))
+                .isGreaterThanOrEqualTo(Long.valueOf(sequence));
+
+        ResponseEntity<JsonNode> contacts = get(replica + "/contacts", String.valueOf(Long.valueOf(sequence) + 2));
+        assertThat(contacts.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(contacts.getBody()).hasSize(1);
+
+        assertThat(get(replica + "/contacts/" + before, "1000").getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(post(replica, "{\"name\":\"Created on the replica\"}").getStatusCode())
+                .isEqualTo(HttpStatus.METHOD_NOT_ALLOWED);
+
+        nodes.get(0).close();
+        Thread.sleep(1500);
+        assertThat(get(replica + "/contacts", null).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void replica_shouldMatchPrimary_afterPatchesToSiblingValues() throws Exception {
+
+        URI primary = startNode("primary", null);
+        URI replica = startNode("replica", primary);
+
+        Long id = id(post(primary, "{\"name\":\"John Appleseed\","
+                + "\"phones\":[{\"phone\":\"1\",\"type\":\"mobile\"},{\"phone\":\"2\",\"type\":\"work\"}],"
+                + "\"emails\":[{\"email\":\"john@example.com\",\"type\":\"home\"},"
+                + "{\"email\":\"john@work.example.com\",\"type\":\"work\"}],"
+                + "\"groups\":[\"Family\",\"Friends\",\"Work\"]}").getHeaders().getLocation());
+
+        String[] patches = {
+                "[{\"op\":\"remove\",\"path\":\"/phones/0/type\"}]",
+                "[{\"op\":\"remove\",\"path\":\"/groups/1\"}]",
+                "[{\"op\":\"add\",\"path\":\"/groups/1\",\"value\":\"Colleagues\"},"
+                        + "{\"op\":\"add\",\"path\":\"/phones/-\",\"value\":{\"phone\":\"3\",\"type\":\"home\"}}]",
+                "[{\"op\":\"remove\",\"path\":\"/emails/1\"},{\"op\":\"remove\",\"path\":\"/groups/0\"}]"
+        };
+
+        HttpHeaders jsonPatchHeaders = new HttpHeaders();
+        jsonPatchHeaders.setContentType(PatchMediaType.APPLICATION_JSON_PATCH);
+        String sequence = null;
+        for (String patch : patches) {
+            ResponseEntity<Void> patched = restTemplate.exchange(primary + "/contacts/" + id, HttpMethod.PATCH,
+                    new HttpEntity<>(patch, jsonPatchHeaders), Void.class);
+            assertThat(patched.getStatusCode()).as(patch).isEqualTo(HttpStatus.NO_CONTENT);
+            sequence = patched.getHeaders().getFirst(ReplicationHeaders.SEQUENCE);
+        }
+
+        JsonNode expected = get(primary + "/contacts/" + id, null).getBody();
+        assertThat(expected.get("phones")).hasSize(3);
+        assertThat(expected.get("phones").get(0).has("type")).isFalse();
+        assertThat(expected.get("emails").get(0).get("type").asText()).isEqualTo("home");
+
+        ResponseEntity<JsonNode> contact = get(replica + "/contacts/" + id, sequence);
+        assertThat(contact.getStatusCode()).isEqualTo(HttpStatus.OK);
+        expected.fieldNames().forEachRemaining(field ->
+                assertThat(contact.getBody().get(field)).as(field).isEqualTo(expected.get(field)));
+        assertThat(contact.getBody()).isEqualTo(expected);
+    }
+
+    private URI startNode(String role, URI primary) throws IOException {
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=" + port,
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:node-" + port + ";DB_CLOSE_ON_EXIT=FALSE",
+                "--contacts.replication.role=" + role,
+                "--contacts.replication.heartbeat-interval=100ms",
+                "--contacts.replication.max-staleness=1s"));
+        if (primary != null) {
+            args.add("--contacts.replication.primary=" + primary);
+        }
+
+        nodes.add(new SpringApplicationBuilder(PatchApplication.class).run(args.toArray(new String[0])));
+        return URI.create("http://localhost:" + port);
+    }
+
+    private ResponseEntity<String> post(URI node, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForEntity(node + "/contacts", new HttpEntity<>(body, headers), String.class);
+    }
+
+    private ResponseEntity<JsonNode> get(String uri, String minSequence) {
+        HttpHeaders headers = new HttpHeaders();
+        if (minSequence != null) {
+            headers.set(ReplicationHeaders.MIN_SEQUENCE, minSequence);
+        }
+        return restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+    }
+
+    private Long createContact(URI node, String name) {
+        return id(post(node, "{\"name\":\"" + name + "\"}").getHeaders().getLocation());
+    }
+
+    private static Long id(URI location) {
+        String path = location.getPath();
+        return Long.valueOf(path.substring(path.lastIndexOf('/') + 1));
+    }
+}
@@ -0,0 +1,93 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.ReplicationProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonPatch;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReplicationLogTest {
+
+    private static final OffsetDateTime START = OffsetDateTime.parse("2019-01-01T00:00:00Z");
+
+    private ObjectMapper mapper;
+
+    private ReplicationLog replicationLog;
+
+    @Before
+    public void setup() {
+        ReplicationProperties properties = new ReplicationProperties();
+        properties.setLogSize(4);
+        mapper = JacksonConfig.defaultObjectMapper();
+        replicationLog = new ReplicationLog(mapper, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @SneakyThrows
+    public void recordUpdate_shouldLogPatchFromPreviousState() {
+
+        Contact contact = Contact.builder().id(1L).name("John Appleseed").favorite(false)
+                .createdDateTime(START).lastModifiedDateTime(START).build();
+        JsonValue previousState = mapper.convertValue(contact, JsonValue.class);
+        replicationLog.recordCreation(contact);
+
+        Contact updated = mapper.convertValue(previousState, Contact.class);
+        updated.setFavorite(true);
+        updated.setLastModifiedDateTime(START.plusMinutes(1));
+        assertThat(replicationLog.recordUpdate(previousState, updated)).isEqualTo(2);
+
+        List<byte[]> lines = replicationLog.read(0, 10, Duration.ZERO);
+        assertThat(lines).hasSize(2);
+        ReplicationEntry entry = mapper.readValue(lines.get(1), ReplicationEntry.class);
+        assertThat(entry.getType()).isEqualTo(ReplicationEntry.Type.PATCH);
+        assertThat(entry.getSequence()).isEqualTo(2);
+        assertThat(entry.getContact()).isNull();
+
+        JsonPatch patch = Json.createPatch(entry.getPatch().asJsonArray());
+        JsonValue patched = patch.apply((JsonStructure) previousState);
+        assertThat(mapper.convertValue(patched, Contact.class)).isEqualToComparingFieldByField(updated);
+
+        // Applying the patch again fails the test of the last modified date
+        assertThatThrownBy(() -> patch.apply((JsonStructure) patched)).isInstanceOf(JsonException.class);
+    }
+
+    @Test
+    @SneakyThrows
+    public void read_shouldOnlyReturnRetainedChanges() {
+
+        for (long id = 1; id <= 6; id++) {
+            replicationLog.recordDeletion(id, START);
+        }
+
+        String epoch = replicationLog.epoch();
+        assertThat(replicationLog.retains(epoch, 1)).isFalse();
+        assertThat(replicationLog.retains(epoch, 2)).isTrue();
+        assertThat(replicationLog.retains(epoch, 7)).isFalse();
+        assertThat(replicationLog.retains("another run", 6)).isFalse();
+        assertThat(replicationLog.read(6, 10, Duration.ofMillis(10))).isEmpty();
+        assertThatThrownBy(() -> replicationLog.read(1, 10, Duration.ZERO)).isInstanceOf(IllegalStateException.class);
+
+        List<byte[]> lines = replicationLog.read(2, 3, Duration.ZERO);
+        assertThat(lines).hasSize(3);
+        assertThat(mapper.readValue(lines.get(0), ReplicationEntry.class).getId()).isEqualTo(3L);
+
+        ReplicationEntry heartbeat = mapper.readValue(replicationLog.heartbeat(), ReplicationEntry.class);
+        assertThat(heartbeat.getType()).isEqualTo(ReplicationEntry.Type.HEARTBEAT);
+        assertThat(heartbeat.getSequence()).isEqualTo(6);
+    }
+}
@@ -0,0 +1,126 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.FootprintProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.impl.ContactFootprint.Part;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StoreFootprintTest {
+
+    // Compressed pointers, 8-byte alignment and compact strings
+    private static final ObjectLayout LAYOUT = new ObjectLayout(true, true, 8, true);
+
+    private ContactService store;
+
+    private FootprintProperties properties;
+
+    private SimpleMeterRegistry registry;
+
+    private StoreFootprint footprint;
+
+    @Before
+    public void setup() {
+        store = mock(ContactService.class);
+        properties = new FootprintProperties();
+        registry = new SimpleMeterRegistry();
+        footprint = new StoreFootprint(store, properties, registry, LAYOUT);
+    }
+
+    @Test
+    public void of_shouldSizeShallowContactAndFields() {
+
+        ContactFootprint contact = ContactFootprint.of(Contact.builder().id(1L).name("John").build(), LAYOUT);
+
+        // 12-byte header and 11 references, then a string with a 4-byte array, and a cached id
+        assertThat(contact.bytes(Part.SHALLOW)).isEqualTo(56);
+        assertThat(contact.bytes(Part.FIELDS)).isEqualTo(24 + 24);
+        assertThat(contact.total()).isEqualTo(104);
+    }
+
+    @Test
+    public void of_shouldCountSharedValuesOnce() {
+
+        String group = "Friends";
+        List<String> groups = new ArrayList<>(List.of(group, group));
+        ContactFootprint contact = ContactFootprint.of(Contact.builder().groups(groups).build(), LAYOUT);
+
+        // List and its array of two references, then the string once
+        assertThat(contact.bytes(Part.GROUPS)).isEqualTo(24 + 24 + 24 + 24);
+    }
+
+    @Test
+    public void of_shouldSizeNestedValues() {
+
+        ContactFootprint contact = ContactFootprint.of(Contact.builder()
+                .phones(List.of(new Phone("Ω", "mobile")))
+                .createdDateTime(OffsetDateTime.of(2019, 1, 1, 9, 0, 0, 0, ZoneOffset.UTC))
+                .lastModifiedDateTime(OffsetDateTime.of(2019, 6, 1, 17, 30, 0, 0, ZoneOffset.UTC))
+                .build(), LAYOUT);
+
+        // List, array, phone, then a UTF-16 string and a Latin-1 one
+        assertThat(contact.bytes(Part.PHONES)).isEqualTo(24 + 24 + 24 + (24 + 24) + (24 + 24));
+        // Offset date time, local date time, local date and local time, for each timestamp
+        assertThat(contact.bytes(Part.TIMESTAMPS)).isEqualTo(2 * 4 * 24);
+        assertThat(contact.bytes(Part.WORK)).isZero();
+    }
+
+    @Test
+    public void estimate_shouldMeasureEveryContact_whenExact() {
+
+        properties.setSampleSize(1);
+        properties.setTop(2);
+        when(store.findContacts()).thenReturn(List.of(
+                Contact.builder().id(1L).name("Ann").build(),
+                Contact.builder().id(2L).name("John Appleseed").notes("Met at the conference").build(),
+                Contact.builder().id(3L).name("Bob").groups(List.of("Family")).build()));
+
+        FootprintReport report = footprint.estimate(true);
+
+        assertThat(report.isExact()).isTrue();
+        assertThat(report.getMeasured()).isEqualTo(3);
+        assertThat(report.getParts().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(report.getBytes());
+        assertThat(report.getLargest()).extracting(FootprintReport.LargestContact::getId).containsExactly(3L, 2L);
+        assertThat(report.getPerContact().getMax()).isEqualTo(report.getLargest().get(0).getBytes());
+        assertThat(registry.get("contacts.footprint.bytes").tag("part", "shallow").gauge().value())
+                .isEqualTo(3 * 56);
+    }
+
+    @Test
+    public void estimate_shouldExtrapolateSample() {
+
+        properties.setSampleSize(10);
+        when(store.countContacts()).thenReturn(100);
+        when(store.sampleContacts(10)).thenReturn(LongStream.rangeClosed(1, 10)
+                .mapToObj(id -> Contact.builder().id(id).name("John").build())
+                .collect(Collectors.toList()));
+
+        FootprintReport report = footprint.estimate(false);
+
+        verify(store, never()).findContacts();
+
+        assertThat(report.isExact()).isFalse();
+        assertThat(report.getContacts()).isEqualTo(100);
+        assertThat(report.getMeasured()).isEqualTo(10);
+        assertThat(report.getBytes()).isEqualTo(100 * 104);
+        assertThat(report.getPerContact().getP50()).isEqualTo(104);
+        assertThat(registry.get("contacts.footprint.contact.bytes").tag("statistic", "p99").gauge().value())
+                .isEqualTo(104);
+    }
+}
@@ -0,0 +1,155 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.WriteBehindProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactJournal;
+import com.cassiomolin.patch.web.util.JsonCodecs;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class WriteBehindQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private WriteBehindProperties properties;
+
+    private FileContactJournal journal;
+
+    private MeterRegistry registry;
+
+    private WriteBehindQueue queue;
+
+    @Before
+    @SneakyThrows
+    public void setup() {
+
+        properties = new WriteBehindProperties();
+        properties.setJournal(folder.getRoot().toPath().resolve("contacts.journal"));
+        properties.setMaxDelay(Duration.ofMillis(50));
+
+        journal = new FileContactJournal(JacksonConfig.defaultObjectMapper(), properties);
+        journal.open();
+
+        registry = new SimpleMeterRegistry();
+        queue = new WriteBehindQueue(journal, codecs(), properties, registry);
+        queue.start();
+    }
+
+    @After
+    @SneakyThrows
+    public void tearDown() {
+        queue.stop();
+        journal.close();
+    }
+
+    @Test
+    @SneakyThrows
+    public void durable_shouldCompleteOnceQueuedChangesAreWritten() {
+
+        Contact contact = Contact.builder().id(1L).name("John Appleseed").build();
+        queue.enqueue(contact);
+        contact.setName("John W. Appleseed");
+        queue.enqueue(contact);
+        queue.enqueue(Contact.builder().id(2L).name("James Doe").build());
+        queue.enqueueDeletion(2L);
+
+        queue.durable().join();
+
+        assertThat(Files.readAllLines(properties.getJournal())).hasSize(2);
+        assertThat(journal.read())
+                .extracting(Contact::getId, Contact::getName)
+                .containsExactly(tuple(1L, "John W. Appleseed"));
+
+        assertThat(queue.depth()).isZero();
+        assertThat(registry.get("contacts.write-behind.flush").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @SneakyThrows
+    public void durable_shouldFail_andChangesBeRetried_whenGroupFailsToBeWritten() {
+
+        queue.stop();
+        properties.setRetryDelay(Duration.ofMillis(100));
+        AtomicInteger failures = new AtomicInteger(1);
+        queue = new WriteBehindQueue(new ContactJournal() {
+
+            @Override
+            public Collection<Contact> read() throws IOException {
+                return journal.read();
+            }
+
+            @Override
+            public void write(Map<Long, Contact> changes) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IOException("Disk full");
+                }
+                journal.write(changes);
+            }
+        }, codecs(), properties, registry);
+        queue.start();
+
+        queue.enqueue(Contact.builder().id(1L).name("John Appleseed").build());
+        CompletableFuture<Void> failed = queue.durable();
+        assertThatThrownBy(failed::join).hasCauseInstanceOf(IOException.class);
+
+        queue.enqueue(Contact.builder().id(2L).name("James Doe").build());
+        queue.durable().join();
+
+        assertThat(journal.read())
+                .extracting(Contact::getId, Contact::getName)
+                .containsExactlyInAnyOrder(tuple(1L, "John Appleseed"), tuple(2L, "James Doe"));
+        assertThat(queue.depth()).isZero();
+    }
+
+    @Test
+    @SneakyThrows
+    public void stop_shouldWriteQueuedChanges() {
+
+        properties.setMaxDelay(Duration.ofMinutes(1));
+        queue.enqueue(Contact.builder().id(1L).name("John Appleseed").build());
+
+        queue.stop();
+        queue.start();
+
+        assertThat(journal.read()).extracting(Contact::getName).containsExactly("John Appleseed");
+    }
+
+    @Test
+    @SneakyThrows
+    public void enqueue_shouldWriteStateOfContactWhenQueued() {
+
+        properties.setMaxDelay(Duration.ofMinutes(1));
+        Contact contact = Contact.builder().id(1L).name("John Appleseed").build();
+        queue.enqueue(contact);
+        contact.setName("James Doe");
+
+        queue.stop();
+        queue.start();
+
+        assertThat(journal.read()).extracting(Contact::getName).containsExactly("John Appleseed");
+    }
+
+    private static JsonCodecs codecs() {
+        return new JacksonConfig().jsonCodecs(JacksonConfig.defaultObjectMapper());
+    }
+}
@@ -1,30 +1,54 @@
 package com.cassiomolin.patch.web.controller;
 
+import com.cassiomolin.patch.config.ContactFragmentProperties;
+import com.cassiomolin.patch.config.ExecutionLaneProperties;
+import com.cassiomolin.patch.config.IdempotencyProperties;
 import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.config.ResourceSchemaConfig;
 import com.cassiomolin.patch.domain.Contact;
 import com.cassiomolin.patch.service.ContactService;
 import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.Preferences;
+import com.cassiomolin.patch.web.converter.ContactFragmentsHttpMessageConverter;
+import com.cassiomolin.patch.web.exception.LaneSaturatedException;
 import com.cassiomolin.patch.web.exception.WebApiExceptionHandler;
+import com.cassiomolin.patch.web.filter.IdempotencyKeyFilter;
 import com.cassiomolin.patch.web.mapper.ContactMapper;
 import com.cassiomolin.patch.web.mapper.ContactMapperImpl;
 import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.util.ContactFragmentCache;
+import com.cassiomolin.patch.web.util.ContactPatchCoalescer;
+import com.cassiomolin.patch.web.util.ExecutionLanes;
+import com.cassiomolin.patch.web.util.ExecutionLanes.RequestClass;
 import com.cassiomolin.patch.web.util.PatchHelper;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
 import org.assertj.core.util.Lists;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.ResultHandler;
+import org.springframework.test.web.servlet.ResultMatcher;
 
 import javax.json.JsonMergePatch;
 import javax.json.JsonPatch;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.Optional;
 
@@ -36,11 +60,23 @@ import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @RunWith(SpringRunner.class)
+@Import(SimpleMeterRegistry.class)
 @WebMvcTest({
         ContactController.class,
         ContactMapperImpl.class,
         PatchHelper.class,
+        ContactPatchCoalescer.class,
+        ContactFragmentCache.class,
+        ContactFragmentProperties.class,
+        ContactFragmentsHttpMessageConverter.class,
+        ExecutionLanes.class,
+        ExecutionLaneProperties.class,
+        IdempotencyProperties.class,
+        PatchMetrics.class,
+        PatchMetricsProperties.class,
+        JsonPatchProperties.class,
         JacksonConfig.class,
+        ResourceSchemaConfig.class,
         WebApiExceptionHandler.class
 })
 public class ContactControllerTest {
@@ -57,6 +93,9 @@ public class ContactControllerTest {
     @SpyBean
     private PatchHelper patchHelper;
 
+    @SpyBean
+    private ExecutionLanes lanes;
+
     @Test
     @SneakyThrows
     public void createContact_shouldReturn201_whenInputIsValid() {
@@ -64,7 +103,7 @@ public class ContactControllerTest {
         Contact contactPersisted = contactPersisted();
         when(service.createContact(any(Contact.class))).thenReturn(contactPersisted);
 
-        mockMvc.perform(post("/contacts")
+        perform(post("/contacts")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(fromFile("json/contact/post-with-valid-payload.json")))
                 .andDo(print())
@@ -82,6 +121,34 @@ public class ContactControllerTest {
         assertThat(contactArgumentCaptor.getValue()).isEqualToComparingFieldByFieldRecursively(contactToPersist());
     }
 
+    @Test
+    @SneakyThrows
+    public void createContact_shouldReplayResponse_whenIdempotencyKeyIsReused() {
+
+        when(service.createContact(any(Contact.class))).thenReturn(contactPersisted());
+
+        for (int i = 0; i < 2; i++) {
+            perform(post("/contacts")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY, "a0b3e1a7")
+                    .content(fromFile("json/contact/post-with-valid-payload.json")))
+                    .andDo(print())
+                    .andExpect(status().isCreated())
+                    .andExpect(redirectedUrlPattern("http://*/contacts/1"));
+        }
+
+        perform(post("/contacts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY, "a0b3e1a7")
+                .content("{\"name\":\"Jane Appleseed\"}"))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.code").value("idempotency-key-reused"));
+
+        verify(service).createContact(any(Contact.class));
+        verifyNoMoreInteractions(service);
+    }
+
     @Test
     @SneakyThrows
     public void findContact_shouldReturn200_whenContactExists() {
@@ -89,7 +156,7 @@ public class ContactControllerTest {
         Contact contactPersisted = contactPersisted();
         when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted));
 
-        mockMvc.perform(get("/contacts/{id}", 1)
+        perform(get("/contacts/{id}", 1)
                 .accept(MediaType.APPLICATION_JSON))
                 .andDo(print())
                 .andExpect(status().isOk())
@@ -114,7 +181,7 @@ public class ContactControllerTest {
 
         when(service.findContacts()).thenReturn(Lists.newArrayList());
 
-        mockMvc.perform(get("/contacts")
+        perform(get("/contacts")
                 .accept(MediaType.APPLICATION_JSON))
                 .andDo(print())
                 .andExpect(status().isOk())
@@ -126,7 +193,7 @@ public class ContactControllerTest {
 
         verifyZeroInteractions(patchHelper);
 
-        verify(mapper).asOutput(anyList());
+        verifyZeroInteractions(mapper);
     }
 
     @Test
@@ -135,7 +202,7 @@ public class ContactControllerTest {
 
         when(service.findContacts()).thenReturn(Lists.list(contactPersisted()));
 
-        mockMvc.perform(get("/contacts")
+        perform(get("/contacts")
                 .accept(MediaType.APPLICATION_JSON))
                 .andDo(print())
                 .andExpect(status().isOk())
@@ -152,7 +219,53 @@ public class ContactControllerTest {
 
         verifyZeroInteractions(patchHelper);
 
-        verify(mapper).asOutput(anyList());
+        verify(mapper).asOutput(any(Contact.class));
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldReturn503_whenBulkLaneIsSaturated() {
+
+        doThrow(new LaneSaturatedException("bulk", Duration.ofSeconds(1))).when(lanes).submit(eq(RequestClass.BULK), any());
+
+        perform(get("/contacts")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.code").value("lane-saturated"));
+
+        verifyZeroInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldSerializeContactsOnce_untilTheyChange() {
+
+        Contact contact = contactPersisted();
+        contact.setId(2L);
+        when(service.findContacts()).thenReturn(Lists.list(contact));
+
+        for (int i = 0; i < 2; i++) {
+            MvcResult result = perform(get("/contacts")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.[0].name").value("John Appleseed"))
+                    .andReturn();
+            assertThat(result.getResponse().getContentLength())
+                    .isEqualTo(result.getResponse().getContentAsByteArray().length);
+        }
+        verify(mapper, times(1)).asOutput(any(Contact.class));
+
+        contact.setName("Johnny Appleseed");
+        contact.setLastModifiedDateTime(OffsetDateTime.parse("2019-01-02T00:00:00Z"));
+
+        perform(get("/contacts")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].name").value("Johnny Appleseed"))
+                .andExpect(jsonPath("$.[0].lastModifiedDateTime").value("2019-01-02T00:00:00Z"));
+        verify(mapper, times(2)).asOutput(any(Contact.class));
     }
 
     @Test
@@ -161,13 +274,13 @@ public class ContactControllerTest {
 
         when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
 
-        mockMvc.perform(put("/contacts/{id}", 1L)
+        perform(put("/contacts/{id}", 1L)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(fromFile("json/contact/put-with-valid-payload.json")))
                 .andDo(print())
                 .andExpect(status().isNoContent());
 
-        verify(mapper).update(any(Contact.class), any(ContactResourceInput.class));
+        verify(mapper).replacement(any(Contact.class), any(ContactResourceInput.class));
 
         ArgumentCaptor<Contact> contactArgumentCaptor = ArgumentCaptor.forClass(Contact.class);
         verify(service).findContact(anyLong());
@@ -185,14 +298,14 @@ public class ContactControllerTest {
 
         when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
 
-        mockMvc.perform(patch("/contacts/{id}", 1L)
+        perform(patch("/contacts/{id}", 1L)
                 .contentType(PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
                 .content(fromFile("json/contact/patch-with-valid-json-patch-payload.json")))
                 .andDo(print())
                 .andExpect(status().isNoContent());
 
         verify(mapper).asInput(any(Contact.class));
-        verify(mapper).update(any(Contact.class), any(ContactResourceInput.class));
+        verify(mapper).replacement(any(Contact.class), any(ContactResourceInput.class));
 
         verify(patchHelper).patch(any(JsonPatch.class), isA(ContactResourceInput.class), eq(ContactResourceInput.class));
         verifyNoMoreInteractions(patchHelper);
@@ -205,20 +318,90 @@ public class ContactControllerTest {
         assertThat(contactArgumentCaptor.getValue()).isEqualToComparingFieldByFieldRecursively(contactToUpdate());
     }
 
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonPatch_shouldReturn422WithFailureCode_whenTestOperationFails() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        perform(patch("/contacts/{id}", 1L)
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+                .content("[{\"op\":\"test\",\"path\":\"/name\",\"value\":\"Jane Appleseed\"}]"))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.code").value("test-failed"))
+                .andExpect(jsonPath("$.status").value("UNPROCESSABLE_ENTITY"));
+
+        verify(service).findContact(anyLong());
+        verifyNoMoreInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonPatch_shouldReturn200WithContact_whenRepresentationIsPreferred() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        perform(patch("/contacts/{id}", 1L)
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+                .header(Preferences.PREFER, Preferences.RETURN_REPRESENTATION)
+                .content(fromFile("json/contact/patch-with-valid-json-patch-payload.json")))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_REPRESENTATION))
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.name").value("Johnny Appleseed"));
+
+        verify(service).findContact(anyLong());
+        verify(service).updateContact(any(Contact.class));
+        verifyNoMoreInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonMergePatch_shouldReturn204_whenMinimalIsPreferred() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        perform(patch("/contacts/{id}", 1L)
+                .contentType(PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
+                .header(Preferences.PREFER, Preferences.RETURN_MINIMAL)
+                .content("{\"name\":\"Johnny Appleseed\"}"))
+                .andDo(print())
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_MINIMAL))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonPatch_shouldReturn422WithPointer_whenPathIsUnknown() {
+
+        perform(patch("/contacts/{id}", 1L)
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+                .content("[{\"op\":\"replace\",\"path\":\"/work/department\",\"value\":\"Sales\"}]"))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.code").value("bad-pointer"))
+                .andExpect(jsonPath("$.details[0].property").value("/work/department"));
+
+        verifyZeroInteractions(service);
+    }
+
     @Test
     @SneakyThrows
     public void updateContactUsingJsonMergePatch_shouldReturn204_whenInputIsValidAndContactExists() {
 
         when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
 
-        mockMvc.perform(patch("/contacts/{id}", 1L)
+        perform(patch("/contacts/{id}", 1L)
                 .contentType(PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
                 .content(fromFile("json/contact/patch-with-valid-json-merge-patch-payload.json")))
                 .andDo(print())
                 .andExpect(status().isNoContent());
 
         verify(mapper).asInput(any(Contact.class));
-        verify(mapper).update(any(Contact.class), any(ContactResourceInput.class));
+        verify(mapper).replacement(any(Contact.class), any(ContactResourceInput.class));
 
         verify(patchHelper).mergePatch(any(JsonMergePatch.class), isA(ContactResourceInput.class), eq(ContactResourceInput.class));
         verifyNoMoreInteractions(patchHelper);
@@ -231,6 +414,72 @@ public class ContactControllerTest {
         assertThat(contactArgumentCaptor.getValue()).isEqualToComparingFieldByFieldRecursively(contactToUpdate());
     }
 
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonMergePatchSequence_shouldReturn204_whenInputIsValidAndContactExists() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        perform(post("/contacts/{id}/merge-patches", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(fromFile("json/contact/post-merge-patches-with-valid-payload.json")))
+                .andDo(print())
+                .andExpect(status().isNoContent());
+
+        verify(mapper).asInput(any(Contact.class));
+        verify(mapper).replacement(any(Contact.class), any(ContactResourceInput.class));
+
+        verify(patchHelper).mergePatch(anyList(), isA(ContactResourceInput.class), eq(ContactResourceInput.class));
+        verifyNoMoreInteractions(patchHelper);
+
+        ArgumentCaptor<Contact> contactArgumentCaptor = ArgumentCaptor.forClass(Contact.class);
+        verify(service).findContact(anyLong());
+        verify(service).updateContact(contactArgumentCaptor.capture());
+        verifyNoMoreInteractions(service);
+
+        assertThat(contactArgumentCaptor.getValue()).isEqualToComparingFieldByFieldRecursively(contactToUpdate());
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContact_shouldAwaitDurability_whenPreferred() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        perform(put("/contacts/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(Preferences.PREFER, Preferences.DURABILITY_FSYNC)
+                .content(fromFile("json/contact/put-with-valid-payload.json")))
+                .andDo(print())
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(Preferences.PREFERENCE_APPLIED, Preferences.DURABILITY_FSYNC));
+
+        InOrder inOrder = inOrder(service);
+        inOrder.verify(service).findContact(anyLong());
+        inOrder.verify(service).updateContact(any(Contact.class));
+        inOrder.verify(service).awaitDurability();
+        verifyNoMoreInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContact_shouldReturn200WithContact_whenRepresentationIsPreferred() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        perform(put("/contacts/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(Preferences.PREFER, Preferences.RETURN_REPRESENTATION)
+                .content(fromFile("json/contact/put-with-valid-payload.json")))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Johnny Appleseed"));
+
+        verify(service).findContact(anyLong());
+        verify(service).updateContact(any(Contact.class));
+        verifyNoMoreInteractions(service);
+    }
+
     @Test
     @SneakyThrows
     public void deleteContact_shouldReturn204_whenContactExists() {
@@ -238,7 +487,7 @@ public class ContactControllerTest {
         Contact contact = mock(Contact.class);
         when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
 
-        mockMvc.perform(delete("/contacts/{id}", 1)
+        perform(delete("/contacts/{id}", 1)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andDo(print())
                 .andExpect(status().isNoContent());
@@ -252,6 +501,38 @@ public class ContactControllerTest {
         verifyNoMoreInteractions(service);
     }
 
+    /**
+     * Performs a request and, as requests are run on execution lanes, its async dispatch.
+     */
+    private ResultActions perform(RequestBuilder requestBuilder) throws Exception {
+
+        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            return mockMvc.perform(asyncDispatch(result));
+        }
+
+        // Rejected before reaching the controller or before being run on a lane
+        return new ResultActions() {
+
+            @Override
+            public ResultActions andExpect(ResultMatcher matcher) throws Exception {
+                matcher.match(result);
+                return this;
+            }
+
+            @Override
+            public ResultActions andDo(ResultHandler handler) throws Exception {
+                handler.handle(result);
+                return this;
+            }
+
+            @Override
+            public MvcResult andReturn() {
+                return result;
+            }
+        };
+    }
+
     @SneakyThrows
     private byte[] fromFile(String path) {
         return new ClassPathResource(path).getInputStream().readAllBytes();
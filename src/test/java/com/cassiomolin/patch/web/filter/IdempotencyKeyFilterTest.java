@@ -0,0 +1,300 @@
+package com.cassiomolin.patch.web.filter;
+
+import com.cassiomolin.patch.config.IdempotencyProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdempotencyKeyFilterTest {
+
+    private IdempotencyProperties properties;
+
+    private SimpleMeterRegistry registry;
+
+    private IdempotencyKeyFilter filter;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Before
+    public void setup() {
+
+        properties = new IdempotencyProperties();
+        properties.setWaitTimeout(Duration.ofSeconds(5));
+
+        registry = new SimpleMeterRegistry();
+        filter = new IdempotencyKeyFilter(properties, new ObjectMapper(), registry);
+    }
+
+    @Test
+    public void doFilter_shouldWaitForOriginal_whenDuplicateIsConcurrent() throws Exception {
+
+        CountDownLatch processing = new CountDownLatch(1);
+        FilterChain chain = (request, response) -> {
+            executions.incrementAndGet();
+            try {
+                processing.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ((HttpServletResponse) response).setStatus(201);
+            ((HttpServletResponse) response).setHeader("Location", "http://localhost/contacts/1");
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> original = executor.submit(() -> perform("key", "{}", chain));
+            Thread.sleep(100);
+            Future<MockHttpServletResponse> duplicate = executor.submit(() -> perform("key", "{}", chain));
+            Thread.sleep(100);
+            processing.countDown();
+
+            assertThat(original.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(201);
+            assertThat(duplicate.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(201);
+            assertThat(duplicate.get().getHeader("Location")).isEqualTo("http://localhost/contacts/1");
+            assertThat(duplicate.get().getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED)).isEqualTo("true");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(executions).hasValue(1);
+        assertThat(registry.get("contacts.idempotency.requests").tag("result", "replayed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void doFilter_shouldWaitForOriginalInAsyncMode_whenDuplicateSupportsAsync() throws Exception {
+
+        CountDownLatch processing = new CountDownLatch(1);
+        FilterChain chain = (request, response) -> {
+            executions.incrementAndGet();
+            try {
+                processing.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ((HttpServletResponse) response).setStatus(201);
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MockHttpServletResponse> original = executor.submit(() -> perform("key", "{}", chain));
+            Thread.sleep(100);
+
+            MockHttpServletRequest request = request("key", "{}");
+            request.setAsyncSupported(true);
+            MockHttpServletResponse duplicate = new MockHttpServletResponse();
+            filter.doFilter(request, duplicate, chain);
+
+            assertThat(request.isAsyncStarted()).isTrue();
+            CountDownLatch dispatched = new CountDownLatch(1);
+            ((MockAsyncContext) request.getAsyncContext()).addDispatchHandler(() -> {
+                try {
+                    request.setAsyncStarted(false);
+                    filter.doFilter(request, duplicate, chain);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                dispatched.countDown();
+            });
+            processing.countDown();
+
+            assertThat(original.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(201);
+            assertThat(dispatched.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(duplicate.getStatus()).isEqualTo(201);
+            assertThat(duplicate.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED)).isEqualTo("true");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    public void doFilter_shouldReturn409_whenAsyncWaitTimesOut() throws Exception {
+
+        CountDownLatch processing = new CountDownLatch(1);
+        FilterChain chain = (request, response) -> {
+            try {
+                processing.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> perform("key", "{}", chain));
+            Thread.sleep(100);
+
+            MockHttpServletRequest request = request("key", "{}");
+            request.setAsyncSupported(true);
+            MockHttpServletResponse duplicate = new MockHttpServletResponse();
+            filter.doFilter(request, duplicate, chain);
+
+            MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+            asyncContext.addDispatchHandler(() -> {
+                try {
+                    request.setAsyncStarted(false);
+                    filter.doFilter(request, duplicate, chain);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            for (AsyncListener listener : asyncContext.getListeners()) {
+                listener.onTimeout(new AsyncEvent(asyncContext));
+            }
+
+            assertThat(duplicate.getStatus()).isEqualTo(409);
+            assertThat(duplicate.getContentAsString()).contains("idempotency-key-in-use");
+        } finally {
+            processing.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void doFilter_shouldProcessAgain_whenOriginalFailedWithError() throws Exception {
+
+        FilterChain chain = (request, response) -> {
+            if (executions.incrementAndGet() == 1) {
+                throw new StackOverflowError();
+            }
+            ((HttpServletResponse) response).setStatus(204);
+        };
+
+        assertThatThrownBy(() -> perform("key", "{}", chain)).isInstanceOf(StackOverflowError.class);
+        assertThat(perform("key", "{}", chain).getStatus()).isEqualTo(204);
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    public void doFilter_shouldReturn413_whenBodyExceedsLimit() throws Exception {
+
+        properties.setMaxBodySize(DataSize.ofBytes(8));
+        FilterChain chain = (request, response) -> executions.incrementAndGet();
+
+        MockHttpServletResponse response = perform("key", "{\"name\":\"John\"}", chain);
+
+        assertThat(response.getStatus()).isEqualTo(413);
+        assertThat(response.getContentAsString()).contains("idempotent-request-too-large");
+        assertThat(perform("key", "{}", chain).getStatus()).isEqualTo(200);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    public void doFilter_shouldReplayBody() throws Exception {
+
+        FilterChain chain = (request, response) -> {
+            executions.incrementAndGet();
+            assertThat(new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{}");
+            response.setContentType("application/json");
+            response.getOutputStream().write("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+        };
+
+        assertThat(perform("key", "{}", chain).getContentAsString()).isEqualTo("{\"id\":1}");
+        MockHttpServletResponse replayed = perform("key", "{}", chain);
+
+        assertThat(replayed.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(replayed.getContentType()).isEqualTo("application/json");
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    public void doFilter_shouldNotifyReadListener_whenBodyIsReadWithoutBlocking() throws Exception {
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+        FilterChain chain = (request, response) -> {
+            ServletInputStream input = request.getInputStream();
+            input.setReadListener(new ReadListener() {
+
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[1];
+                    while (input.isReady() && !input.isFinished()) {
+                        read.write(buffer, 0, input.read(buffer));
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead.set(true);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    throw new AssertionError(t);
+                }
+            });
+        };
+
+        perform("key", "{\"name\":\"John\"}", chain);
+
+        assertThat(read.toString(StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"John\"}");
+        assertThat(allDataRead).isTrue();
+    }
+
+    @Test
+    public void doFilter_shouldProcessAgain_whenOriginalFailedWithServerError() throws Exception {
+
+        FilterChain chain = (request, response) ->
+                ((HttpServletResponse) response).setStatus(executions.incrementAndGet() == 1 ? 503 : 204);
+
+        assertThat(perform("key", "{}", chain).getStatus()).isEqualTo(503);
+        assertThat(perform("key", "{}", chain).getStatus()).isEqualTo(204);
+        assertThat(perform("key", "{}", chain).getStatus()).isEqualTo(204);
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    public void doFilter_shouldReturn422_whenKeyIsReusedForDifferentRequest() throws Exception {
+
+        FilterChain chain = (request, response) -> executions.incrementAndGet();
+
+        perform("key", "{\"name\":\"John\"}", chain);
+        MockHttpServletResponse response = perform("key", "{\"name\":\"Jane\"}", chain);
+
+        assertThat(response.getStatus()).isEqualTo(422);
+        assertThat(response.getContentAsString()).contains("idempotency-key-reused");
+        assertThat(executions).hasValue(1);
+    }
+
+    private MockHttpServletResponse perform(String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(key, body), response, chain);
+        return response;
+    }
+
+    private MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/contacts");
+        request.addHeader(IdempotencyKeyFilter.IDEMPOTENCY_KEY, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
@@ -0,0 +1,228 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import com.cassiomolin.patch.web.exception.UnprocessableEntityException;
+import com.cassiomolin.patch.web.mapper.ContactMapperImpl;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.assertj.core.util.Lists;
+import org.assertj.core.util.Sets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.json.Json;
+import javax.json.JsonValue;
+import javax.validation.Validator;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@RunWith(SpringRunner.class)
+@Import({JacksonConfig.class, PatchHelper.class, PatchMetrics.class, PatchMetricsProperties.class, JsonPatchProperties.class, SimpleMeterRegistry.class, ContactMapperImpl.class, ContactPatchCoalescer.class})
+public class ContactPatchCoalescerTest {
+
+    @MockBean
+    private Validator validator;
+
+    @MockBean
+    private ContactService service;
+
+    @SpyBean
+    private PatchHelper patchHelper;
+
+    @Autowired
+    private ContactPatchCoalescer patchCoalescer;
+
+    @Test
+    public void patch_shouldApplySinglePatchThroughPatchHelper() {
+
+        when(validator.validate(any())).thenReturn(Sets.newHashSet());
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contact()));
+
+        Contact result = patchCoalescer.patch(1L, Json.createPatchBuilder()
+                .replace("/name", "John W. Appleseed")
+                .build());
+
+        assertThat(result.getName()).isEqualTo("John W. Appleseed");
+        verify(service).updateContact(result);
+    }
+
+    @Test
+    public void patch_shouldLeaveStoredContactUnchanged() {
+
+        when(validator.validate(any())).thenReturn(Sets.newHashSet());
+        Contact contact = contact();
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
+
+        Contact result = patchCoalescer.patch(1L, Json.createPatchBuilder()
+                .add("/groups/-", "Friends")
+                .build());
+
+        assertThat(result).isNotSameAs(contact);
+        assertThat(result.getGroups()).containsExactly("Friends");
+        assertThat(contact.getGroups()).isEmpty();
+    }
+
+    @Test
+    @SneakyThrows
+    public void patch_shouldCombineQueuedPatchesIntoSingleUpdate() {
+
+        when(validator.validate(any())).thenReturn(Sets.newHashSet());
+
+        AtomicReference<Contact> stored = new AtomicReference<>(contact());
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(service.findContact(anyLong())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return Optional.of(stored.get());
+        });
+        doAnswer(invocation -> {
+            stored.set(invocation.getArgument(0));
+            return null;
+        }).when(service).updateContact(any());
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+        try {
+
+            // Holds the lane while the other patches queue up behind it
+            Future<Contact> first = executor.submit(() -> patchCoalescer.patch(1L, Json.createPatchBuilder()
+                    .add("/groups/-", "first")
+                    .build()));
+            entered.await();
+
+            Future<Contact> second = executor.submit(() -> patchCoalescer.patch(1L, Json.createPatchBuilder()
+                    .add("/groups/-", "second")
+                    .build()));
+            Future<Contact> invalid = executor.submit(() -> patchCoalescer.patch(1L, Json.createPatchBuilder()
+                    .remove("/birthday")
+                    .build()));
+            Future<Contact> third = executor.submit(() -> patchCoalescer.mergePatch(1L, Json.createMergePatch(
+                    Json.createObjectBuilder().add("favorite", JsonValue.TRUE).build())));
+            awaitActiveThreads(executor, 4);
+            Thread.sleep(100);
+
+            release.countDown();
+
+            first.get();
+            second.get();
+            third.get();
+            assertThatThrownBy(invalid::get).hasCauseInstanceOf(UnprocessableEntityException.class);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(stored.get().getGroups()).containsExactly("first", "second");
+        assertThat(stored.get().getFavorite()).isTrue();
+
+        verify(service, times(2)).updateContact(any());
+        verify(patchHelper, times(1)).patch(any(), any(), any());
+    }
+
+    @Test
+    @SneakyThrows
+    public void patch_shouldFailQueuedPatches_whenBatchThrowsError() {
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(service.findContact(anyLong()))
+                .thenAnswer(invocation -> {
+                    entered.countDown();
+                    release.await();
+                    return Optional.of(contact());
+                })
+                .thenThrow(new OutOfMemoryError());
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(3);
+        try {
+
+            // Holds the lane while the other patches queue up behind it
+            Future<Contact> first = executor.submit(() -> patchCoalescer.patch(1L, Json.createPatchBuilder()
+                    .add("/groups/-", "first")
+                    .build()));
+            entered.await();
+
+            Future<Contact> second = executor.submit(() -> patchCoalescer.patch(1L, Json.createPatchBuilder()
+                    .add("/groups/-", "second")
+                    .build()));
+            Future<Contact> third = executor.submit(() -> patchCoalescer.patch(1L, Json.createPatchBuilder()
+                    .add("/groups/-", "third")
+                    .build()));
+            awaitActiveThreads(executor, 3);
+            Thread.sleep(100);
+
+            release.countDown();
+
+            first.get(5, TimeUnit.SECONDS);
+            assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+            assertThatThrownBy(() -> third.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void replace_shouldUpdateContactWithoutChangingStoredOne() {
+
+        Contact contact = contact();
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
+
+        ContactResourceInput input = new ContactResourceInput();
+        input.setName("John W. Appleseed");
+        Contact result = patchCoalescer.replace(1L, input);
+
+        assertThat(result).isNotSameAs(contact);
+        assertThat(result.getId()).isEqualTo(1L);
+        assertThat(result.getName()).isEqualTo("John W. Appleseed");
+        assertThat(contact.getName()).isEqualTo("John Appleseed");
+        verify(service).updateContact(result);
+    }
+
+    @Test
+    public void delete_shouldFail_whenContactDoesNotExist() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> patchCoalescer.delete(1L)).isInstanceOf(ResourceNotFoundException.class);
+        verify(service, never()).deleteContact(any());
+    }
+
+    @SneakyThrows
+    private void awaitActiveThreads(ThreadPoolExecutor executor, int count) {
+        while (executor.getActiveCount() < count) {
+            Thread.sleep(10);
+        }
+    }
+
+    private Contact contact() {
+
+        return Contact.builder()
+                .id(1L)
+                .name("John Appleseed")
+                .groups(Lists.newArrayList())
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.ExecutionLaneProperties;
+import com.cassiomolin.patch.web.exception.LaneSaturatedException;
+import com.cassiomolin.patch.web.util.ExecutionLanes.RequestClass;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ExecutionLanesTest {
+
+    private SimpleMeterRegistry registry;
+
+    private ExecutionLanes lanes;
+
+    @Before
+    public void setup() {
+
+        ExecutionLaneProperties properties = new ExecutionLaneProperties();
+        properties.setBulk(new ExecutionLaneProperties.Lane(1, 1, Duration.ofSeconds(5)));
+
+        registry = new SimpleMeterRegistry();
+        lanes = new ExecutionLanes(properties, registry);
+    }
+
+    @After
+    public void tearDown() {
+        lanes.destroy();
+    }
+
+    @Test
+    public void submit_shouldRunRequestOnItsLane() throws Exception {
+
+        DeferredResult<String> result = lanes.submit(RequestClass.INTERACTIVE, () -> Thread.currentThread().getName());
+
+        awaitResult(result);
+        assertThat((String) result.getResult()).startsWith("interactive-lane-");
+        assertThat(registry.get("contacts.lanes.wait").tag("lane", "interactive").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void submit_shouldSetErrorResult_whenRequestFails() throws Exception {
+
+        DeferredResult<String> result = lanes.submit(RequestClass.INTERACTIVE, () -> {
+            throw new IllegalStateException();
+        });
+
+        awaitResult(result);
+        assertThat(result.getResult()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void submit_shouldReject_whenLaneIsSaturated() throws Exception {
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            lanes.submit(RequestClass.BULK, () -> {
+                running.countDown();
+                try {
+                    return release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            });
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            DeferredResult<String> queued = lanes.submit(RequestClass.BULK, () -> "queued");
+
+            assertThatThrownBy(() -> lanes.submit(RequestClass.BULK, () -> "rejected"))
+                    .isInstanceOf(LaneSaturatedException.class)
+                    .hasFieldOrPropertyWithValue("lane", "bulk");
+
+            // The interactive lane is not affected
+            DeferredResult<String> interactive = lanes.submit(RequestClass.INTERACTIVE, () -> "interactive");
+            awaitResult(interactive);
+
+            release.countDown();
+            awaitResult(queued);
+        } finally {
+            release.countDown();
+        }
+
+        assertThat(registry.get("contacts.lanes.rejections").tag("lane", "bulk").tag("reason", "queue-full").counter().count()).isEqualTo(1);
+        assertThat(registry.get("contacts.lanes.rejections").tag("lane", "interactive").tag("reason", "queue-full").counter().count()).isZero();
+        assertThat(registry.get("executor.completed").tag("name", "contacts.lanes.bulk").functionCounter().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void submit_shouldRejectQueuedRequest_andCompleteStartedRequest_onTimeout() throws Exception {
+
+        ExecutionLaneProperties properties = new ExecutionLaneProperties();
+        properties.setBulk(new ExecutionLaneProperties.Lane(1, 1, Duration.ofMillis(100)));
+        ExecutionLanes timedLanes = new ExecutionLanes(properties, registry);
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            DeferredResult<String> started = timedLanes.submit(RequestClass.BULK, () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "written";
+            });
+            DeferredResult<String> queued = timedLanes.submit(RequestClass.BULK, () -> "queued");
+
+            awaitResult(queued);
+            assertThat(queued.getResult()).isInstanceOf(LaneSaturatedException.class);
+            assertThat(started.hasResult()).isFalse();
+
+            release.countDown();
+            awaitResult(started);
+            assertThat(started.getResult()).isEqualTo("written");
+        } finally {
+            release.countDown();
+            timedLanes.destroy();
+        }
+
+        assertThat(registry.get("contacts.lanes.rejections").tag("lane", "bulk").tag("reason", "timeout").counter().count()).isEqualTo(1);
+    }
+
+    private static void awaitResult(DeferredResult<?> result) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!result.hasResult() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(result.hasResult()).isTrue();
+    }
+}
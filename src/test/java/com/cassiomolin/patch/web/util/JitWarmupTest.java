@@ -0,0 +1,47 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.WarmupProperties;
+import com.cassiomolin.patch.web.mapper.ContactMapperImpl;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import javax.validation.Validation;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JitWarmupTest {
+
+    @Test
+    public void health_shouldBeOutOfServiceUntilCorpusHasRun() throws Exception {
+
+        WarmupProperties properties = new WarmupProperties();
+        properties.getJit().setIterations(50);
+        properties.getJit().setMaxDuration(Duration.ofSeconds(30));
+
+        ObjectMapper objectMapper = JacksonConfig.defaultObjectMapper();
+        JitWarmup warmup = new JitWarmup(properties, new JacksonConfig().jsonCodecs(objectMapper),
+                Validation.buildDefaultValidatorFactory().getValidator(), new ContactMapperImpl(),
+                ResourceSchema.of(objectMapper, ContactResourceInput.class), new PathMatchingResourcePatternResolver(),
+                new JsonPatchProperties());
+
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        warmup.start();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (warmup.health().getStatus() != Status.UP && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        Health health = warmup.health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("iterations", 50L);
+        assertThat(health.getDetails()).containsEntry("failedPatches", 0L);
+    }
+}
@@ -0,0 +1,103 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.SerializationProperties;
+import com.cassiomolin.patch.config.SerializationProperties.Accessors;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.input.PhoneResourceInput;
+import com.cassiomolin.patch.web.resource.input.WorkResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.resource.output.EmailResourceOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonCodecsTest {
+
+    private static final ContactResourceInput INPUT = ContactResourceInput.builder()
+            .name("John Appleseed")
+            .birthday(LocalDate.of(1990, 1, 1))
+            .work(WorkResourceInput.builder().title("Engineer").build())
+            .phones(List.of(PhoneResourceInput.builder().phone("+1 555 0100").type("mobile").build()))
+            .groups(List.of("Friends"))
+            .favorite(true)
+            .build();
+
+    private static final ContactResourceOutput OUTPUT = ContactResourceOutput.builder()
+            .id(1L)
+            .name("John Appleseed")
+            .emails(List.of(EmailResourceOutput.builder().email("john@example.com").build()))
+            .favorite(false)
+            .createdDateTime(OffsetDateTime.parse("2019-01-01T00:00:00Z"))
+            .lastModifiedDateTime(OffsetDateTime.parse("2019-01-02T00:00:00Z"))
+            .build();
+
+    @Test
+    public void convert_shouldMatchObjectMapper_forEachAccessors() {
+
+        ObjectMapper reference = JacksonConfig.defaultObjectMapper();
+        for (Accessors accessors : Accessors.values()) {
+            JsonCodecs codecs = codecs(accessors);
+
+            JsonValue json = codecs.convert(INPUT, JsonValue.class);
+            assertThat(json).isEqualTo(reference.convertValue(INPUT, JsonValue.class));
+            assertThat(codecs.convert(INPUT, JsonStructure.class)).isEqualTo(json);
+            assertThat(codecs.convert(json, ContactResourceInput.class)).isEqualTo(INPUT);
+        }
+    }
+
+    @Test
+    public void writer_shouldMatchObjectMapper_forEachAccessors() throws Exception {
+
+        byte[] expected = JacksonConfig.defaultObjectMapper().writeValueAsBytes(OUTPUT);
+        for (Accessors accessors : Accessors.values()) {
+            assertThat(codecs(accessors).writer(ContactResourceOutput.class).writeValueAsBytes(OUTPUT))
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void convert_shouldReturnValue_whenAlreadyOfType() {
+
+        JsonCodecs codecs = codecs(Accessors.REFLECTION);
+
+        assertThat(codecs.convert(INPUT, ContactResourceInput.class)).isSameAs(INPUT);
+        assertThat(codecs.convert(null, JsonValue.class)).isNull();
+    }
+
+    @Test
+    public void copy_shouldReturnEqualValue_thatIsNotTheSame() {
+
+        JsonCodecs codecs = codecs(Accessors.REFLECTION);
+
+        ContactResourceInput copy = codecs.copy(INPUT, ContactResourceInput.class);
+        assertThat(copy).isNotSameAs(INPUT).isEqualTo(INPUT);
+        assertThat(copy.getWork()).isNotSameAs(INPUT.getWork());
+        assertThat(codecs.copy(null, ContactResourceInput.class)).isNull();
+    }
+
+    @Test
+    public void convert_shouldFail_whenValueDoesNotMatchType() {
+
+        JsonCodecs codecs = codecs(Accessors.LAMBDA);
+        JsonValue json = codecs.convert(List.of(1, 2), JsonValue.class);
+
+        assertThatThrownBy(() -> codecs.convert(json, ContactResourceInput.class))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static JsonCodecs codecs(Accessors accessors) {
+        SerializationProperties properties = new SerializationProperties();
+        properties.setAccessors(accessors);
+        JacksonConfig config = new JacksonConfig();
+        return config.jsonCodecs(config.objectMapper(properties));
+    }
+}
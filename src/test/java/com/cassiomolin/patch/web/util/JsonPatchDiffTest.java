@@ -0,0 +1,49 @@
+package com.cassiomolin.patch.web.util;
+
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonPatch;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonPatchDiffTest {
+
+    @Test
+    public void diff_shouldTurnSourceIntoTarget() {
+
+        String[][] pairs = {
+                {"{\"groups\":[\"a\",\"c\"]}", "{\"groups\":[\"a\",\"b\",\"c\"]}"},
+                {"{\"groups\":[\"a\",\"b\",\"c\"]}", "{\"groups\":[\"a\",\"c\"]}"},
+                {"{\"groups\":[\"a\",\"b\",\"c\"]}", "{\"groups\":[]}"},
+                {"{\"phones\":[{\"phone\":\"1\",\"type\":\"mobile\"},{\"phone\":\"2\",\"type\":\"work\"}],"
+                        + "\"emails\":[{\"email\":\"john@example.com\",\"type\":\"home\"}]}",
+                        "{\"phones\":[{\"phone\":\"1\"}],"
+                                + "\"emails\":[{\"email\":\"john@example.com\",\"type\":\"home\"}]}"},
+                {"{\"name\":\"John\",\"work\":{\"title\":\"Engineer\"}}", "{\"name\":\"Jane\",\"notes\":\"\"}"},
+                {"{\"a/b\":1,\"m~n\":[1]}", "{\"a/b\":2,\"m~n\":[1,2]}"},
+                {"{\"work\":\"Engineer\"}", "{\"work\":{\"title\":\"Engineer\"}}"}
+        };
+
+        for (String[] pair : pairs) {
+            JsonObject source = json(pair[0]);
+            JsonObject target = json(pair[1]);
+            JsonPatch patch = JsonPatchDiff.diff(source, target);
+            assertThat(PersistentJsonPatch.apply(patch, source)).as(patch.toString()).isEqualTo(target);
+        }
+    }
+
+    @Test
+    public void diff_shouldBeEmpty_whenValuesAreEqual() {
+
+        JsonObject value = json("{\"name\":\"John\",\"groups\":[\"a\"]}");
+
+        assertThat(JsonPatchDiff.diff(value, json("{\"groups\":[\"a\"],\"name\":\"John\"}")).toJsonArray()).isEmpty();
+    }
+
+    private static JsonObject json(String json) {
+        return Json.createReader(new StringReader(json)).readObject();
+    }
+}
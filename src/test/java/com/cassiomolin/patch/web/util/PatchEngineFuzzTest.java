@@ -0,0 +1,655 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.JsonPatchProperties.Engine;
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.web.exception.PatchFailure;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.input.EmailResourceInput;
+import com.cassiomolin.patch.web.resource.input.PhoneResourceInput;
+import com.cassiomolin.patch.web.resource.input.WorkResourceInput;
+import com.cassiomolin.patch.web.util.ReferencePatch.Outcome;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonMergePatch;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonPatch;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import javax.validation.Validation;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Differential tests of the patch engines: random contacts are patched with random JSON Patch and JSON Merge Patch
+ * documents by each engine and by {@link ReferencePatch}, and the outcomes must be the same, both the patched values and
+ * the failures. A case that disagrees is shrunk to a minimal contact and document before being reported. The JSON-P
+ * implementation is left out of the cases {@link ReferencePatch#departsFromJsonP(JsonValue, JsonArray)} tells apart.
+ * <p>
+ * The throughput of each engine relative to the JSON-P implementation is measured on the same documents, written to
+ * {@code target/patch-engine-throughput.json}. As it depends on the machine and on its load, it's only checked against a
+ * floor when one is set, except on contacts with large arrays, where the persistent engine is expected to be much
+ * faster than the JSON-P implementation and must never be slower.
+ * <p>
+ * The following system properties can be set:
+ * <ul>
+ * <li>{@code fuzz.seed}: seed of the random cases (default {@code 6902})</li>
+ * <li>{@code fuzz.cases}: number of random cases (default {@code 2000})</li>
+ * <li>{@code fuzz.min-relative-throughput}: throughput each engine must reach, relative to the JSON-P implementation
+ * (not checked by default)</li>
+ * <li>{@code fuzz.large-array.min-relative-throughput}: throughput each engine must reach on contacts with large
+ * arrays, relative to the JSON-P implementation (default {@code 1.0})</li>
+ * </ul>
+ */
+public class PatchEngineFuzzTest {
+
+    private static final long SEED = Long.getLong("fuzz.seed", 6902);
+
+    private static final int CASES = Integer.getInteger("fuzz.cases", 2000);
+
+    private static final String MIN_RELATIVE_THROUGHPUT = System.getProperty("fuzz.min-relative-throughput");
+
+    private static final double LARGE_ARRAY_MIN_RELATIVE_THROUGHPUT =
+            Double.parseDouble(System.getProperty("fuzz.large-array.min-relative-throughput", "1.0"));
+
+    private static final int LARGE_ARRAY_CASES = 20;
+
+    private static final int LARGE_ARRAY_SIZE = 5_000;
+
+    private static final Path THROUGHPUT_REPORT = Paths.get("target", "patch-engine-throughput.json");
+
+    private static final String[] NAMES = {"John Appleseed", "Jane Doe", "Ann", "a/b", "m~n", ""};
+
+    private static final String[] TYPES = {"mobile", "home", "work", "other"};
+
+    private static final String[] KEYS = {"name", "type", "phone", "email", "title", "groups", "notes", "x", "a/b", "m~n"};
+
+    private static final ObjectMapper MAPPER = JacksonConfig.defaultObjectMapper();
+
+    private static final Map<Engine, PatchHelper> HELPERS = new EnumMap<>(Engine.class);
+
+    @BeforeClass
+    public static void createHelpers() {
+        for (Engine engine : Engine.values()) {
+            JsonPatchProperties properties = new JsonPatchProperties();
+            properties.setEngine(engine);
+            HELPERS.put(engine, new PatchHelper(new JacksonConfig().jsonCodecs(MAPPER),
+                    Validation.buildDefaultValidatorFactory().getValidator(),
+                    new PatchMetrics(new SimpleMeterRegistry(), new PatchMetricsProperties()), properties));
+        }
+    }
+
+    @Test
+    public void jsonPatch_shouldMatchReference_forEachEngine() {
+
+        Random random = new Random(SEED);
+        Set<PatchFailure> failures = EnumSet.noneOf(PatchFailure.class);
+        int succeeded = 0;
+
+        for (int i = 0; i < CASES; i++) {
+            JsonObject patchCase = jsonPatchCase(random);
+            String disagreement = jsonPatchDisagreement(patchCase);
+            if (disagreement != null) {
+                JsonObject shrunk = shrink(patchCase, PatchEngineFuzzTest::jsonPatchDisagreement);
+                fail("Case " + i + " of seed " + SEED + ", shrunk to " + shrunk + ": "
+                        + jsonPatchDisagreement(shrunk));
+            }
+
+            Outcome expected = ReferencePatch.applyPatch(patchCase.get("target"), patchCase.getJsonArray("patch"));
+            if (expected.getFailure() == null) {
+                succeeded++;
+            } else {
+                failures.add(expected.getFailure());
+            }
+        }
+
+        assertThat(succeeded).isGreaterThan(CASES / 4);
+        assertThat(failures).containsOnly(PatchFailure.values());
+    }
+
+    @Test
+    public void mergePatch_shouldMatchReference_whetherComposedOrNot() {
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < CASES; i++) {
+            JsonObject patchCase = mergePatchCase(random);
+            String disagreement = mergePatchDisagreement(patchCase);
+            if (disagreement != null) {
+                JsonObject shrunk = shrink(patchCase, PatchEngineFuzzTest::mergePatchDisagreement);
+                fail("Case " + i + " of seed " + SEED + ", shrunk to " + shrunk + ": "
+                        + mergePatchDisagreement(shrunk));
+            }
+        }
+    }
+
+    @Test
+    public void engines_shouldReportTheirThroughput() throws IOException {
+
+        Random random = new Random(SEED);
+        List<JsonValue> targets = new ArrayList<>();
+        List<JsonPatch> patches = new ArrayList<>();
+        List<List<JsonMergePatch>> mergePatches = new ArrayList<>();
+        for (int i = 0; i < CASES; i++) {
+            JsonObject jsonPatchCase = jsonPatchCase(random);
+            targets.add(jsonPatchCase.get("target"));
+            patches.add(Json.createPatch(jsonPatchCase.getJsonArray("patch")));
+            mergePatches.add(mergePatches(mergePatchCase(random).getJsonArray("patches")));
+        }
+        List<JsonValue> largeTargets = new ArrayList<>();
+        List<JsonPatch> largePatches = new ArrayList<>();
+        for (int i = 0; i < LARGE_ARRAY_CASES; i++) {
+            JsonObject largeArrayCase = largeArrayCase(random);
+            largeTargets.add(largeArrayCase.get("target"));
+            largePatches.add(Json.createPatch(largeArrayCase.getJsonArray("patch")));
+        }
+
+        Map<String, Runnable> workloads = new LinkedHashMap<>();
+        for (Engine engine : Engine.values()) {
+            PatchHelper helper = HELPERS.get(engine);
+            workloads.put("json-patch." + engine.name().toLowerCase(), () -> {
+                for (int i = 0; i < CASES; i++) {
+                    try {
+                        helper.patchJson(patches.get(i), targets.get(i));
+                    } catch (PatchFailureException e) {
+                        // Failures are part of the workload
+                    }
+                }
+            });
+        }
+        for (Engine engine : Engine.values()) {
+            PatchHelper helper = HELPERS.get(engine);
+            workloads.put("json-patch-large-array." + engine.name().toLowerCase(), () -> {
+                for (int i = 0; i < LARGE_ARRAY_CASES; i++) {
+                    helper.patchJson(largePatches.get(i), largeTargets.get(i));
+                }
+            });
+        }
+        PatchHelper helper = HELPERS.get(Engine.JOHNZON);
+        workloads.put("merge-patch.sequential", () -> {
+            for (int i = 0; i < CASES; i++) {
+                JsonValue patched = targets.get(i);
+                for (JsonMergePatch mergePatch : mergePatches.get(i)) {
+                    patched = helper.mergePatchJson(mergePatch, patched);
+                }
+            }
+        });
+        workloads.put("merge-patch.composed", () -> {
+            for (int i = 0; i < CASES; i++) {
+                helper.mergePatchJson(mergePatches.get(i), targets.get(i));
+            }
+        });
+
+        Map<String, Double> throughput = throughput(workloads);
+        throughput.replaceAll((workload, runsPerSecond) -> runsPerSecond
+                * (workload.startsWith("json-patch-large-array.") ? LARGE_ARRAY_CASES : CASES));
+
+        // Each workload is compared with the JSON-P implementation applying the same documents
+        Map<String, Double> relative = new LinkedHashMap<>();
+        throughput.forEach((workload, documentsPerSecond) -> {
+            String baseline = workload.startsWith("merge-patch.")
+                    ? "merge-patch.sequential"
+                    : workload.substring(0, workload.indexOf('.') + 1) + Engine.JOHNZON.name().toLowerCase();
+            relative.put(workload, documentsPerSecond / throughput.get(baseline));
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("documentsPerSecond", throughput);
+        report.put("relativeThroughput", relative);
+        Files.createDirectories(THROUGHPUT_REPORT.getParent());
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(THROUGHPUT_REPORT.toFile(), report);
+
+        if (MIN_RELATIVE_THROUGHPUT != null) {
+            double floor = Double.parseDouble(MIN_RELATIVE_THROUGHPUT);
+            assertThat(relative).allSatisfy((engine, ratio) ->
+                    assertThat(ratio).as("Throughput of %s relative to JSON-P", engine).isGreaterThanOrEqualTo(floor));
+        }
+        assertThat(relative).allSatisfy((engine, ratio) -> {
+            if (engine.startsWith("json-patch-large-array.")) {
+                assertThat(ratio).as("Throughput of %s relative to JSON-P", engine)
+                        .isGreaterThanOrEqualTo(LARGE_ARRAY_MIN_RELATIVE_THROUGHPUT);
+            }
+        });
+    }
+
+    /**
+     * Applies a JSON Patch case with each engine, returning how an engine disagrees with the reference, if any.
+     */
+    private static String jsonPatchDisagreement(JsonObject patchCase) {
+
+        JsonValue target = patchCase.get("target");
+        JsonArray operations = patchCase.getJsonArray("patch");
+        if (!(target instanceof JsonObject) || operations == null || !operations.stream().allMatch(PatchEngineFuzzTest::isOperation)) {
+            return null;
+        }
+        JsonPatch patch = Json.createPatch(operations);
+
+        Outcome expected = ReferencePatch.applyPatch(target, operations);
+        boolean departsFromJsonP = ReferencePatch.departsFromJsonP(target, operations);
+        for (Engine engine : Engine.values()) {
+            if (engine == Engine.JOHNZON && departsFromJsonP) {
+                continue;
+            }
+            Outcome actual = outcome(() -> HELPERS.get(engine).patchJson(patch, target));
+            if (!expected.equals(actual)) {
+                return engine + " gave " + actual + " instead of " + expected;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies a JSON Merge Patch case one document after the other and composed, returning how they disagree with the
+     * reference, or with each other where the JSON-P implementation departs from the reference, if they do.
+     */
+    private static String mergePatchDisagreement(JsonObject patchCase) {
+
+        JsonValue target = patchCase.get("target");
+        JsonArray documents = patchCase.getJsonArray("patches");
+        if (target == null || documents == null) {
+            return null;
+        }
+
+        JsonValue reference = target;
+        boolean departsFromJsonP = false;
+        for (JsonValue document : documents) {
+            departsFromJsonP |= ReferencePatch.mergePatchDepartsFromJsonP(reference, document);
+            reference = ReferencePatch.applyMergePatch(reference, document);
+        }
+
+        PatchHelper helper = HELPERS.get(Engine.JOHNZON);
+        List<JsonMergePatch> mergePatches = mergePatches(documents);
+        Outcome sequential = outcome(() -> {
+            JsonValue patched = target;
+            for (JsonMergePatch mergePatch : mergePatches) {
+                patched = helper.mergePatchJson(mergePatch, patched);
+            }
+            return patched;
+        });
+        // Where the JSON-P implementation departs from the reference, composing the documents must not change anything
+        Outcome expected = departsFromJsonP ? sequential : Outcome.of(reference);
+        if (!expected.equals(sequential)) {
+            return "sequential documents gave " + sequential + " instead of " + expected;
+        }
+
+        Outcome composed = outcome(() -> helper.mergePatchJson(mergePatches, target));
+        if (!expected.equals(composed)) {
+            return "composed documents gave " + composed + " instead of " + expected;
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether a value, shrunk from an operation, still has the members of an operation.
+     */
+    private static boolean isOperation(JsonValue value) {
+        if (value.getValueType() != ValueType.OBJECT) {
+            return false;
+        }
+        JsonObject operation = value.asJsonObject();
+        String op = operation.getString("op", "");
+        return operation.containsKey("path")
+                && ("remove".equals(op)
+                || ("add".equals(op) || "replace".equals(op) || "test".equals(op)) && operation.containsKey("value")
+                || ("move".equals(op) || "copy".equals(op)) && operation.containsKey("from"));
+    }
+
+    private static Outcome outcome(Supplier<JsonValue> patch) {
+        try {
+            return Outcome.of(patch.get());
+        } catch (PatchFailureException e) {
+            return Outcome.failed(e.getFailure());
+        }
+    }
+
+    /**
+     * Removes members and elements from a case, anywhere in it, as long as it still fails.
+     *
+     * @param patchCase    failing case
+     * @param disagreement tells how a case fails, or {@code null} if it doesn't
+     * @return minimal failing case
+     */
+    private static JsonObject shrink(JsonObject patchCase, Function<JsonObject, String> disagreement) {
+
+        JsonObject shrunk = patchCase;
+        boolean shrinking = true;
+        while (shrinking) {
+            shrinking = false;
+            for (JsonValue candidate : smaller(shrunk)) {
+                if (candidate.getValueType() == ValueType.OBJECT
+                        && disagreement.apply(candidate.asJsonObject()) != null) {
+                    shrunk = candidate.asJsonObject();
+                    shrinking = true;
+                    break;
+                }
+            }
+        }
+        return shrunk;
+    }
+
+    /**
+     * Returns the values with one member or element less than a value, anywhere in it.
+     */
+    private static List<JsonValue> smaller(JsonValue value) {
+
+        List<JsonValue> smaller = new ArrayList<>();
+        if (value.getValueType() == ValueType.OBJECT) {
+            JsonObject object = value.asJsonObject();
+            for (String name : object.keySet()) {
+                smaller.add(Json.createObjectBuilder(object).remove(name).build());
+                for (JsonValue member : smaller(object.get(name))) {
+                    smaller.add(Json.createObjectBuilder(object).add(name, member).build());
+                }
+            }
+        } else if (value.getValueType() == ValueType.ARRAY) {
+            JsonArray array = value.asJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                smaller.add(Json.createArrayBuilder(array).remove(i).build());
+                for (JsonValue element : smaller(array.get(i))) {
+                    smaller.add(Json.createArrayBuilder(array).set(i, element).build());
+                }
+            }
+        }
+        return smaller;
+    }
+
+    private static JsonObject jsonPatchCase(Random random) {
+
+        JsonValue target = MAPPER.convertValue(contact(random), JsonValue.class);
+        JsonArrayBuilder operations = Json.createArrayBuilder();
+        JsonValue patched = target;
+        int size = 1 + random.nextInt(5);
+        for (int i = 0; i < size; i++) {
+            JsonObject operation = operation(random, patched);
+            operations.add(operation);
+            Outcome outcome = ReferencePatch.applyPatch(patched, Json.createArrayBuilder().add(operation).build());
+            if (outcome.getFailure() != null) {
+                break;
+            }
+            patched = outcome.getValue();
+        }
+        return Json.createObjectBuilder().add("target", target).add("patch", operations).build();
+    }
+
+    /**
+     * Returns a case adding, removing and replacing groups of a contact with a large number of them, which the JSON-P
+     * implementation copies on every operation.
+     */
+    private static JsonObject largeArrayCase(Random random) {
+
+        JsonArrayBuilder groups = Json.createArrayBuilder();
+        for (int i = 0; i < LARGE_ARRAY_SIZE; i++) {
+            groups.add("Group " + i);
+        }
+        // No other arrays, which the JSON-P implementation would also patch
+        JsonObject target = Json.createObjectBuilder()
+                .add("name", pick(random, NAMES))
+                .add("groups", groups)
+                .build();
+
+        JsonArrayBuilder operations = Json.createArrayBuilder();
+        int size = LARGE_ARRAY_SIZE;
+        int operationCount = 1 + random.nextInt(5);
+        for (int i = 0; i < operationCount; i++) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    operations.add(Json.createObjectBuilder().add("op", "add")
+                            .add("path", "/groups/" + (random.nextBoolean() ? "-" : random.nextInt(size + 1)))
+                            .add("value", "New group " + i));
+                    size++;
+                    break;
+                case 1:
+                    operations.add(Json.createObjectBuilder().add("op", "remove")
+                            .add("path", "/groups/" + random.nextInt(size)));
+                    size--;
+                    break;
+                default:
+                    operations.add(Json.createObjectBuilder().add("op", "replace")
+                            .add("path", "/groups/" + random.nextInt(size))
+                            .add("value", "Renamed group " + i));
+            }
+        }
+        return Json.createObjectBuilder().add("target", target).add("patch", operations).build();
+    }
+
+    private static JsonObject mergePatchCase(Random random) {
+
+        JsonArrayBuilder documents = Json.createArrayBuilder();
+        int size = 1 + random.nextInt(4);
+        for (int i = 0; i < size; i++) {
+            documents.add(random.nextInt(20) == 0 ? value(random, JsonValue.EMPTY_JSON_OBJECT) : mergePatch(random, 0));
+        }
+        return Json.createObjectBuilder()
+                .add("target", MAPPER.convertValue(contact(random), JsonValue.class))
+                .add("patches", documents)
+                .build();
+    }
+
+    private static List<JsonMergePatch> mergePatches(JsonArray documents) {
+        return documents.stream().map(Json::createMergePatch).collect(Collectors.toList());
+    }
+
+    private static JsonObject mergePatch(Random random, int depth) {
+        JsonObjectBuilder mergePatch = Json.createObjectBuilder();
+        int size = random.nextInt(4);
+        for (int i = 0; i < size; i++) {
+            String name = random.nextBoolean() ? pick(random, KEYS) : pick(random, "work", "phones", "groups", "favorite");
+            int kind = random.nextInt(5);
+            if (kind == 0) {
+                mergePatch.add(name, JsonValue.NULL);
+            } else if (kind == 1 && depth < 2) {
+                mergePatch.add(name, mergePatch(random, depth + 1));
+            } else {
+                mergePatch.add(name, value(random, JsonValue.EMPTY_JSON_OBJECT));
+            }
+        }
+        return mergePatch.build();
+    }
+
+    private static ContactResourceInput contact(Random random) {
+        return ContactResourceInput.builder()
+                .name(random.nextInt(10) == 0 ? null : pick(random, NAMES))
+                .birthday(random.nextBoolean() ? LocalDate.of(1950 + random.nextInt(60), 1 + random.nextInt(12), 1 + random.nextInt(28)) : null)
+                .work(random.nextBoolean() ? WorkResourceInput.builder()
+                        .title(random.nextBoolean() ? "Engineer" : null)
+                        .company(random.nextBoolean() ? "Acme" : null)
+                        .build() : null)
+                .phones(list(random, 4, () -> PhoneResourceInput.builder()
+                        .phone(String.valueOf(1_000 + random.nextInt(9_000)))
+                        .type(random.nextBoolean() ? pick(random, TYPES) : null)
+                        .build()))
+                .emails(list(random, 4, () -> EmailResourceInput.builder()
+                        .email(pick(random, "john@example.com", "jane@example.com"))
+                        .type(random.nextBoolean() ? pick(random, TYPES) : null)
+                        .build()))
+                // Large enough, now and then, for the persistent arrays to have more than one leaf
+                .groups(random.nextInt(10) == 0
+                        ? list(random, 200, () -> "Group " + random.nextInt(1_000))
+                        : list(random, 6, () -> "Group " + random.nextInt(10)))
+                .favorite(random.nextInt(3) == 0 ? null : random.nextBoolean())
+                .notes(random.nextInt(3) == 0 ? "Met at the conference" : null)
+                .build();
+    }
+
+    private static <T> List<T> list(Random random, int maxSize, Supplier<T> element) {
+        if (random.nextInt(5) == 0) {
+            return null;
+        }
+        List<T> list = new ArrayList<>();
+        int size = random.nextInt(maxSize + 1);
+        for (int i = 0; i < size; i++) {
+            list.add(element.get());
+        }
+        return list;
+    }
+
+    /**
+     * Returns an operation on a document, mostly on its values, but now and then on locations that don't exist.
+     */
+    private static JsonObject operation(Random random, JsonValue document) {
+
+        Map<List<String>, JsonValue> values = new LinkedHashMap<>();
+        ReferencePatch.visit(document, values::put);
+        List<List<String>> paths = new ArrayList<>(values.keySet());
+        List<List<String>> containers = paths.stream()
+                .filter(path -> isContainer(values.get(path)))
+                .collect(Collectors.toList());
+
+        JsonObjectBuilder operation = Json.createObjectBuilder();
+        String op = pick(random, "add", "add", "add", "remove", "remove", "replace", "replace", "move", "copy", "test");
+        operation.add("op", op);
+
+        switch (op) {
+            case "add":
+                operation.add("path", newLocation(random, values, containers, paths));
+                operation.add("value", value(random, document));
+                break;
+            case "remove":
+                operation.add("path", location(random, paths));
+                break;
+            case "replace":
+                operation.add("path", location(random, paths));
+                operation.add("value", value(random, document));
+                break;
+            case "move":
+            case "copy":
+                operation.add("from", location(random, paths));
+                operation.add("path", newLocation(random, values, containers, paths));
+                break;
+            case "test":
+                List<String> path = pick(random, paths);
+                operation.add("path", random.nextInt(10) == 0 ? ReferencePatch.pointer(path) + "/x" : ReferencePatch.pointer(path));
+                operation.add("value", random.nextBoolean() ? values.get(path) : value(random, document));
+                break;
+            default:
+                throw new IllegalStateException(op);
+        }
+        return operation.build();
+    }
+
+    /**
+     * Returns the location of a value, the whole document now and then, or a location that doesn't exist.
+     */
+    private static String location(Random random, List<List<String>> paths) {
+        List<String> path = pick(random, paths);
+        switch (random.nextInt(12)) {
+            case 0:
+                return "";
+            case 1:
+                return ReferencePatch.pointer(path) + "/" + pick(random, "missing", "-", "01", "0", "1");
+            default:
+                return ReferencePatch.pointer(path.isEmpty() ? pick(random, paths) : path);
+        }
+    }
+
+    /**
+     * Returns a location a value can be added to, an existing one, or now and then one that can't be added to.
+     */
+    private static String newLocation(Random random, Map<List<String>, JsonValue> values,
+                                      List<List<String>> containers, List<List<String>> paths) {
+
+        switch (random.nextInt(10)) {
+            case 0:
+                return location(random, paths);
+            case 1:
+                return ReferencePatch.pointer(pick(random, paths)) + "/" + pick(random, KEYS);
+            default:
+                List<String> container = pick(random, containers);
+                JsonValue value = values.get(container);
+                String pointer = ReferencePatch.pointer(container);
+                if (value.getValueType() == ValueType.OBJECT) {
+                    return pointer + "/" + ReferencePatch.pointer(List.of(pick(random, KEYS))).substring(1);
+                }
+                int size = value.asJsonArray().size();
+                return pointer + "/" + pick(random, "-", String.valueOf(random.nextInt(size + 2)), "01");
+        }
+    }
+
+    /**
+     * Returns a value for a contact, possibly of the wrong type, or a value of the document.
+     */
+    private static JsonValue value(Random random, JsonValue document) {
+        switch (random.nextInt(9)) {
+            case 0:
+                return Json.createValue(pick(random, NAMES));
+            case 1:
+                return Json.createValue(random.nextInt(100));
+            case 2:
+                return random.nextBoolean() ? JsonValue.TRUE : JsonValue.FALSE;
+            case 3:
+                return JsonValue.NULL;
+            case 4:
+                return Json.createObjectBuilder().add("phone", "1234").add("type", pick(random, TYPES)).build();
+            case 5:
+                return Json.createArrayBuilder().add("Friends").add("Work").build();
+            case 6:
+                return random.nextBoolean() ? JsonValue.EMPTY_JSON_OBJECT : JsonValue.EMPTY_JSON_ARRAY;
+            default:
+                List<JsonValue> values = new ArrayList<>();
+                ReferencePatch.visit(document, (path, value) -> values.add(value));
+                return pick(random, values);
+        }
+    }
+
+    private static boolean isContainer(JsonValue value) {
+        return value.getValueType() == ValueType.OBJECT || value.getValueType() == ValueType.ARRAY;
+    }
+
+    @SafeVarargs
+    private static <T> T pick(Random random, T... choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    private static <T> T pick(Random random, List<T> choices) {
+        return choices.get(random.nextInt(choices.size()));
+    }
+
+    /**
+     * Measures how many times per second each workload runs, as the best of several runs taking turns, so that they are
+     * all measured under the same conditions.
+     */
+    private static Map<String, Double> throughput(Map<String, Runnable> workloads) {
+
+        for (int i = 0; i < 5; i++) {
+            workloads.values().forEach(Runnable::run);
+        }
+
+        Map<String, Long> best = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            workloads.forEach((name, workload) -> {
+                long start = System.nanoTime();
+                workload.run();
+                best.merge(name, System.nanoTime() - start, Math::min);
+            });
+        }
+
+        Map<String, Double> throughput = new LinkedHashMap<>();
+        best.forEach((name, nanos) -> throughput.put(name, 1e9 / nanos));
+        return throughput;
+    }
+}
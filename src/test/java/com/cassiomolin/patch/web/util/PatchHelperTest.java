@@ -2,9 +2,15 @@ package com.cassiomolin.patch.web.util;
 
 
 import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.JsonPatchProperties.Engine;
+import com.cassiomolin.patch.config.PatchMetricsProperties;
 import com.cassiomolin.patch.domain.Contact;
 import com.cassiomolin.patch.domain.Phone;
 import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.web.exception.PatchFailure;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.util.Lists;
 import org.assertj.core.util.Sets;
 import org.junit.Test;
@@ -17,14 +23,16 @@ import org.springframework.test.context.junit4.SpringRunner;
 import javax.json.*;
 import javax.validation.Validator;
 import java.time.LocalDate;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
-@Import({JacksonConfig.class, PatchHelper.class})
+@Import({JacksonConfig.class, PatchHelper.class, PatchMetrics.class, PatchMetricsProperties.class, JsonPatchProperties.class, SimpleMeterRegistry.class})
 public class PatchHelperTest {
 
     @MockBean
@@ -33,6 +41,9 @@ public class PatchHelperTest {
     @Autowired
     private PatchHelper patchHelper;
 
+    @Autowired
+    private JsonPatchProperties properties;
+
     @Test
     public void patch_shouldPatchDocument() {
 
@@ -122,4 +133,140 @@ public class PatchHelperTest {
 
         verify(validator).validate(any());
     }
+
+    @Test
+    public void composeMergePatches_shouldComposeDocuments() {
+
+        JsonMergePatch first = Json.createMergePatch(Json.createObjectBuilder()
+                .add("name", "John W. Appleseed")
+                .add("work", Json.createObjectBuilder()
+                        .add("title", "Senior Engineer"))
+                .add("notes", JsonValue.NULL)
+                .build());
+
+        JsonMergePatch second = Json.createMergePatch(Json.createObjectBuilder()
+                .add("work", Json.createObjectBuilder()
+                        .add("company", "Initech"))
+                .add("notes", "Cool guy!")
+                .add("favorite", JsonValue.TRUE)
+                .build());
+
+        JsonValue expected = Json.createObjectBuilder()
+                .add("name", "John W. Appleseed")
+                .add("work", Json.createObjectBuilder()
+                        .add("title", "Senior Engineer")
+                        .add("company", "Initech"))
+                .add("notes", "Cool guy!")
+                .add("favorite", JsonValue.TRUE)
+                .build();
+
+        Optional<JsonMergePatch> result = patchHelper.composeMergePatches(Lists.newArrayList(first, second));
+        assertThat(result).hasValueSatisfying(composed -> assertThat(composed.toJsonValue()).isEqualTo(expected));
+    }
+
+    @Test
+    public void composeMergePatches_shouldNotComposeDocuments_whenOutcomeDependsOnTarget() {
+
+        JsonMergePatch first = Json.createMergePatch(Json.createObjectBuilder()
+                .add("work", JsonValue.NULL)
+                .build());
+
+        JsonMergePatch second = Json.createMergePatch(Json.createObjectBuilder()
+                .add("work", Json.createObjectBuilder()
+                        .add("title", "Senior Engineer"))
+                .build());
+
+        assertThat(patchHelper.composeMergePatches(Lists.newArrayList(first, second))).isEmpty();
+    }
+
+    @Test
+    public void composeMergePatches_shouldNotComposeDocuments_whenRemovingMembersOfPatchedObject() {
+
+        JsonMergePatch first = Json.createMergePatch(Json.createObjectBuilder()
+                .add("work", Json.createObjectBuilder()
+                        .add("title", "Senior Engineer"))
+                .build());
+
+        JsonMergePatch second = Json.createMergePatch(Json.createObjectBuilder()
+                .add("work", Json.createObjectBuilder()
+                        .add("company", JsonValue.NULL))
+                .build());
+
+        assertThat(patchHelper.composeMergePatches(Lists.newArrayList(first, second))).isEmpty();
+    }
+
+    @Test
+    public void mergePatch_shouldMergePatchDocumentsSequentially_whenDocumentsCannotBeComposed() {
+
+        when(validator.validate(any())).thenReturn(Sets.newHashSet());
+
+        Contact target = Contact.builder()
+                .id(1L)
+                .name("John Appleseed")
+                .work(Work.builder().company("Acme").title("Engineer").build())
+                .build();
+
+        JsonMergePatch first = Json.createMergePatch(Json.createObjectBuilder()
+                .add("work", JsonValue.NULL)
+                .build());
+
+        JsonMergePatch second = Json.createMergePatch(Json.createObjectBuilder()
+                .add("work", Json.createObjectBuilder()
+                        .add("title", "Senior Engineer"))
+                .build());
+
+        Contact expected = Contact.builder()
+                .id(1L)
+                .name("John Appleseed")
+                .work(Work.builder().title("Senior Engineer").build())
+                .build();
+
+        Contact result = patchHelper.mergePatch(Lists.newArrayList(first, second), target, Contact.class);
+        assertThat(result).isEqualToComparingFieldByFieldRecursively(expected);
+
+        verify(validator).validate(any());
+    }
+
+    @Test
+    public void patch_shouldFailWithoutStackTrace_whenPatchCannotBeApplied() {
+        assertPatchFailures();
+    }
+
+    @Test
+    public void patch_shouldFailWithSameFailures_whenAppliedByJsonP() {
+        properties.setEngine(Engine.JOHNZON);
+        try {
+            assertPatchFailures();
+        } finally {
+            properties.setEngine(Engine.PERSISTENT);
+        }
+    }
+
+    private void assertPatchFailures() {
+
+        Contact target = Contact.builder()
+                .name("John Appleseed")
+                .work(Work.builder().company("Acme").build())
+                .phones(Lists.newArrayList())
+                .build();
+
+        assertPatchFailure(Json.createPatchBuilder().remove("/phones/0").build(), target,
+                PatchFailure.BAD_POINTER, "/phones/0");
+        assertPatchFailure(Json.createPatchBuilder().replace("/nickname", "Johnny").build(), target,
+                PatchFailure.BAD_POINTER, "/nickname");
+        assertPatchFailure(Json.createPatchBuilder().test("/name", "Jane Appleseed").build(), target,
+                PatchFailure.TEST_FAILED, "/name");
+        assertPatchFailure(Json.createPatchBuilder().replace("/work/company/name", "Acme").build(), target,
+                PatchFailure.TYPE_MISMATCH, "/work/company/name");
+    }
+
+    private void assertPatchFailure(JsonPatch patch, Contact target, PatchFailure failure, String pointer) {
+        assertThatThrownBy(() -> patchHelper.patch(patch, target, Contact.class))
+                .isInstanceOfSatisfying(PatchFailureException.class, e -> {
+                    assertThat(e.getFailure()).isEqualTo(failure);
+                    assertThat(e.getPointer()).isEqualTo(pointer);
+                    assertThat(e.getCause()).isNull();
+                    assertThat(e.getStackTrace()).isEmpty();
+                });
+    }
 }
@@ -0,0 +1,83 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import com.cassiomolin.patch.web.exception.UnprocessableEntityException;
+import com.cassiomolin.patch.web.util.PatchMetrics.Stage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.json.Json;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PatchMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    private PatchMetrics metrics;
+
+    @Before
+    public void setup() {
+
+        PatchMetricsProperties properties = new PatchMetricsProperties();
+        properties.setAllocationTracking(true);
+
+        registry = new SimpleMeterRegistry();
+        metrics = new PatchMetrics(registry, properties);
+    }
+
+    @Test
+    public void time_shouldRecordStage() {
+
+        String result = metrics.time(Stage.APPLY, () -> "patched");
+
+        assertThat(result).isEqualTo("patched");
+        assertThat(registry.get("contacts.patch.stage").tag("stage", "apply").timer().count()).isEqualTo(1);
+        assertThat(registry.get("contacts.patch.stage").tag("stage", "apply").timer().totalTime(TimeUnit.NANOSECONDS)).isPositive();
+        assertThat(registry.get("contacts.patch.stage").tag("stage", "validate").timer().count()).isZero();
+    }
+
+    @Test
+    public void countOperations_shouldCountByType() {
+
+        metrics.countOperations(Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("op", "replace").add("path", "/name").add("value", "John"))
+                .add(Json.createObjectBuilder().add("op", "add").add("path", "/groups/-").add("value", "Friends"))
+                .add(Json.createObjectBuilder().add("op", "replace").add("path", "/favorite").add("value", true))
+                .add(Json.createObjectBuilder().add("op", "unknown").add("path", "/name"))
+                .build());
+
+        assertThat(registry.get("contacts.patch.operations").tag("op", "replace").counter().count()).isEqualTo(2);
+        assertThat(registry.get("contacts.patch.operations").tag("op", "add").counter().count()).isEqualTo(1);
+        assertThat(registry.get("contacts.patch.operations").tag("op", "remove").counter().count()).isZero();
+    }
+
+    @Test
+    public void request_shouldCountFailuresByReason() {
+
+        assertThatThrownBy(() -> metrics.request(() -> {
+            throw new ResourceNotFoundException();
+        })).isInstanceOf(ResourceNotFoundException.class);
+
+        assertThatThrownBy(() -> metrics.request(() -> {
+            throw new UnprocessableEntityException(new IllegalArgumentException());
+        })).isInstanceOf(UnprocessableEntityException.class);
+
+        assertThat(registry.get("contacts.patch.failures").tag("reason", "not-found").counter().count()).isEqualTo(1);
+        assertThat(registry.get("contacts.patch.failures").tag("reason", "patch-failed").counter().count()).isEqualTo(1);
+        assertThat(registry.get("contacts.patch.failures").tag("reason", "constraint-violation").counter().count()).isZero();
+    }
+
+    @Test
+    public void request_shouldRecordAllocatedBytes() {
+
+        metrics.request(() -> new byte[64 * 1024]);
+
+        assertThat(registry.get("contacts.patch.allocated").summary().count()).isEqualTo(1);
+        assertThat(registry.get("contacts.patch.allocated").summary().totalAmount()).isGreaterThanOrEqualTo(64 * 1024);
+    }
+}
@@ -0,0 +1,138 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.web.exception.PatchFailure;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonPatch;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PersistentJsonPatchTest {
+
+    private static final JsonObject TARGET = json("{\"name\":\"John\","
+            + "\"work\":{\"title\":\"Engineer\",\"phones\":[{\"phone\":\"1\"},{\"phone\":\"2\"}]},"
+            + "\"groups\":[\"a\",\"b\",\"c\"],\"a/b\":1,\"m~n\":2}");
+
+    @Test
+    public void apply_shouldMatchJsonP_forEachOperation() {
+
+        String[] patches = {
+                "[{\"op\":\"add\",\"path\":\"/groups/-\",\"value\":\"d\"}]",
+                "[{\"op\":\"add\",\"path\":\"/groups/0\",\"value\":\"z\"}]",
+                "[{\"op\":\"add\",\"path\":\"/groups/3\",\"value\":\"z\"}]",
+                "[{\"op\":\"add\",\"path\":\"/work/phones/1/type\",\"value\":\"work\"}]",
+                "[{\"op\":\"add\",\"path\":\"/name\",\"value\":\"Jane\"}]",
+                "[{\"op\":\"add\",\"path\":\"/favorite\",\"value\":true}]",
+                "[{\"op\":\"remove\",\"path\":\"/work/title\"}]",
+                "[{\"op\":\"remove\",\"path\":\"/a~1b\"}]",
+                "[{\"op\":\"replace\",\"path\":\"/groups/2\",\"value\":\"y\"}]",
+                "[{\"op\":\"replace\",\"path\":\"/m~0n\",\"value\":3}]",
+                "[{\"op\":\"move\",\"from\":\"/groups/0\",\"path\":\"/groups/-\"}]",
+                "[{\"op\":\"move\",\"from\":\"/name\",\"path\":\"/work/phones/0/name\"}]",
+                "[{\"op\":\"copy\",\"from\":\"/work/phones/0\",\"path\":\"/work/phones/-\"}]",
+                "[{\"op\":\"test\",\"path\":\"/groups\",\"value\":[\"a\",\"b\",\"c\"]},"
+                        + "{\"op\":\"remove\",\"path\":\"/groups/0\"},"
+                        + "{\"op\":\"test\",\"path\":\"/groups\",\"value\":[\"b\",\"c\"]}]",
+                "[{\"op\":\"add\",\"path\":\"\",\"value\":{\"name\":\"Jane\"}}]"
+        };
+
+        for (String patch : patches) {
+            JsonPatch jsonPatch = Json.createPatch(Json.createReader(new StringReader(patch)).readArray());
+            assertThat(PersistentJsonPatch.apply(jsonPatch, TARGET)).as(patch).isEqualTo(jsonPatch.apply(TARGET));
+        }
+    }
+
+    @Test
+    public void apply_shouldRemoveOnlyReferencedValue() {
+
+        // JSON-P also removes the values with the same name or index, at the same depth, in the other members
+        JsonObject target = json("{\"phones\":[\"1\",\"2\"],\"groups\":[\"a\",\"b\",\"c\"]}");
+        JsonPatch patch = Json.createPatchBuilder().remove("/groups/1").remove("/groups/1").build();
+
+        assertThat(PersistentJsonPatch.apply(patch, target))
+                .isEqualTo(json("{\"phones\":[\"1\",\"2\"],\"groups\":[\"a\"]}"));
+    }
+
+    @Test
+    public void apply_shouldFail_whenPatchCannotBeApplied() {
+
+        assertFailure("[{\"op\":\"add\",\"path\":\"/groups/4\",\"value\":\"z\"}]",
+                PatchFailure.BAD_POINTER, "/groups/4");
+        assertFailure("[{\"op\":\"add\",\"path\":\"/groups/01\",\"value\":\"z\"}]",
+                PatchFailure.BAD_POINTER, "/groups/01");
+        assertFailure("[{\"op\":\"remove\",\"path\":\"/groups/-\"}]",
+                PatchFailure.BAD_POINTER, "/groups/-");
+        assertFailure("[{\"op\":\"remove\",\"path\":\"/missing\"}]",
+                PatchFailure.BAD_POINTER, "/missing");
+        assertFailure("[{\"op\":\"replace\",\"path\":\"/name/first\",\"value\":\"Jane\"}]",
+                PatchFailure.TYPE_MISMATCH, "/name/first");
+        assertFailure("[{\"op\":\"remove\",\"path\":\"\"}]",
+                PatchFailure.INVALID_PATCH, "");
+        assertFailure("[{\"op\":\"add\",\"path\":\"/groups/-\",\"value\":\"d\"},"
+                        + "{\"op\":\"test\",\"path\":\"/groups/3\",\"value\":\"e\"}]",
+                PatchFailure.TEST_FAILED, "/groups/3");
+    }
+
+    @Test
+    public void apply_shouldNameLocationOfFailure_withoutTheValueItHappenedIn() {
+
+        assertThatThrownBy(() -> PersistentJsonPatch.apply(Json.createPatchBuilder()
+                .add("/work/phones/2/type", "work")
+                .build(), TARGET))
+                .isInstanceOf(PatchFailureException.class)
+                .hasMessage("'/work/phones' contains no element for index 2");
+        assertThatThrownBy(() -> PersistentJsonPatch.apply(Json.createPatchBuilder()
+                .remove("/work/phone")
+                .build(), TARGET))
+                .isInstanceOf(PatchFailureException.class)
+                .hasMessage("'/work' contains no value for name 'phone'");
+        assertThatThrownBy(() -> PersistentJsonPatch.apply(Json.createPatchBuilder()
+                .replace("/a~1b/c", 2)
+                .build(), TARGET))
+                .isInstanceOf(PatchFailureException.class)
+                .hasMessage("'/a~1b' contains no element for 'c'");
+    }
+
+    @Test
+    public void apply_shouldShareUntouchedValues() {
+
+        JsonArrayBuilder groups = Json.createArrayBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            groups.add("group-" + i);
+        }
+        JsonObject target = Json.createObjectBuilder(TARGET).add("groups", groups).build();
+
+        JsonPatch patch = Json.createPatchBuilder().add("/groups/-", "new").remove("/groups/17").build();
+        JsonObject patched = PersistentJsonPatch.apply(patch, target).asJsonObject();
+
+        assertThat(patched.get("groups")).isInstanceOf(PersistentJsonArray.class);
+        assertThat(patched.get("work")).isSameAs(target.get("work"));
+
+        JsonArray patchedGroups = patched.getJsonArray("groups");
+        assertThat(patchedGroups).hasSize(10_000);
+        assertThat(patchedGroups.getString(17)).isEqualTo("group-18");
+        assertThat(patchedGroups.getString(9_999)).isEqualTo("new");
+        assertThat(patchedGroups.toString()).startsWith("[\"group-0\",").endsWith(",\"group-9999\",\"new\"]");
+    }
+
+    private static void assertFailure(String patch, PatchFailure failure, String pointer) {
+        JsonPatch jsonPatch = Json.createPatch(Json.createReader(new StringReader(patch)).readArray());
+        assertThatThrownBy(() -> PersistentJsonPatch.apply(jsonPatch, TARGET)).as(patch)
+                .isInstanceOfSatisfying(PatchFailureException.class, e -> {
+                    assertThat(e.getFailure()).isEqualTo(failure);
+                    assertThat(e.getPointer()).isEqualTo(pointer);
+                });
+    }
+
+    private static JsonObject json(String json) {
+        return Json.createReader(new StringReader(json)).readObject();
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.cassiomolin.patch.web.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentVectorTest {
+
+    @Test
+    public void vector_shouldHoldSameElementsAsArrayList_acrossInsertionsAndRemovals() {
+
+        Random random = new Random(42);
+        List<Integer> expected = IntStream.range(0, 5000).boxed().collect(Collectors.toCollection(ArrayList::new));
+        PersistentVector<Integer> vector = PersistentVector.of(expected);
+
+        // Grows well past a few levels, then shrinks back to nothing, so nodes split, merge and collapse
+        for (int i = 0; i < 40_000; i++) {
+            int operation = random.nextInt(10);
+            if (i > 30_000 || (operation < 3 && !expected.isEmpty())) {
+                if (expected.isEmpty()) {
+                    break;
+                }
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                vector = vector.minus(index);
+            } else if (operation < 5 && !expected.isEmpty()) {
+                int index = random.nextInt(expected.size());
+                expected.set(index, -i);
+                vector = vector.with(index, -i);
+            } else {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, i);
+                vector = vector.plus(index, i);
+            }
+            if (i % 1000 == 0) {
+                assertThat(vector).isEqualTo(expected);
+            }
+        }
+
+        assertThat(vector).isEqualTo(expected);
+        assertThat(vector.size()).isEqualTo(expected.size());
+    }
+
+    @Test
+    public void vector_shouldLeaveOriginalUnchanged() {
+
+        PersistentVector<String> original = PersistentVector.of(List.of("a", "b", "c"));
+
+        PersistentVector<String> updated = original.plus("d").minus(0).with(0, "x");
+
+        assertThat(original).containsExactly("a", "b", "c");
+        assertThat(updated).containsExactly("x", "c", "d");
+    }
+}
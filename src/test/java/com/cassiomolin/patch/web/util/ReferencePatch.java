@@ -0,0 +1,490 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.web.exception.PatchFailure;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Implementation of JSON Patch (RFC 6902) and JSON Merge Patch (RFC 7396) the patch engines are compared with, written
+ * to be obviously right rather than fast: each operation rebuilds the document.
+ * <p>
+ * Like the JSON-P implementation, the whole document can only be replaced by an {@code add} of a value of the same type,
+ * and can't be removed nor replaced.
+ * <p>
+ * The JSON-P implementation departs from RFC 6902 in ways {@link #departsFromJsonP(JsonValue, JsonArray)} tells apart:
+ * its {@code add} also adds the value to the other objects and arrays at the same depth with the same name or index,
+ * ignores values added to a string, number, boolean or null, and tracks where it is in the document wrongly when a path
+ * repeats a name or an index. Its {@code remove} also removes the members with the same name, and the elements at the
+ * same index, of the other objects and arrays at the same depth, and fails when those arrays are too short.
+ * <p>
+ * It also departs from RFC 7396, as {@link #mergePatchDepartsFromJsonP(JsonValue, JsonValue)} tells apart: an object of
+ * a JSON Merge Patch document merged into a value that isn't an object keeps its {@code null} members.
+ */
+final class ReferencePatch {
+
+    private ReferencePatch() {
+    }
+
+    /**
+     * Performs a JSON Patch operation.
+     *
+     * @param target     JSON value that will be patched
+     * @param operations operations of the JSON Patch document
+     * @return patched JSON value, or why the document can't be applied
+     */
+    static Outcome applyPatch(JsonValue target, JsonArray operations) {
+        try {
+            JsonValue patched = target;
+            for (JsonValue operation : operations) {
+                patched = apply(patched, operation.asJsonObject());
+            }
+            return Outcome.of(patched);
+        } catch (Failure e) {
+            return Outcome.failed(e.failure);
+        }
+    }
+
+    /**
+     * Tells whether the JSON-P implementation is known to apply a JSON Patch document otherwise than RFC 6902 does.
+     *
+     * @param target     JSON value that will be patched
+     * @param operations operations of the JSON Patch document
+     * @return {@code true} if an operation that is applied hits a departure of the JSON-P implementation
+     */
+    static boolean departsFromJsonP(JsonValue target, JsonArray operations) {
+        JsonValue patched = target;
+        for (JsonValue value : operations) {
+            JsonObject operation = value.asJsonObject();
+            if (departsFromJsonP(patched, operation)) {
+                return true;
+            }
+            try {
+                patched = apply(patched, operation);
+            } catch (Failure e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Performs a JSON Merge Patch operation.
+     *
+     * @param target     JSON value that will be patched
+     * @param mergePatch JSON Merge Patch document
+     * @return patched JSON value
+     */
+    static JsonValue applyMergePatch(JsonValue target, JsonValue mergePatch) {
+
+        if (mergePatch.getValueType() != ValueType.OBJECT) {
+            return mergePatch;
+        }
+
+        JsonObjectBuilder patched = target.getValueType() == ValueType.OBJECT
+                ? Json.createObjectBuilder(target.asJsonObject())
+                : Json.createObjectBuilder();
+        for (Map.Entry<String, JsonValue> member : mergePatch.asJsonObject().entrySet()) {
+            if (member.getValue().getValueType() == ValueType.NULL) {
+                patched.remove(member.getKey());
+            } else {
+                JsonValue previous = target.getValueType() == ValueType.OBJECT
+                        ? target.asJsonObject().getOrDefault(member.getKey(), JsonValue.NULL)
+                        : JsonValue.NULL;
+                patched.add(member.getKey(), applyMergePatch(previous, member.getValue()));
+            }
+        }
+        return patched.build();
+    }
+
+    /**
+     * Tells whether the JSON-P implementation is known to apply a JSON Merge Patch document otherwise than RFC 7396 does.
+     *
+     * @param target     JSON value that will be patched
+     * @param mergePatch JSON Merge Patch document
+     * @return {@code true} if the document has {@code null} members the JSON-P implementation keeps
+     */
+    static boolean mergePatchDepartsFromJsonP(JsonValue target, JsonValue mergePatch) {
+
+        if (mergePatch.getValueType() != ValueType.OBJECT) {
+            return false;
+        }
+        if (target.getValueType() != ValueType.OBJECT) {
+            return containsNull(mergePatch);
+        }
+
+        for (Map.Entry<String, JsonValue> member : mergePatch.asJsonObject().entrySet()) {
+            JsonValue previous = target.asJsonObject().getOrDefault(member.getKey(), JsonValue.NULL);
+            if (mergePatchDepartsFromJsonP(previous, member.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsNull(JsonValue value) {
+        return value.getValueType() == ValueType.OBJECT && value.asJsonObject().values().stream()
+                .anyMatch(member -> member.getValueType() == ValueType.NULL || containsNull(member));
+    }
+
+    /**
+     * Returns the JSON Pointer of a value from the reference tokens of its path.
+     *
+     * @param tokens reference tokens
+     * @return JSON Pointer
+     */
+    static String pointer(List<String> tokens) {
+        StringBuilder pointer = new StringBuilder();
+        for (String token : tokens) {
+            pointer.append('/').append(token.replace("~", "~0").replace("/", "~1"));
+        }
+        return pointer.toString();
+    }
+
+    /**
+     * Visits each value of a document with the reference tokens of its path, the document first.
+     *
+     * @param value   JSON document
+     * @param visitor visitor of the values
+     */
+    static void visit(JsonValue value, BiConsumer<List<String>, JsonValue> visitor) {
+        visit(new ArrayList<>(), value, visitor);
+    }
+
+    private static void visit(List<String> path, JsonValue value, BiConsumer<List<String>, JsonValue> visitor) {
+        visitor.accept(List.copyOf(path), value);
+        if (value.getValueType() == ValueType.OBJECT) {
+            for (Map.Entry<String, JsonValue> member : value.asJsonObject().entrySet()) {
+                path.add(member.getKey());
+                visit(path, member.getValue(), visitor);
+                path.remove(path.size() - 1);
+            }
+        } else if (value.getValueType() == ValueType.ARRAY) {
+            JsonArray array = value.asJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                path.add(String.valueOf(i));
+                visit(path, array.get(i), visitor);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    private static JsonValue apply(JsonValue target, JsonObject operation) {
+
+        List<String> path = tokens(operation.getString("path"));
+        switch (operation.getString("op")) {
+            case "add":
+                return add(target, path, operation.get("value"));
+            case "remove":
+                return remove(target, path);
+            case "replace":
+                return add(remove(target, path), path, operation.get("value"));
+            case "move":
+                List<String> from = tokens(operation.getString("from"));
+                JsonValue moved = get(target, from);
+                return add(remove(target, from), path, moved);
+            case "copy":
+                return add(target, path, get(target, tokens(operation.getString("from"))));
+            case "test":
+                if (!get(target, path).equals(operation.get("value"))) {
+                    throw new Failure(PatchFailure.TEST_FAILED);
+                }
+                return target;
+            default:
+                throw new Failure(PatchFailure.INVALID_PATCH);
+        }
+    }
+
+    private static JsonValue get(JsonValue target, List<String> path) {
+        JsonValue value = target;
+        for (String token : path) {
+            value = child(value, token);
+        }
+        return value;
+    }
+
+    private static JsonValue add(JsonValue target, List<String> path, JsonValue value) {
+
+        if (path.isEmpty()) {
+            if (value.getValueType() != target.getValueType()) {
+                throw new Failure(PatchFailure.TYPE_MISMATCH);
+            }
+            return value;
+        }
+
+        String token = path.get(path.size() - 1);
+        return update(target, path.subList(0, path.size() - 1), parent -> {
+            switch (parent.getValueType()) {
+                case OBJECT:
+                    return Json.createObjectBuilder(parent.asJsonObject()).add(token, value).build();
+                case ARRAY:
+                    List<JsonValue> values = new ArrayList<>(parent.asJsonArray());
+                    values.add("-".equals(token) ? values.size() : index(token, values.size() + 1), value);
+                    return array(values);
+                default:
+                    throw new Failure(PatchFailure.TYPE_MISMATCH);
+            }
+        });
+    }
+
+    private static JsonValue remove(JsonValue target, List<String> path) {
+
+        if (path.isEmpty()) {
+            throw new Failure(PatchFailure.INVALID_PATCH);
+        }
+
+        String token = path.get(path.size() - 1);
+        return update(target, path.subList(0, path.size() - 1), parent -> {
+            switch (parent.getValueType()) {
+                case OBJECT:
+                    child(parent, token);
+                    return Json.createObjectBuilder(parent.asJsonObject()).remove(token).build();
+                case ARRAY:
+                    List<JsonValue> values = new ArrayList<>(parent.asJsonArray());
+                    values.remove(index(token, values.size()));
+                    return array(values);
+                default:
+                    throw new Failure(PatchFailure.TYPE_MISMATCH);
+            }
+        });
+    }
+
+    /**
+     * Replaces the value at a path with the outcome of a change to it.
+     */
+    private static JsonValue update(JsonValue target, List<String> path, UnaryOperator<JsonValue> change) {
+
+        if (path.isEmpty()) {
+            return change.apply(target);
+        }
+
+        String token = path.get(0);
+        JsonValue updated = update(child(target, token), path.subList(1, path.size()), change);
+        if (target.getValueType() == ValueType.OBJECT) {
+            return Json.createObjectBuilder(target.asJsonObject()).add(token, updated).build();
+        }
+        List<JsonValue> values = new ArrayList<>(target.asJsonArray());
+        values.set(index(token, values.size()), updated);
+        return array(values);
+    }
+
+    private static JsonValue child(JsonValue target, String token) {
+        switch (target.getValueType()) {
+            case OBJECT:
+                JsonValue member = target.asJsonObject().get(token);
+                if (member == null) {
+                    throw new Failure(PatchFailure.BAD_POINTER);
+                }
+                return member;
+            case ARRAY:
+                JsonArray array = target.asJsonArray();
+                return array.get(index(token, array.size()));
+            default:
+                throw new Failure(PatchFailure.TYPE_MISMATCH);
+        }
+    }
+
+    private static int index(String token, int bound) {
+        if (!token.matches("0|[1-9][0-9]{0,8}") || Integer.parseInt(token) >= bound) {
+            throw new Failure(PatchFailure.BAD_POINTER);
+        }
+        return Integer.parseInt(token);
+    }
+
+    private static JsonArray array(List<JsonValue> values) {
+        JsonArrayBuilder array = Json.createArrayBuilder();
+        values.forEach(array::add);
+        return array.build();
+    }
+
+    private static List<String> tokens(String pointer) {
+        if (pointer.isEmpty()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+
+    private static boolean departsFromJsonP(JsonValue target, JsonObject operation) {
+
+        List<String> path = tokens(operation.getString("path"));
+        switch (operation.getString("op")) {
+            case "add":
+                return addDeparts(target, path);
+            case "remove":
+                return removeDeparts(target, path);
+            case "replace":
+                return removeDeparts(target, path) || addDeparts(removed(target, path), path);
+            case "move":
+                List<String> from = tokens(operation.getString("from"));
+                return removeDeparts(target, from) || addDeparts(removed(target, from), path);
+            case "copy":
+                return addDeparts(target, path);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean addDeparts(JsonValue target, List<String> path) {
+
+        if (target == null || path.isEmpty()) {
+            return false;
+        }
+
+        List<String> parentPath = path.subList(0, path.size() - 1);
+        JsonValue parent = target;
+        for (String token : parentPath) {
+            if (parent.getValueType() != ValueType.OBJECT && parent.getValueType() != ValueType.ARRAY) {
+                return true;
+            }
+            try {
+                parent = child(parent, token);
+            } catch (Failure e) {
+                return false;
+            }
+        }
+        if (parent.getValueType() != ValueType.OBJECT && parent.getValueType() != ValueType.ARRAY) {
+            return true;
+        }
+
+        boolean[] departs = {false};
+        visit(target, (valuePath, value) -> {
+            boolean container = value.getValueType() == ValueType.OBJECT || value.getValueType() == ValueType.ARRAY;
+            if (container && !parentPath.isEmpty() && !valuePath.equals(parentPath)
+                    && valuePath.size() == parentPath.size()
+                    && valuePath.get(valuePath.size() - 1).equals(parentPath.get(parentPath.size() - 1))) {
+                departs[0] = true;
+            }
+            // The root of the path counts as an empty token
+            List<String> tokens = new ArrayList<>(valuePath);
+            tokens.add("");
+            if (new HashSet<>(tokens).size() < tokens.size()) {
+                departs[0] = true;
+            }
+        });
+        return departs[0];
+    }
+
+    private static boolean removeDeparts(JsonValue target, List<String> path) {
+
+        if (path.isEmpty()) {
+            return false;
+        }
+
+        List<String> parentPath = path.subList(0, path.size() - 1);
+        String token = path.get(path.size() - 1);
+        boolean[] departs = {false};
+        visit(target, (valuePath, value) -> {
+            if (valuePath.size() == parentPath.size() && !valuePath.equals(parentPath)) {
+                if (value.getValueType() == ValueType.OBJECT && value.asJsonObject().containsKey(token)
+                        || value.getValueType() == ValueType.ARRAY && token.matches("\\d+")) {
+                    departs[0] = true;
+                }
+            }
+        });
+        return departs[0];
+    }
+
+    private static JsonValue removed(JsonValue target, List<String> path) {
+        try {
+            return remove(target, path);
+        } catch (Failure e) {
+            return null;
+        }
+    }
+
+    /**
+     * Patched value, or why a patch can't be applied.
+     * <p>
+     * Patched values are compared as JSON, whatever the implementation of the values.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    static final class Outcome {
+
+        private final JsonValue value;
+
+        private final PatchFailure failure;
+
+        static Outcome of(JsonValue value) {
+            return new Outcome(value, null);
+        }
+
+        static Outcome failed(PatchFailure failure) {
+            return new Outcome(null, failure);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Outcome
+                    && failure == ((Outcome) other).failure
+                    && (value == null ? ((Outcome) other).value == null : same(value, ((Outcome) other).value));
+        }
+
+        @Override
+        public int hashCode() {
+            return failure == null ? value.getValueType().hashCode() : failure.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return failure == null ? String.valueOf(value) : failure.name();
+        }
+
+        private static boolean same(JsonValue value, JsonValue other) {
+
+            if (other == null || value.getValueType() != other.getValueType()) {
+                return false;
+            }
+
+            switch (value.getValueType()) {
+                case OBJECT:
+                    JsonObject object = value.asJsonObject();
+                    JsonObject otherObject = other.asJsonObject();
+                    return object.keySet().equals(otherObject.keySet()) && object.keySet().stream()
+                            .allMatch(name -> same(object.get(name), otherObject.get(name)));
+                case ARRAY:
+                    JsonArray array = value.asJsonArray();
+                    JsonArray otherArray = other.asJsonArray();
+                    return array.size() == otherArray.size() && IntStream.range(0, array.size())
+                            .allMatch(i -> same(array.get(i), otherArray.get(i)));
+                case STRING:
+                    return ((JsonString) value).getString().equals(((JsonString) other).getString());
+                case NUMBER:
+                    return ((JsonNumber) value).bigDecimalValue().compareTo(((JsonNumber) other).bigDecimalValue()) == 0;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private static final class Failure extends RuntimeException {
+
+        private final PatchFailure failure;
+
+        Failure(PatchFailure failure) {
+            super(failure.name(), null, false, false);
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.web.exception.PatchFailure;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ResourceSchemaTest {
+
+    private final ResourceSchema schema = ResourceSchema.of(new ObjectMapper(), ContactResourceInput.class);
+
+    @Test
+    public void checkPatch_shouldAccept_whenPatchMatchesResource() {
+
+        assertThatCode(() -> schema.checkPatch(patch("[" +
+                "{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"John Appleseed\"}," +
+                "{\"op\":\"add\",\"path\":\"/phones/-\",\"value\":{\"phone\":\"+1 555 0100\",\"type\":\"mobile\"}}," +
+                "{\"op\":\"replace\",\"path\":\"/emails/0/email\",\"value\":\"john@example.com\"}," +
+                "{\"op\":\"remove\",\"path\":\"/work\"}," +
+                "{\"op\":\"test\",\"path\":\"/favorite\",\"value\":true}," +
+                "{\"op\":\"copy\",\"from\":\"/notes\",\"path\":\"/groups/0\"}]")))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    public void checkPatch_shouldFailWithBadPointer_whenMemberIsUnknown() {
+        assertFailure(() -> schema.checkPatch(patch("[{\"op\":\"replace\",\"path\":\"/work/department\",\"value\":\"Sales\"}]")),
+                PatchFailure.BAD_POINTER, "/work/department");
+    }
+
+    @Test
+    public void checkPatch_shouldFailWithBadPointer_whenArrayIndexIsInvalid() {
+        assertFailure(() -> schema.checkPatch(patch("[{\"op\":\"remove\",\"path\":\"/groups/01\"}]")),
+                PatchFailure.BAD_POINTER, "/groups/01");
+        assertFailure(() -> schema.checkPatch(patch("[{\"op\":\"replace\",\"path\":\"/groups/-\",\"value\":\"Friends\"}]")),
+                PatchFailure.BAD_POINTER, "/groups/-");
+        assertFailure(() -> schema.checkPatch(patch("[{\"op\":\"add\",\"path\":\"/phones/-/type\",\"value\":\"work\"}]")),
+                PatchFailure.BAD_POINTER, "/phones/-/type");
+    }
+
+    @Test
+    public void checkPatch_shouldFailWithTypeMismatch_whenNavigatingIntoScalar() {
+        assertFailure(() -> schema.checkPatch(patch("[{\"op\":\"add\",\"path\":\"/name/first\",\"value\":\"John\"}]")),
+                PatchFailure.TYPE_MISMATCH, "/name/first");
+    }
+
+    @Test
+    public void checkPatch_shouldFailWithTypeMismatch_whenValueHasWrongType() {
+        assertFailure(() -> schema.checkPatch(patch("[{\"op\":\"replace\",\"path\":\"/favorite\",\"value\":\"yes\"}]")),
+                PatchFailure.TYPE_MISMATCH, "/favorite");
+        assertFailure(() -> schema.checkPatch(patch("[{\"op\":\"move\",\"from\":\"/work\",\"path\":\"/notes\"}]")),
+                PatchFailure.TYPE_MISMATCH, "/notes");
+    }
+
+    @Test
+    public void checkPatch_shouldFailWithBadPointer_whenValueHasUnknownMember() {
+        assertFailure(() -> schema.checkPatch(patch("[{\"op\":\"add\",\"path\":\"/emails/0\",\"value\":{\"address\":\"john@example.com\"}}]")),
+                PatchFailure.BAD_POINTER, "/emails/0/address");
+    }
+
+    @Test
+    public void checkMergePatch_shouldCheckMembersAndValues() {
+
+        assertThatCode(() -> schema.checkMergePatch(Json.createReader(new StringReader(
+                "{\"name\":\"John Appleseed\",\"work\":null,\"groups\":[\"Friends\"]}")).readValue()))
+                .doesNotThrowAnyException();
+
+        assertFailure(() -> schema.checkMergePatch(Json.createReader(new StringReader(
+                "{\"work\":{\"department\":\"Sales\"}}")).readValue()),
+                PatchFailure.BAD_POINTER, "/work/department");
+        assertFailure(() -> schema.checkMergePatch(Json.createReader(new StringReader(
+                "{\"groups\":[1]}")).readValue()),
+                PatchFailure.TYPE_MISMATCH, "/groups/0");
+    }
+
+    private static JsonArray patch(String json) {
+        return Json.createReader(new StringReader(json)).readArray();
+    }
+
+    private static void assertFailure(ThrowingCallable callable, PatchFailure failure, String pointer) {
+        assertThatThrownBy(callable)
+                .isInstanceOf(PatchFailureException.class)
+                .hasFieldOrPropertyWithValue("failure", failure)
+                .hasFieldOrPropertyWithValue("pointer", pointer);
+    }
+}
@@ -0,0 +1,43 @@
+package com.cassiomolin.patch.reactive;
+
+import com.cassiomolin.patch.config.ContactHistoryProperties;
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonPatchProperties;
+import com.cassiomolin.patch.config.PatchMetricsProperties;
+import com.cassiomolin.patch.config.ResourceSchemaConfig;
+import com.cassiomolin.patch.service.impl.ContactHistory;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import com.cassiomolin.patch.service.impl.SequentialContactIdGenerator;
+import com.cassiomolin.patch.web.mapper.ContactMapperImpl;
+import com.cassiomolin.patch.web.util.PatchHelper;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+
+/**
+ * WebFlux variant of the contacts API, running on Netty.
+ * <p>
+ * Only the components of the application the API needs are imported, as the rest of them are tied to the servlet
+ * stack: the patch pipeline, the mapper and the in-memory contact store.
+ */
+@SpringBootApplication
+@Import({
+        JacksonConfig.class,
+        ResourceSchemaConfig.class,
+        PatchHelper.class,
+        PatchMetrics.class,
+        PatchMetricsProperties.class,
+        JsonPatchProperties.class,
+        ContactMapperImpl.class,
+        DefaultContactService.class,
+        SequentialContactIdGenerator.class,
+        ContactHistory.class,
+        ContactHistoryProperties.class
+})
+public class ReactivePatchApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactivePatchApplication.class, args);
+    }
+}
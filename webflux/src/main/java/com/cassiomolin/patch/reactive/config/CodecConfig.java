@@ -0,0 +1,25 @@
+package com.cassiomolin.patch.reactive.config;
+
+import com.cassiomolin.patch.reactive.web.codec.JsonMergePatchDecoder;
+import com.cassiomolin.patch.reactive.web.codec.JsonPatchDecoder;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import com.cassiomolin.patch.web.util.ResourceSchema;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class CodecConfig implements WebFluxConfigurer {
+
+    private final PatchMetrics metrics;
+
+    private final ResourceSchema schema;
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().decoder(new JsonPatchDecoder(metrics, schema));
+        configurer.customCodecs().decoder(new JsonMergePatchDecoder(metrics, schema));
+    }
+}
@@ -0,0 +1,24 @@
+package com.cassiomolin.patch.reactive.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the schedulers of the WebFlux variant of the API.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "contacts.reactive")
+public class ReactiveProperties {
+
+    /**
+     * Number of threads patches are applied on, off the event loop.
+     */
+    private int patchThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of threads the contact store is called on, off the event loop.
+     */
+    private int storeThreads = Runtime.getRuntime().availableProcessors();
+}
@@ -0,0 +1,33 @@
+package com.cassiomolin.patch.reactive.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+
+@Configuration
+public class SchedulerConfig {
+
+    /**
+     * Bounded scheduler for the CPU-bound work of the patch pipeline.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler patchScheduler(ReactiveProperties properties) {
+        return Schedulers.newParallel("patch", properties.getPatchThreads());
+    }
+
+    /**
+     * Bounded scheduler for the calls to the contact store, which may block.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler storeScheduler(ReactiveProperties properties) {
+        return Schedulers.fromExecutorService(Executors.newFixedThreadPool(properties.getStoreThreads(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "contact-store");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+}
@@ -0,0 +1,26 @@
+package com.cassiomolin.patch.reactive.service;
+
+import com.cassiomolin.patch.domain.Contact;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link com.cassiomolin.patch.service.ContactService}.
+ */
+public interface ReactiveContactService {
+
+    Mono<Contact> createContact(Contact contact);
+
+    Flux<Contact> findContacts();
+
+    Mono<Contact> findContact(Long id);
+
+    Mono<Contact> updateContact(Contact contact);
+
+    Mono<Void> deleteContact(Contact contact);
+
+    /**
+     * Completes once every change made so far has reached durable storage.
+     */
+    Mono<Void> awaitDurability();
+}
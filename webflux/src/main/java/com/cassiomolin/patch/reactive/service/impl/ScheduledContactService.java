@@ -0,0 +1,65 @@
+package com.cassiomolin.patch.reactive.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.reactive.service.ReactiveContactService;
+import com.cassiomolin.patch.service.ContactService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+
+/**
+ * {@link ReactiveContactService} that calls a {@link ContactService} on a bounded scheduler of its own, so that the
+ * event loop is never blocked by the store.
+ */
+@Service
+public class ScheduledContactService implements ReactiveContactService {
+
+    private final ContactService service;
+
+    private final Scheduler scheduler;
+
+    public ScheduledContactService(ContactService service, @Qualifier("storeScheduler") Scheduler scheduler) {
+        this.service = service;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Mono<Contact> createContact(Contact contact) {
+        return Mono.fromCallable(() -> service.createContact(contact)).subscribeOn(scheduler);
+    }
+
+    @Override
+    public Flux<Contact> findContacts() {
+        // Copied on the store thread, as the in-memory store returns its own list
+        return Mono.fromCallable(() -> new ArrayList<>(service.findContacts()))
+                .subscribeOn(scheduler)
+                .flatMapIterable(contacts -> contacts);
+    }
+
+    @Override
+    public Mono<Contact> findContact(Long id) {
+        return Mono.fromCallable(() -> service.findContact(id).orElse(null)).subscribeOn(scheduler);
+    }
+
+    @Override
+    public Mono<Contact> updateContact(Contact contact) {
+        return Mono.fromCallable(() -> {
+            service.updateContact(contact);
+            return contact;
+        }).subscribeOn(scheduler);
+    }
+
+    @Override
+    public Mono<Void> deleteContact(Contact contact) {
+        return Mono.<Void>fromRunnable(() -> service.deleteContact(contact)).subscribeOn(scheduler);
+    }
+
+    @Override
+    public Mono<Void> awaitDurability() {
+        return Mono.<Void>fromRunnable(service::awaitDurability).subscribeOn(scheduler);
+    }
+}
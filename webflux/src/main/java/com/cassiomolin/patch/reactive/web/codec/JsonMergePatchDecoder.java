@@ -0,0 +1,63 @@
+package com.cassiomolin.patch.reactive.web.codec;
+
+import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import com.cassiomolin.patch.web.util.PatchMetrics.Failure;
+import com.cassiomolin.patch.web.util.PatchMetrics.Stage;
+import com.cassiomolin.patch.web.util.ResourceSchema;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+
+import javax.json.Json;
+import javax.json.JsonMergePatch;
+import javax.json.JsonValue;
+import javax.json.JsonReader;
+import java.util.Map;
+
+/**
+ * Decodes JSON Merge Patch documents, once the request body has been fully received, counterpart of
+ * {@link com.cassiomolin.patch.web.converter.JsonMergePatchHttpMessageConverter}.
+ */
+public class JsonMergePatchDecoder extends AbstractDataBufferDecoder<JsonMergePatch> {
+
+    private final PatchMetrics metrics;
+
+    private final ResourceSchema schema;
+
+    public JsonMergePatchDecoder(PatchMetrics metrics, ResourceSchema schema) {
+        super(PatchMediaType.APPLICATION_MERGE_PATCH);
+        this.metrics = metrics;
+        this.schema = schema;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return JsonMergePatch.class.isAssignableFrom(elementType.toClass()) && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    protected JsonMergePatch decodeDataBuffer(DataBuffer dataBuffer, ResolvableType elementType, MimeType mimeType,
+                                              Map<String, Object> hints) {
+
+        try (JsonReader reader = Json.createReader(dataBuffer.asInputStream())) {
+            return metrics.time(Stage.PARSE, () -> {
+                JsonValue mergePatch = reader.readValue();
+                schema.checkMergePatch(mergePatch);
+                return Json.createMergePatch(mergePatch);
+            });
+        } catch (PatchFailureException e) {
+            metrics.countFailure(e);
+            throw e;
+        } catch (Exception e) {
+            metrics.countFailure(Failure.MALFORMED);
+            throw new DecodingException(e.getMessage(), e);
+        } finally {
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.cassiomolin.patch.reactive.web.codec;
+
+import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import com.cassiomolin.patch.web.util.PatchMetrics.Failure;
+import com.cassiomolin.patch.web.util.PatchMetrics.Stage;
+import com.cassiomolin.patch.web.util.ResourceSchema;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonPatch;
+import javax.json.JsonReader;
+import java.util.Map;
+
+/**
+ * Decodes JSON Patch documents, once the request body has been fully received, counterpart of
+ * {@link com.cassiomolin.patch.web.converter.JsonPatchHttpMessageConverter}.
+ */
+public class JsonPatchDecoder extends AbstractDataBufferDecoder<JsonPatch> {
+
+    private final PatchMetrics metrics;
+
+    private final ResourceSchema schema;
+
+    public JsonPatchDecoder(PatchMetrics metrics, ResourceSchema schema) {
+        super(PatchMediaType.APPLICATION_JSON_PATCH);
+        this.metrics = metrics;
+        this.schema = schema;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return JsonPatch.class.isAssignableFrom(elementType.toClass()) && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    protected JsonPatch decodeDataBuffer(DataBuffer dataBuffer, ResolvableType elementType, MimeType mimeType,
+                                         Map<String, Object> hints) {
+
+        try (JsonReader reader = Json.createReader(dataBuffer.asInputStream())) {
+            return metrics.time(Stage.PARSE, () -> {
+                JsonArray operations = reader.readArray();
+                metrics.countOperations(operations);
+                schema.checkPatch(operations);
+                return Json.createPatch(operations);
+            });
+        } catch (PatchFailureException e) {
+            metrics.countFailure(e);
+            throw e;
+        } catch (Exception e) {
+            metrics.countFailure(Failure.MALFORMED);
+            throw new DecodingException(e.getMessage(), e);
+        } finally {
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+}
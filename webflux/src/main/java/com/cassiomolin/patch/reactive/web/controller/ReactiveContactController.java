@@ -0,0 +1,159 @@
+package com.cassiomolin.patch.reactive.web.controller;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.reactive.service.ReactiveContactService;
+import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.Preferences;
+import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.util.PatchHelper;
+import com.cassiomolin.patch.web.util.PatchMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import javax.json.JsonMergePatch;
+import javax.json.JsonPatch;
+import javax.validation.Valid;
+import java.net.URI;
+import java.util.function.UnaryOperator;
+
+/**
+ * Contacts API on WebFlux, counterpart of {@link com.cassiomolin.patch.web.controller.ContactController}.
+ * <p>
+ * Patch documents are decoded once the request body has been received, without blocking, and applied on a bounded
+ * scheduler, off the event loop. Patches are applied to a copy of the stored contact, which then replaces it, so that
+ * concurrent reads never see a contact while it's being patched. Unlike the servlet variant, concurrent patches of
+ * the same contact are not coalesced, and the last one to be written wins.
+ */
+@RestController
+@RequestMapping("/contacts")
+public class ReactiveContactController {
+
+    private final ContactMapper mapper;
+
+    private final ReactiveContactService service;
+
+    private final PatchHelper patchHelper;
+
+    private final PatchMetrics patchMetrics;
+
+    private final Scheduler patchScheduler;
+
+    public ReactiveContactController(ContactMapper mapper, ReactiveContactService service, PatchHelper patchHelper,
+                                     PatchMetrics patchMetrics, @Qualifier("patchScheduler") Scheduler patchScheduler) {
+        this.mapper = mapper;
+        this.service = service;
+        this.patchHelper = patchHelper;
+        this.patchMetrics = patchMetrics;
+        this.patchScheduler = patchScheduler;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Void>> createContact(@Valid @RequestBody ContactResourceInput contactResource,
+                                                    @RequestHeader(name = Preferences.PREFER, required = false) String prefer,
+                                                    UriComponentsBuilder uriBuilder) {
+
+        return service.createContact(mapper.asContact(contactResource))
+                .flatMap(contactCreated -> {
+                    URI location = uriBuilder.path("/contacts/{id}").buildAndExpand(contactCreated.getId()).toUri();
+                    HttpHeaders headers = new HttpHeaders();
+                    return awaitDurability(prefer, headers)
+                            .then(Mono.fromSupplier(() -> ResponseEntity.created(location).headers(headers).<Void>build()));
+                });
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<ContactResourceOutput> findContacts() {
+        return service.findContacts().map(mapper::asOutput);
+    }
+
+    @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ContactResourceOutput> findContact(@PathVariable Long id) {
+        return findExisting(id).map(mapper::asOutput);
+    }
+
+    @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<ContactResourceOutput>> updateContact(@PathVariable Long id,
+                                                                     @RequestBody @Valid ContactResourceInput contactResource,
+                                                                     @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
+
+        return findExisting(id)
+                .map(contact -> mapper.replacement(contact, contactResource))
+                .flatMap(service::updateContact)
+                .flatMap(contact -> updated(contact, prefer));
+    }
+
+    @PatchMapping(path = "/{id}", consumes = PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+    public Mono<ResponseEntity<ContactResourceOutput>> patchContact(@PathVariable Long id,
+                                                                    @RequestBody Mono<JsonPatch> patchDocument,
+                                                                    @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
+
+        return patchDocument
+                .flatMap(patch -> patch(id, input -> patchHelper.patch(patch, input, ContactResourceInput.class)))
+                .flatMap(contact -> updated(contact, prefer));
+    }
+
+    @PatchMapping(path = "/{id}", consumes = PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
+    public Mono<ResponseEntity<ContactResourceOutput>> mergePatchContact(@PathVariable Long id,
+                                                                         @RequestBody Mono<JsonMergePatch> mergePatchDocument,
+                                                                         @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
+
+        return mergePatchDocument
+                .flatMap(mergePatch -> patch(id, input -> patchHelper.mergePatch(mergePatch, input, ContactResourceInput.class)))
+                .flatMap(contact -> updated(contact, prefer));
+    }
+
+    @DeleteMapping(path = "/{id}")
+    public Mono<ResponseEntity<Void>> deleteContact(@PathVariable Long id,
+                                                    @RequestHeader(name = Preferences.PREFER, required = false) String prefer) {
+
+        HttpHeaders headers = new HttpHeaders();
+        return findExisting(id)
+                .flatMap(service::deleteContact)
+                .then(awaitDurability(prefer, headers))
+                .then(Mono.fromSupplier(() -> ResponseEntity.noContent().headers(headers).<Void>build()));
+    }
+
+    private Mono<Contact> findExisting(Long id) {
+        return service.findContact(id).switchIfEmpty(Mono.defer(() -> Mono.error(new ResourceNotFoundException())));
+    }
+
+    private Mono<Contact> patch(Long id, UnaryOperator<ContactResourceInput> patch) {
+        return findExisting(id)
+                .publishOn(patchScheduler)
+                .map(contact -> patchMetrics.request(() -> mapper.replacement(contact, patch.apply(mapper.asInput(contact)))))
+                .flatMap(service::updateContact);
+    }
+
+    private Mono<ResponseEntity<ContactResourceOutput>> updated(Contact contact, String prefer) {
+
+        HttpHeaders headers = new HttpHeaders();
+        return awaitDurability(prefer, headers).then(Mono.fromSupplier(() -> {
+            if (Preferences.contains(prefer, Preferences.RETURN_REPRESENTATION)) {
+                headers.add(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_REPRESENTATION);
+                return ResponseEntity.ok().headers(headers).body(mapper.asOutput(contact));
+            }
+            if (Preferences.contains(prefer, Preferences.RETURN_MINIMAL)) {
+                headers.add(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_MINIMAL);
+            }
+            return ResponseEntity.noContent().headers(headers).build();
+        }));
+    }
+
+    private Mono<Void> awaitDurability(String prefer, HttpHeaders headers) {
+        if (Preferences.contains(prefer, Preferences.DURABILITY_FSYNC)) {
+            headers.add(Preferences.PREFERENCE_APPLIED, Preferences.DURABILITY_FSYNC);
+            return service.awaitDurability();
+        }
+        return Mono.empty();
+    }
+}
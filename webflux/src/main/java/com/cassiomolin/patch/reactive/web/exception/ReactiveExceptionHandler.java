@@ -0,0 +1,94 @@
+package com.cassiomolin.patch.reactive.web.exception;
+
+import com.cassiomolin.patch.web.exception.PatchFailureException;
+import com.cassiomolin.patch.web.resource.error.ApiError;
+import com.cassiomolin.patch.web.resource.error.ApiResourcePropertyError;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Counterpart of {@link com.cassiomolin.patch.web.exception.WebApiExceptionHandler}, so that errors have the same
+ * bodies as in the servlet variant. Other exceptions, such as those annotated with
+ * {@link org.springframework.web.bind.annotation.ResponseStatus}, are left to Spring Boot.
+ */
+@RestControllerAdvice
+public class ReactiveExceptionHandler {
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ApiError> handleBindException(WebExchangeBindException ex) {
+
+        List<ApiResourcePropertyError> errors = ex.getFieldErrors()
+                .stream()
+                .map(this::toResourcePropertyError)
+                .collect(toList());
+
+        return validationError(errors);
+    }
+
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<ApiError> handleConstraintViolation(ConstraintViolationException ex) {
+
+        List<ApiResourcePropertyError> errors = ex.getConstraintViolations()
+                .stream()
+                .map(this::toResourcePropertyError)
+                .collect(toList());
+
+        return validationError(errors);
+    }
+
+    @ExceptionHandler(PatchFailureException.class)
+    public ResponseEntity<ApiError> handlePatchFailure(PatchFailureException ex) {
+
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .code(ex.getFailure().getCode())
+                .message(ex.getFailure().getMessage())
+                .details(ex.getPointer() == null ? null : Collections.singletonList(ApiResourcePropertyError.builder()
+                        .property(ex.getPointer())
+                        .message(ex.getMessage())
+                        .build()))
+                .build();
+
+        return new ResponseEntity<>(apiError, apiError.getStatus());
+    }
+
+    private ResponseEntity<ApiError> validationError(List<ApiResourcePropertyError> errors) {
+
+        ApiError apiError = ApiError.builder()
+                .message("Validation error")
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .details(errors)
+                .build();
+
+        return new ResponseEntity<>(apiError, apiError.getStatus());
+    }
+
+    private ApiResourcePropertyError toResourcePropertyError(ConstraintViolation<?> violation) {
+
+        return ApiResourcePropertyError.builder()
+                .property(violation.getPropertyPath().toString())
+                .message(violation.getMessage())
+                .invalidValue(violation.getInvalidValue())
+                .build();
+    }
+
+    private ApiResourcePropertyError toResourcePropertyError(FieldError fieldError) {
+
+        return ApiResourcePropertyError.builder()
+                .property(fieldError.getField())
+                .message(fieldError.getDefaultMessage())
+                .invalidValue(fieldError.getRejectedValue())
+                .build();
+    }
+}
@@ -0,0 +1,204 @@
+package com.cassiomolin.patch.reactive.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the servlet and the WebFlux variants of the contacts API under a large number of concurrent connections.
+ * <p>
+ * Each target is seeded with contacts and then hit by a fixed number of clients, each of them sending JSON Merge
+ * Patch requests back to back, so that as many requests as there are clients are always in flight. Throughput,
+ * latency percentiles and errors (connection failures, timeouts and non-2xx responses) are reported for each target.
+ * <p>
+ * Start both applications, with a file descriptor limit well above the number of connections, then run with
+ * {@code mvn -f webflux/pom.xml test-compile exec:java -Dexec.mainClass=com.cassiomolin.patch.reactive.load.ConnectionBenchmark -Dexec.classpathScope=test},
+ * adding any of the following system properties:
+ * <ul>
+ * <li>{@code bench.targets}: targets, as {@code name=url} pairs (default
+ * {@code tomcat=http://localhost:8080,webflux=http://localhost:8081})</li>
+ * <li>{@code bench.connections}: concurrent clients (default {@code 10000})</li>
+ * <li>{@code bench.contacts}: contacts created before the run (default {@code 1000})</li>
+ * <li>{@code bench.warmup}: time before latencies are recorded (default {@code PT15S})</li>
+ * <li>{@code bench.duration}: time latencies are recorded for (default {@code PT30S})</li>
+ * <li>{@code bench.timeout}: request timeout (default {@code PT30S})</li>
+ * <li>{@code bench.report}: report file, relative to the working directory (default {@code target/connection-benchmark.json})</li>
+ * </ul>
+ */
+public class ConnectionBenchmark {
+
+    private static final String CONTACT = "{\"name\":\"John Appleseed\",\"work\":{\"title\":\"Engineer\",\"company\":\"Acme\"}," +
+            "\"phones\":[{\"phone\":\"0000000000\",\"type\":\"mobile\"}],\"groups\":[\"Friends\"],\"favorite\":false}";
+
+    private static final String MERGE_PATCH = "{\"favorite\":true,\"work\":{\"title\":\"Senior Engineer\"}}";
+
+    private final String targets = System.getProperty("bench.targets", "tomcat=http://localhost:8080,webflux=http://localhost:8081");
+
+    private final int connections = Integer.getInteger("bench.connections", 10_000);
+
+    private final int contacts = Integer.getInteger("bench.contacts", 1_000);
+
+    private final Duration warmup = Duration.parse(System.getProperty("bench.warmup", "PT15S"));
+
+    private final Duration duration = Duration.parse(System.getProperty("bench.duration", "PT30S"));
+
+    private final Duration timeout = Duration.parse(System.getProperty("bench.timeout", "PT30S"));
+
+    private final Path report = Paths.get(System.getProperty("bench.report", "target/connection-benchmark.json"));
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void main(String[] args) throws Exception {
+        new ConnectionBenchmark().run();
+    }
+
+    private void run() throws Exception {
+
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        for (String target : targets.split(",")) {
+            String[] nameAndUrl = target.split("=", 2);
+            results.put(nameAndUrl[0], benchmark(nameAndUrl[0], URI.create(nameAndUrl[1])));
+        }
+
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        mapper.writeValue(report.toFile(), results);
+        System.out.printf("%nReport written to %s%n", report);
+    }
+
+    private Map<String, Object> benchmark(String name, URI baseUri) throws Exception {
+
+        System.out.printf("%n%s: seeding %d contacts at %s%n", name, contacts, baseUri);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(timeout)
+                    .executor(executor)
+                    .build();
+            return benchmark(name, client, seed(client, baseUri));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, Object> benchmark(String name, HttpClient client, List<URI> locations) throws InterruptedException {
+
+        Recorder latencies = new Recorder(TimeUnit.MINUTES.toNanos(1), 3);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long warmupEnd = System.nanoTime() + warmup.toNanos();
+        long end = warmupEnd + duration.toNanos();
+
+        System.out.printf("%s: %d connections, warming up for %s and measuring for %s%n", name, connections, warmup, duration);
+
+        List<CompletableFuture<Void>> clients = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            clients.add(loop(client, locations, latencies, completed, errors, warmupEnd, end));
+        }
+
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(warmupEnd - System.nanoTime()));
+        latencies.reset();
+        long completedAtStart = completed.get();
+        long errorsAtStart = errors.get();
+
+        CompletableFuture.allOf(clients.toArray(new CompletableFuture[0])).join();
+
+        Histogram histogram = latencies.getIntervalHistogram();
+        long requests = completed.get() - completedAtStart;
+        long failed = errors.get() - errorsAtStart;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("connections", connections);
+        result.put("requests", requests);
+        result.put("errors", failed);
+        result.put("throughput", requests / (double) duration.getSeconds());
+        result.put("p50", millis(histogram.getValueAtPercentile(50)));
+        result.put("p90", millis(histogram.getValueAtPercentile(90)));
+        result.put("p99", millis(histogram.getValueAtPercentile(99)));
+        result.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+        result.put("max", millis(histogram.getMaxValue()));
+
+        System.out.printf("%s: %.0f req/s, %d errors, p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms%n", name,
+                result.get("throughput"), failed, result.get("p50"), result.get("p99"), result.get("p999"), result.get("max"));
+
+        return result;
+    }
+
+    private List<URI> seed(HttpClient client, URI baseUri) throws IOException, InterruptedException {
+
+        List<URI> locations = new ArrayList<>();
+        for (int i = 0; i < contacts; i++) {
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(baseUri.resolve("/contacts"))
+                    .header("Content-Type", "application/json")
+                    .POST(BodyPublishers.ofString(CONTACT))
+                    .build(), BodyHandlers.discarding());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Contact could not be created: " + response.statusCode());
+            }
+            locations.add(baseUri.resolve(response.headers().firstValue("Location").orElseThrow()));
+        }
+        return locations;
+    }
+
+    /**
+     * Sends requests back to back until the end of the run, recording the latency of those completed after the
+     * warmup.
+     */
+    private CompletableFuture<Void> loop(HttpClient client, List<URI> locations, Recorder latencies,
+                                         AtomicLong completed, AtomicLong errors, long warmupEnd, long end) {
+
+        long start = System.nanoTime();
+        if (start >= end) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        URI location = locations.get(ThreadLocalRandom.current().nextInt(locations.size()));
+        HttpRequest request = HttpRequest.newBuilder(location)
+                .timeout(timeout)
+                .header("Content-Type", "application/merge-patch+json")
+                .method("PATCH", BodyPublishers.ofString(MERGE_PATCH))
+                .build();
+
+        return client.sendAsync(request, BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    long now = System.nanoTime();
+                    if (now >= warmupEnd && now < end) {
+                        latencies.recordValue(Math.min(now - start, TimeUnit.MINUTES.toNanos(1)));
+                    }
+                    if (failure != null || response.statusCode() >= 300) {
+                        errors.incrementAndGet();
+                    }
+                    completed.incrementAndGet();
+                    return null;
+                })
+                .thenCompose(ignored -> loop(client, locations, latencies, completed, errors, warmupEnd, end));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
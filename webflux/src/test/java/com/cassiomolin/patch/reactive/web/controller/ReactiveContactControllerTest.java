@@ -0,0 +1,116 @@
+package com.cassiomolin.patch.reactive.web.controller;
+
+import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.Preferences;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+public class ReactiveContactControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Test
+    public void patchContact_shouldReturn200WithContact_whenRepresentationIsPreferred() {
+
+        URI location = createContact();
+
+        client.patch().uri(location)
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH)
+                .header(Preferences.PREFER, Preferences.RETURN_REPRESENTATION)
+                .syncBody("[{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"Johnny Appleseed\"}," +
+                        "{\"op\":\"add\",\"path\":\"/groups\",\"value\":[\"Friends\"]}]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_REPRESENTATION)
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Johnny Appleseed")
+                .jsonPath("$.groups[0]").isEqualTo("Friends");
+    }
+
+    @Test
+    public void mergePatchContact_shouldReturn204_andUpdateContact() {
+
+        URI location = createContact();
+
+        client.patch().uri(location)
+                .contentType(PatchMediaType.APPLICATION_MERGE_PATCH)
+                .syncBody("{\"favorite\":true,\"work\":{\"title\":\"Engineer\"}}")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        client.get().uri(location)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("John Appleseed")
+                .jsonPath("$.favorite").isEqualTo(true)
+                .jsonPath("$.work.title").isEqualTo("Engineer");
+    }
+
+    @Test
+    public void patchContact_shouldReturn422WithPointer_whenPathIsUnknown() {
+
+        URI location = createContact();
+
+        client.patch().uri(location)
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH)
+                .syncBody("[{\"op\":\"replace\",\"path\":\"/work/department\",\"value\":\"Sales\"}]")
+                .exchange()
+                .expectStatus().isEqualTo(422)
+                .expectBody()
+                .jsonPath("$.code").isEqualTo("bad-pointer")
+                .jsonPath("$.details[0].property").isEqualTo("/work/department");
+    }
+
+    @Test
+    public void patchContact_shouldReturn422_whenPatchedContactIsInvalid() {
+
+        URI location = createContact();
+
+        client.patch().uri(location)
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH)
+                .syncBody("[{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"\"}]")
+                .exchange()
+                .expectStatus().isEqualTo(422)
+                .expectBody()
+                .jsonPath("$.details[0].property").isEqualTo("name");
+    }
+
+    @Test
+    public void patchContact_shouldReturn404_whenContactDoesNotExist() {
+
+        client.patch().uri("/contacts/{id}", Long.MAX_VALUE)
+                .contentType(PatchMediaType.APPLICATION_MERGE_PATCH)
+                .syncBody("{\"favorite\":true}")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    private URI createContact() {
+
+        URI location = client.post().uri("/contacts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"name\":\"John Appleseed\"}")
+                .exchange()
+                .expectStatus().isCreated()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getLocation();
+
+        assertThat(location).isNotNull();
+        return location;
+    }
+}